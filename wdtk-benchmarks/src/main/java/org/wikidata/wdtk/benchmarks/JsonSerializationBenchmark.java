@@ -0,0 +1,105 @@
+package org.wikidata.wdtk.benchmarks;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.helpers.StreamingJsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+/**
+ * Compares the JSON serialization of single entity documents by
+ * {@link JsonSerializer}, which uses Jackson's bean serializers, with
+ * {@link StreamingJsonSerializer}, for the fixture documents of
+ * {@link RdfFixtures}. Both produce the same output. Allocation rates are
+ * obtained by running the benchmark with the JMH GC profiler
+ * ({@code -prof gc}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+	/**
+	 * Name of the fixture document, see {@link RdfFixtures}.
+	 */
+	@Param({ "small", "typical", "large", "huge", "property" })
+	public String entity;
+
+	EntityDocument document;
+
+	@Setup
+	public void setUp() throws IOException {
+		document = RdfFixtures.loadDocuments().get(entity);
+		if (document == null) {
+			throw new IllegalArgumentException("Unknown fixture entity: " + entity);
+		}
+		if (!getJacksonString(document).equals(
+				StreamingJsonSerializer.getJsonString(document))) {
+			throw new IllegalStateException("The serializers disagree on " + entity);
+		}
+	}
+
+	@Benchmark
+	public String jackson() {
+		return getJacksonString(document);
+	}
+
+	@Benchmark
+	public String streamingString() {
+		return StreamingJsonSerializer.getJsonString(document);
+	}
+
+	@Benchmark
+	public byte[] streamingBytes() {
+		return StreamingJsonSerializer.getJsonBytes(document);
+	}
+
+	static String getJacksonString(EntityDocument document) {
+		if (document instanceof ItemDocument) {
+			return JsonSerializer.getJsonString((ItemDocument) document);
+		} else if (document instanceof PropertyDocument) {
+			return JsonSerializer.getJsonString((PropertyDocument) document);
+		} else {
+			throw new IllegalArgumentException("Unsupported document: "
+					+ document.getEntityId());
+		}
+	}
+}
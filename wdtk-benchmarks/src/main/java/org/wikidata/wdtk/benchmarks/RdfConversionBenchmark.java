@@ -0,0 +1,223 @@
+package org.wikidata.wdtk.benchmarks;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.datamodel.interfaces.StatementDocument;
+import org.wikidata.wdtk.rdf.BinaryRdfWriter;
+import org.wikidata.wdtk.rdf.PropertyRegister;
+import org.wikidata.wdtk.rdf.RdfConverter;
+import org.wikidata.wdtk.rdf.RdfSerializer;
+import org.wikidata.wdtk.rdf.RdfWriter;
+import org.wikidata.wdtk.rdf.TruthyRdfConverter;
+
+/**
+ * Measures the conversion of single entity documents to RDF, as done by
+ * {@link RdfSerializer} for each document of a dump, for the fixture
+ * documents of {@link RdfFixtures}. Each operation converts one document with
+ * a new {@link RdfConverter}, so that no value or declaration is skipped
+ * because it was written for an earlier operation.
+ * <p>
+ * Besides documents per millisecond, the number of triples written per
+ * millisecond is reported as the "triples" secondary result. Allocation
+ * rates are obtained by running the benchmark with the JMH GC profiler
+ * ({@code -prof gc}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class RdfConversionBenchmark {
+
+	/**
+	 * Name of the fixture document, see {@link RdfFixtures}.
+	 */
+	@Param({ "small", "typical", "large", "huge", "property" })
+	public String entity;
+
+	/**
+	 * RDF format: "N-Triples", "Turtle", or "Binary" for
+	 * {@link BinaryRdfWriter}.
+	 */
+	@Param({ "N-Triples", "Turtle" })
+	public String format;
+
+	/**
+	 * Combination of {@link RdfSerializer} tasks: "all" for all exact data,
+	 * "terms", "statements", "simple-statements", "sitelinks", or "truthy"
+	 * for the {@link TruthyRdfConverter}.
+	 */
+	@Param({ "all", "terms", "statements", "simple-statements", "sitelinks", "truthy" })
+	public String tasks;
+
+	/**
+	 * Where the output is written: "null" discards it, "buffer" writes it to
+	 * a reused byte array.
+	 */
+	@Param({ "null", "buffer" })
+	public String sink;
+
+	EntityDocument document;
+
+	Sites sites;
+
+	PropertyRegister propertyRegister;
+
+	RDFFormat rdfFormat;
+
+	int taskFlags;
+
+	OutputStream output;
+
+	ByteArrayOutputStream buffer;
+
+	/**
+	 * Number of triples written, reported as a rate next to the number of
+	 * operations.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+
+		public long triples;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			triples = 0;
+		}
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		Map<String, EntityDocument> documents = RdfFixtures.loadDocuments();
+		document = documents.get(entity);
+		if (document == null) {
+			throw new IllegalArgumentException("Unknown fixture entity: " + entity);
+		}
+		sites = RdfFixtures.createSites(documents.values());
+		propertyRegister = RdfFixtures.createPropertyRegister(documents.values());
+		rdfFormat = getFormat(format);
+		taskFlags = getTasks(tasks);
+		if ("buffer".equals(sink)) {
+			buffer = new ByteArrayOutputStream();
+			output = buffer;
+		} else if ("null".equals(sink)) {
+			output = new NullOutputStream();
+		} else {
+			throw new IllegalArgumentException("Unknown sink: " + sink);
+		}
+	}
+
+	@Benchmark
+	public long convert(Counters counters) {
+		if (buffer != null) {
+			buffer.reset();
+		}
+		RdfWriter rdfWriter = RdfWriter.create(rdfFormat, output);
+		rdfWriter.start();
+		if (taskFlags == 0) {
+			new TruthyRdfConverter(rdfWriter, propertyRegister)
+					.writeStatements((StatementDocument) document);
+		} else {
+			RdfConverter rdfConverter = new RdfConverter(rdfWriter, sites,
+					propertyRegister);
+			rdfConverter.setTasks(taskFlags);
+			rdfConverter.writeEntityDocument(document);
+		}
+		rdfWriter.finish();
+		counters.triples += rdfWriter.getTripleCount();
+		return rdfWriter.getTripleCount();
+	}
+
+	static RDFFormat getFormat(String name) {
+		switch (name) {
+		case "N-Triples":
+			return RDFFormat.NTRIPLES;
+		case "Turtle":
+			return RDFFormat.TURTLE;
+		case "Binary":
+			return BinaryRdfWriter.FORMAT;
+		default:
+			throw new IllegalArgumentException("Unknown format: " + name);
+		}
+	}
+
+	/**
+	 * Returns the task flags for the given name, or 0 for the truthy
+	 * converter.
+	 */
+	static int getTasks(String name) {
+		int entities = RdfSerializer.TASK_ALL_ENTITIES;
+		switch (name) {
+		case "all":
+			return entities | RdfSerializer.TASK_ALL_EXACT_DATA;
+		case "terms":
+			return entities | RdfSerializer.TASK_TERMS;
+		case "statements":
+			return entities | RdfSerializer.TASK_STATEMENTS;
+		case "simple-statements":
+			return entities | RdfSerializer.TASK_SIMPLE_STATEMENTS;
+		case "sitelinks":
+			return entities | RdfSerializer.TASK_SITELINKS;
+		case "truthy":
+			return 0;
+		default:
+			throw new IllegalArgumentException("Unknown tasks: " + name);
+		}
+	}
+
+	/**
+	 * Stream discarding everything written to it.
+	 */
+	static class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package org.wikidata.wdtk.benchmarks;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelFilter;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.rdf.PropertyRegister;
+import org.wikidata.wdtk.wikibaseapi.BasicApiConnection;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Entity documents used by the RDF benchmarks, derived from the items and
+ * properties of wbgetentities-Q6-Q42-P31.json:
+ * <ul>
+ * <li>small: Q42 with an English label, three statements and one site link;</li>
+ * <li>typical: Q42 with terms and site links in ten languages, and its first
+ * fifteen statement groups;</li>
+ * <li>large: Q42 as found in the file;</li>
+ * <li>huge: Q42 with every statement repeated twenty times;</li>
+ * <li>property: P31.</li>
+ * </ul>
+ * Lexemes are not included since they cannot be converted to RDF yet.
+ */
+final class RdfFixtures {
+
+	static final String RESOURCE = "/wbgetentities-Q6-Q42-P31.json";
+
+	static final Set<String> TYPICAL_LANGUAGES = new HashSet<>(Arrays.asList(
+			"en", "fr", "de", "es", "it", "nl", "ru", "ja", "zh", "ar"));
+
+	static final int TYPICAL_STATEMENT_GROUPS = 15;
+
+	static final int HUGE_REPETITIONS = 20;
+
+	private RdfFixtures() {
+	}
+
+	/**
+	 * Returns the fixture documents, indexed by name.
+	 */
+	static Map<String, EntityDocument> loadDocuments() throws IOException {
+		Map<String, EntityDocument> entities = readEntities();
+		ItemDocument q42 = (ItemDocument) entities.get("Q42");
+
+		Map<String, EntityDocument> documents = new HashMap<>();
+		documents.put("small", filter(q42, Collections.singleton("en"),
+				Arrays.asList("P31", "P21", "P27")));
+		Set<String> properties = new LinkedHashSet<>();
+		Iterator<StatementGroup> groups = q42.getStatementGroups().iterator();
+		while (groups.hasNext() && properties.size() < TYPICAL_STATEMENT_GROUPS) {
+			properties.add(groups.next().getProperty().getId());
+		}
+		documents.put("typical", filter(q42, TYPICAL_LANGUAGES, properties));
+		documents.put("large", q42);
+		documents.put("huge", repeatStatements(q42, HUGE_REPETITIONS));
+		documents.put("property", entities.get("P31"));
+		return documents;
+	}
+
+	/**
+	 * Returns sites resolving all the site links of the fixture documents,
+	 * using the URL scheme of Wikimedia projects.
+	 */
+	static Sites createSites(Iterable<EntityDocument> documents) {
+		SitesImpl sites = new SitesImpl();
+		for (EntityDocument document : documents) {
+			if (!(document instanceof ItemDocument)) {
+				continue;
+			}
+			for (String siteKey : ((ItemDocument) document).getSiteLinks().keySet()) {
+				int projectStart = siteKey.lastIndexOf("wiki");
+				String languageCode = siteKey.substring(0, projectStart).replace('_', '-');
+				String project = siteKey.substring(projectStart);
+				String group = "wiki".equals(project) ? "wikipedia" : project;
+				String host = "https://" + languageCode + "." + group + ".org";
+				sites.setSiteInformation(siteKey, group, languageCode, "mediawiki",
+						host + "/w/$1", host + "/wiki/$1");
+			}
+		}
+		return sites;
+	}
+
+	/**
+	 * Returns a property register which never sends requests, knowing the
+	 * datatypes of the properties used in the fixture documents.
+	 */
+	static PropertyRegister createPropertyRegister(Iterable<EntityDocument> documents) {
+		PropertyRegister propertyRegister = new PropertyRegister("P1921",
+				BasicApiConnection.getWikidataApiConnection(), Datamodel.SITE_WIKIDATA);
+		propertyRegister.setOnlineFetching(false);
+		for (EntityDocument document : documents) {
+			if (document instanceof PropertyDocument) {
+				propertyRegister.processPropertyDocument((PropertyDocument) document);
+			}
+		}
+		return propertyRegister;
+	}
+
+	private static Map<String, EntityDocument> readEntities() throws IOException {
+		ObjectReader reader = new DatamodelMapper(Datamodel.SITE_WIKIDATA).reader()
+				.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
+		Map<String, EntityDocument> entities = new HashMap<>();
+		try (InputStream stream = RdfFixtures.class.getResourceAsStream(RESOURCE)) {
+			if (stream == null) {
+				throw new IOException("Resource not found: " + RESOURCE);
+			}
+			Iterator<JsonNode> nodes = reader.readTree(stream).get("entities").elements();
+			while (nodes.hasNext()) {
+				JsonNode node = nodes.next();
+				if (!node.has("missing")) {
+					EntityDocument document = reader.forType(EntityDocumentImpl.class)
+							.readValue(node);
+					entities.put(document.getEntityId().getId(), document);
+				}
+			}
+		}
+		return entities;
+	}
+
+	private static ItemDocument filter(ItemDocument document,
+			Set<String> languages, Iterable<String> propertyIds) {
+		Set<PropertyIdValue> properties = new HashSet<>();
+		for (String propertyId : propertyIds) {
+			properties.add(Datamodel.makeWikidataPropertyIdValue(propertyId));
+		}
+		Set<String> siteLinks = new HashSet<>();
+		for (String language : languages) {
+			siteLinks.add(language + "wiki");
+		}
+		DocumentDataFilter filter = new DocumentDataFilter();
+		filter.setLanguageFilter(languages);
+		filter.setPropertyFilter(properties);
+		filter.setSiteLinkFilter(siteLinks);
+		return new DatamodelFilter(new DataObjectFactoryImpl(), filter)
+				.filter(document);
+	}
+
+	private static ItemDocument repeatStatements(ItemDocument document,
+			int repetitions) {
+		ItemDocument result = document;
+		for (int i = 1; i < repetitions; i++) {
+			for (StatementGroup group : document.getStatementGroups()) {
+				for (Statement statement : group) {
+					result = result.withStatement(statement
+							.withStatementId(statement.getStatementId() + "-" + i));
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,238 @@
+package org.wikidata.wdtk.benchmarks;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+import org.wikidata.wdtk.rdf.Md5ValueHasher;
+import org.wikidata.wdtk.rdf.Murmur3ValueHasher;
+import org.wikidata.wdtk.rdf.NTriplesRdfWriter;
+import org.wikidata.wdtk.rdf.OwlDeclarationBuffer;
+import org.wikidata.wdtk.rdf.PropertyRegister;
+import org.wikidata.wdtk.rdf.RdfWriter;
+import org.wikidata.wdtk.rdf.Vocabulary;
+import org.wikidata.wdtk.rdf.values.GlobeCoordinatesValueConverter;
+import org.wikidata.wdtk.rdf.values.QuantityValueConverter;
+import org.wikidata.wdtk.rdf.values.TimeValueConverter;
+
+/**
+ * Measures the parts of the RDF conversion specific to complex values, in
+ * isolation: the hashing of values and references done by {@link Vocabulary}
+ * to build their IRIs, the conversion of values to simple RDF literals, and
+ * the writing of the triples of value nodes to N-Triples. Each operation
+ * handles one value, taken in turn from a fixed set of distinct realistic
+ * values, so that no result is cached.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class RdfValueBenchmark {
+
+	/**
+	 * Number of distinct values of each kind.
+	 */
+	static final int VALUE_COUNT = 1024;
+
+	static final PropertyIdValue TIME_PROPERTY = Datamodel.makeWikidataPropertyIdValue("P569");
+	static final PropertyIdValue QUANTITY_PROPERTY = Datamodel.makeWikidataPropertyIdValue("P2048");
+	static final PropertyIdValue COORDINATES_PROPERTY = Datamodel.makeWikidataPropertyIdValue("P625");
+
+	/**
+	 * Value hasher used by {@link Vocabulary}: "murmur3" or "md5".
+	 */
+	@Param({ "murmur3", "md5" })
+	public String hasher;
+
+	TimeValue[] timeValues;
+	QuantityValue[] quantityValues;
+	GlobeCoordinatesValue[] coordinatesValues;
+	Reference[] references;
+
+	TimeValueConverter timeValueConverter;
+	QuantityValueConverter quantityValueConverter;
+	GlobeCoordinatesValueConverter coordinatesValueConverter;
+
+	RdfWriter rdfWriter;
+
+	IRI valueNode;
+
+	int next = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		switch (hasher) {
+		case "murmur3":
+			Vocabulary.setValueHasher(new Murmur3ValueHasher());
+			break;
+		case "md5":
+			Vocabulary.setValueHasher(new Md5ValueHasher());
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown hasher: " + hasher);
+		}
+
+		Random random = new Random(42);
+		timeValues = new TimeValue[VALUE_COUNT];
+		quantityValues = new QuantityValue[VALUE_COUNT];
+		coordinatesValues = new GlobeCoordinatesValue[VALUE_COUNT];
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			timeValues[i] = Datamodel.makeTimeValue(1800 + random.nextInt(220),
+					(byte) (1 + random.nextInt(12)), (byte) (1 + random.nextInt(28)),
+					TimeValue.CM_GREGORIAN_PRO);
+			BigDecimal amount = BigDecimal.valueOf(random.nextInt(30000), 2);
+			quantityValues[i] = Datamodel.makeQuantityValue(amount,
+					amount.subtract(BigDecimal.ONE), amount.add(BigDecimal.ONE),
+					Datamodel.makeWikidataItemIdValue("Q11573"));
+			coordinatesValues[i] = Datamodel.makeGlobeCoordinatesValue(
+					random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180,
+					GlobeCoordinatesValue.PREC_MILLI_ARCSECOND,
+					GlobeCoordinatesValue.GLOBE_EARTH);
+		}
+		Map<String, EntityDocument> documents = RdfFixtures.loadDocuments();
+		references = getReferences((ItemDocument) documents.get("large"));
+		PropertyRegister propertyRegister = RdfFixtures.createPropertyRegister(documents.values());
+		OwlDeclarationBuffer owlDeclarationBuffer = new OwlDeclarationBuffer();
+		rdfWriter = new NTriplesRdfWriter(new RdfConversionBenchmark.NullOutputStream());
+		rdfWriter.start();
+		timeValueConverter = new TimeValueConverter(rdfWriter, propertyRegister,
+				owlDeclarationBuffer);
+		quantityValueConverter = new QuantityValueConverter(rdfWriter, propertyRegister,
+				owlDeclarationBuffer);
+		coordinatesValueConverter = new GlobeCoordinatesValueConverter(rdfWriter,
+				propertyRegister, owlDeclarationBuffer);
+		valueNode = rdfWriter.getUri(Vocabulary.PREFIX_WIKIDATA_VALUE + "benchmark");
+	}
+
+	@TearDown
+	public void tearDown() {
+		rdfWriter.finish();
+		Vocabulary.setValueHasher(new Murmur3ValueHasher());
+	}
+
+	@Benchmark
+	public String timeValueUri() {
+		return Vocabulary.getTimeValueUri(timeValues[nextIndex()]);
+	}
+
+	@Benchmark
+	public String quantityValueUri() {
+		return Vocabulary.getQuantityValueUri(quantityValues[nextIndex()]);
+	}
+
+	@Benchmark
+	public String globeCoordinatesValueUri() {
+		return Vocabulary.getGlobeCoordinatesValueUri(coordinatesValues[nextIndex()]);
+	}
+
+	@Benchmark
+	public String referenceUri() {
+		return Vocabulary.getReferenceUri(references[next++ % references.length]);
+	}
+
+	@Benchmark
+	public Value simpleTimeValue() {
+		return timeValueConverter.getRdfValue(timeValues[nextIndex()], TIME_PROPERTY, true);
+	}
+
+	@Benchmark
+	public Value simpleQuantityValue() {
+		return quantityValueConverter.getRdfValue(quantityValues[nextIndex()],
+				QUANTITY_PROPERTY, true);
+	}
+
+	@Benchmark
+	public Value simpleGlobeCoordinatesValue() {
+		return coordinatesValueConverter.getRdfValue(coordinatesValues[nextIndex()],
+				COORDINATES_PROPERTY, true);
+	}
+
+	@Benchmark
+	public long timeValueNode() {
+		timeValueConverter.writeValue(timeValues[nextIndex()], valueNode);
+		return rdfWriter.getTripleCount();
+	}
+
+	@Benchmark
+	public long quantityValueNode() {
+		quantityValueConverter.writeValue(quantityValues[nextIndex()], valueNode);
+		return rdfWriter.getTripleCount();
+	}
+
+	@Benchmark
+	public long globeCoordinatesValueNode() {
+		coordinatesValueConverter.writeValue(coordinatesValues[nextIndex()], valueNode);
+		return rdfWriter.getTripleCount();
+	}
+
+	private int nextIndex() {
+		next = (next + 1) & (VALUE_COUNT - 1);
+		return next;
+	}
+
+	/**
+	 * Returns the references of the given item, without their hashes so that
+	 * their IRIs are computed by the value hasher.
+	 */
+	private static Reference[] getReferences(ItemDocument document) {
+		List<Reference> references = new ArrayList<>();
+		for (StatementGroup group : document.getStatementGroups()) {
+			for (Statement statement : group) {
+				for (Reference reference : statement.getReferences()) {
+					references.add(Datamodel.makeReference(reference.getSnakGroups()));
+				}
+			}
+		}
+		return references.toArray(new Reference[0]);
+	}
+}
@@ -0,0 +1,208 @@
+package org.wikidata.wdtk.benchmarks;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Benchmarks
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.testing.MockWikibaseApiServer;
+import org.wikidata.wdtk.wikibaseapi.BasicApiConnection;
+import org.wikidata.wdtk.wikibaseapi.WikibaseDataEditor;
+import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Measures the throughput and the response times of
+ * {@link WikibaseDataFetcher} and {@link WikibaseDataEditor} against a
+ * {@link MockWikibaseApiServer}. The served entities are copies of the
+ * Douglas Adams item (Q42), a large and realistic document.
+ * <p>
+ * Requests failing with API errors, injected with the errorRate parameter or
+ * caused by a lag above the maxlag parameter of the editor (5 seconds), are
+ * counted as operations: their cost is part of what is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class WikibaseApiBenchmark {
+
+	/**
+	 * Number of copies of the fixture entity served by the server.
+	 */
+	static final int ENTITY_COUNT = 2000;
+
+	/**
+	 * Response time of the server in milliseconds, before jitter.
+	 */
+	@Param({ "0", "20" })
+	public long latency;
+
+	/**
+	 * Maximal random time in milliseconds added to the latency.
+	 */
+	@Param({ "0" })
+	public long latencyJitter;
+
+	/**
+	 * Fraction of the requests failing with an internal API error.
+	 */
+	@Param({ "0" })
+	public double errorRate;
+
+	/**
+	 * Replication lag reported by the server, in seconds.
+	 */
+	@Param({ "0" })
+	public double lag;
+
+	/**
+	 * Maximal number of concurrent requests of the fetcher.
+	 */
+	@Param({ "1", "4" })
+	public int maxConcurrentRequests;
+
+	MockWikibaseApiServer server;
+
+	BasicApiConnection connection;
+
+	WikibaseDataFetcher fetcher;
+
+	WikibaseDataEditor editor;
+
+	ItemDocument editedDocument;
+
+	@Setup
+	public void setUp() throws IOException, MediaWikiApiErrorException {
+		server = new MockWikibaseApiServer();
+		server.addEntitiesFromResource(WikibaseApiBenchmark.class, "/wbgetentities-Q6-Q42-P31.json");
+		ObjectNode template = (ObjectNode) server.getEntity("Q42");
+		for (int i = 0; i < ENTITY_COUNT; i++) {
+			String id = "Q" + (i + 1000);
+			ObjectNode entity = template.deepCopy();
+			entity.put("id", id);
+			entity.put("title", id);
+			server.addEntity(entity);
+		}
+		// lets the fetcher request 500 entities at once, as a bot would
+		server.setHighLimits(true);
+		server.start();
+
+		connection = new BasicApiConnection(server.getApiUrl());
+		fetcher = new WikibaseDataFetcher(connection, Datamodel.SITE_WIKIDATA);
+		fetcher.setMaxConcurrentRequests(maxConcurrentRequests);
+		editor = new WikibaseDataEditor(connection, Datamodel.SITE_WIKIDATA);
+		editor.setAverageTimePerEdit(0);
+		editor.setMaxLagMaxRetries(3);
+		editor.setMaxLagFirstWaitTime(10);
+		editedDocument = (ItemDocument) fetcher.getEntityDocument("Q1000");
+
+		// the settings apply after the fixtures are loaded
+		server.setLatency(latency, latencyJitter);
+		server.setErrorRate(errorRate);
+		server.setLag(lag);
+		connection.resetStatistics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		System.out.println();
+		System.out.printf("Requests: %d (%d errors), bytes received: %d, bytes decoded: %d%n",
+				connection.getRequestCount(), server.getErrorCount(),
+				connection.getBytesReceived(), connection.getBytesDecoded());
+		connection.getLatencyHistograms().forEach((action, histogram) ->
+				System.out.println(action + ": " + histogram));
+		server.stop();
+	}
+
+	@Benchmark
+	public EntityDocument getEntityDocument() throws IOException {
+		try {
+			return fetcher.getEntityDocument(getRandomIds(1).get(0));
+		} catch (MediaWikiApiErrorException e) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	public Map<String, EntityDocument> getEntityDocuments50() throws IOException {
+		try {
+			return fetcher.getEntityDocuments(getRandomIds(50));
+		} catch (MediaWikiApiErrorException e) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	public Map<String, EntityDocument> getEntityDocuments500() throws IOException {
+		try {
+			return fetcher.getEntityDocuments(getRandomIds(500));
+		} catch (MediaWikiApiErrorException e) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	public ItemDocument nullEdit() throws IOException {
+		try {
+			return editor.nullEdit(editedDocument);
+		} catch (MediaWikiApiErrorException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the ids of consecutive entities, starting from a random one.
+	 */
+	private List<String> getRandomIds(int count) {
+		int start = ThreadLocalRandom.current().nextInt(ENTITY_COUNT - count + 1);
+		List<String> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add("Q" + (start + i + 1000));
+		}
+		return ids;
+	}
+}
@@ -34,6 +34,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class DatamodelMapper extends ObjectMapper {
 
 	private static final long serialVersionUID = -236841297410109272L;
+
+	private final transient ValueCache valueCache;
 	
 	/**
 	 * Constructs a mapper with the given siteIri. This IRI
@@ -44,9 +46,38 @@ public class DatamodelMapper extends ObjectMapper {
 	 * 		the ambient IRI of the Wikibase site
 	 */
 	public DatamodelMapper(String siteIri) {
+		this(siteIri, null);
+	}
+
+	/**
+	 * Constructs a mapper with the given siteIri, which
+	 * canonicalizes the values it reads with the given cache.
+	 * Equal values read by this mapper are then represented
+	 * by the same object as much as possible.
+	 *
+	 * @param siteIri
+	 * 		the ambient IRI of the Wikibase site
+	 * @param valueCache
+	 * 		the cache used to canonicalize values, or null
+	 * 		if values should not be canonicalized
+	 */
+	public DatamodelMapper(String siteIri, ValueCache valueCache) {
 		super();
+		this.valueCache = valueCache;
 		InjectableValues injection = new InjectableValues.Std()
-				.addValue("siteIri", siteIri);
+				.addValue("siteIri", siteIri)
+				.addValue("valueCache", valueCache);
 		this.setInjectableValues(injection);
 	}
+
+	/**
+	 * Returns the cache used to canonicalize values read by
+	 * this mapper.
+	 *
+	 * @return the value cache, or null if values are not
+	 * 		canonicalized
+	 */
+	public ValueCache getValueCache() {
+		return valueCache;
+	}
 }
@@ -319,6 +319,7 @@ public class Equality {
 			return true;
 		}
 		return o2 instanceof SnakGroup
+			&& !haveDifferentHashCodes(o1, o2)
 			&& o1.getSnaks().equals(((SnakGroup) o2).getSnaks());
 	}
 
@@ -343,6 +344,9 @@ public class Equality {
 		if (!(o2 instanceof Claim)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		Claim other = (Claim) o2;
 		return o1.getSubject().equals(other.getSubject())
 				&& o1.getMainSnak().equals(other.getMainSnak())
@@ -368,6 +372,7 @@ public class Equality {
 			return true;
 		}
 		return o2 instanceof Reference
+			&& !haveDifferentHashCodes(o1, o2)
 			&& o1.getSnakGroups().equals(((Reference) o2).getSnakGroups());
 	}
 
@@ -392,6 +397,9 @@ public class Equality {
 		if (!(o2 instanceof Statement)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		Statement other = (Statement) o2;
 		return o1.getSubject().equals(other.getSubject())
 				&& o1.getMainSnak().equals(other.getMainSnak())
@@ -423,6 +431,7 @@ public class Equality {
 			return true;
 		}
 		return o2 instanceof StatementGroup
+			&& !haveDifferentHashCodes(o1, o2)
 			&& o1.getStatements().equals(((StatementGroup) o2).getStatements());
 	}
 
@@ -471,6 +480,9 @@ public class Equality {
 		if (!(o2 instanceof PropertyDocument)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		PropertyDocument other = (PropertyDocument) o2;
 		// Note: property id already compared by equalsTermedDocument()
 		return equalsTermedDocument(o1, other)
@@ -496,6 +508,9 @@ public class Equality {
 		if (!(o2 instanceof ItemDocument)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		ItemDocument other = (ItemDocument) o2;
 		// Note: item id already compared by equalsTermedDocument()
 		return equalsTermedDocument(o1, other)
@@ -521,6 +536,9 @@ public class Equality {
 		if (!(o2 instanceof LexemeDocument)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		LexemeDocument other = (LexemeDocument) o2;
 		return o1.getEntityId().equals(other.getEntityId())
 				&& o1.getLanguage().equals(other.getLanguage())
@@ -550,6 +568,9 @@ public class Equality {
 		if (!(o2 instanceof FormDocument)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		FormDocument other = (FormDocument) o2;
 		return o1.getEntityId().equals(other.getEntityId())
 				&& o1.getGrammaticalFeatures().equals(other.getGrammaticalFeatures())
@@ -576,6 +597,9 @@ public class Equality {
 		if (!(o2 instanceof SenseDocument)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		SenseDocument other = (SenseDocument) o2;
 		return o1.getEntityId().equals(other.getEntityId())
 				&& o1.getGlosses().equals(other.getGlosses())
@@ -601,6 +625,9 @@ public class Equality {
 		if (!(o2 instanceof MediaInfoDocument)) {
 			return false;
 		}
+		if (haveDifferentHashCodes(o1, o2)) {
+			return false;
+		}
 		MediaInfoDocument other = (MediaInfoDocument) o2;
 		return o1.getEntityId().equals(other.getEntityId())
 				&& o1.getLabels().equals(other.getLabels())
@@ -608,6 +635,22 @@ public class Equality {
 				&& (o1.getRevisionId() == other.getRevisionId());
 	}
 
+	/**
+	 * Returns true if the two objects are instances of the same class and have
+	 * different hash codes, so that they cannot be equal. The implementations
+	 * of composite objects in WDTK cache their hash codes, which makes this a
+	 * cheap test to perform before comparing their contents.
+	 *
+	 * @param o1
+	 *            the first object to compare
+	 * @param o2
+	 *            the second object to compare
+	 * @return true if the objects are known to be different
+	 */
+	private static boolean haveDifferentHashCodes(Object o1, Object o2) {
+		return o1.getClass() == o2.getClass() && o1.hashCode() != o2.hashCode();
+	}
+
 	private static boolean equalsTermedDocument(TermedDocument o1, TermedDocument other) {
 		return o1.getEntityId().equals(other.getEntityId())
 				&& o1.getAliases().equals(other.getAliases())
@@ -55,7 +55,22 @@ public class JsonDeserializer {
 	 * 		Root IRI of the site to deserialize for
 	 */
 	public JsonDeserializer(String siteIri) {
-		DatamodelMapper mapper = new DatamodelMapper(siteIri);
+		this(siteIri, null);
+	}
+
+	/**
+	 * Constructs a new JSON deserializer for the
+	 * designated site, which canonicalizes the values
+	 * it reads with the given cache.
+	 *
+	 * @param siteIri
+	 * 		Root IRI of the site to deserialize for
+	 * @param valueCache
+	 * 		the cache used to canonicalize values, or null
+	 * 		if values should not be canonicalized
+	 */
+	public JsonDeserializer(String siteIri, ValueCache valueCache) {
+		DatamodelMapper mapper = new DatamodelMapper(siteIri, valueCache);
 		entityDocumentReader = mapper.readerFor(EntityDocumentImpl.class)
 				.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
 		itemReader = mapper.readerFor(ItemDocumentImpl.class)
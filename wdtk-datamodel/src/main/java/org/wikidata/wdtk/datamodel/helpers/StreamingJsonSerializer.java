@@ -0,0 +1,352 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.implementation.DatamodelJsonWriter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MediaInfoDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+/**
+ * Serializer for {@link EntityDocument} objects in JSON, producing the same
+ * output as {@link JsonSerializer}, byte for byte, but writing documents with
+ * a {@link DatamodelJsonWriter} instead of Jackson's bean serializers.
+ * <p>
+ * Documents can optionally be serialized by several threads in parallel. The
+ * output still lists the documents in the order in which they were given to
+ * the serializer. Each thread reuses its own buffer and generator from one
+ * document to the next.
+ * <p>
+ * As for {@link JsonSerializer}, it is the responsibility of the caller to
+ * call {@link #open()} before the first document is serialized.
+ */
+public class StreamingJsonSerializer implements EntityDocumentDumpProcessor {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamingJsonSerializer.class);
+
+	private static final byte[] JSON_START_LIST = "[\n".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] JSON_SEP = ",\n".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] JSON_END_LIST = "\n]".getBytes(StandardCharsets.UTF_8);
+
+	/**
+	 * Number of documents each thread may have rendered in advance of the
+	 * document currently being written to the output.
+	 */
+	private static final int DOCUMENTS_AHEAD_PER_THREAD = 16;
+
+	/**
+	 * Writer used for all documents. It falls back to the mapper of
+	 * {@link JsonSerializer} for objects it does not know, so that the output
+	 * of both serializers is the same.
+	 */
+	static final DatamodelJsonWriter writer = new DatamodelJsonWriter(JsonSerializer.mapper);
+
+	private static final ThreadLocal<DocumentBuffer> buffers = ThreadLocal.withInitial(DocumentBuffer::new);
+
+	/**
+	 * The stream that the resulting JSON is written to.
+	 */
+	private final OutputStream outputStream;
+
+	/**
+	 * Executor rendering documents in parallel, or null if documents are
+	 * written by the calling thread. Its threads are daemon threads, so that
+	 * a serializer which is not closed does not keep the JVM running.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Documents submitted to the executor whose output was not written yet,
+	 * in the order of the output.
+	 */
+	private final Deque<Future<byte[]>> pendingDocuments = new ArrayDeque<>();
+
+	private final int maxPendingDocuments;
+
+	/**
+	 * Generator writing to the output stream when documents are serialized
+	 * sequentially.
+	 */
+	private JsonGenerator generator;
+
+	/**
+	 * Counter for the number of documents serialized so far.
+	 */
+	private int entityDocumentCount;
+
+	/**
+	 * Counter for the number of documents rendered in parallel whose output
+	 * was written so far.
+	 */
+	private int writtenDocumentCount;
+
+	/**
+	 * Creates a new JSON serializer that writes its output to the given
+	 * stream, serializing documents in the calling thread. The output stream
+	 * will be managed by the object, i.e., it will be closed when
+	 * {@link #close()} is called.
+	 *
+	 * @param outputStream
+	 *            the output stream to write to
+	 */
+	public StreamingJsonSerializer(OutputStream outputStream) {
+		this(outputStream, 1);
+	}
+
+	/**
+	 * Creates a new JSON serializer that writes its output to the given
+	 * stream, serializing documents with the given number of threads. The
+	 * output stream will be managed by the object, i.e., it will be closed
+	 * when {@link #close()} is called.
+	 *
+	 * @param outputStream
+	 *            the output stream to write to
+	 * @param threads
+	 *            the number of threads serializing documents; if 1, documents
+	 *            are serialized by the calling thread
+	 */
+	public StreamingJsonSerializer(OutputStream outputStream, int threads) {
+		Validate.notNull(outputStream);
+		Validate.isTrue(threads > 0, "The number of threads must be positive");
+		this.outputStream = outputStream;
+		this.executor = threads > 1 ? Executors.newFixedThreadPool(threads,
+				runnable -> {
+					Thread thread = new Thread(runnable, "StreamingJsonSerializer");
+					thread.setDaemon(true);
+					return thread;
+				}) : null;
+		this.maxPendingDocuments = threads * DOCUMENTS_AHEAD_PER_THREAD;
+	}
+
+	@Override
+	public void open() {
+		this.entityDocumentCount = 0;
+		this.writtenDocumentCount = 0;
+
+		try {
+			if (this.executor == null) {
+				this.generator = createGenerator(this.outputStream);
+			}
+			this.outputStream.write(JSON_START_LIST);
+		} catch (IOException e) {
+			reportException(e);
+		}
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		serializeEntityDocument(itemDocument);
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		serializeEntityDocument(propertyDocument);
+	}
+
+	@Override
+	public void processLexemeDocument(LexemeDocument lexemeDocument) {
+		serializeEntityDocument(lexemeDocument);
+	}
+
+	@Override
+	public void processMediaInfoDocument(MediaInfoDocument mediaInfoDocument) {
+		serializeEntityDocument(mediaInfoDocument);
+	}
+
+	@Override
+	public void close() {
+		try {
+			while (!this.pendingDocuments.isEmpty()) {
+				writePendingDocument();
+			}
+			if (this.generator != null) {
+				this.generator.close();
+			}
+			this.outputStream.write(JSON_END_LIST);
+			this.outputStream.close();
+		} catch (IOException e) {
+			reportException(e);
+		} finally {
+			if (this.executor != null) {
+				this.executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of entity documents serialized so far. When several
+	 * threads are used, some of these documents might not have been written
+	 * to the output yet.
+	 *
+	 * @return number of serialized entity documents
+	 */
+	public int getEntityDocumentCount() {
+		return this.entityDocumentCount;
+	}
+
+	/**
+	 * Serializes the given document in JSON and returns the resulting bytes,
+	 * encoded in UTF-8. In case of errors, null is returned.
+	 *
+	 * @param entityDocument
+	 *            document to serialize
+	 * @return JSON serialization or null
+	 */
+	public static byte[] getJsonBytes(EntityDocument entityDocument) {
+		try {
+			return buffers.get().render(entityDocument);
+		} catch (IOException e) {
+			logger.error("Failed to serialize JSON data: " + e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Serializes the given document in JSON and returns the resulting string.
+	 * In case of errors, null is returned.
+	 *
+	 * @param entityDocument
+	 *            document to serialize
+	 * @return JSON serialization or null
+	 */
+	public static String getJsonString(EntityDocument entityDocument) {
+		byte[] bytes = getJsonBytes(entityDocument);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the JSON serialization of the given {@link EntityDocument}, or
+	 * submits it to the executor if documents are serialized in parallel.
+	 *
+	 * @param entityDocument
+	 *            the document to serialize
+	 */
+	private void serializeEntityDocument(EntityDocument entityDocument) {
+		try {
+			if (this.executor == null) {
+				if (this.entityDocumentCount > 0) {
+					this.outputStream.write(JSON_SEP);
+				}
+				writer.writeEntityDocument(entityDocument, this.generator);
+				this.generator.flush();
+			} else {
+				this.pendingDocuments.add(this.executor.submit(
+						() -> buffers.get().render(entityDocument)));
+				while (this.pendingDocuments.size() > this.maxPendingDocuments) {
+					writePendingDocument();
+				}
+			}
+		} catch (IOException e) {
+			reportException(e);
+		}
+		this.entityDocumentCount++;
+	}
+
+	/**
+	 * Waits for the oldest document submitted to the executor and writes its
+	 * serialization to the output.
+	 */
+	private void writePendingDocument() throws IOException {
+		Future<byte[]> document = this.pendingDocuments.poll();
+		byte[] bytes = null;
+		try {
+			bytes = document.get();
+		} catch (ExecutionException e) {
+			reportException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			reportException(e);
+		}
+		if (this.writtenDocumentCount > 0) {
+			this.outputStream.write(JSON_SEP);
+		}
+		this.outputStream.write(bytes);
+		this.writtenDocumentCount++;
+	}
+
+	/**
+	 * Reports a given exception as a RuntimeException, since the interface does
+	 * not allow us to throw checked exceptions directly.
+	 *
+	 * @param e
+	 *            the exception to report
+	 * @throws RuntimeException
+	 *             in all cases
+	 */
+	private void reportException(Exception e) {
+		logger.error("Failed to write JSON export: " + e.toString());
+		throw new RuntimeException(e.toString(), e);
+	}
+
+	private static JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+		JsonGenerator generator = JsonSerializer.mapper.getFactory().createGenerator(outputStream);
+		// documents are separated by the serializer, and flushing the
+		// generator after each document should not flush the stream
+		generator.setRootValueSeparator(null);
+		generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+		return generator;
+	}
+
+	/**
+	 * Buffer and generator used by one thread to serialize documents.
+	 */
+	private static class DocumentBuffer {
+
+		private final ByteArrayBuilder bytes = new ByteArrayBuilder();
+		private JsonGenerator generator;
+
+		byte[] render(EntityDocument entityDocument) throws IOException {
+			if (this.generator == null) {
+				this.generator = createGenerator(this.bytes);
+			}
+			try {
+				writer.writeEntityDocument(entityDocument, this.generator);
+				this.generator.flush();
+				return this.bytes.toByteArray();
+			} catch (IOException | RuntimeException e) {
+				// the generator might be in the middle of a document
+				this.generator = null;
+				throw e;
+			} finally {
+				this.bytes.reset();
+			}
+		}
+	}
+}
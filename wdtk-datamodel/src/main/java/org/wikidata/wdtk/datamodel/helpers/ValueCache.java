@@ -0,0 +1,387 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.wikidata.wdtk.datamodel.implementation.QuantityValueImpl;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.UnsupportedValue;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+
+/**
+ * Canonicalization cache for {@link Value} objects, to be used during
+ * deserialization. Values such as "Q5" for "instance of" or common units of
+ * quantities occur millions of times in a dump. When a cache is given to
+ * {@link DatamodelMapper}, every value read from JSON is looked up in it and
+ * replaced by an equal instance that was seen before, so that equal values
+ * share the same object in memory.
+ * <p>
+ * The cache holds at most a fixed number of values and evicts the least
+ * recently used one when full. To avoid flushing the cache with values that
+ * occur only once (most strings and times, for instance), a value is only
+ * admitted into the cache on its second occurrence within a recent window of
+ * lookups. Occurrences are tracked approximately in a small bit array, which
+ * is periodically cleared so that the admission policy follows the current
+ * distribution of values.
+ * <p>
+ * Unit strings of quantities are canonicalized in a separate table with the
+ * same policy. The object is thread-safe and can be shared between several
+ * mappers: large caches are split into segments, selected by the hashes of
+ * the values, which are locked independently, so that threads deserializing
+ * in parallel rarely wait for each other. Each segment evicts its own least
+ * recently used value.
+ */
+public class ValueCache {
+
+	/**
+	 * Default number of values kept in the cache.
+	 */
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	/**
+	 * Maximal number of segments of a cache.
+	 */
+	static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Minimal number of values held by each segment, so that small caches
+	 * are not split.
+	 */
+	static final int MIN_SEGMENT_CAPACITY = 1024;
+
+	private final int capacity;
+
+	private final Segment[] segments;
+
+	/**
+	 * Canonical unit strings, shared by all segments. Units are only looked
+	 * up when a quantity is admitted into the cache.
+	 */
+	private final LruMap<String> units;
+
+	/**
+	 * Constructs a cache with the default capacity of
+	 * {@link #DEFAULT_CAPACITY} values.
+	 */
+	public ValueCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructs a cache holding at most the given number of values.
+	 *
+	 * @param capacity
+	 *            the maximal number of values held in the cache
+	 */
+	public ValueCache(int capacity) {
+		Validate.isTrue(capacity > 0, "The capacity of the cache must be positive");
+		this.capacity = capacity;
+		int segmentCount = Math.min(MAX_SEGMENTS,
+				Integer.highestOneBit(Math.max(1, capacity / MIN_SEGMENT_CAPACITY)));
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment(capacity / segmentCount
+					+ (i < capacity % segmentCount ? 1 : 0));
+		}
+		this.units = new LruMap<>(Math.max(16, capacity / 100));
+	}
+
+	/**
+	 * Returns an instance equal to the given value, preferably one that was
+	 * returned before. If the value is not in the cache yet, it might be
+	 * added to it, depending on how often it was seen recently.
+	 *
+	 * @param value
+	 *            the value to canonicalize, can be null
+	 * @return a value equal to the given one
+	 */
+	@SuppressWarnings("unchecked")
+	public <T extends Value> T canonicalize(T value) {
+		if (value == null || value instanceof UnsupportedValue) {
+			return value;
+		}
+		// spread the bits of the hash, as for HashMap keys
+		int hash = value.hashCode();
+		hash ^= hash >>> 16;
+		Segment segment = this.segments[((hash * 0x9e3779b9) >>> 16)
+				& (this.segments.length - 1)];
+		synchronized (segment) {
+			Value cached = segment.values.get(value);
+			if (cached != null) {
+				segment.hits++;
+				return (T) cached;
+			}
+			segment.misses++;
+			if (!segment.admit(hash)) {
+				return value;
+			}
+			T canonical = value;
+			if (value instanceof QuantityValueImpl) {
+				canonical = (T) canonicalizeUnit((QuantityValueImpl) value);
+			}
+			segment.values.put(canonical, canonical);
+			segment.admissions++;
+			return canonical;
+		}
+	}
+
+	/**
+	 * Returns the number of lookups which found an equal value in the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHits() {
+		long hits = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				hits += segment.hits;
+			}
+		}
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups which did not find an equal value in the
+	 * cache.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMisses() {
+		long misses = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				misses += segment.misses;
+			}
+		}
+		return misses;
+	}
+
+	/**
+	 * Returns the number of values which were added to the cache.
+	 *
+	 * @return the number of admitted values
+	 */
+	public long getAdmissions() {
+		long admissions = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				admissions += segment.admissions;
+			}
+		}
+		return admissions;
+	}
+
+	/**
+	 * Returns the number of values which were removed from the cache to make
+	 * room for new ones.
+	 *
+	 * @return the number of evicted values
+	 */
+	public long getEvictions() {
+		long evictions = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				evictions += segment.values.evictions;
+			}
+		}
+		return evictions;
+	}
+
+	/**
+	 * Returns the ratio of lookups that were answered from the cache, or 0 if
+	 * no lookup was made yet.
+	 *
+	 * @return the hit rate, between 0 and 1
+	 */
+	public double getHitRate() {
+		long hits = 0;
+		long lookups = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				hits += segment.hits;
+				lookups += segment.hits + segment.misses;
+			}
+		}
+		return lookups == 0 ? 0.0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Returns the number of values currently held in the cache.
+	 *
+	 * @return the size of the cache
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				size += segment.values.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the maximal number of values held in the cache.
+	 *
+	 * @return the capacity of the cache
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Removes all values from the cache and resets its statistics.
+	 */
+	public void clear() {
+		for (Segment segment : this.segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+		synchronized (this.units) {
+			this.units.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ValueCache {size = " + size() + ", hits = " + getHits()
+				+ ", misses = " + getMisses() + ", hit rate = "
+				+ String.format("%.3f", getHitRate()) + ", evictions = "
+				+ getEvictions() + "}";
+	}
+
+	/**
+	 * Replaces the unit of the given quantity by a shared instance of the
+	 * same string, creating a new value if needed.
+	 */
+	private QuantityValue canonicalizeUnit(QuantityValueImpl value) {
+		String unit = value.getUnit();
+		String canonicalUnit;
+		synchronized (this.units) {
+			canonicalUnit = this.units.get(unit);
+			if (canonicalUnit == null) {
+				this.units.put(unit, unit);
+				return value;
+			}
+		}
+		if (canonicalUnit == unit) {
+			return value;
+		}
+		return new QuantityValueImpl(value.getNumericValue(),
+				value.getLowerBound(), value.getUpperBound(), canonicalUnit);
+	}
+
+	/**
+	 * Part of the cache, with its own values, admission policy and
+	 * statistics. All accesses are synchronized on the segment.
+	 */
+	private static class Segment {
+
+		final LruMap<Value> values;
+
+		/**
+		 * Bits recording which values were recently seen once, indexed by
+		 * hash.
+		 */
+		final long[] doorkeeper;
+		/**
+		 * Number of lookups after which the doorkeeper is cleared.
+		 */
+		final int doorkeeperWindow;
+		int doorkeeperLookups = 0;
+
+		long hits = 0;
+		long misses = 0;
+		long admissions = 0;
+
+		Segment(int capacity) {
+			this.values = new LruMap<>(capacity);
+			// at least eight bits per cached value keep the rate of collisions low
+			int bits = Integer.highestOneBit(Math.max(64, capacity) - 1) << 4;
+			this.doorkeeper = new long[bits >>> 6];
+			this.doorkeeperWindow = 8 * capacity;
+		}
+
+		/**
+		 * Decides whether a value with the given hash should be admitted into
+		 * the segment. This is the case if it was already seen since the
+		 * doorkeeper was last cleared.
+		 */
+		boolean admit(int hash) {
+			if (++doorkeeperLookups >= doorkeeperWindow) {
+				clearDoorkeeper();
+			}
+			int bit = hash & ((doorkeeper.length << 6) - 1);
+			long mask = 1L << (bit & 63);
+			if ((doorkeeper[bit >>> 6] & mask) != 0) {
+				return true;
+			}
+			doorkeeper[bit >>> 6] |= mask;
+			return false;
+		}
+
+		void clearDoorkeeper() {
+			for (int i = 0; i < doorkeeper.length; i++) {
+				doorkeeper[i] = 0L;
+			}
+			doorkeeperLookups = 0;
+		}
+
+		void clear() {
+			values.clear();
+			values.evictions = 0;
+			clearDoorkeeper();
+			hits = 0;
+			misses = 0;
+			admissions = 0;
+		}
+	}
+
+	/**
+	 * Map in access order which drops its least recently used entry when it
+	 * grows beyond its capacity.
+	 */
+	private static class LruMap<T> extends LinkedHashMap<T, T> {
+
+		private static final long serialVersionUID = -4436924036402425374L;
+
+		private final int maxSize;
+		long evictions = 0;
+
+		LruMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<T, T> eldest) {
+			if (size() > maxSize) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
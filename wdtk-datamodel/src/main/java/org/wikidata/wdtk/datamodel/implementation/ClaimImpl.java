@@ -39,6 +39,12 @@ public class ClaimImpl implements Claim {
 
 	private final Statement statement;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor to create a claim. This internally creates
 	 * a new statement, so if you want to create a statement later
@@ -96,7 +102,12 @@ public class ClaimImpl implements Claim {
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -0,0 +1,212 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.WikimediaLanguageCodes;
+
+/**
+ * Immutable map from language codes to lists of aliases, stored in the same
+ * compact way as in {@link CompactTermMap}: language codes are replaced by
+ * small integers and all texts are packed in a single character array. The
+ * lists of aliases are created when they are retrieved from the map, and
+ * cannot be modified.
+ */
+public class CompactAliasMap extends AbstractMap<String, List<MonolingualTextValue>> {
+
+	/**
+	 * Language indexes of the keys, in increasing order.
+	 */
+	private final int[] keys;
+	/**
+	 * Position of the first alias of each key, followed by the total number
+	 * of aliases.
+	 */
+	private final int[] groupStarts;
+	/**
+	 * Language indexes of the aliases, or null if they are the same as the
+	 * keys of their groups.
+	 */
+	private final int[] languages;
+	/**
+	 * Start of each text in {@link #texts}, followed by the total length.
+	 */
+	private final int[] offsets;
+	private final char[] texts;
+
+	/**
+	 * Constructs a compact copy of the given map.
+	 *
+	 * @param aliases
+	 *            the lists of aliases to store, indexed by language code
+	 * @throws IllegalArgumentException
+	 *             if a language code has no index and no more indexes can be
+	 *             assigned (see
+	 *             {@link WikimediaLanguageCodes#getLanguageIndex(String)})
+	 */
+	public CompactAliasMap(Map<String, ? extends List<MonolingualTextValue>> aliases) {
+		int size = aliases.size();
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<MonolingualTextValue>[] groups = new List[size];
+		long[] order = new long[size];
+		int aliasCount = 0;
+		int i = 0;
+		for (Entry<String, ? extends List<MonolingualTextValue>> entry : aliases.entrySet()) {
+			groups[i] = entry.getValue();
+			aliasCount += groups[i].size();
+			order[i] = ((long) CompactTermMap.getLanguageIndex(entry.getKey()) << 32) | i;
+			i++;
+		}
+		Arrays.sort(order);
+
+		this.keys = new int[size];
+		this.groupStarts = new int[size + 1];
+		int[] aliasLanguages = new int[aliasCount];
+		String[] aliasTexts = new String[aliasCount];
+		boolean sameLanguages = true;
+		int alias = 0;
+		for (i = 0; i < size; i++) {
+			this.keys[i] = (int) (order[i] >>> 32);
+			this.groupStarts[i] = alias;
+			String key = WikimediaLanguageCodes.getLanguageCodeForIndex(this.keys[i]);
+			for (MonolingualTextValue value : groups[(int) order[i]]) {
+				aliasLanguages[alias] = key.equals(value.getLanguageCode()) ? this.keys[i]
+						: CompactTermMap.getLanguageIndex(value.getLanguageCode());
+				sameLanguages &= aliasLanguages[alias] == this.keys[i];
+				aliasTexts[alias] = value.getText();
+				alias++;
+			}
+		}
+		this.groupStarts[size] = alias;
+		this.languages = sameLanguages ? null : aliasLanguages;
+		this.offsets = new int[aliasCount + 1];
+		this.texts = CompactTermMap.packTexts(aliasTexts, this.offsets);
+	}
+
+	/**
+	 * Returns a compact version of the given map of aliases. Empty maps and
+	 * maps which are compact already are returned unchanged, as are maps with
+	 * language codes which cannot be indexed.
+	 *
+	 * @param aliases
+	 *            the lists of aliases, indexed by language code
+	 * @return an immutable map with the same aliases
+	 */
+	public static Map<String, List<MonolingualTextValue>> compact(Map<String, List<MonolingualTextValue>> aliases) {
+		if (aliases.isEmpty()) {
+			return Collections.emptyMap();
+		} else if (aliases instanceof CompactAliasMap) {
+			return aliases;
+		}
+		try {
+			return new CompactAliasMap(aliases);
+		} catch (IllegalArgumentException e) {
+			// too many distinct language codes were seen already
+			return aliases;
+		}
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return find(key) >= 0;
+	}
+
+	@Override
+	public List<MonolingualTextValue> get(Object key) {
+		int position = find(key);
+		return position < 0 ? null : getGroup(position);
+	}
+
+	@Override
+	public Set<Entry<String, List<MonolingualTextValue>>> entrySet() {
+		return new AbstractSet<Entry<String, List<MonolingualTextValue>>>() {
+
+			@Override
+			public Iterator<Entry<String, List<MonolingualTextValue>>> iterator() {
+				return new Iterator<Entry<String, List<MonolingualTextValue>>>() {
+
+					private int position = 0;
+
+					@Override
+					public boolean hasNext() {
+						return position < keys.length;
+					}
+
+					@Override
+					public Entry<String, List<MonolingualTextValue>> next() {
+						if (position >= keys.length) {
+							throw new NoSuchElementException();
+						}
+						Entry<String, List<MonolingualTextValue>> entry = new SimpleImmutableEntry<>(
+								WikimediaLanguageCodes.getLanguageCodeForIndex(keys[position]),
+								getGroup(position));
+						position++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.length;
+			}
+		};
+	}
+
+	private int find(Object key) {
+		if (!(key instanceof String)) {
+			return -1;
+		}
+		int index = WikimediaLanguageCodes.findLanguageIndex((String) key);
+		if (index < 0) {
+			return -1;
+		}
+		int position = Arrays.binarySearch(keys, index);
+		return position < 0 ? -1 : position;
+	}
+
+	private List<MonolingualTextValue> getGroup(int position) {
+		int start = groupStarts[position];
+		MonolingualTextValue[] group = new MonolingualTextValue[groupStarts[position + 1] - start];
+		for (int i = 0; i < group.length; i++) {
+			int alias = start + i;
+			int language = languages == null ? keys[position] : languages[alias];
+			group[i] = new TermImpl(WikimediaLanguageCodes.getLanguageCodeForIndex(language),
+					new String(texts, offsets[alias], offsets[alias + 1] - offsets[alias]));
+		}
+		return Collections.unmodifiableList(Arrays.asList(group));
+	}
+}
@@ -0,0 +1,245 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.WikimediaLanguageCodes;
+
+/**
+ * Immutable map from language codes to terms, which uses much less memory
+ * than a {@link java.util.HashMap} of {@link TermImpl} objects. Language codes
+ * are stored as the small integers provided by
+ * {@link WikimediaLanguageCodes#getLanguageIndex(String)}, and all texts are
+ * packed in a single character array. Term objects are only created when they
+ * are retrieved from the map.
+ * <p>
+ * Entries are iterated in the order of the indexes of their language codes,
+ * which is the alphabetical order for the usual Wikimedia language codes.
+ * Lookups use a binary search on these indexes.
+ */
+public class CompactTermMap extends AbstractMap<String, MonolingualTextValue> {
+
+	/**
+	 * Language indexes of the keys, in increasing order.
+	 */
+	private final int[] keys;
+	/**
+	 * Language indexes of the terms, or null if they are the same as the keys.
+	 */
+	private final int[] languages;
+	/**
+	 * Start of each text in {@link #texts}, followed by the total length.
+	 */
+	private final int[] offsets;
+	private final char[] texts;
+
+	/**
+	 * Constructs a compact copy of the given map.
+	 *
+	 * @param terms
+	 *            the terms to store, indexed by language code
+	 * @throws IllegalArgumentException
+	 *             if a language code has no index and no more indexes can be
+	 *             assigned (see
+	 *             {@link WikimediaLanguageCodes#getLanguageIndex(String)})
+	 */
+	public CompactTermMap(Map<String, ? extends MonolingualTextValue> terms) {
+		int size = terms.size();
+		String[] codes = new String[size];
+		MonolingualTextValue[] values = new MonolingualTextValue[size];
+		long[] order = new long[size];
+		int i = 0;
+		for (Entry<String, ? extends MonolingualTextValue> entry : terms.entrySet()) {
+			codes[i] = entry.getKey();
+			values[i] = entry.getValue();
+			order[i] = ((long) getLanguageIndex(codes[i]) << 32) | i;
+			i++;
+		}
+		Arrays.sort(order);
+
+		this.keys = new int[size];
+		int[] termLanguages = new int[size];
+		String[] sortedTexts = new String[size];
+		boolean sameLanguages = true;
+		for (i = 0; i < size; i++) {
+			int position = (int) order[i];
+			this.keys[i] = (int) (order[i] >>> 32);
+			MonolingualTextValue value = values[position];
+			termLanguages[i] = codes[position].equals(value.getLanguageCode()) ? this.keys[i]
+					: getLanguageIndex(value.getLanguageCode());
+			sameLanguages &= termLanguages[i] == this.keys[i];
+			sortedTexts[i] = value.getText();
+		}
+		this.languages = sameLanguages ? null : termLanguages;
+		this.offsets = new int[size + 1];
+		this.texts = packTexts(sortedTexts, this.offsets);
+	}
+
+	/**
+	 * Returns a compact version of the given map of terms. Empty maps and maps
+	 * which are compact already are returned unchanged, as are maps with
+	 * language codes which cannot be indexed.
+	 *
+	 * @param terms
+	 *            the terms, indexed by language code
+	 * @return an immutable map with the same terms
+	 */
+	public static Map<String, MonolingualTextValue> compact(Map<String, MonolingualTextValue> terms) {
+		if (terms.isEmpty()) {
+			return Collections.emptyMap();
+		} else if (terms instanceof CompactTermMap) {
+			return terms;
+		}
+		try {
+			return new CompactTermMap(terms);
+		} catch (IllegalArgumentException e) {
+			// too many distinct language codes were seen already
+			return terms;
+		}
+	}
+
+	/**
+	 * Returns the text of the term for the given language code, without
+	 * creating a term object.
+	 *
+	 * @param languageCode
+	 *            the language code to look up
+	 * @return the text of the term, or null if there is no term for this
+	 *         language code
+	 */
+	public String findText(String languageCode) {
+		int position = find(languageCode);
+		return position < 0 ? null : getText(position);
+	}
+
+	@Override
+	public int size() {
+		return keys.length;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return find(key) >= 0;
+	}
+
+	@Override
+	public MonolingualTextValue get(Object key) {
+		int position = find(key);
+		return position < 0 ? null : getTerm(position);
+	}
+
+	@Override
+	public Set<Entry<String, MonolingualTextValue>> entrySet() {
+		return new AbstractSet<Entry<String, MonolingualTextValue>>() {
+
+			@Override
+			public Iterator<Entry<String, MonolingualTextValue>> iterator() {
+				return new Iterator<Entry<String, MonolingualTextValue>>() {
+
+					private int position = 0;
+
+					@Override
+					public boolean hasNext() {
+						return position < keys.length;
+					}
+
+					@Override
+					public Entry<String, MonolingualTextValue> next() {
+						if (position >= keys.length) {
+							throw new NoSuchElementException();
+						}
+						Entry<String, MonolingualTextValue> entry = new SimpleImmutableEntry<>(
+								WikimediaLanguageCodes.getLanguageCodeForIndex(keys[position]),
+								getTerm(position));
+						position++;
+						return entry;
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return keys.length;
+			}
+		};
+	}
+
+	private int find(Object key) {
+		if (!(key instanceof String)) {
+			return -1;
+		}
+		int index = WikimediaLanguageCodes.findLanguageIndex((String) key);
+		if (index < 0) {
+			return -1;
+		}
+		int position = Arrays.binarySearch(keys, index);
+		return position < 0 ? -1 : position;
+	}
+
+	private String getText(int position) {
+		return new String(texts, offsets[position], offsets[position + 1] - offsets[position]);
+	}
+
+	private MonolingualTextValue getTerm(int position) {
+		int language = languages == null ? keys[position] : languages[position];
+		return new TermImpl(WikimediaLanguageCodes.getLanguageCodeForIndex(language), getText(position));
+	}
+
+	/**
+	 * Returns the index of a language code, failing if none can be assigned.
+	 */
+	static int getLanguageIndex(String languageCode) {
+		int index = WikimediaLanguageCodes.getLanguageIndex(languageCode);
+		if (index < 0) {
+			throw new IllegalArgumentException("Too many distinct language codes to index \""
+					+ languageCode + "\".");
+		}
+		return index;
+	}
+
+	/**
+	 * Concatenates the given texts in a single array, and stores the start of
+	 * each of them in the given array of offsets, followed by the total
+	 * length.
+	 */
+	static char[] packTexts(String[] texts, int[] offsets) {
+		int length = 0;
+		for (int i = 0; i < texts.length; i++) {
+			offsets[i] = length;
+			length += texts[i].length();
+		}
+		offsets[texts.length] = length;
+		char[] packed = new char[length];
+		for (int i = 0; i < texts.length; i++) {
+			texts[i].getChars(0, texts[i].length(), packed, offsets[i]);
+		}
+		return packed;
+	}
+}
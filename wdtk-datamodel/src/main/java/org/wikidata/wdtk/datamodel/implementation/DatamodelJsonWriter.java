@@ -0,0 +1,468 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.Validate;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.FormDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.SenseDocument;
+import org.wikidata.wdtk.datamodel.interfaces.SiteLink;
+import org.wikidata.wdtk.datamodel.interfaces.Snak;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the JSON serialization of the Jackson-based data model objects
+ * directly to a {@link JsonGenerator}, without going through the bean
+ * introspection and the annotated getters used by Jackson. The output is
+ * identical to the one of an {@link ObjectMapper}, including the order of
+ * fields and the rules for omitting empty fields.
+ * <p>
+ * Only the classes of this package are written directly. Objects of any
+ * other class, for instance {@link UnsupportedValueImpl} or user-defined
+ * implementations of the interfaces, are handed over to the given mapper,
+ * which serializes them as it would have done when serializing the whole
+ * document.
+ * <p>
+ * The object holds no state besides the fallback mapper and can be used by
+ * several threads at once.
+ */
+public class DatamodelJsonWriter {
+
+	private final ObjectMapper mapper;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param mapper
+	 *            the mapper used to serialize objects which are not
+	 *            implemented in this package
+	 */
+	public DatamodelJsonWriter(ObjectMapper mapper) {
+		Validate.notNull(mapper);
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Writes the JSON serialization of an entity document as a value of the
+	 * given generator.
+	 *
+	 * @param document
+	 *            the document to serialize
+	 * @param generator
+	 *            the generator to write to
+	 * @throws IOException
+	 *             if the generator could not write the document
+	 */
+	public void writeEntityDocument(EntityDocument document, JsonGenerator generator) throws IOException {
+		Class<?> documentClass = document.getClass();
+		if (documentClass == ItemDocumentImpl.class) {
+			writeItemDocument((ItemDocumentImpl) document, generator);
+		} else if (documentClass == PropertyDocumentImpl.class) {
+			writePropertyDocument((PropertyDocumentImpl) document, generator);
+		} else if (documentClass == LexemeDocumentImpl.class) {
+			writeLexemeDocument((LexemeDocumentImpl) document, generator);
+		} else if (documentClass == MediaInfoDocumentImpl.class) {
+			writeMediaInfoDocument((MediaInfoDocumentImpl) document, generator);
+		} else if (documentClass == FormDocumentImpl.class) {
+			writeFormDocument((FormDocumentImpl) document, generator);
+		} else if (documentClass == SenseDocumentImpl.class) {
+			writeSenseDocument((SenseDocumentImpl) document, generator);
+		} else {
+			mapper.writeValue(generator, document);
+		}
+	}
+
+	/**
+	 * Writes the JSON serialization of a statement as a value of the given
+	 * generator.
+	 *
+	 * @param statement
+	 *            the statement to serialize
+	 * @param generator
+	 *            the generator to write to
+	 * @throws IOException
+	 *             if the generator could not write the statement
+	 */
+	public void writeStatement(Statement statement, JsonGenerator generator) throws IOException {
+		if (statement.getClass() != StatementImpl.class) {
+			mapper.writeValue(generator, statement);
+			return;
+		}
+		StatementImpl statementImpl = (StatementImpl) statement;
+		generator.writeStartObject();
+		generator.writeStringField("rank", getJsonRank(statementImpl.getRank()));
+		if (!statementImpl.getStatementId().isEmpty()) {
+			generator.writeStringField("id", statementImpl.getStatementId());
+		}
+		generator.writeFieldName("mainsnak");
+		writeSnak(statementImpl.getMainSnak(), generator);
+		List<String> qualifiersOrder = statementImpl.getQualifiersOrder();
+		if (!qualifiersOrder.isEmpty()) {
+			generator.writeArrayFieldStart("qualifiers-order");
+			for (String propertyId : qualifiersOrder) {
+				generator.writeString(propertyId);
+			}
+			generator.writeEndArray();
+		}
+		List<Reference> references = statementImpl.getReferences();
+		if (!references.isEmpty()) {
+			generator.writeArrayFieldStart("references");
+			for (Reference reference : references) {
+				writeReference(reference, generator);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeStringField("type", "statement");
+		Map<String, List<Snak>> qualifiers = statementImpl.getJsonQualifiers();
+		if (!qualifiers.isEmpty()) {
+			generator.writeFieldName("qualifiers");
+			writeSnakMap(qualifiers, generator);
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeItemDocument(ItemDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("type", EntityDocumentImpl.JSON_TYPE_ITEM);
+		writeId(document, generator);
+		writeTermedFields(document, generator);
+		writeClaims(document, generator);
+		generator.writeObjectFieldStart("sitelinks");
+		for (Entry<String, SiteLink> entry : document.getSiteLinks().entrySet()) {
+			generator.writeFieldName(entry.getKey());
+			writeSiteLink(entry.getValue(), generator);
+		}
+		generator.writeEndObject();
+		writeRevisionId(document, generator);
+		generator.writeEndObject();
+	}
+
+	private void writePropertyDocument(PropertyDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("type", EntityDocumentImpl.JSON_TYPE_PROPERTY);
+		writeId(document, generator);
+		writeTermedFields(document, generator);
+		writeClaims(document, generator);
+		generator.writeStringField("datatype", document.getJsonDatatype());
+		writeRevisionId(document, generator);
+		generator.writeEndObject();
+	}
+
+	private void writeMediaInfoDocument(MediaInfoDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("type", EntityDocumentImpl.JSON_TYPE_MEDIA_INFO);
+		writeId(document, generator);
+		generator.writeFieldName("labels");
+		writeTermMap(document.getLabels(), generator);
+		writeClaims(document, generator);
+		writeRevisionId(document, generator);
+		generator.writeEndObject();
+	}
+
+	private void writeLexemeDocument(LexemeDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		generator.writeStringField("type", EntityDocumentImpl.JSON_TYPE_LEXEME);
+		writeId(document, generator);
+		generator.writeStringField("lexicalCategory", document.getJsonLexicalCategory());
+		generator.writeStringField("language", document.getJsonLanguage());
+		generator.writeFieldName("lemmas");
+		writeTermMap(document.getLemmas(), generator);
+		writeClaims(document, generator);
+		generator.writeArrayFieldStart("forms");
+		for (FormDocument form : document.getForms()) {
+			if (form.getClass() == FormDocumentImpl.class) {
+				writeFormDocument((FormDocumentImpl) form, generator);
+			} else {
+				mapper.writeValue(generator, form);
+			}
+		}
+		generator.writeEndArray();
+		generator.writeArrayFieldStart("senses");
+		for (SenseDocument sense : document.getSenses()) {
+			if (sense.getClass() == SenseDocumentImpl.class) {
+				writeSenseDocument((SenseDocumentImpl) sense, generator);
+			} else {
+				mapper.writeValue(generator, sense);
+			}
+		}
+		generator.writeEndArray();
+		writeRevisionId(document, generator);
+		generator.writeEndObject();
+	}
+
+	private void writeFormDocument(FormDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		writeId(document, generator);
+		generator.writeFieldName("representations");
+		writeTermMap(document.getRepresentations(), generator);
+		generator.writeArrayFieldStart("grammaticalFeatures");
+		for (ItemIdValue feature : document.getGrammaticalFeatures()) {
+			generator.writeString(feature.getId());
+		}
+		generator.writeEndArray();
+		writeClaims(document, generator);
+		writeRevisionId(document, generator);
+		generator.writeStringField("type", EntityDocumentImpl.JSON_TYPE_FORM);
+		generator.writeEndObject();
+	}
+
+	private void writeSenseDocument(SenseDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		writeId(document, generator);
+		generator.writeFieldName("glosses");
+		writeTermMap(document.getGlosses(), generator);
+		writeClaims(document, generator);
+		writeRevisionId(document, generator);
+		generator.writeStringField("type", EntityDocumentImpl.JSON_TYPE_SENSE);
+		generator.writeEndObject();
+	}
+
+	private void writeId(EntityDocumentImpl document, JsonGenerator generator) throws IOException {
+		String id = document.getJsonId();
+		if (id != null && !id.isEmpty()) {
+			generator.writeStringField("id", id);
+		}
+	}
+
+	private void writeRevisionId(EntityDocumentImpl document, JsonGenerator generator) throws IOException {
+		if (document.getRevisionId() != 0) {
+			generator.writeNumberField("lastrevid", document.getRevisionId());
+		}
+	}
+
+	private void writeTermedFields(TermedStatementDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeFieldName("labels");
+		writeTermMap(document.getLabels(), generator);
+		generator.writeFieldName("descriptions");
+		writeTermMap(document.getDescriptions(), generator);
+		generator.writeObjectFieldStart("aliases");
+		for (Entry<String, List<MonolingualTextValue>> entry : document.getAliases().entrySet()) {
+			generator.writeArrayFieldStart(entry.getKey());
+			for (MonolingualTextValue alias : entry.getValue()) {
+				writeTerm(alias, generator);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeClaims(StatementDocumentImpl document, JsonGenerator generator) throws IOException {
+		generator.writeObjectFieldStart("claims");
+		for (Entry<String, List<Statement>> entry : document.getJsonClaims().entrySet()) {
+			generator.writeArrayFieldStart(entry.getKey());
+			for (Statement statement : entry.getValue()) {
+				writeStatement(statement, generator);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeTermMap(Map<String, MonolingualTextValue> terms, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		for (Entry<String, MonolingualTextValue> entry : terms.entrySet()) {
+			generator.writeFieldName(entry.getKey());
+			writeTerm(entry.getValue(), generator);
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeTerm(MonolingualTextValue term, JsonGenerator generator) throws IOException {
+		if (term.getClass() != TermImpl.class) {
+			mapper.writeValue(generator, term);
+			return;
+		}
+		generator.writeStartObject();
+		generator.writeStringField("language", term.getLanguageCode());
+		generator.writeStringField("value", term.getText());
+		generator.writeEndObject();
+	}
+
+	private void writeSiteLink(SiteLink siteLink, JsonGenerator generator) throws IOException {
+		if (siteLink.getClass() != SiteLinkImpl.class) {
+			mapper.writeValue(generator, siteLink);
+			return;
+		}
+		generator.writeStartObject();
+		generator.writeStringField("title", siteLink.getPageTitle());
+		generator.writeStringField("site", siteLink.getSiteKey());
+		generator.writeArrayFieldStart("badges");
+		for (ItemIdValue badge : siteLink.getBadges()) {
+			generator.writeString(badge.getId());
+		}
+		generator.writeEndArray();
+		generator.writeEndObject();
+	}
+
+	private void writeReference(Reference reference, JsonGenerator generator) throws IOException {
+		if (reference.getClass() != ReferenceImpl.class) {
+			mapper.writeValue(generator, reference);
+			return;
+		}
+		ReferenceImpl referenceImpl = (ReferenceImpl) reference;
+		generator.writeStartObject();
+		generator.writeFieldName("snaks");
+		writeSnakMap(referenceImpl.getSnaks(), generator);
+		generator.writeArrayFieldStart("snaks-order");
+		for (String propertyId : referenceImpl.getPropertyOrder()) {
+			generator.writeString(propertyId);
+		}
+		generator.writeEndArray();
+		if (referenceImpl.getHash() != null) {
+			generator.writeStringField("hash", referenceImpl.getHash());
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeSnakMap(Map<String, List<Snak>> snaks, JsonGenerator generator) throws IOException {
+		generator.writeStartObject();
+		for (Entry<String, List<Snak>> entry : snaks.entrySet()) {
+			generator.writeArrayFieldStart(entry.getKey());
+			for (Snak snak : entry.getValue()) {
+				writeSnak(snak, generator);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
+
+	private void writeSnak(Snak snak, JsonGenerator generator) throws IOException {
+		Class<?> snakClass = snak.getClass();
+		if (snakClass == ValueSnakImpl.class) {
+			ValueSnakImpl valueSnak = (ValueSnakImpl) snak;
+			generator.writeStartObject();
+			generator.writeStringField("property", valueSnak.getProperty());
+			if (valueSnak.getDatatype() != null) {
+				generator.writeStringField("datatype", valueSnak.getDatatype());
+			}
+			generator.writeFieldName("datavalue");
+			writeValue(valueSnak.getDatavalue(), generator);
+			generator.writeStringField("snaktype", SnakImpl.JSON_SNAK_TYPE_VALUE);
+			generator.writeEndObject();
+		} else if (snakClass == NoValueSnakImpl.class || snakClass == SomeValueSnakImpl.class) {
+			SnakImpl snakImpl = (SnakImpl) snak;
+			generator.writeStartObject();
+			generator.writeStringField("property", snakImpl.getProperty());
+			generator.writeStringField("snaktype", snakImpl.getSnakType());
+			generator.writeEndObject();
+		} else {
+			mapper.writeValue(generator, snak);
+		}
+	}
+
+	private void writeValue(Value value, JsonGenerator generator) throws IOException {
+		Class<?> valueClass = value == null ? null : value.getClass();
+		if (valueClass == ItemIdValueImpl.class || valueClass == PropertyIdValueImpl.class
+				|| valueClass == LexemeIdValueImpl.class || valueClass == MediaInfoIdValueImpl.class) {
+			EntityIdValueImpl.JacksonInnerEntityId inner = ((EntityIdValueImpl) value).getValue();
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeStringField("id", inner.getStringId());
+			generator.writeNumberField("numeric-id", inner.getNumericId());
+			generator.writeStringField("entity-type", inner.getJsonEntityType());
+			generator.writeEndObject();
+		} else if (valueClass == StringValueImpl.class) {
+			generator.writeStartObject();
+			generator.writeStringField("value", ((StringValueImpl) value).getValue());
+		} else if (valueClass == TimeValueImpl.class) {
+			TimeValueImpl.JacksonInnerTime inner = ((TimeValueImpl) value).getValue();
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeStringField("time", inner.getTime());
+			generator.writeNumberField("timezone", inner.getTimezone());
+			generator.writeNumberField("before", inner.getBefore());
+			generator.writeNumberField("after", inner.getAfter());
+			generator.writeNumberField("precision", inner.getPrecision());
+			generator.writeStringField("calendarmodel", inner.getCalendarmodel());
+			generator.writeEndObject();
+		} else if (valueClass == QuantityValueImpl.class) {
+			QuantityValueImpl.JacksonInnerQuantity inner = ((QuantityValueImpl) value).getValue();
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeStringField("amount", inner.getAmountAsString());
+			if (inner.getLowerBound() != null) {
+				generator.writeStringField("lowerBound", inner.getLowerBoundAsString());
+			}
+			if (inner.getUpperBound() != null) {
+				generator.writeStringField("upperBound", inner.getUpperBoundAsString());
+			}
+			generator.writeStringField("unit", inner.getUnit());
+			generator.writeEndObject();
+		} else if (valueClass == MonolingualTextValueImpl.class) {
+			MonolingualTextValueImpl.JacksonInnerMonolingualText inner = ((MonolingualTextValueImpl) value).getValue();
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeStringField("language", inner.getLanguage());
+			generator.writeStringField("text", inner.getText());
+			generator.writeEndObject();
+		} else if (valueClass == GlobeCoordinatesValueImpl.class) {
+			GlobeCoordinatesValueImpl.JacksonInnerGlobeCoordinates inner = ((GlobeCoordinatesValueImpl) value).getValue();
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeNumberField("latitude", inner.getLatitude());
+			generator.writeNumberField("longitude", inner.getLongitude());
+			generator.writeNumberField("precision", inner.getPrecision());
+			generator.writeStringField("globe", inner.getGlobe());
+			generator.writeEndObject();
+		} else if (valueClass == FormIdValueImpl.class) {
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeStringField("id", ((FormIdValueImpl) value).getId());
+			generator.writeStringField("entity-type", EntityIdValueImpl.JSON_ENTITY_TYPE_FORM);
+			generator.writeEndObject();
+		} else if (valueClass == SenseIdValueImpl.class) {
+			generator.writeStartObject();
+			generator.writeObjectFieldStart("value");
+			generator.writeStringField("id", ((SenseIdValueImpl) value).getId());
+			generator.writeStringField("entity-type", EntityIdValueImpl.JSON_ENTITY_TYPE_SENSE);
+			generator.writeEndObject();
+		} else {
+			mapper.writeValue(generator, value);
+			return;
+		}
+		generator.writeStringField("type", ((ValueImpl) value).getType());
+		generator.writeEndObject();
+	}
+
+	private static String getJsonRank(StatementRank rank) {
+		switch (rank) {
+		case PREFERRED:
+			return "preferred";
+		case DEPRECATED:
+			return "deprecated";
+		default:
+			return "normal";
+		}
+	}
+}
@@ -44,6 +44,12 @@ public class FormDocumentImpl extends StatementDocumentImpl implements FormDocum
 
 	private final Map<String,MonolingualTextValue> representations;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -177,7 +183,12 @@ public class FormDocumentImpl extends StatementDocumentImpl implements FormDocum
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
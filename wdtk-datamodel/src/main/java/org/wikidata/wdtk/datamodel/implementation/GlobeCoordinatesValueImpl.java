@@ -186,7 +186,14 @@ public class GlobeCoordinatesValueImpl extends ValueImpl implements
 			} else {
 				this.precision = precision;
 			}
-			this.globe = globe;
+			// share the constant for the usual globes rather than one copy per value
+			if (GLOBE_EARTH.equals(globe)) {
+				this.globe = GLOBE_EARTH;
+			} else if (GLOBE_MOON.equals(globe)) {
+				this.globe = GLOBE_MOON;
+			} else {
+				this.globe = globe;
+			}
 		}
 
 		/**
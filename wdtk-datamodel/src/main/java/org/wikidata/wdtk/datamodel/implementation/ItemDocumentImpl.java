@@ -54,6 +54,12 @@ public class ItemDocumentImpl extends TermedStatementDocumentImpl
 	 */
 	@JsonDeserialize(contentAs=SiteLinkImpl.class)
 	private final Map<String, SiteLink> sitelinks;
+
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
 	
 	/**
 	 * Constructor.
@@ -154,7 +160,12 @@ public class ItemDocumentImpl extends TermedStatementDocumentImpl
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -175,6 +186,22 @@ public class ItemDocumentImpl extends TermedStatementDocumentImpl
 				sitelinks, newRevisionId);
 	}
 
+	/**
+	 * Returns a copy of this document whose labels, descriptions and aliases
+	 * are stored in {@link CompactTermMap} and {@link CompactAliasMap}
+	 * objects. This saves a lot of memory for items with terms in many
+	 * languages, which is useful when keeping many documents in memory. Terms
+	 * are then iterated in the order of their language codes.
+	 *
+	 * @return an equal document with compact term maps
+	 */
+	public ItemDocument withCompactTerms() {
+		return new ItemDocumentImpl(getItemId(),
+				CompactTermMap.compact(labels), CompactTermMap.compact(descriptions),
+				CompactAliasMap.compact(aliases), claims,
+				sitelinks, revisionId);
+	}
+
 	@Override
 	public ItemDocument withLabel(MonolingualTextValue newLabel) {
 		return new ItemDocumentImpl(getItemId(),
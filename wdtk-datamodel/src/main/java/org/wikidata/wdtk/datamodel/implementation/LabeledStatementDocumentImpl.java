@@ -103,6 +103,15 @@ abstract class LabeledStatementDocumentImpl extends StatementDocumentImpl implem
 		return Collections.unmodifiableMap(this.labels);
 	}
 
+	@Override
+	public String findLabel(String languageCode) {
+		if (this.labels instanceof CompactTermMap) {
+			return ((CompactTermMap) this.labels).findText(languageCode);
+		}
+		MonolingualTextValue value = this.labels.get(languageCode);
+		return (value != null) ? value.getText() : null;
+	}
+
 	protected static Map<String, MonolingualTextValue> constructTermMap(List<MonolingualTextValue> terms) {
 		Map<String, MonolingualTextValue> map = new HashMap<>();
 		for(MonolingualTextValue term : terms) {
@@ -54,6 +54,12 @@ public class LexemeDocumentImpl extends StatementDocumentImpl implements LexemeD
 
 	private int nextSenseId;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -263,7 +269,12 @@ public class LexemeDocumentImpl extends StatementDocumentImpl implements LexemeD
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
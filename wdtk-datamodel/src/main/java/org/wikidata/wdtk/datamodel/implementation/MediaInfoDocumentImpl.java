@@ -41,6 +41,12 @@ import java.util.*;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class MediaInfoDocumentImpl extends LabeledStatementDocumentImpl implements MediaInfoDocument {
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -101,7 +107,12 @@ public class MediaInfoDocumentImpl extends LabeledStatementDocumentImpl implemen
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -119,6 +130,17 @@ public class MediaInfoDocumentImpl extends LabeledStatementDocumentImpl implemen
 		return new MediaInfoDocumentImpl(getEntityId(), labels, claims, newRevisionId);
 	}
 
+	/**
+	 * Returns a copy of this document whose labels are stored in a
+	 * {@link CompactTermMap}, to save memory.
+	 *
+	 * @return an equal document with a compact label map
+	 * @see ItemDocumentImpl#withCompactTerms()
+	 */
+	public MediaInfoDocument withCompactTerms() {
+		return new MediaInfoDocumentImpl(getEntityId(), CompactTermMap.compact(labels), claims, revisionId);
+	}
+
 	@Override
 	public MediaInfoDocument withLabel(MonolingualTextValue newLabel) {
 		return new MediaInfoDocumentImpl(getEntityId(), withTerm(labels, newLabel), claims, revisionId);
@@ -56,6 +56,12 @@ public class PropertyDocumentImpl extends TermedStatementDocumentImpl
 	 * it directly to JSON as a field.
 	 */
 	private final DatatypeIdImpl datatype;
+
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
 	
 	/**
 	 * Constructor for instances that are built manually, rather than from JSON.
@@ -156,7 +162,12 @@ public class PropertyDocumentImpl extends TermedStatementDocumentImpl
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -177,6 +188,21 @@ public class PropertyDocumentImpl extends TermedStatementDocumentImpl
 				datatype, newRevisionId);
 	}
 
+	/**
+	 * Returns a copy of this document whose terms are stored in
+	 * {@link CompactTermMap} and {@link CompactAliasMap} objects, to save
+	 * memory.
+	 *
+	 * @return an equal document with compact term maps
+	 * @see ItemDocumentImpl#withCompactTerms()
+	 */
+	public PropertyDocument withCompactTerms() {
+		return new PropertyDocumentImpl(getEntityId(),
+				CompactTermMap.compact(labels), CompactTermMap.compact(descriptions),
+				CompactAliasMap.compact(aliases), claims,
+				datatype, revisionId);
+	}
+
 	@Override
 	public PropertyDocument withLabel(MonolingualTextValue newLabel) {
 		return new PropertyDocumentImpl(getEntityId(),
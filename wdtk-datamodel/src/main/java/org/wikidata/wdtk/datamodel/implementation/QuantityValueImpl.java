@@ -21,7 +21,11 @@ package org.wikidata.wdtk.datamodel.implementation;
  */
 
 import com.fasterxml.jackson.annotation.*;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import org.apache.commons.lang3.Validate;
 import org.wikidata.wdtk.datamodel.helpers.Equality;
 import org.wikidata.wdtk.datamodel.helpers.Hash;
@@ -30,7 +34,9 @@ import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
 import org.wikidata.wdtk.datamodel.interfaces.ValueVisitor;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.CharBuffer;
 
 /**
  * Jackson implementation of {@link QuantityValue}.
@@ -175,9 +181,9 @@ public class QuantityValueImpl extends ValueImpl implements QuantityValue {
 		 */
 		@JsonCreator
 		JacksonInnerQuantity(
-				@JsonProperty("amount") BigDecimal amount,
-				@JsonProperty("lowerBound") BigDecimal lowerBound,
-				@JsonProperty("upperBound") BigDecimal upperBound,
+				@JsonProperty("amount") @JsonDeserialize(using = DecimalDeserializer.class) BigDecimal amount,
+				@JsonProperty("lowerBound") @JsonDeserialize(using = DecimalDeserializer.class) BigDecimal lowerBound,
+				@JsonProperty("upperBound") @JsonDeserialize(using = DecimalDeserializer.class) BigDecimal upperBound,
 				@JsonProperty("unit") String unit) {
 			Validate.notNull(amount, "Numeric value cannot be null");
 			Validate.notNull(unit, "Unit cannot be null");
@@ -199,7 +205,8 @@ public class QuantityValueImpl extends ValueImpl implements QuantityValue {
 			this.amount = amount;
 			this.upperBound = upperBound;
 			this.lowerBound = lowerBound;
-			this.unit = unit;
+			// share the constant for unit-less quantities rather than one copy per value
+			this.unit = "1".equals(unit) ? "1" : unit;
 		}
 
 		/**
@@ -276,4 +283,78 @@ public class QuantityValueImpl extends ValueImpl implements QuantityValue {
 		}
 
 	}
+
+	/**
+	 * Custom Jackson deserializer for the decimal strings used in quantities,
+	 * such as "+42" or "-1.5". Most amounts are small integers: their digits
+	 * are read directly from the parser's buffer into a long, and the resulting
+	 * {@link BigDecimal} is backed by that long without any intermediate
+	 * string. Other amounts are parsed by {@link BigDecimal} itself, still
+	 * from the parser's buffer when possible.
+	 */
+	static class DecimalDeserializer extends StdDeserializer<BigDecimal> {
+
+		private static final long serialVersionUID = 5430358214312948231L;
+
+		/**
+		 * Maximal number of digits which are sure to fit in a long.
+		 */
+		private static final int MAX_LONG_DIGITS = 18;
+
+		DecimalDeserializer() {
+			super(BigDecimal.class);
+		}
+
+		@Override
+		public BigDecimal deserialize(JsonParser jsonParser,
+				DeserializationContext ctxt) throws IOException {
+			if (!jsonParser.hasToken(JsonToken.VALUE_STRING)) {
+				return jsonParser.getDecimalValue();
+			}
+			try {
+				if (jsonParser.hasTextCharacters()) {
+					char[] buffer = jsonParser.getTextCharacters();
+					int offset = jsonParser.getTextOffset();
+					int length = jsonParser.getTextLength();
+					BigDecimal result = parseInteger(CharBuffer.wrap(buffer, offset, length));
+					return result != null ? result : new BigDecimal(buffer, offset, length);
+				} else {
+					String text = jsonParser.getText();
+					BigDecimal result = parseInteger(text);
+					return result != null ? result : new BigDecimal(text);
+				}
+			} catch (NumberFormatException e) {
+				throw ctxt.weirdStringException(jsonParser.getText(),
+						BigDecimal.class, "not a valid decimal representation");
+			}
+		}
+
+		/**
+		 * Parses an optionally signed integer of at most
+		 * {@link #MAX_LONG_DIGITS} digits.
+		 *
+		 * @return the parsed value, or null if the text is not such an integer
+		 */
+		static BigDecimal parseInteger(CharSequence text) {
+			int length = text.length();
+			int pos = 0;
+			boolean negative = false;
+			if (length > 0 && (text.charAt(0) == '+' || text.charAt(0) == '-')) {
+				negative = text.charAt(0) == '-';
+				pos = 1;
+			}
+			if (pos == length || length - pos > MAX_LONG_DIGITS) {
+				return null;
+			}
+			long result = 0;
+			for (; pos < length; pos++) {
+				char c = text.charAt(pos);
+				if (c < '0' || c > '9') {
+					return null;
+				}
+				result = 10 * result + (c - '0');
+			}
+			return BigDecimal.valueOf(negative ? -result : result);
+		}
+	}
 }
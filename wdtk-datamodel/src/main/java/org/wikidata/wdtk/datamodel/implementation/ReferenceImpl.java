@@ -59,6 +59,12 @@ public class ReferenceImpl implements Reference {
 	 * The wikidata hash of this reference. null if we don't have knowledge about the hash.
 	 */
 	private final String hash;
+
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
 	
 	/**
 	 * Constructor.
@@ -143,7 +149,12 @@ public class ReferenceImpl implements Reference {
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -45,6 +45,12 @@ public class SenseDocumentImpl extends StatementDocumentImpl implements SenseDoc
 
 	private final Map<String,MonolingualTextValue> glosses;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -141,7 +147,12 @@ public class SenseDocumentImpl extends StatementDocumentImpl implements SenseDoc
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
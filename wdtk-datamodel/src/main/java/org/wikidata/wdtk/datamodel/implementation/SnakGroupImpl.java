@@ -41,6 +41,12 @@ public class SnakGroupImpl extends AbstractList<Snak> implements SnakGroup {
 
 	private final List<Snak> snaks;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -114,7 +120,12 @@ public class SnakGroupImpl extends AbstractList<Snak> implements SnakGroup {
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
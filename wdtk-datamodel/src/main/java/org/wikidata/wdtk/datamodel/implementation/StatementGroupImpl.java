@@ -38,6 +38,12 @@ public class StatementGroupImpl extends AbstractList<Statement> implements State
 
 	private final List<Statement> statements;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 *
@@ -115,7 +121,12 @@ public class StatementGroupImpl extends AbstractList<Statement> implements State
 
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
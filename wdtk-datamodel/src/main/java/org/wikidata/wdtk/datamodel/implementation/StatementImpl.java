@@ -74,6 +74,12 @@ public class StatementImpl implements Statement {
 
 	private List<SnakGroup> qualifiersGroups;
 
+	/**
+	 * Hash code of this object, computed on first use. Zero if not computed
+	 * yet, which is safe since the object is immutable.
+	 */
+	private int cachedHashCode = 0;
+
 	/**
 	 * Constructor.
 	 * <p>
@@ -251,7 +257,12 @@ public class StatementImpl implements Statement {
 	
 	@Override
 	public int hashCode() {
-		return Hash.hashCode(this);
+		int result = cachedHashCode;
+		if (result == 0) {
+			result = Hash.hashCode(this);
+			cachedHashCode = result;
+		}
+		return result;
 	}
 
 	@Override
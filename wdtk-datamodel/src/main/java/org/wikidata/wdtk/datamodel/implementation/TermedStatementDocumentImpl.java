@@ -147,6 +147,10 @@ public abstract class TermedStatementDocumentImpl extends LabeledStatementDocume
 	@JsonProperty("aliases")
 	@Override
 	public Map<String, List<MonolingualTextValue>> getAliases() {
+		if (this.aliases instanceof CompactAliasMap) {
+			// immutable already, including its lists
+			return this.aliases;
+		}
 		// because of the typing provided by the interface one has to
 		// re-create the map anew, simple casting is not possible
 		Map<String, List<MonolingualTextValue>> returnMap = new HashMap<>();
@@ -166,6 +170,15 @@ public abstract class TermedStatementDocumentImpl extends LabeledStatementDocume
 		return Collections.unmodifiableMap(this.descriptions);
 	}
 
+	@Override
+	public String findDescription(String languageCode) {
+		if (this.descriptions instanceof CompactTermMap) {
+			return ((CompactTermMap) this.descriptions).findText(languageCode);
+		}
+		MonolingualTextValue value = this.descriptions.get(languageCode);
+		return (value != null) ? value.getText() : null;
+	}
+
 	@JsonIgnore
 	public String getSiteIri() {
 		return this.siteIri;
@@ -188,11 +201,9 @@ public abstract class TermedStatementDocumentImpl extends LabeledStatementDocume
 	protected static Map<String, List<MonolingualTextValue>> withAliases(
 			Map<String, List<MonolingualTextValue>> values, String language, List<MonolingualTextValue> aliases) {
 		Map<String, List<MonolingualTextValue>> newValues = new HashMap<>(values);
-		if(!newValues.containsKey(language)) {
-			newValues.put(language, new ArrayList<>());
-		}
-		List<MonolingualTextValue> l = newValues.get(language);
-		l.clear();
+		// the lists of the original map are not modified, and may be immutable
+		List<MonolingualTextValue> l = new ArrayList<>(aliases.size());
+		newValues.put(language, l);
 		for(MonolingualTextValue term : aliases) {
 			if(!term.getLanguageCode().equals(language)) {
 				throw new IllegalArgumentException("The alias " + term + " does not have the same language as its group " + language);
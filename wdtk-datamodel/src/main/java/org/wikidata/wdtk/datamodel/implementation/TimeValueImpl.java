@@ -294,7 +294,7 @@ public class TimeValueImpl extends ValueImpl implements TimeValue {
 			this.before = before;
 			this.after = after;
 			this.precision = precision;
-			this.calendarmodel = calendarModel;
+			this.calendarmodel = canonicalCalendarModel(calendarModel);
 
 			this.decomposeTimeString();
 		}
@@ -350,28 +350,132 @@ public class TimeValueImpl extends ValueImpl implements TimeValue {
 		}
 
 		/**
-		 * Helper method to decompose the time string into its parts.
+		 * Returns the shared constant for the usual calendar models, so that
+		 * deserialized values do not each hold their own copy of the IRI.
+		 */
+		private static String canonicalCalendarModel(String calendarModel) {
+			if (TimeValue.CM_GREGORIAN_PRO.equals(calendarModel)) {
+				return TimeValue.CM_GREGORIAN_PRO;
+			} else if (TimeValue.CM_JULIAN_PRO.equals(calendarModel)) {
+				return TimeValue.CM_JULIAN_PRO;
+			}
+			return calendarModel;
+		}
+
+		/**
+		 * Helper method to decompose the time string into its parts. The
+		 * string is of the form "+YYYY-MM-DDThh:mm:ssZ", where the year can
+		 * have an arbitrary number of digits. Digits are read directly from
+		 * the string, which is much cheaper than splitting it.
 		 */
 		private void decomposeTimeString() {
-			// decompose the time string into its parts
-			String[] substrings = time.split("(?<!\\A)[\\-:TZ]");
-
-			// get the components of the date
-			this.year = Long.parseLong(substrings[0]);
-			this.month = Byte.parseByte(substrings[1]);
-			this.day = Byte.parseByte(substrings[2]);
-			this.hour = Byte.parseByte(substrings[3]);
-			this.minute = Byte.parseByte(substrings[4]);
-			this.second = Byte.parseByte(substrings[5]);
+			int length = time.length();
+			int pos = 0;
+			boolean negative = false;
+			if (length > 0 && (time.charAt(0) == '+' || time.charAt(0) == '-')) {
+				negative = time.charAt(0) == '-';
+				pos = 1;
+			}
+
+			int end = endOfDigits(pos);
+			long parsedYear = parseDigits(pos, end);
+			this.year = negative ? -parsedYear : parsedYear;
+			pos = expectDelimiter(end, '-');
+			end = endOfDigits(pos);
+			this.month = parseByte(pos, end);
+			pos = expectDelimiter(end, '-');
+			end = endOfDigits(pos);
+			this.day = parseByte(pos, end);
+			pos = expectDelimiter(end, 'T');
+			end = endOfDigits(pos);
+			this.hour = parseByte(pos, end);
+			pos = expectDelimiter(end, ':');
+			end = endOfDigits(pos);
+			this.minute = parseByte(pos, end);
+			pos = expectDelimiter(end, ':');
+			end = endOfDigits(pos);
+			this.second = parseByte(pos, end);
+		}
+
+		/**
+		 * Returns the position of the first non-digit character of the time
+		 * string after the given position.
+		 */
+		private int endOfDigits(int pos) {
+			while (pos < time.length() && time.charAt(pos) >= '0' && time.charAt(pos) <= '9') {
+				pos++;
+			}
+			return pos;
+		}
+
+		/**
+		 * Checks that the time string has the given delimiter at the given
+		 * position and returns the position following it.
+		 */
+		private int expectDelimiter(int pos, char delimiter) {
+			if (pos >= time.length() || time.charAt(pos) != delimiter) {
+				throw new IllegalArgumentException("Invalid time string \"" + time + "\"");
+			}
+			return pos + 1;
+		}
+
+		/**
+		 * Parses the non-empty sequence of digits between the given
+		 * positions of the time string.
+		 */
+		private long parseDigits(int start, int end) {
+			if (start == end || end - start > 18) {
+				throw new IllegalArgumentException("Invalid time string \"" + time + "\"");
+			}
+			long result = 0;
+			for (int i = start; i < end; i++) {
+				result = 10 * result + (time.charAt(i) - '0');
+			}
+			return result;
+		}
+
+		/**
+		 * Parses the digits between the given positions of the time string as
+		 * a byte, failing as {@link Byte#parseByte(String)} if the value is
+		 * out of range.
+		 */
+		private byte parseByte(int start, int end) {
+			long result = parseDigits(start, end);
+			if (result > Byte.MAX_VALUE) {
+				throw new NumberFormatException("Value out of range. Value:\""
+						+ time.substring(start, end) + "\" Radix:10");
+			}
+			return (byte) result;
 		}
 
 		/**
 		 * Helper method to compose the time string from its components.
 		 */
 		private String composeTimeString() {
-			return String.format("%+04d-%02d-%02dT%02d:%02d:%02dZ",
-					this.year, this.month, this.day, this.hour, this.minute,
-					this.second);
+			StringBuilder builder = new StringBuilder(21);
+			// same as format "%+04d": the sign counts towards the four characters
+			builder.append(this.year < 0 ? '-' : '+');
+			String yearDigits = Long.toString(this.year);
+			if (this.year < 0) {
+				yearDigits = yearDigits.substring(1);
+			}
+			for (int i = yearDigits.length(); i < 3; i++) {
+				builder.append('0');
+			}
+			builder.append(yearDigits);
+			appendTwoDigits(builder.append('-'), this.month);
+			appendTwoDigits(builder.append('-'), this.day);
+			appendTwoDigits(builder.append('T'), this.hour);
+			appendTwoDigits(builder.append(':'), this.minute);
+			appendTwoDigits(builder.append(':'), this.second);
+			return builder.append('Z').toString();
+		}
+
+		private static void appendTwoDigits(StringBuilder builder, byte value) {
+			if (value >= 0 && value < 10) {
+				builder.append('0');
+			}
+			builder.append(value);
 		}
 
 		/**
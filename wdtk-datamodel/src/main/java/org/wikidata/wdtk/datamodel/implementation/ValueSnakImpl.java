@@ -25,6 +25,7 @@ import org.apache.commons.lang3.Validate;
 import org.wikidata.wdtk.datamodel.helpers.Equality;
 import org.wikidata.wdtk.datamodel.helpers.Hash;
 import org.wikidata.wdtk.datamodel.helpers.ToString;
+import org.wikidata.wdtk.datamodel.helpers.ValueCache;
 import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
 import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
@@ -85,17 +86,19 @@ public class ValueSnakImpl extends SnakImpl implements ValueSnak {
 	}
 
 	/**
-	 * Constructor used to deserialize from JSON with Jackson.
+	 * Constructor used to deserialize from JSON with Jackson. The
+	 * datavalue is canonicalized with the value cache, if any.
 	 */
 	@JsonCreator
 	protected ValueSnakImpl(
 			@JsonProperty("property") String property,
 			@JsonProperty("datatype") String datatype,
 			@JsonProperty("datavalue") Value datavalue,
-			@JacksonInject("siteIri") String siteIri) {
+			@JacksonInject("siteIri") String siteIri,
+			@JacksonInject("valueCache") ValueCache valueCache) {
 		super(property, siteIri);
 		Validate.notNull(datavalue, "A datavalue must be provided to create a value snak.");
-		this.datavalue = datavalue;
+		this.datavalue = valueCache == null ? datavalue : valueCache.canonicalize(datavalue);
 		this.datatype = datatype;
 	}
 
@@ -20,8 +20,10 @@ package org.wikidata.wdtk.datamodel.interfaces;
  * #L%
  */
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This class helps to interpret Wikimedia language codes in terms of official
@@ -582,6 +584,34 @@ public class WikimediaLanguageCodes {
 		DEPRECATED_LANGUAGE_CODES.put("zh-yue", "yue");
 	}
 
+	/**
+	 * Small integers standing for Wikimedia language codes, as returned by
+	 * {@link #getLanguageIndex(String)}.
+	 */
+	private static final Map<String, Integer> LANGUAGE_INDEXES = new ConcurrentHashMap<>();
+	/**
+	 * Maximal number of language codes with an index. Language codes come
+	 * from the input data, and the indexes are kept for the lifetime of the
+	 * JVM, so their number is bounded.
+	 */
+	public static final int MAX_LANGUAGE_INDEXES = 1 << 14;
+	/**
+	 * Language codes by index, followed by free space. Only modified while
+	 * holding the lock on {@link #LANGUAGE_INDEXES}.
+	 */
+	private static volatile String[] indexedLanguageCodes = new String[1024];
+	/**
+	 * Number of language codes in {@link #indexedLanguageCodes}.
+	 */
+	private static volatile int languageCodeCount = 0;
+	static {
+		String[] knownCodes = LANGUAGE_CODES.keySet().toArray(new String[0]);
+		Arrays.sort(knownCodes);
+		for (String code : knownCodes) {
+			getLanguageIndex(code);
+		}
+	}
+
 	/**
 	 * Get a <a href="http://www.rfc-editor.org/rfc/bcp/bcp47.txt">BCP 47</a>
 	 * language code for the given Wikimedia language code.
@@ -618,4 +648,76 @@ public class WikimediaLanguageCodes {
 	public static String fixLanguageCodeIfDeprecated(String wikimediaLanguageCode) {
 		return DEPRECATED_LANGUAGE_CODES.getOrDefault(wikimediaLanguageCode, wikimediaLanguageCode);
 	}
+
+	/**
+	 * Returns a small non-negative integer standing for the given Wikimedia
+	 * language code, which can be used to store language codes compactly.
+	 * Known language codes have the smallest indexes, in alphabetical order.
+	 * Other language codes are assigned new indexes when they are first seen,
+	 * until {@link #MAX_LANGUAGE_INDEXES} codes have an index. Indexes are
+	 * only valid for the lifetime of the JVM and should not be stored
+	 * persistently.
+	 *
+	 * @param wikimediaLanguageCode
+	 *            the language code as used by Wikimedia
+	 * @return the index of the language code, or -1 if it has none and no
+	 *         more indexes can be assigned
+	 * @see #getLanguageCodeForIndex(int)
+	 */
+	public static int getLanguageIndex(String wikimediaLanguageCode) {
+		Integer index = LANGUAGE_INDEXES.get(wikimediaLanguageCode);
+		if (index != null) {
+			return index;
+		}
+		synchronized (LANGUAGE_INDEXES) {
+			index = LANGUAGE_INDEXES.get(wikimediaLanguageCode);
+			if (index != null) {
+				return index;
+			}
+			index = languageCodeCount;
+			if (index >= MAX_LANGUAGE_INDEXES) {
+				return -1;
+			}
+			String[] codes = indexedLanguageCodes;
+			if (index == codes.length) {
+				codes = Arrays.copyOf(codes, Math.min(2 * index, MAX_LANGUAGE_INDEXES));
+			}
+			codes[index] = wikimediaLanguageCode;
+			indexedLanguageCodes = codes;
+			languageCodeCount = index + 1;
+			LANGUAGE_INDEXES.put(wikimediaLanguageCode, index);
+			return index;
+		}
+	}
+
+	/**
+	 * Returns the index of the given Wikimedia language code if one was
+	 * assigned already, without assigning a new one otherwise.
+	 *
+	 * @param wikimediaLanguageCode
+	 *            the language code as used by Wikimedia
+	 * @return the index of the language code, or -1 if it has none
+	 * @see #getLanguageIndex(String)
+	 */
+	public static int findLanguageIndex(String wikimediaLanguageCode) {
+		Integer index = LANGUAGE_INDEXES.get(wikimediaLanguageCode);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Returns the Wikimedia language code for an index obtained from
+	 * {@link #getLanguageIndex(String)}.
+	 *
+	 * @param index
+	 *            the index of a language code
+	 * @return the language code
+	 * @throws ArrayIndexOutOfBoundsException
+	 *             if no language code has this index
+	 */
+	public static String getLanguageCodeForIndex(int index) {
+		if (index >= languageCodeCount) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return indexedLanguageCodes[index];
+	}
 }
@@ -0,0 +1,263 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.LexemeDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.Snak;
+import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+import org.wikidata.wdtk.datamodel.interfaces.Value;
+
+public class StreamingJsonSerializerTest {
+
+	private final JsonDeserializer deserializer = new JsonDeserializer(Datamodel.SITE_WIKIDATA);
+
+	private final ItemIdValue q42 = Datamodel.makeWikidataItemIdValue("Q42");
+
+	private String loadJson(String filename) throws IOException {
+		InputStream stream = StreamingJsonSerializerTest.class.getClassLoader()
+				.getResourceAsStream("JsonDeserializer/" + filename);
+		return IOUtils.toString(stream);
+	}
+
+	private void assertSameJson(EntityDocument document) {
+		assertEquals(JsonSerializer.jacksonObjectToString(document),
+				StreamingJsonSerializer.getJsonString(document));
+	}
+
+	@Test
+	public void testDumpDocuments() throws IOException {
+		assertSameJson(deserializer.deserializeItemDocument(loadJson("item.json")));
+		assertSameJson(deserializer.deserializePropertyDocument(loadJson("property.json")));
+		assertSameJson(deserializer.deserializeLexemeDocument(loadJson("lexeme.json")));
+		JsonDeserializer commons = new JsonDeserializer(Datamodel.SITE_WIKIMEDIA_COMMONS);
+		assertSameJson(commons.deserializeMediaInfoDocument(loadJson("mediainfo.json")));
+	}
+
+	@Test
+	public void testAllValueTypes() {
+		assertSameJson(makeItemDocument(42));
+	}
+
+	@Test
+	public void testEmptyDocuments() {
+		assertSameJson(Datamodel.makeItemDocument(q42,
+				Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyMap()));
+		assertSameJson(Datamodel.makeItemDocument(
+				Datamodel.makeItemIdValue("Q1", "http://localhost/entity/"),
+				Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyMap(), 0));
+	}
+
+	@Test
+	public void testPropertyDocument() {
+		PropertyDocument document = Datamodel.makePropertyDocument(
+				Datamodel.makeWikidataPropertyIdValue("P1"),
+				Collections.singletonList(Datamodel.makeMonolingualTextValue("label", "en")),
+				Collections.singletonList(Datamodel.makeMonolingualTextValue("description", "fr")),
+				Arrays.asList(Datamodel.makeMonolingualTextValue("a", "en"),
+						Datamodel.makeMonolingualTextValue("b", "en")),
+				Collections.emptyList(),
+				Datamodel.makeDatatypeIdValue(DatatypeIdValue.DT_QUANTITY), 1234);
+		assertSameJson(document);
+	}
+
+	@Test
+	public void testLexemeDocument() {
+		LexemeDocument lexeme = Datamodel.makeLexemeDocument(
+				Datamodel.makeWikidataLexemeIdValue("L1"),
+				Datamodel.makeWikidataItemIdValue("Q1084"),
+				Datamodel.makeWikidataItemIdValue("Q1860"),
+				Collections.singletonList(Datamodel.makeMonolingualTextValue("lemma", "en")));
+		lexeme = lexeme.withForm(Datamodel.makeFormDocument(
+				Datamodel.makeWikidataFormIdValue("L1-F1"),
+				Collections.singletonList(Datamodel.makeMonolingualTextValue("lemmas", "en")),
+				Collections.singletonList(Datamodel.makeWikidataItemIdValue("Q146786")),
+				Collections.emptyList()));
+		lexeme = lexeme.withSense(Datamodel.makeSenseDocument(
+				Datamodel.makeWikidataSenseIdValue("L1-S1"),
+				Collections.singletonList(Datamodel.makeMonolingualTextValue("gloss", "en")),
+				Collections.emptyList()));
+		assertSameJson(lexeme);
+		assertSameJson(lexeme.getForms().get(0).withRevisionId(5));
+		assertSameJson(lexeme.getSenses().get(0).withRevisionId(5));
+	}
+
+	@Test
+	public void testEntityIdValues() throws IOException {
+		StringBuilder json = new StringBuilder("{\"type\":\"item\",\"id\":\"Q1\",\"claims\":{\"P1\":[");
+		String[] ids = { "L1", "L1-F2", "L1-S3", "M4" };
+		for (int i = 0; i < ids.length; i++) {
+			json.append(i > 0 ? "," : "").append("{\"rank\":\"normal\",\"mainsnak\":{\"property\":\"P1\",")
+					.append("\"datavalue\":{\"value\":{\"id\":\"").append(ids[i])
+					.append("\"},\"type\":\"wikibase-entityid\"},\"snaktype\":\"value\"},\"type\":\"statement\"}");
+		}
+		json.append("]}}");
+		assertSameJson(deserializer.deserializeItemDocument(json.toString()));
+	}
+
+	@Test
+	public void testUnsupportedValue() throws IOException {
+		String json = "{\"type\":\"item\",\"id\":\"Q1\",\"claims\":{\"P1\":[{\"rank\":\"normal\","
+				+ "\"mainsnak\":{\"property\":\"P1\",\"datavalue\":{\"value\":{\"foo\":\"bar\"},"
+				+ "\"type\":\"funky\"},\"snaktype\":\"value\"},\"type\":\"statement\"}]}}";
+		assertSameJson(deserializer.deserializeItemDocument(json));
+	}
+
+	@Test
+	public void testSerializer() {
+		List<ItemDocument> documents = new ArrayList<>();
+		for (int i = 1; i <= 200; i++) {
+			documents.add(makeItemDocument(i));
+		}
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		serialize(new JsonSerializer(expected), documents);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingJsonSerializer serializer = new StreamingJsonSerializer(out);
+		serialize(serializer, documents);
+		assertEquals(expected.toString(), out.toString());
+		assertEquals(200, serializer.getEntityDocumentCount());
+
+		out = new ByteArrayOutputStream();
+		serialize(new StreamingJsonSerializer(out, 4), documents);
+		assertEquals(expected.toString(), out.toString());
+	}
+
+	@Test
+	public void testSerializerNoDocuments() {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		serialize(new JsonSerializer(expected), Collections.emptyList());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serialize(new StreamingJsonSerializer(out, 4), Collections.emptyList());
+		assertEquals(expected.toString(), out.toString());
+	}
+
+	@Test
+	public void testDaemonThreads() {
+		StreamingJsonSerializer serializer = new StreamingJsonSerializer(
+				new ByteArrayOutputStream(), 4);
+		serializer.open();
+		serializer.processItemDocument(makeItemDocument(1));
+		boolean found = false;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().equals("StreamingJsonSerializer")) {
+				assertTrue(thread.isDaemon());
+				found = true;
+			}
+		}
+		serializer.close();
+		assertTrue(found);
+	}
+
+	private void serialize(EntityDocumentDumpProcessor serializer, List<ItemDocument> documents) {
+		serializer.open();
+		for (ItemDocument document : documents) {
+			serializer.processItemDocument(document);
+		}
+		serializer.close();
+	}
+
+	private ItemDocument makeItemDocument(int number) {
+		ItemIdValue subject = Datamodel.makeWikidataItemIdValue("Q" + number);
+		PropertyIdValue p1 = Datamodel.makeWikidataPropertyIdValue("P1");
+		PropertyIdValue p2 = Datamodel.makeWikidataPropertyIdValue("P2");
+		List<Value> values = Arrays.asList(
+				Datamodel.makeWikidataItemIdValue("Q" + (number + 1)),
+				Datamodel.makeWikidataPropertyIdValue("P" + number),
+				Datamodel.makeStringValue("string \"" + number + "\" é€"),
+				Datamodel.makeMonolingualTextValue("text " + number, "en"),
+				Datamodel.makeTimeValue(1952 + number, (byte) 3, (byte) 11, (byte) 0, (byte) 0, (byte) 0,
+						TimeValue.PREC_DAY, 0, 0, 0, TimeValue.CM_GREGORIAN_PRO),
+				Datamodel.makeTimeValue(-13798000000L, (byte) 0, (byte) 0, (byte) 0, (byte) 0, (byte) 0,
+						TimeValue.PREC_1GY, 0, 1, 60, TimeValue.CM_JULIAN_PRO),
+				Datamodel.makeGlobeCoordinatesValue(51.0 + number / 1000.0, -0.1275,
+						GlobeCoordinatesValue.PREC_MILLI_ARCSECOND, GlobeCoordinatesValue.GLOBE_EARTH),
+				Datamodel.makeQuantityValue(new BigDecimal(number)),
+				Datamodel.makeQuantityValue(new BigDecimal("-1.50"), new BigDecimal("-2"),
+						new BigDecimal("1E+3"), Datamodel.makeWikidataItemIdValue("Q11573")));
+
+		List<Snak> snaks = new ArrayList<>();
+		for (Value value : values) {
+			snaks.add(Datamodel.makeValueSnak(p1, value));
+		}
+		snaks.add(Datamodel.makeSomeValueSnak(p1));
+		snaks.add(Datamodel.makeNoValueSnak(p1));
+
+		List<SnakGroup> qualifiers = Arrays.asList(
+				Datamodel.makeSnakGroup(Collections.singletonList(Datamodel.makeNoValueSnak(p2))),
+				Datamodel.makeSnakGroup(snaks.subList(0, 3)));
+		Reference reference = Datamodel.makeReference(qualifiers);
+		List<Statement> statements = new ArrayList<>();
+		for (int i = 0; i < snaks.size(); i++) {
+			statements.add(Datamodel.makeStatement(subject, snaks.get(i),
+					i % 2 == 0 ? qualifiers : Collections.emptyList(),
+					i % 3 == 0 ? Collections.singletonList(reference) : Collections.emptyList(),
+					StatementRank.values()[i % 3], i % 4 == 0 ? "" : "Q" + number + "$" + i));
+		}
+		List<StatementGroup> statementGroups = Arrays.asList(
+				Datamodel.makeStatementGroup(statements),
+				Datamodel.makeStatementGroup(Collections.singletonList(Datamodel.makeStatement(
+						subject, Datamodel.makeNoValueSnak(p2), Collections.emptyList(),
+						Collections.emptyList(), StatementRank.NORMAL, ""))));
+
+		return Datamodel.makeItemDocument(subject,
+				Arrays.asList(Datamodel.makeMonolingualTextValue("label", "en"),
+						Datamodel.makeMonolingualTextValue("Etikett", "de")),
+				Collections.singletonList(Datamodel.makeMonolingualTextValue("description", "en")),
+				Arrays.asList(Datamodel.makeMonolingualTextValue("alias", "en"),
+						Datamodel.makeMonolingualTextValue("other alias", "en"),
+						Datamodel.makeMonolingualTextValue("Alias", "de")),
+				statementGroups,
+				Collections.singletonMap("enwiki", Datamodel.makeSiteLink("Title " + number, "enwiki",
+						Collections.singletonList(Datamodel.makeWikidataItemIdValue("Q17437796")))),
+				number * 10L);
+	}
+}
@@ -0,0 +1,178 @@
+package org.wikidata.wdtk.datamodel.helpers;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.SnakImpl;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+
+public class ValueCacheTest {
+
+	private static final String SNAK_JSON = "{\"snaktype\":\"value\",\"property\":\"P31\",\"datatype\":\"wikibase-item\","
+			+ "\"datavalue\":{\"value\":{\"entity-type\":\"item\",\"numeric-id\":5,\"id\":\"Q5\"},\"type\":\"wikibase-entityid\"}}";
+
+	@Test
+	public void testValueAdmittedOnSecondOccurrence() {
+		ValueCache cache = new ValueCache(10);
+		ItemIdValue first = Datamodel.makeWikidataItemIdValue("Q5");
+		ItemIdValue second = Datamodel.makeWikidataItemIdValue("Q5");
+		ItemIdValue third = Datamodel.makeWikidataItemIdValue("Q5");
+
+		assertSame(first, cache.canonicalize(first));
+		assertSame(second, cache.canonicalize(second));
+		assertSame(second, cache.canonicalize(third));
+
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.getAdmissions());
+		assertEquals(1, cache.size());
+		assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	public void testLeastRecentlyUsedValueEvicted() {
+		ValueCache cache = new ValueCache(2);
+		for (String id : new String[] { "Q1", "Q2", "Q1", "Q2" }) {
+			cache.canonicalize(Datamodel.makeWikidataItemIdValue(id));
+		}
+		// Q1 was used last, so Q2 is evicted first
+		cache.canonicalize(Datamodel.makeWikidataItemIdValue("Q1"));
+		cache.canonicalize(Datamodel.makeWikidataItemIdValue("Q3"));
+		cache.canonicalize(Datamodel.makeWikidataItemIdValue("Q3"));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		long hits = cache.getHits();
+		cache.canonicalize(Datamodel.makeWikidataItemIdValue("Q1"));
+		assertEquals(hits + 1, cache.getHits());
+	}
+
+	@Test
+	public void testQuantityUnitsShared() {
+		ValueCache cache = new ValueCache(10);
+		String unit = "http://www.wikidata.org/entity/Q11573";
+		QuantityValue metre = Datamodel.makeQuantityValue(BigDecimal.ONE, unit);
+		QuantityValue twoMetres = Datamodel.makeQuantityValue(new BigDecimal(2), new String(unit));
+		for (int i = 0; i < 2; i++) {
+			cache.canonicalize(metre);
+		}
+		QuantityValue canonical = null;
+		for (int i = 0; i < 2; i++) {
+			canonical = cache.canonicalize(twoMetres);
+		}
+		assertEquals(twoMetres, canonical);
+		assertSame(unit, canonical.getUnit());
+	}
+
+	@Test
+	public void testClear() {
+		ValueCache cache = new ValueCache(10);
+		for (int i = 0; i < 3; i++) {
+			cache.canonicalize(Datamodel.makeWikidataItemIdValue("Q5"));
+		}
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(0.0, cache.getHitRate(), 0.0);
+	}
+
+	@Test
+	public void testSegmentsBoundedByCapacity() {
+		ValueCache cache = new ValueCache(5000);
+		for (int i = 0; i < 20000; i++) {
+			for (int j = 0; j < 2; j++) {
+				cache.canonicalize(Datamodel.makeWikidataItemIdValue("Q" + i));
+			}
+		}
+		assertEquals(5000, cache.size());
+		assertEquals(cache.getAdmissions() - 5000, cache.getEvictions());
+	}
+
+	@Test
+	public void testConcurrentCanonicalization() throws Exception {
+		ValueCache cache = new ValueCache(50000);
+		int threads = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<ItemIdValue[]>> results = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				results.add(executor.submit(() -> {
+					ItemIdValue[] values = new ItemIdValue[1000];
+					for (int round = 0; round < 3; round++) {
+						for (int i = 0; i < values.length; i++) {
+							values[i] = cache.canonicalize(Datamodel
+									.makeWikidataItemIdValue("Q" + i));
+						}
+					}
+					return values;
+				}));
+			}
+			ItemIdValue[] first = results.get(0).get();
+			for (Future<ItemIdValue[]> result : results) {
+				ItemIdValue[] values = result.get();
+				for (int i = 0; i < values.length; i++) {
+					assertSame(first[i], values[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1000, cache.size());
+		assertEquals(3 * threads * 1000, cache.getHits() + cache.getMisses());
+	}
+
+	@Test
+	public void testMapperCanonicalizesValues() throws IOException {
+		ValueCache cache = new ValueCache();
+		DatamodelMapper mapper = new DatamodelMapper(Datamodel.SITE_WIKIDATA, cache);
+		ValueSnak snak1 = (ValueSnak) mapper.readValue(SNAK_JSON, SnakImpl.class);
+		ValueSnak snak2 = (ValueSnak) mapper.readValue(SNAK_JSON, SnakImpl.class);
+		ValueSnak snak3 = (ValueSnak) mapper.readValue(SNAK_JSON, SnakImpl.class);
+
+		assertNotSame(snak1.getValue(), snak2.getValue());
+		assertSame(snak2.getValue(), snak3.getValue());
+		assertEquals(Datamodel.makeWikidataItemIdValue("Q5"), snak3.getValue());
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testMapperWithoutCache() throws IOException {
+		DatamodelMapper mapper = new DatamodelMapper(Datamodel.SITE_WIKIDATA);
+		ValueSnak snak1 = (ValueSnak) mapper.readValue(SNAK_JSON, SnakImpl.class);
+		ValueSnak snak2 = (ValueSnak) mapper.readValue(SNAK_JSON, SnakImpl.class);
+		assertNotSame(snak1.getValue(), snak2.getValue());
+		assertEquals(snak1.getValue(), snak2.getValue());
+	}
+}
@@ -0,0 +1,77 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+
+public class CompactAliasMapTest {
+
+	private final Map<String, List<MonolingualTextValue>> aliases = new HashMap<>();
+	{
+		aliases.put("en", Arrays.asList(new TermImpl("en", "DNA"), new TermImpl("en", "Adams")));
+		aliases.put("de", Collections.singletonList(new TermImpl("de", "Douglas Noël Adams")));
+		aliases.put("fr", Collections.emptyList());
+	}
+
+	private final CompactAliasMap map = new CompactAliasMap(aliases);
+
+	@Test
+	public void equalToOriginalMap() {
+		assertEquals(aliases, map);
+		assertEquals(map, aliases);
+		assertEquals(aliases.hashCode(), map.hashCode());
+		assertEquals(3, map.size());
+	}
+
+	@Test
+	public void lookups() {
+		assertEquals(Arrays.asList(new TermImpl("en", "DNA"), new TermImpl("en", "Adams")), map.get("en"));
+		assertEquals(Collections.emptyList(), map.get("fr"));
+		assertTrue(map.containsKey("de"));
+		assertFalse(map.containsKey("ru"));
+		assertNull(map.get("ru"));
+		assertNull(map.get(null));
+	}
+
+	@Test
+	public void compact() {
+		assertSame(map, CompactAliasMap.compact(map));
+		assertEquals(Collections.emptyMap(), CompactAliasMap.compact(new HashMap<>()));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void listsAreImmutable() {
+		map.get("en").add(new TermImpl("en", "Bop Ad"));
+	}
+}
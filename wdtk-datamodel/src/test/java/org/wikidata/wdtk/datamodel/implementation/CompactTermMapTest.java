@@ -0,0 +1,98 @@
+package org.wikidata.wdtk.datamodel.implementation;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Data Model
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+
+public class CompactTermMapTest {
+
+	private final Map<String, MonolingualTextValue> terms = new HashMap<>();
+	{
+		terms.put("en", new TermImpl("en", "Douglas Adams"));
+		terms.put("fr", new TermImpl("fr", "Douglas Adams"));
+		terms.put("ru", new TermImpl("ru", "Дуглас Адамс"));
+		terms.put("x-unknown-code", new TermImpl("x-unknown-code", ""));
+	}
+
+	private final CompactTermMap map = new CompactTermMap(terms);
+
+	@Test
+	public void equalToOriginalMap() {
+		assertEquals(terms, map);
+		assertEquals(map, terms);
+		assertEquals(terms.hashCode(), map.hashCode());
+		assertEquals(4, map.size());
+	}
+
+	@Test
+	public void lookups() {
+		assertEquals(new TermImpl("ru", "Дуглас Адамс"), map.get("ru"));
+		assertEquals("Douglas Adams", map.findText("en"));
+		assertEquals("", map.findText("x-unknown-code"));
+		assertTrue(map.containsKey("fr"));
+		assertFalse(map.containsKey("de"));
+		assertNull(map.get("de"));
+		assertNull(map.get("some-code-never-seen"));
+		assertNull(map.get(42));
+		assertNull(map.findText("de"));
+	}
+
+	@Test
+	public void iterationInLanguageOrder() {
+		List<String> keys = new ArrayList<>(map.keySet());
+		assertEquals(Arrays.asList("en", "fr", "ru"), keys.subList(0, 3));
+		assertEquals("x-unknown-code", keys.get(3));
+	}
+
+	@Test
+	public void termLanguageDifferentFromKey() {
+		Map<String, MonolingualTextValue> odd = Collections.singletonMap("en", new TermImpl("de", "Haus"));
+		CompactTermMap compact = new CompactTermMap(odd);
+		assertEquals(odd, compact);
+		assertEquals("de", compact.get("en").getLanguageCode());
+	}
+
+	@Test
+	public void compact() {
+		assertSame(map, CompactTermMap.compact(map));
+		assertEquals(Collections.emptyMap(), CompactTermMap.compact(new HashMap<>()));
+		assertEquals(terms, CompactTermMap.compact(terms));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void immutable() {
+		map.put("de", new TermImpl("de", "Douglas Adams"));
+	}
+}
@@ -378,6 +378,27 @@ public class ItemDocumentImplTest {
 		assertEquals(document, mapper.readValue(JSON_ITEM_SITELINKS, ItemDocumentImpl.class));
 	}
 
+	@Test
+	public void compactTermsPreserveContent() {
+		ItemDocument compact = ((ItemDocumentImpl) ir1).withCompactTerms();
+		assertEquals(ir1, compact);
+		assertEquals(ir1.hashCode(), compact.hashCode());
+		assertEquals("label", compact.findLabel("en"));
+		assertNull(compact.findLabel("ja"));
+		assertEquals("des", compact.findDescription("fr"));
+		assertEquals(ir1.getAliases(), compact.getAliases());
+	}
+
+	@Test
+	public void compactTermsCanBeModified() throws JsonProcessingException {
+		ItemDocument compact = ((ItemDocumentImpl) ir1).withCompactTerms();
+		MonolingualTextValue newAlias = new TermImpl("de", "Alias");
+		ItemDocument withAliases = compact.withAliases("de", Collections.singletonList(newAlias));
+		assertEquals(Collections.singletonList(newAlias), withAliases.getAliases().get("de"));
+		assertEquals(Collections.singletonList(alias), compact.getAliases().get("de"));
+		assertEquals(mapper.writeValueAsString(ir1), mapper.writeValueAsString(compact));
+	}
+
 	/**
 	 * Checks support of wrong serialization of empty object as empty array
 	 */
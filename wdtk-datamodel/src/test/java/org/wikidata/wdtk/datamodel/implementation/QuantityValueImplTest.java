@@ -169,4 +169,30 @@ public class QuantityValueImplTest {
 	public void testUnboundedToJava() throws IOException {
 		assertEquals(q3, mapper.readValue(JSON_UNBOUNDED_QUANTITY_VALUE, ValueImpl.class));
 	}
+
+	@Test
+	public void testIntegerAmountsToJava() throws IOException {
+		String json = "{\"value\":{\"amount\":\"+42\",\"lowerBound\":\"-7\",\"upperBound\":\"+123456789012345678901234\",\"unit\":\"1\"},\"type\":\"quantity\"}";
+		QuantityValue expected = new QuantityValueImpl(new BigDecimal("42"), new BigDecimal("-7"),
+				new BigDecimal("123456789012345678901234"), "1");
+		assertEquals(expected, mapper.readValue(json, ValueImpl.class));
+	}
+
+	@Test
+	public void testParseInteger() {
+		assertEquals(new BigDecimal("42"), QuantityValueImpl.DecimalDeserializer.parseInteger("+42"));
+		assertEquals(new BigDecimal("-42"), QuantityValueImpl.DecimalDeserializer.parseInteger("-42"));
+		assertEquals(new BigDecimal("0"), QuantityValueImpl.DecimalDeserializer.parseInteger("-0"));
+		assertEquals(new BigDecimal("999999999999999999"),
+				QuantityValueImpl.DecimalDeserializer.parseInteger("999999999999999999"));
+		assertNull(QuantityValueImpl.DecimalDeserializer.parseInteger("+4.2"));
+		assertNull(QuantityValueImpl.DecimalDeserializer.parseInteger("+1E3"));
+		assertNull(QuantityValueImpl.DecimalDeserializer.parseInteger("+"));
+		assertNull(QuantityValueImpl.DecimalDeserializer.parseInteger("1000000000000000000"));
+	}
+
+	@Test(expected = JsonProcessingException.class)
+	public void testInvalidAmountToJava() throws IOException {
+		mapper.readValue("{\"value\":{\"amount\":\"+4x2\",\"unit\":\"1\"},\"type\":\"quantity\"}", ValueImpl.class);
+	}
 }
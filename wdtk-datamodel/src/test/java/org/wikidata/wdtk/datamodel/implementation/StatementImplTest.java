@@ -30,6 +30,8 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Test;
 import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.helpers.Hash;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 
 public class StatementImplTest {
@@ -103,6 +105,31 @@ public class StatementImplTest {
 		assertEquals(s1.hashCode(), s2.hashCode());
 	}
 
+	@Test
+	public void hashStableAcrossCalls() {
+		int hash = s1.hashCode();
+		assertEquals(hash, s1.hashCode());
+		assertEquals(Hash.hashCode(s1), hash);
+	}
+
+	@Test
+	public void equalityWithCachedHashes() {
+		Statement sDiffRank = new StatementImpl("MyId", StatementRank.NORMAL, mainSnak,
+				qualifiers, references, subjet);
+		Statement copy = StatementBuilder.forSubjectAndProperty(subjet, property)
+				.withId("MyId")
+				.withRank(StatementRank.PREFERRED)
+				.withValue(value)
+				.withQualifiers(qualifiers)
+				.withReferences(references)
+				.build();
+		s1.hashCode();
+		sDiffRank.hashCode();
+		assertEquals(s1, copy);
+		assertNotEquals(s1, sDiffRank);
+		assertNotEquals(sDiffRank, s1);
+	}
+
 	@Test
 	public void equalityBasedOnContent() {
 		Statement sDiffClaim = new StatementImpl("MyId", StatementRank.NORMAL, mainSnak,
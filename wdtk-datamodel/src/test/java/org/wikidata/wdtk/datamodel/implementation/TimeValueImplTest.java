@@ -171,4 +171,31 @@ public class TimeValueImplTest {
 		assertEquals(TimeValue.CM_GREGORIAN_PRO, gregorian.getPreferredCalendarModel());
 	}
 
+	@Test
+	public void testLargeYearToJava() throws IOException {
+		String json = "{\"value\":{\"time\":\"-13800000000-00-00T00:00:00Z\",\"timezone\":0,\"before\":0,\"after\":0,\"precision\":3,\"calendarmodel\":\"http://www.wikidata.org/entity/Q1985727\"},\"type\":\"time\"}";
+		TimeValue t = (TimeValue) mapper.readValue(json, ValueImpl.class);
+		assertEquals(-13800000000L, t.getYear());
+		assertEquals(0, t.getMonth());
+		assertEquals(0, t.getDay());
+		assertEquals(3, t.getPrecision());
+	}
+
+	@Test
+	public void testSmallYearToJson() throws JsonProcessingException {
+		TimeValue t = new TimeValueImpl(5, (byte) 1, (byte) 2, (byte) 0, (byte) 0,
+				(byte) 0, TimeValue.PREC_DAY, 0, 0, 0, TimeValue.CM_JULIAN_PRO);
+		assertTrue(mapper.writeValueAsString(t).contains("\"+005-01-02T00:00:00Z\""));
+	}
+
+	@Test(expected = JsonProcessingException.class)
+	public void testInvalidTimeToJava() throws IOException {
+		mapper.readValue("{\"value\":{\"time\":\"+2007-05-12\",\"timezone\":0,\"before\":0,\"after\":0,\"precision\":11,\"calendarmodel\":\"http://www.wikidata.org/entity/Q1985727\"},\"type\":\"time\"}", ValueImpl.class);
+	}
+
+	@Test(expected = JsonProcessingException.class)
+	public void testOutOfRangeMonthToJava() throws IOException {
+		mapper.readValue("{\"value\":{\"time\":\"+2007-300-12T00:00:00Z\",\"timezone\":0,\"before\":0,\"after\":0,\"precision\":11,\"calendarmodel\":\"http://www.wikidata.org/entity/Q1985727\"},\"type\":\"time\"}", ValueImpl.class);
+	}
+
 }
@@ -21,6 +21,7 @@ package org.wikidata.wdtk.datamodel.implementation;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.wikidata.wdtk.datamodel.interfaces.WikimediaLanguageCodes;
@@ -49,4 +50,38 @@ public class WikimediaLanguageCodesTest {
 		assertEquals("unknown",
 				WikimediaLanguageCodes.fixLanguageCodeIfDeprecated("unknown"));
 	}
+
+	@Test
+	public void languageIndexes() {
+		int en = WikimediaLanguageCodes.getLanguageIndex("en");
+		assertEquals(en, WikimediaLanguageCodes.getLanguageIndex("en"));
+		assertEquals(en, WikimediaLanguageCodes.findLanguageIndex("en"));
+		assertEquals("en", WikimediaLanguageCodes.getLanguageCodeForIndex(en));
+		assertTrue(WikimediaLanguageCodes.getLanguageIndex("de") < en);
+	}
+
+	@Test
+	public void unknownLanguageIndexes() {
+		assertEquals(-1, WikimediaLanguageCodes.findLanguageIndex("not-a-language-code"));
+		int index = WikimediaLanguageCodes.getLanguageIndex("some-new-language-code");
+		assertTrue(index > WikimediaLanguageCodes.getLanguageIndex("zxx"));
+		assertEquals(index, WikimediaLanguageCodes.findLanguageIndex("some-new-language-code"));
+		assertEquals("some-new-language-code", WikimediaLanguageCodes.getLanguageCodeForIndex(index));
+	}
+
+	@Test
+	public void manyLanguageIndexes() {
+		// crosses the initial capacity of the table of codes
+		int first = WikimediaLanguageCodes.getLanguageIndex("many-codes-0");
+		for (int i = 1; i < 1500; i++) {
+			assertEquals(first + i, WikimediaLanguageCodes.getLanguageIndex("many-codes-" + i));
+		}
+		assertEquals("many-codes-0", WikimediaLanguageCodes.getLanguageCodeForIndex(first));
+		assertEquals("many-codes-1499", WikimediaLanguageCodes.getLanguageCodeForIndex(first + 1499));
+	}
+
+	@Test(expected = ArrayIndexOutOfBoundsException.class)
+	public void unassignedLanguageIndex() {
+		WikimediaLanguageCodes.getLanguageCodeForIndex(WikimediaLanguageCodes.MAX_LANGUAGE_INDEXES);
+	}
 }
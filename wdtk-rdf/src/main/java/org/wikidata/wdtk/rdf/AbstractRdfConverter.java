@@ -109,6 +109,38 @@ abstract public class AbstractRdfConverter {
 				.writeNamespaceDeclaration("prov", Vocabulary.PREFIX_PROV);
 	}
 
+	/**
+	 * Sets the maximal number of values, references and declarations of each
+	 * kind which are remembered to avoid writing their triples several times.
+	 * Once this number is reached, older ones are forgotten, so that memory
+	 * remains bounded on large exports at the cost of a few duplicate
+	 * triples.
+	 *
+	 * @param capacity
+	 *            the maximal number of remembered objects of each kind
+	 * @see DeduplicationSet
+	 */
+	public void setDeduplicationCapacity(int capacity) {
+		this.valueRdfConverter.setDeduplicationCapacity(capacity);
+		this.owlDeclarationBuffer.setDeduplicationCapacity(capacity);
+		this.referenceRdfConverter.declaredReferences.setMaxCapacity(capacity);
+	}
+
+	/**
+	 * Returns the number of values, references and declarations which were
+	 * forgotten because of the bounded deduplication capacity. This is an
+	 * upper bound on the number of objects whose triples were written more
+	 * than once.
+	 *
+	 * @return the number of evicted objects
+	 */
+	public long getDeduplicationEvictionCount() {
+		return this.valueRdfConverter.getDeduplicationEvictionCount()
+				+ this.owlDeclarationBuffer.getDeduplicationEvictionCount()
+				+ this.referenceRdfConverter.declaredReferences
+						.getEvictionCount();
+	}
+
 	/**
 	 * Writes all buffered triples and finishes writing a document.
 	 *
@@ -167,6 +199,27 @@ abstract public class AbstractRdfConverter {
 		finishDocument();
 	}
 
+	/**
+	 * Writes an item or property document. Documents of other types are
+	 * ignored, since they have no RDF representation yet.
+	 *
+	 * @param document
+	 *            the document to write
+	 * @throws RDFHandlerException
+	 *             if there was a problem writing the RDF triples
+	 */
+	public void writeEntityDocument(EntityDocument document)
+			throws RDFHandlerException {
+		if (document instanceof ItemDocument) {
+			writeItemDocument((ItemDocument) document);
+		} else if (document instanceof PropertyDocument) {
+			writePropertyDocument((PropertyDocument) document);
+		} else {
+			logger.warn("Cannot convert " + document.getEntityId().getId()
+					+ " to RDF: unsupported document type");
+		}
+	}
+
 	/**
 	 * Writes triples which connect properties with their corresponding rdf
 	 * properties for statements, simple statements, qualifiers, reference
@@ -0,0 +1,195 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+
+/**
+ * Reads triples written by a {@link BinaryRdfWriter}, and passes them to an
+ * rdf4j {@link RDFHandler}, such as a writer for another format or a
+ * collector of statements. Triples are read block by block, so that only the
+ * dictionary of terms is kept in memory.
+ */
+public class BinaryRdfReader {
+
+	static final ValueFactory factory = SimpleValueFactory.getInstance();
+
+	final InputStream input;
+	final List<Value> dictionary = new ArrayList<>();
+
+	long tripleCount = 0;
+
+	/**
+	 * Creates a reader.
+	 *
+	 * @param input
+	 *            the stream to read from, which is not closed
+	 */
+	public BinaryRdfReader(InputStream input) {
+		this.input = new BufferedInputStream(input);
+	}
+
+	/**
+	 * Reads all triples and passes them to the handler.
+	 *
+	 * @param handler
+	 *            the handler receiving the triples
+	 * @throws IOException
+	 *             if the input could not be read
+	 * @throws RDFParseException
+	 *             if the input is not a valid encoding
+	 * @throws RDFHandlerException
+	 *             if the handler failed to process a triple
+	 */
+	public void parse(RDFHandler handler) throws IOException,
+			RDFParseException, RDFHandlerException {
+		for (byte expected : BinaryRdfWriter.MAGIC) {
+			if (readByte() != expected) {
+				throw new RDFParseException(
+						"Not a binary RDF file, or unsupported version");
+			}
+		}
+		this.dictionary.clear();
+		this.tripleCount = 0;
+		handler.startRDF();
+		while (true) {
+			int record = readInt();
+			if (record == BinaryRdfWriter.END) {
+				break;
+			} else if (record == BinaryRdfWriter.BLOCK) {
+				readBlock(handler);
+			} else if (record == BinaryRdfWriter.RESET) {
+				this.dictionary.clear();
+			} else {
+				throw new RDFParseException("Unknown record type " + record);
+			}
+		}
+		handler.endRDF();
+	}
+
+	/**
+	 * Returns the number of triples read so far.
+	 *
+	 * @return number of triples
+	 */
+	public long getTripleCount() {
+		return this.tripleCount;
+	}
+
+	void readBlock(RDFHandler handler) throws IOException {
+		int termCount = readInt();
+		for (int i = 0; i < termCount; i++) {
+			this.dictionary.add(readTerm());
+		}
+		int sections = readInt();
+		for (int i = 0; i < sections; i++) {
+			IRI predicate = (IRI) getTerm(readInt(), IRI.class);
+			int count = readInt();
+			for (int j = 0; j < count; j++) {
+				Resource subject = (Resource) getTerm(readInt(), Resource.class);
+				Value object = getTerm(readInt(), Value.class);
+				handler.handleStatement(factory.createStatement(subject,
+						predicate, object));
+				this.tripleCount++;
+			}
+		}
+	}
+
+	Value readTerm() throws IOException {
+		int kind = readInt();
+		String string = readString();
+		switch (kind) {
+		case BinaryRdfWriter.IRI_TERM:
+			return factory.createIRI(string);
+		case BinaryRdfWriter.BNODE_TERM:
+			return factory.createBNode(string);
+		case BinaryRdfWriter.STRING_LITERAL_TERM:
+			return factory.createLiteral(string);
+		case BinaryRdfWriter.LANGUAGE_LITERAL_TERM:
+			return factory.createLiteral(string, readString());
+		case BinaryRdfWriter.TYPED_LITERAL_TERM:
+			return factory.createLiteral(string,
+					(IRI) getTerm(readInt(), IRI.class));
+		default:
+			throw new RDFParseException("Unknown term type " + kind);
+		}
+	}
+
+	Value getTerm(int termId, Class<? extends Value> type) {
+		if (termId >= this.dictionary.size()) {
+			throw new RDFParseException("Undefined term " + termId);
+		}
+		Value term = this.dictionary.get(termId);
+		if (!type.isInstance(term)) {
+			throw new RDFParseException("Unexpected term " + term);
+		}
+		return term;
+	}
+
+	int readByte() throws IOException {
+		int b = this.input.read();
+		if (b < 0) {
+			throw new EOFException("Unexpected end of binary RDF file");
+		}
+		return b;
+	}
+
+	int readInt() throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = readByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new RDFParseException("Invalid variable-length integer");
+	}
+
+	String readString() throws IOException {
+		int length = readInt();
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int read = this.input.read(bytes, offset, length - offset);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of binary RDF file");
+			}
+			offset += read;
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,460 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+
+/**
+ * {@link RdfWriter} producing a compact binary encoding of the triples, which
+ * can be read back with {@link BinaryRdfReader}. Terms are stored once in a
+ * dictionary and triples refer to them by number, so that the output is
+ * smaller than N-Triples and can be loaded without parsing IRIs and
+ * literals.
+ * <p>
+ * The output starts with the bytes {@link #MAGIC}, followed by records:
+ * <ul>
+ * <li>a block ({@link #BLOCK}) contains the definitions of the terms which
+ * appear for the first time in the block, followed by the triples of the
+ * block grouped by predicate: for each predicate, its term number, the number
+ * of triples and the term numbers of their subjects and objects;</li>
+ * <li>a reset ({@link #RESET}) empties the dictionary, so that its size
+ * remains bounded;</li>
+ * <li>the end of the output ({@link #END}).</li>
+ * </ul>
+ * Terms are numbered from 0 in the order of their definitions. A definition
+ * is a term kind followed by its string and, for literals with a language or
+ * a datatype other than xsd:string, the language or the number of the
+ * datatype IRI. All integers are written as unsigned variable-length
+ * integers (seven bits per byte, least significant first), and strings as
+ * their length in bytes followed by their UTF-8 encoding.
+ */
+public class BinaryRdfWriter extends RdfWriter {
+
+	/**
+	 * Format to use with {@link RdfWriter#create(RDFFormat, OutputStream)} or
+	 * {@link RdfSerializer} to write this encoding.
+	 */
+	public static final RDFFormat FORMAT = new RDFFormat("WDTK Binary RDF",
+			"application/x-wdtk-binary-rdf", null, "wbrdf", false, false);
+
+	/**
+	 * Start of the output, ending with the version of the encoding.
+	 */
+	static final byte[] MAGIC = { 'W', 'D', 'T', 'K', 'B', 'R', 'D', 'F', 1 };
+
+	static final int END = 0;
+	static final int BLOCK = 1;
+	static final int RESET = 2;
+
+	static final int IRI_TERM = 0;
+	static final int BNODE_TERM = 1;
+	static final int STRING_LITERAL_TERM = 2;
+	static final int LANGUAGE_LITERAL_TERM = 3;
+	static final int TYPED_LITERAL_TERM = 4;
+
+	/**
+	 * Number of triples per block by default.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 12;
+
+	/**
+	 * Number of terms after which the dictionary is reset by default.
+	 */
+	public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 20;
+
+	/**
+	 * Size above which encoded triples are written to the output while a
+	 * block is being written.
+	 */
+	static final int BLOCK_FLUSH_SIZE = 1 << 16;
+
+	final OutputStream output;
+	final int blockSize;
+	final int maxDictionarySize;
+
+	/**
+	 * Numbers of the terms in the dictionary. IRIs are represented by their
+	 * string, and other terms by {@link TermKey} objects.
+	 */
+	final Map<Object, Integer> dictionary = new HashMap<>();
+
+	/**
+	 * Terms defined in the current block.
+	 */
+	final Encoder terms = new Encoder();
+	int termCount = 0;
+
+	final int[] subjects;
+	final int[] predicates;
+	final int[] objects;
+	final long[] sortKeys;
+	int blockTripleCount = 0;
+
+	final Encoder block = new Encoder();
+
+	/**
+	 * Creates a writer with the default block and dictionary sizes.
+	 *
+	 * @param output
+	 *            the stream to write to
+	 */
+	public BinaryRdfWriter(OutputStream output) {
+		this(output, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_DICTIONARY_SIZE);
+	}
+
+	/**
+	 * Creates a writer.
+	 *
+	 * @param output
+	 *            the stream to write to
+	 * @param blockSize
+	 *            the number of triples per block
+	 * @param maxDictionarySize
+	 *            the number of terms after which the dictionary is reset
+	 */
+	public BinaryRdfWriter(OutputStream output, int blockSize,
+			int maxDictionarySize) {
+		if (blockSize < 1 || maxDictionarySize < 1) {
+			throw new IllegalArgumentException(
+					"The block and dictionary sizes must be positive");
+		}
+		this.output = output;
+		this.blockSize = blockSize;
+		this.maxDictionarySize = maxDictionarySize;
+		this.subjects = new int[blockSize];
+		this.predicates = new int[blockSize];
+		this.objects = new int[blockSize];
+		this.sortKeys = new long[blockSize];
+	}
+
+	@Override
+	public void start() throws RDFHandlerException {
+		this.tripleCount = 0;
+		this.dictionary.clear();
+		this.terms.reset();
+		this.termCount = 0;
+		this.blockTripleCount = 0;
+		write(MAGIC, MAGIC.length);
+	}
+
+	@Override
+	public void finish() throws RDFHandlerException {
+		writeBlock();
+		this.block.writeInt(END);
+		writeEncoded(this.block);
+		try {
+			this.output.flush();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeNamespaceDeclaration(String prefix, String uri)
+			throws RDFHandlerException {
+		// the encoding has no namespaces
+	}
+
+	@Override
+	public void writeTripleStringObject(Resource subject, IRI predicate,
+			String objectLiteral) throws RDFHandlerException {
+		addTriple(getResourceId(subject), getIriId(predicate.stringValue()),
+				getLiteralId(objectLiteral, null, null));
+	}
+
+	@Override
+	public void writeTripleIntegerObject(Resource subject, IRI predicate,
+			int objectLiteral) throws RDFHandlerException {
+		addTriple(getResourceId(subject), getIriId(predicate.stringValue()),
+				getLiteralId(Integer.toString(objectLiteral), null,
+						Vocabulary.XSD_INT));
+	}
+
+	@Override
+	public void writeTripleUriObject(String subjectUri, IRI predicate,
+			String objectUri) throws RDFHandlerException {
+		addTriple(getIriId(subjectUri), getIriId(predicate.stringValue()),
+				getIriId(objectUri));
+	}
+
+	@Override
+	public void writeTripleUriObject(Resource subject, IRI predicate,
+			String objectUri) throws RDFHandlerException {
+		addTriple(getResourceId(subject), getIriId(predicate.stringValue()),
+				getIriId(objectUri));
+	}
+
+	@Override
+	public void writeTripleValueObject(String subjectUri, IRI predicate,
+			Value object) throws RDFHandlerException {
+		addTriple(getIriId(subjectUri), getIriId(predicate.stringValue()),
+				getValueId(object));
+	}
+
+	@Override
+	public void writeTripleValueObject(Resource subject, IRI predicate,
+			Value object) throws RDFHandlerException {
+		addTriple(getResourceId(subject), getIriId(predicate.stringValue()),
+				getValueId(object));
+	}
+
+	@Override
+	public void writeTripleLiteralObject(Resource subject, IRI predicate,
+			String objectLexicalValue, IRI datatype) throws RDFHandlerException {
+		addTriple(getResourceId(subject), getIriId(predicate.stringValue()),
+				getLiteralId(objectLexicalValue, null, datatype.stringValue()));
+	}
+
+	void addTriple(int subject, int predicate, int object) {
+		this.subjects[this.blockTripleCount] = subject;
+		this.predicates[this.blockTripleCount] = predicate;
+		this.objects[this.blockTripleCount] = object;
+		this.blockTripleCount++;
+		this.tripleCount++;
+		if (this.blockTripleCount == this.blockSize) {
+			writeBlock();
+		}
+	}
+
+	int getValueId(Value value) {
+		if (value instanceof Resource) {
+			return getResourceId((Resource) value);
+		}
+		Literal literal = (Literal) value;
+		Optional<String> language = literal.getLanguage();
+		return getLiteralId(literal.getLabel(), language.orElse(null),
+				language.isPresent() ? null : literal.getDatatype()
+						.stringValue());
+	}
+
+	int getResourceId(Resource resource) {
+		if (resource instanceof IRI) {
+			return getIriId(resource.stringValue());
+		}
+		String id = ((BNode) resource).getID();
+		TermKey key = new TermKey(BNODE_TERM, id, null);
+		Integer termId = this.dictionary.get(key);
+		if (termId == null) {
+			this.terms.writeInt(BNODE_TERM);
+			this.terms.writeString(id);
+			termId = define(key);
+		}
+		return termId;
+	}
+
+	int getIriId(String iri) {
+		Integer termId = this.dictionary.get(iri);
+		if (termId == null) {
+			this.terms.writeInt(IRI_TERM);
+			this.terms.writeString(iri);
+			termId = define(iri);
+		}
+		return termId;
+	}
+
+	/**
+	 * Returns the number of a literal, which has either a language or a
+	 * datatype.
+	 */
+	int getLiteralId(String label, String language, String datatype) {
+		if (Vocabulary.XSD_STRING.equals(datatype)) {
+			datatype = null;
+		}
+		int kind = language != null ? LANGUAGE_LITERAL_TERM
+				: datatype != null ? TYPED_LITERAL_TERM : STRING_LITERAL_TERM;
+		TermKey key = new TermKey(kind, label,
+				language != null ? language : datatype);
+		Integer termId = this.dictionary.get(key);
+		if (termId == null) {
+			// the datatype is defined first
+			int datatypeId = datatype != null ? getIriId(datatype) : -1;
+			this.terms.writeInt(kind);
+			this.terms.writeString(label);
+			if (language != null) {
+				this.terms.writeString(language);
+			} else if (datatype != null) {
+				this.terms.writeInt(datatypeId);
+			}
+			termId = define(key);
+		}
+		return termId;
+	}
+
+	int define(Object key) {
+		int termId = this.dictionary.size();
+		this.dictionary.put(key, termId);
+		this.termCount++;
+		return termId;
+	}
+
+	/**
+	 * Writes the terms and triples of the current block, grouping triples by
+	 * predicate, and resets the dictionary if it is too large.
+	 */
+	void writeBlock() {
+		if (this.blockTripleCount == 0 && this.termCount == 0) {
+			return;
+		}
+		int count = this.blockTripleCount;
+		for (int i = 0; i < count; i++) {
+			this.sortKeys[i] = ((long) this.predicates[i] << 32) | i;
+		}
+		Arrays.sort(this.sortKeys, 0, count);
+		int sections = 0;
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || (this.sortKeys[i] >>> 32) != (this.sortKeys[i - 1] >>> 32)) {
+				sections++;
+			}
+		}
+
+		this.block.writeInt(BLOCK);
+		this.block.writeInt(this.termCount);
+		writeEncoded(this.block);
+		writeEncoded(this.terms);
+		this.block.writeInt(sections);
+		int start = 0;
+		while (start < count) {
+			int predicate = (int) (this.sortKeys[start] >>> 32);
+			int end = start;
+			while (end < count && (int) (this.sortKeys[end] >>> 32) == predicate) {
+				end++;
+			}
+			this.block.writeInt(predicate);
+			this.block.writeInt(end - start);
+			for (int i = start; i < end; i++) {
+				int triple = (int) this.sortKeys[i];
+				this.block.writeInt(this.subjects[triple]);
+				this.block.writeInt(this.objects[triple]);
+			}
+			if (this.block.length > BLOCK_FLUSH_SIZE) {
+				writeEncoded(this.block);
+			}
+			start = end;
+		}
+
+		this.termCount = 0;
+		this.blockTripleCount = 0;
+		if (this.dictionary.size() >= this.maxDictionarySize) {
+			this.block.writeInt(RESET);
+			this.dictionary.clear();
+		}
+		writeEncoded(this.block);
+	}
+
+	void writeEncoded(Encoder encoder) {
+		write(encoder.bytes, encoder.length);
+		encoder.reset();
+	}
+
+	void write(byte[] bytes, int length) {
+		try {
+			this.output.write(bytes, 0, length);
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	/**
+	 * Key of a blank node or literal in the dictionary.
+	 */
+	static class TermKey {
+
+		final int kind;
+		final String label;
+		final String qualifier;
+
+		TermKey(int kind, String label, String qualifier) {
+			this.kind = kind;
+			this.label = label;
+			this.qualifier = qualifier;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof TermKey)) {
+				return false;
+			}
+			TermKey key = (TermKey) other;
+			return this.kind == key.kind && this.label.equals(key.label)
+					&& Objects.equals(this.qualifier, key.qualifier);
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * this.kind + this.label.hashCode()) * 31
+					+ Objects.hashCode(this.qualifier);
+		}
+	}
+
+	/**
+	 * Growable buffer of variable-length integers and strings.
+	 */
+	static class Encoder {
+
+		byte[] bytes = new byte[1024];
+		int length = 0;
+
+		void writeInt(int value) {
+			ensureCapacity(5);
+			while ((value & ~0x7f) != 0) {
+				this.bytes[this.length++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			this.bytes[this.length++] = (byte) value;
+		}
+
+		void writeString(String string) {
+			byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+			writeInt(encoded.length);
+			ensureCapacity(encoded.length);
+			System.arraycopy(encoded, 0, this.bytes, this.length,
+					encoded.length);
+			this.length += encoded.length;
+		}
+
+		void ensureCapacity(int extra) {
+			if (this.length + extra > this.bytes.length) {
+				this.bytes = Arrays.copyOf(this.bytes, Math.max(
+						2 * this.bytes.length, this.length + extra));
+			}
+		}
+
+		void reset() {
+			this.length = 0;
+		}
+	}
+}
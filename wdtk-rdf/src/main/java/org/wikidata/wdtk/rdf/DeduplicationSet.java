@@ -0,0 +1,233 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Set of strings with bounded memory, used to avoid writing the same triples
+ * several times. Only 64 bit hashes of the strings are stored, in an
+ * open-addressing table of longs which grows up to a maximal capacity. When
+ * the table is full, new strings replace older ones, which are forgotten:
+ * these may then be added again, so that the corresponding triples are
+ * written twice. Such duplicates are harmless in RDF, and their number is
+ * reported by {@link #getEvictionCount()}. Conversely, two distinct strings
+ * with the same hash are considered equal, but this is very unlikely with 64
+ * bit hashes.
+ */
+public class DeduplicationSet {
+
+	/**
+	 * Maximal number of hashes stored by default, using 32MB of memory.
+	 */
+	public static final int DEFAULT_MAX_CAPACITY = 1 << 22;
+
+	static final int INITIAL_CAPACITY = 1 << 6;
+
+	/**
+	 * Number of slots inspected when looking for a hash, before evicting an
+	 * older hash.
+	 */
+	static final int MAX_PROBES = 8;
+
+	long[] table = new long[INITIAL_CAPACITY];
+	int size = 0;
+	int maxCapacity;
+	long evictionCount = 0;
+
+	/**
+	 * Creates a set with the default maximal capacity.
+	 */
+	public DeduplicationSet() {
+		this(DEFAULT_MAX_CAPACITY);
+	}
+
+	/**
+	 * Creates a set storing at most the given number of hashes.
+	 *
+	 * @param maxCapacity
+	 *            the maximal number of hashes, rounded up to a power of two
+	 */
+	public DeduplicationSet(int maxCapacity) {
+		setMaxCapacity(maxCapacity);
+	}
+
+	/**
+	 * Sets the maximal number of hashes stored. If the set is currently
+	 * larger, it is cleared, and the strings it contained are counted as
+	 * evicted.
+	 *
+	 * @param maxCapacity
+	 *            the maximal number of hashes, rounded up to a power of two
+	 */
+	public void setMaxCapacity(int maxCapacity) {
+		if (maxCapacity < 1 || maxCapacity > 1 << 30) {
+			throw new IllegalArgumentException(
+					"The capacity must be between 1 and 2^30");
+		}
+		this.maxCapacity = Math.max(MAX_PROBES,
+				Integer.highestOneBit(maxCapacity - 1) << 1);
+		if (this.table.length > this.maxCapacity) {
+			this.evictionCount += this.size;
+			this.table = new long[this.maxCapacity];
+			this.size = 0;
+		}
+	}
+
+	/**
+	 * Returns the maximal number of hashes stored.
+	 *
+	 * @return the maximal capacity
+	 */
+	public int getMaxCapacity() {
+		return this.maxCapacity;
+	}
+
+	/**
+	 * Adds a string to the set.
+	 *
+	 * @param string
+	 *            the string to add
+	 * @return true if the string was not in the set
+	 */
+	public boolean add(String string) {
+		long hash = hash(string);
+		while (true) {
+			int slot = find(this.table, hash);
+			if (slot >= 0 && this.table[slot] == hash) {
+				return false;
+			}
+			if (slot >= 0 && 4 * (this.size + 1) <= 3 * this.table.length) {
+				this.table[slot] = hash;
+				this.size++;
+				return true;
+			}
+			if (this.table.length < this.maxCapacity) {
+				grow();
+			} else {
+				if (slot < 0) {
+					slot = homeSlot(this.table, hash);
+					this.evictionCount++;
+				} else {
+					this.size++;
+				}
+				this.table[slot] = hash;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a string is in the set.
+	 *
+	 * @param string
+	 *            the string to look for
+	 * @return true if the string was added and not evicted since
+	 */
+	public boolean contains(String string) {
+		long hash = hash(string);
+		int slot = find(this.table, hash);
+		return slot >= 0 && this.table[slot] == hash;
+	}
+
+	/**
+	 * Returns the number of hashes currently stored.
+	 *
+	 * @return the size of the set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the number of strings which were forgotten to make room for
+	 * new ones. This is an upper bound on the number of duplicate triples
+	 * caused by the bounded capacity.
+	 *
+	 * @return the number of evicted strings
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * Removes all strings from the set, and releases its memory.
+	 */
+	public void clear() {
+		this.table = new long[Math.min(INITIAL_CAPACITY, this.maxCapacity)];
+		this.size = 0;
+	}
+
+	void grow() {
+		long[] newTable = new long[2 * this.table.length];
+		for (long hash : this.table) {
+			if (hash == 0) {
+				continue;
+			}
+			int slot = find(newTable, hash);
+			if (slot < 0) {
+				slot = homeSlot(newTable, hash);
+				this.size--;
+				this.evictionCount++;
+			}
+			newTable[slot] = hash;
+		}
+		this.table = newTable;
+	}
+
+	/**
+	 * Returns the slot of the table containing the hash or, if it is not
+	 * there, the first empty slot where it could be stored. Returns -1 if
+	 * there is no such slot.
+	 */
+	static int find(long[] table, long hash) {
+		int mask = table.length - 1;
+		int slot = homeSlot(table, hash);
+		for (int i = 0; i < MAX_PROBES; i++) {
+			long current = table[slot];
+			if (current == hash || current == 0) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	static int homeSlot(long[] table, long hash) {
+		return (int) (hash >>> 32) & (table.length - 1);
+	}
+
+	/**
+	 * Computes a 64 bit hash of a string, which is never 0, as 0 marks empty
+	 * slots.
+	 */
+	static long hash(String string) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < string.length(); i++) {
+			hash ^= string.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash == 0 ? 1 : hash;
+	}
+}
@@ -0,0 +1,413 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+/**
+ * Fingerprints of the items and properties of a dump, used to find the
+ * entities which changed between two dumps. The fingerprint of an entity is
+ * its revision id with a 64 bit hash of its content. Fingerprints can be
+ * computed by processing a dump with this object, and saved to a file with
+ * {@link #write(OutputStream)} to be compared with a later dump.
+ * <p>
+ * Since there are fingerprints for all the entities of a dump, they are
+ * stored in primitive arrays, in an open-addressing table whose keys are the
+ * numbers of the item and property ids, which takes about 24 bytes per slot.
+ * Ids which are not of the form "Q123" or "P123" are kept in a map.
+ *
+ * @see IncrementalRdfSerializer
+ */
+public class EntityFingerprints implements EntityDocumentProcessor {
+
+	static final int INITIAL_CAPACITY = 1 << 6;
+
+	/**
+	 * Encoded entity ids (see {@link #encodeId(String)}), or 0 for free slots.
+	 */
+	long[] keys = new long[INITIAL_CAPACITY];
+	long[] revisionIds = new long[INITIAL_CAPACITY];
+	long[] contentHashes = new long[INITIAL_CAPACITY];
+	int tableSize = 0;
+
+	/**
+	 * Fingerprints of the entities whose ids cannot be encoded.
+	 */
+	final Map<String, Fingerprint> otherFingerprints = new HashMap<>();
+
+	/**
+	 * Fingerprint of an entity document.
+	 */
+	public static class Fingerprint {
+
+		final long revisionId;
+		final long contentHash;
+
+		public Fingerprint(long revisionId, long contentHash) {
+			this.revisionId = revisionId;
+			this.contentHash = contentHash;
+		}
+
+		/**
+		 * Returns the revision id of the document.
+		 *
+		 * @return the revision id, or 0 if unknown
+		 */
+		public long getRevisionId() {
+			return this.revisionId;
+		}
+
+		/**
+		 * Returns a hash of the JSON serialization of the document, without
+		 * its revision id.
+		 *
+		 * @return the hash of the content
+		 */
+		public long getContentHash() {
+			return this.contentHash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Fingerprint)) {
+				return false;
+			}
+			Fingerprint fingerprint = (Fingerprint) other;
+			return this.revisionId == fingerprint.revisionId
+					&& this.contentHash == fingerprint.contentHash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(this.revisionId) * 31
+					+ Long.hashCode(this.contentHash);
+		}
+
+		@Override
+		public String toString() {
+			return this.revisionId + "\t" + Long.toHexString(this.contentHash);
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of an item or property document.
+	 *
+	 * @param document
+	 *            the document
+	 * @return the fingerprint of the document
+	 */
+	public static Fingerprint computeFingerprint(EntityDocument document) {
+		EntityDocument withoutRevision = document.withRevisionId(0);
+		String json;
+		if (withoutRevision instanceof ItemDocument) {
+			json = JsonSerializer.getJsonString((ItemDocument) withoutRevision);
+		} else if (withoutRevision instanceof PropertyDocument) {
+			json = JsonSerializer
+					.getJsonString((PropertyDocument) withoutRevision);
+		} else {
+			throw new IllegalArgumentException(
+					"Only items and properties can be fingerprinted");
+		}
+		if (json == null) {
+			throw new IllegalArgumentException("Could not serialize "
+					+ document.getEntityId().getId());
+		}
+		return new Fingerprint(document.getRevisionId(),
+				DeduplicationSet.hash(json));
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		put(itemDocument.getEntityId().getId(),
+				computeFingerprint(itemDocument));
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		put(propertyDocument.getEntityId().getId(),
+				computeFingerprint(propertyDocument));
+	}
+
+	/**
+	 * Returns the fingerprint of an entity.
+	 *
+	 * @param entityId
+	 *            the id of the entity, such as "Q42"
+	 * @return the fingerprint, or null if the entity is unknown
+	 */
+	public Fingerprint get(String entityId) {
+		long key = encodeId(entityId);
+		if (key == 0) {
+			return this.otherFingerprints.get(entityId);
+		}
+		int slot = findSlot(this.keys, key);
+		if (this.keys[slot] == 0) {
+			return null;
+		}
+		return new Fingerprint(this.revisionIds[slot], this.contentHashes[slot]);
+	}
+
+	/**
+	 * Sets the fingerprint of an entity.
+	 *
+	 * @param entityId
+	 *            the id of the entity, such as "Q42"
+	 * @param fingerprint
+	 *            the fingerprint of the entity
+	 */
+	public void put(String entityId, Fingerprint fingerprint) {
+		long key = encodeId(entityId);
+		if (key == 0) {
+			this.otherFingerprints.put(entityId, fingerprint);
+			return;
+		}
+		int slot = findSlot(this.keys, key);
+		if (this.keys[slot] == 0) {
+			if (4 * (this.tableSize + 1) > 3 * this.keys.length) {
+				grow();
+				slot = findSlot(this.keys, key);
+			}
+			this.keys[slot] = key;
+			this.tableSize++;
+		}
+		this.revisionIds[slot] = fingerprint.revisionId;
+		this.contentHashes[slot] = fingerprint.contentHash;
+	}
+
+	/**
+	 * Returns the ids of all entities with a fingerprint. The ids are only
+	 * created as strings when they are iterated.
+	 *
+	 * @return an unmodifiable view of the entity ids
+	 */
+	public Set<String> getEntityIds() {
+		return new AbstractSet<String>() {
+
+			@Override
+			public Iterator<String> iterator() {
+				return entityIdIterator();
+			}
+
+			@Override
+			public int size() {
+				return EntityFingerprints.this.size();
+			}
+
+			@Override
+			public boolean contains(Object entityId) {
+				return entityId instanceof String
+						&& get((String) entityId) != null;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of entities with a fingerprint.
+	 *
+	 * @return the number of entities
+	 */
+	public int size() {
+		return this.tableSize + this.otherFingerprints.size();
+	}
+
+	/**
+	 * Encodes an item or property id such as "Q42" as a positive number,
+	 * twice the number of the id, plus one for properties. Other ids, and ids
+	 * which would not be written back identically, such as "Q042", are
+	 * encoded as 0.
+	 */
+	static long encodeId(String entityId) {
+		int length = entityId.length();
+		if (length < 2 || length > 18 || entityId.charAt(1) == '0') {
+			return 0;
+		}
+		char type = entityId.charAt(0);
+		if (type != 'Q' && type != 'P') {
+			return 0;
+		}
+		long number = 0;
+		for (int i = 1; i < length; i++) {
+			char c = entityId.charAt(i);
+			if (c < '0' || c > '9') {
+				return 0;
+			}
+			number = 10 * number + (c - '0');
+		}
+		return 2 * number + (type == 'P' ? 1 : 0);
+	}
+
+	static String decodeId(long key) {
+		return ((key & 1) == 0 ? "Q" : "P") + (key >>> 1);
+	}
+
+	/**
+	 * Returns the slot of the given key, or the free slot where it should be
+	 * inserted.
+	 */
+	static int findSlot(long[] keys, long key) {
+		int mask = keys.length - 1;
+		int slot = (int) ((key * 0x9e3779b97f4a7c15L) >>> 32) & mask;
+		while (keys[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	void grow() {
+		long[] oldKeys = this.keys;
+		long[] oldRevisionIds = this.revisionIds;
+		long[] oldContentHashes = this.contentHashes;
+		this.keys = new long[2 * oldKeys.length];
+		this.revisionIds = new long[this.keys.length];
+		this.contentHashes = new long[this.keys.length];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = findSlot(this.keys, oldKeys[i]);
+				this.keys[slot] = oldKeys[i];
+				this.revisionIds[slot] = oldRevisionIds[i];
+				this.contentHashes[slot] = oldContentHashes[i];
+			}
+		}
+	}
+
+	/**
+	 * Iterates over the ids of the table, followed by the other ids.
+	 */
+	Iterator<String> entityIdIterator() {
+		Iterator<String> otherIds = this.otherFingerprints.keySet().iterator();
+		return new Iterator<String>() {
+
+			int slot = nextSlot(0);
+
+			int nextSlot(int start) {
+				while (start < keys.length && keys[start] == 0) {
+					start++;
+				}
+				return start;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return this.slot < keys.length || otherIds.hasNext();
+			}
+
+			@Override
+			public String next() {
+				if (this.slot < keys.length) {
+					String entityId = decodeId(keys[this.slot]);
+					this.slot = nextSlot(this.slot + 1);
+					return entityId;
+				} else if (otherIds.hasNext()) {
+					return otherIds.next();
+				}
+				throw new NoSuchElementException();
+			}
+		};
+	}
+
+	/**
+	 * Writes the fingerprints, so that they can be loaded later with
+	 * {@link #load(InputStream)}. Each line contains the id of an entity, its
+	 * revision id and the hexadecimal hash of its content, separated by
+	 * tabulations.
+	 *
+	 * @param output
+	 *            the stream to write to, which is not closed
+	 * @throws IOException
+	 *             if the fingerprints could not be written
+	 */
+	public void write(OutputStream output) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output,
+				StandardCharsets.UTF_8));
+		for (int i = 0; i < this.keys.length; i++) {
+			if (this.keys[i] != 0) {
+				writer.write(decodeId(this.keys[i]));
+				writer.write('\t');
+				writer.write(Long.toString(this.revisionIds[i]));
+				writer.write('\t');
+				writer.write(Long.toHexString(this.contentHashes[i]));
+				writer.write('\n');
+			}
+		}
+		for (Map.Entry<String, Fingerprint> entry : this.otherFingerprints
+				.entrySet()) {
+			writer.write(entry.getKey());
+			writer.write('\t');
+			writer.write(entry.getValue().toString());
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Reads fingerprints written by {@link #write(OutputStream)}.
+	 *
+	 * @param input
+	 *            the stream to read from, which is not closed
+	 * @return the fingerprints
+	 * @throws IOException
+	 *             if the fingerprints could not be read or are malformed
+	 */
+	public static EntityFingerprints load(InputStream input)
+			throws IOException {
+		EntityFingerprints result = new EntityFingerprints();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				input, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] fields = line.split("\t", -1);
+			try {
+				if (fields.length != 3 || fields[0].isEmpty()) {
+					throw new NumberFormatException();
+				}
+				result.put(fields[0], new Fingerprint(Long.parseLong(fields[1]),
+						Long.parseUnsignedLong(fields[2], 16)));
+			} catch (NumberFormatException e) {
+				throw new IOException("Invalid line in entity fingerprints: "
+						+ line);
+			}
+		}
+		return result;
+	}
+}
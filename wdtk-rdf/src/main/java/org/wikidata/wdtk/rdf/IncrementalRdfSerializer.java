@@ -0,0 +1,425 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+import org.wikidata.wdtk.rdf.EntityFingerprints.Fingerprint;
+
+/**
+ * RDF serializer writing only the entities which changed since a previous
+ * dump, so that a triple store can be updated without reloading a full
+ * export. The previous dump is described by its {@link EntityFingerprints},
+ * computed from the previous dump or loaded from a file saved after the
+ * previous export.
+ * <p>
+ * Processing the new dump with this serializer writes, as N-Triples, the
+ * triples of the entities which are new or whose content changed. The
+ * entities whose previous version must be removed from the store are
+ * collected, and the fingerprints of the new dump are available for the next
+ * export. The triples to delete can then be written by processing the
+ * previous dump with the processor returned by
+ * {@link #getDeletionSerializer(OutputStream)}. The deletions should be
+ * applied to the store before the insertions, since both contain the
+ * triples which are the same in the two versions of a changed entity. Both
+ * steps only keep the fingerprints and the ids of changed entities in
+ * memory, and the output is proportional to the number of changes.
+ * <p>
+ * Fingerprints loaded from a file only tell which entities are obsolete, not
+ * which triples were written for them: the deletions cannot be produced
+ * without the previous dump, which must be kept until they are written.
+ * <p>
+ * The deletions only contain the triples about the entities themselves and
+ * their statements. Value nodes, references and property declarations may be
+ * shared with other entities: they are identified by hashes of their content
+ * and never change, so they are not deleted. Triples with blank nodes, such
+ * as the values of "some value" snaks, cannot be deleted by matching them:
+ * they are left out of the deletions, and should be deleted by pattern
+ * instead, for instance all triples of the statements of the obsolete
+ * entities.
+ */
+public class IncrementalRdfSerializer implements EntityDocumentDumpProcessor {
+
+	final EntityFingerprints previousFingerprints;
+	final EntityFingerprints fingerprints = new EntityFingerprints();
+	final Set<String> obsoleteEntityIds = new HashSet<>();
+	final RdfSerializer insertions;
+	final Sites sites;
+	final PropertyRegister propertyRegister;
+
+	long unchangedCount = 0;
+	long changedCount = 0;
+	long addedCount = 0;
+	long deletedCount = 0;
+
+	/**
+	 * Creates a serializer writing the triples of the entities which changed
+	 * since the previous dump.
+	 *
+	 * @param output
+	 *            the stream to write the new triples to, as N-Triples
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            the register of property types
+	 * @param previousFingerprints
+	 *            the fingerprints of the previous dump
+	 */
+	public IncrementalRdfSerializer(OutputStream output, Sites sites,
+			PropertyRegister propertyRegister,
+			EntityFingerprints previousFingerprints) {
+		this.insertions = new RdfSerializer(RDFFormat.NTRIPLES, output, sites,
+				propertyRegister);
+		this.sites = sites;
+		this.propertyRegister = propertyRegister;
+		this.previousFingerprints = previousFingerprints;
+	}
+
+	/**
+	 * Sets the tasks that should be performed during export. The value should
+	 * be a combination of flags such as {@link RdfSerializer#TASK_STATEMENTS}.
+	 *
+	 * @param tasks
+	 *            the tasks to be performed
+	 */
+	public void setTasks(int tasks) {
+		this.insertions.setTasks(tasks);
+	}
+
+	/**
+	 * Returns the tasks that should be performed during export.
+	 *
+	 * @return tasks to be performed
+	 */
+	public int getTasks() {
+		return this.insertions.getTasks();
+	}
+
+	@Override
+	public void open() {
+		this.insertions.open();
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		if (hasChanged(itemDocument)) {
+			this.insertions.processItemDocument(itemDocument);
+		}
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		if (hasChanged(propertyDocument)) {
+			this.insertions.processPropertyDocument(propertyDocument);
+		}
+	}
+
+	/**
+	 * Records the fingerprint of a document of the new dump, and checks if
+	 * it differs from the previous one. The content is only hashed if the
+	 * revision ids are unknown or different.
+	 */
+	boolean hasChanged(EntityDocument document) {
+		String entityId = document.getEntityId().getId();
+		Fingerprint previous = this.previousFingerprints.get(entityId);
+		Fingerprint current;
+		if (previous != null && previous.revisionId != 0
+				&& previous.revisionId == document.getRevisionId()) {
+			current = previous;
+		} else {
+			current = EntityFingerprints.computeFingerprint(document);
+		}
+		this.fingerprints.put(entityId, current);
+
+		if (previous == null) {
+			this.addedCount++;
+			return true;
+		} else if (previous.contentHash == current.contentHash) {
+			this.unchangedCount++;
+			return false;
+		} else {
+			this.obsoleteEntityIds.add(entityId);
+			this.changedCount++;
+			return true;
+		}
+	}
+
+	@Override
+	public void close() {
+		for (String entityId : this.previousFingerprints.getEntityIds()) {
+			if (this.fingerprints.get(entityId) == null) {
+				this.obsoleteEntityIds.add(entityId);
+				this.deletedCount++;
+			}
+		}
+		this.insertions.close();
+	}
+
+	/**
+	 * Returns the fingerprints of the documents processed so far, to be
+	 * compared with the next dump.
+	 *
+	 * @return the fingerprints of the new dump
+	 */
+	public EntityFingerprints getFingerprints() {
+		return this.fingerprints;
+	}
+
+	/**
+	 * Returns the ids of the entities whose previous version must be deleted:
+	 * the entities which changed, and once the serializer is closed, those
+	 * which were deleted.
+	 *
+	 * @return an unmodifiable view of the entity ids
+	 */
+	public Set<String> getObsoleteEntityIds() {
+		return Collections.unmodifiableSet(this.obsoleteEntityIds);
+	}
+
+	/**
+	 * Returns the number of entities whose content did not change.
+	 *
+	 * @return the number of unchanged entities
+	 */
+	public long getUnchangedCount() {
+		return this.unchangedCount;
+	}
+
+	/**
+	 * Returns the number of entities whose content changed.
+	 *
+	 * @return the number of changed entities
+	 */
+	public long getChangedCount() {
+		return this.changedCount;
+	}
+
+	/**
+	 * Returns the number of entities which were not in the previous dump.
+	 *
+	 * @return the number of new entities
+	 */
+	public long getAddedCount() {
+		return this.addedCount;
+	}
+
+	/**
+	 * Returns the number of entities of the previous dump which were not
+	 * found in the new dump. This is only known once the serializer is
+	 * closed.
+	 *
+	 * @return the number of deleted entities
+	 */
+	public long getDeletedCount() {
+		return this.deletedCount;
+	}
+
+	/**
+	 * Returns the number of triples written for new and changed entities.
+	 *
+	 * @return number of triples
+	 */
+	public long getTripleCount() {
+		return this.insertions.getTripleCount();
+	}
+
+	/**
+	 * Returns a processor which, when given the documents of the previous
+	 * dump, writes as N-Triples the triples to delete for the obsolete
+	 * entities, except those with blank nodes. It should be used after this
+	 * serializer is closed. This requires the previous dump itself, even if
+	 * the previous fingerprints were loaded from a file.
+	 *
+	 * @param output
+	 *            the stream to write the deleted triples to
+	 * @return the processor for the previous dump
+	 */
+	public EntityDocumentDumpProcessor getDeletionSerializer(OutputStream output) {
+		return new DeletionSerializer(output, this.sites,
+				this.propertyRegister, this.obsoleteEntityIds, getTasks());
+	}
+
+	/**
+	 * Writes the triples of some entities, except those about shared nodes
+	 * and those with blank nodes.
+	 */
+	static class DeletionSerializer implements EntityDocumentDumpProcessor {
+
+		/**
+		 * Starts of the N-Triples lines of triples whose subject may be shared
+		 * by several entities.
+		 */
+		static final byte[][] SHARED_SUBJECTS = {
+				"_:".getBytes(StandardCharsets.UTF_8),
+				("<" + Vocabulary.PREFIX_WIKIDATA_VALUE)
+						.getBytes(StandardCharsets.UTF_8),
+				("<" + Vocabulary.PREFIX_WIKIDATA_REFERENCE)
+						.getBytes(StandardCharsets.UTF_8),
+				("<" + Vocabulary.PREFIX_PROPERTY)
+						.getBytes(StandardCharsets.UTF_8) };
+
+		final OutputStream output;
+		final Set<String> entityIds;
+		final ByteArrayOutputStream documentBuffer = new ByteArrayOutputStream();
+		final NTriplesRdfWriter rdfWriter = new NTriplesRdfWriter(
+				this.documentBuffer);
+		final RdfConverter rdfConverter;
+
+		long tripleCount = 0;
+
+		DeletionSerializer(OutputStream output, Sites sites,
+				PropertyRegister propertyRegister, Set<String> entityIds,
+				int tasks) {
+			this.output = output;
+			this.entityIds = entityIds;
+			this.rdfConverter = new RdfConverter(this.rdfWriter, sites,
+					propertyRegister) {
+				@Override
+				public void writeOWLDeclarations() {
+					// declarations are shared by all entities
+				}
+			};
+			this.rdfConverter.setTasks(tasks);
+		}
+
+		@Override
+		public void open() {
+		}
+
+		@Override
+		public void processItemDocument(ItemDocument itemDocument) {
+			if (this.entityIds.contains(itemDocument.getEntityId().getId())) {
+				this.rdfWriter.start();
+				this.rdfConverter.writeItemDocument(itemDocument);
+				writeDocument();
+			}
+		}
+
+		@Override
+		public void processPropertyDocument(PropertyDocument propertyDocument) {
+			if (this.entityIds.contains(propertyDocument.getEntityId().getId())) {
+				this.rdfWriter.start();
+				this.rdfConverter.writePropertyDocument(propertyDocument);
+				writeDocument();
+			}
+		}
+
+		/**
+		 * Writes the lines of the current document which are not about shared
+		 * nodes and do not contain blank nodes.
+		 */
+		void writeDocument() {
+			this.rdfWriter.finish();
+			byte[] bytes = this.documentBuffer.toByteArray();
+			this.documentBuffer.reset();
+			try {
+				int start = 0;
+				for (int i = 0; i < bytes.length; i++) {
+					if (bytes[i] != '\n') {
+						continue;
+					}
+					if (!isAboutSharedNode(bytes, start)
+							&& !hasBlankNodeObject(bytes, start, i)) {
+						this.output.write(bytes, start, i + 1 - start);
+						this.tripleCount++;
+					}
+					start = i + 1;
+				}
+			} catch (IOException e) { // we cannot recover here
+				throw new RDFHandlerException(e);
+			}
+		}
+
+		static boolean isAboutSharedNode(byte[] bytes, int start) {
+			for (byte[] prefix : SHARED_SUBJECTS) {
+				if (startsWith(bytes, start, prefix)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Checks if the object of an N-Triples line is a blank node. Subjects
+		 * which are blank nodes are already excluded as shared nodes.
+		 *
+		 * @param start
+		 *            the position of the first byte of the line
+		 * @param end
+		 *            the position of the line break ending the line
+		 */
+		static boolean hasBlankNodeObject(byte[] bytes, int start, int end) {
+			// lines end with " ." and blank node labels contain no spaces
+			int objectEnd = end - 2;
+			int i = objectEnd - 1;
+			while (i > start && bytes[i] != ' ') {
+				if (bytes[i] == '"') { // end of a literal
+					return false;
+				}
+				i--;
+			}
+			return i + 2 < objectEnd && bytes[i + 1] == '_' && bytes[i + 2] == ':';
+		}
+
+		static boolean startsWith(byte[] bytes, int start, byte[] prefix) {
+			if (start + prefix.length > bytes.length) {
+				return false;
+			}
+			for (int i = 0; i < prefix.length; i++) {
+				if (bytes[start + i] != prefix[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Returns the number of triples written so far.
+		 *
+		 * @return number of triples
+		 */
+		public long getTripleCount() {
+			return this.tripleCount;
+		}
+
+		@Override
+		public void close() {
+			try {
+				this.output.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e.toString(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+
+/**
+ * {@link ValueHasher} computing MD5 hashes of the values, as done by earlier
+ * versions of this library. It produces the same IRIs as these versions, but
+ * is slower than {@link Murmur3ValueHasher}. Some fields are hashed through
+ * their Java hash codes, so that different values can get the same IRI.
+ */
+public class Md5ValueHasher implements ValueHasher {
+
+	private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(
+					"Your Java does not support MD5 hashes. You should be concerned.");
+		}
+	});
+
+	@Override
+	public String getTimeValueHash(TimeValue value) {
+		MessageDigest md = getDigest();
+		updateWithLong(md, value.getYear());
+		md.update(value.getMonth());
+		md.update(value.getDay());
+		md.update(value.getHour());
+		md.update(value.getMinute());
+		md.update(value.getSecond());
+		md.update(value.getPrecision());
+		updateWithString(md, value.getPreferredCalendarModel());
+		updateWithInt(md, value.getBeforeTolerance());
+		updateWithInt(md, value.getAfterTolerance());
+		updateWithInt(md, value.getTimezoneOffset());
+		return Vocabulary.bytesToHex(md.digest());
+	}
+
+	@Override
+	public String getGlobeCoordinatesValueHash(GlobeCoordinatesValue value) {
+		MessageDigest md = getDigest();
+		updateWithString(md, value.getGlobe());
+		updateWithLong(md, Double.valueOf(value.getLatitude()).hashCode());
+		updateWithLong(md, Double.valueOf(value.getLongitude()).hashCode());
+		updateWithLong(md, Double.valueOf(value.getPrecision()).hashCode());
+		return Vocabulary.bytesToHex(md.digest());
+	}
+
+	@Override
+	public String getQuantityValueHash(QuantityValue value) {
+		MessageDigest md = getDigest();
+		updateWithInt(md, value.getNumericValue().hashCode());
+		if (value.getLowerBound() != null) {
+			updateWithInt(md, value.getLowerBound().hashCode());
+		}
+		if (value.getUpperBound() != null) {
+			updateWithInt(md, value.getUpperBound().hashCode());
+		}
+		updateWithInt(md, value.getUnit().hashCode());
+		return Vocabulary.bytesToHex(md.digest());
+	}
+
+	@Override
+	public String getReferenceHash(Reference reference) {
+		MessageDigest md = getDigest();
+		reference.getSnakGroups().stream()
+				.flatMap(g -> g.getSnaks().stream())
+				.map(Objects::hashCode)
+				.sorted()
+				.forEach(i -> updateWithInt(md, i));
+		return Vocabulary.bytesToHex(md.digest());
+	}
+
+	private MessageDigest getDigest() {
+		MessageDigest md = this.digests.get();
+		md.reset();
+		return md;
+	}
+
+	static void updateWithLong(MessageDigest md, long x) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			md.update((byte) (x >>> shift));
+		}
+	}
+
+	static void updateWithInt(MessageDigest md, int x) {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			md.update((byte) (x >>> shift));
+		}
+	}
+
+	static void updateWithString(MessageDigest md, String s) {
+		if (s == null) {
+			return;
+		}
+		md.update(s.getBytes(StandardCharsets.UTF_8));
+	}
+}
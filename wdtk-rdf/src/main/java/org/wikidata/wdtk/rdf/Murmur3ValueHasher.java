@@ -0,0 +1,511 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.NoValueSnak;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.Snak;
+import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
+import org.wikidata.wdtk.datamodel.interfaces.SnakVisitor;
+import org.wikidata.wdtk.datamodel.interfaces.SomeValueSnak;
+import org.wikidata.wdtk.datamodel.interfaces.StringValue;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+import org.wikidata.wdtk.datamodel.interfaces.UnsupportedValue;
+import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+import org.wikidata.wdtk.datamodel.interfaces.ValueVisitor;
+
+/**
+ * {@link ValueHasher} computing 128 bit MurmurHash3 hashes (x64 variant) of a
+ * canonical binary encoding of the values. Unlike {@link Md5ValueHasher}, all
+ * the fields of the values are encoded fully, so that distinct values only
+ * get the same IRI in case of hash collisions. The snaks of references are
+ * encoded with their property and their value, as the values of statements.
+ * The encodings are written into a buffer which is reused by each thread.
+ */
+public class Murmur3ValueHasher implements ValueHasher {
+
+	static final byte TIME_VALUE = 1;
+	static final byte GLOBE_COORDINATES_VALUE = 2;
+	static final byte QUANTITY_VALUE = 3;
+	static final byte REFERENCE = 4;
+	static final byte ENTITY_ID_VALUE = 5;
+	static final byte MONOLINGUAL_TEXT_VALUE = 6;
+	static final byte STRING_VALUE = 7;
+	static final byte UNSUPPORTED_VALUE = 8;
+	static final byte VALUE_SNAK = 9;
+	static final byte SOME_VALUE_SNAK = 10;
+	static final byte NO_VALUE_SNAK = 11;
+
+	private final ThreadLocal<Encoder> encoders = ThreadLocal
+			.withInitial(Encoder::new);
+
+	private final ThreadLocal<SnakEncoder> snakEncoders = ThreadLocal
+			.withInitial(SnakEncoder::new);
+
+	@Override
+	public String getTimeValueHash(TimeValue value) {
+		Encoder encoder = getEncoder(TIME_VALUE);
+		encoder.writeTimeValue(value);
+		return encoder.hash();
+	}
+
+	@Override
+	public String getGlobeCoordinatesValueHash(GlobeCoordinatesValue value) {
+		Encoder encoder = getEncoder(GLOBE_COORDINATES_VALUE);
+		encoder.writeGlobeCoordinatesValue(value);
+		return encoder.hash();
+	}
+
+	@Override
+	public String getQuantityValueHash(QuantityValue value) {
+		Encoder encoder = getEncoder(QUANTITY_VALUE);
+		encoder.writeQuantityValue(value);
+		return encoder.hash();
+	}
+
+	/**
+	 * Encodes each snak of the reference separately, and the encodings in
+	 * their byte order, so that the hash does not depend on the order of the
+	 * snaks. The snaks are encoded one after the other in the buffer of the
+	 * snak encoder, and sorted by their offsets, so that no memory is
+	 * allocated for them.
+	 */
+	@Override
+	public String getReferenceHash(Reference reference) {
+		SnakEncoder snakEncoder = this.snakEncoders.get();
+		snakEncoder.clear();
+		for (SnakGroup snakGroup : reference.getSnakGroups()) {
+			for (Snak snak : snakGroup) {
+				snakEncoder.addSnak(snak);
+			}
+		}
+		snakEncoder.sortSnaks();
+
+		Encoder encoder = getEncoder(REFERENCE);
+		encoder.writeInt(snakEncoder.snakCount);
+		for (int i = 0; i < snakEncoder.snakCount; i++) {
+			int snak = snakEncoder.order[i];
+			encoder.writeBytes(snakEncoder.bytes, snakEncoder.bounds[snak],
+					snakEncoder.bounds[snak + 1]);
+		}
+		return encoder.hash();
+	}
+
+	private Encoder getEncoder(byte kind) {
+		Encoder encoder = this.encoders.get();
+		encoder.length = 0;
+		encoder.writeByte(kind);
+		return encoder;
+	}
+
+	/**
+	 * Compares two ranges of an array in lexicographic order of their
+	 * unsigned bytes.
+	 */
+	static int compareBytes(byte[] bytes, int start1, int end1, int start2,
+			int end2) {
+		int length = Math.min(end1 - start1, end2 - start2);
+		for (int i = 0; i < length; i++) {
+			byte a = bytes[start1 + i];
+			byte b = bytes[start2 + i];
+			if (a != b) {
+				return (a & 0xff) - (b & 0xff);
+			}
+		}
+		return (end1 - start1) - (end2 - start2);
+	}
+
+	/**
+	 * Growable buffer holding the encoding of a value.
+	 */
+	static class Encoder {
+
+		byte[] bytes = new byte[128];
+
+		int length = 0;
+
+		void writeByte(byte b) {
+			ensureCapacity(1);
+			this.bytes[this.length++] = b;
+		}
+
+		void writeInt(int x) {
+			ensureCapacity(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				this.bytes[this.length++] = (byte) (x >>> shift);
+			}
+		}
+
+		void writeLong(long x) {
+			ensureCapacity(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				this.bytes[this.length++] = (byte) (x >>> shift);
+			}
+		}
+
+		void writeDouble(double x) {
+			writeLong(Double.doubleToLongBits(x));
+		}
+
+		/**
+		 * Writes the length of the array followed by its bytes.
+		 */
+		void writeBytes(byte[] b, int start, int end) {
+			writeInt(end - start);
+			ensureCapacity(end - start);
+			System.arraycopy(b, start, this.bytes, this.length, end - start);
+			this.length += end - start;
+		}
+
+		/**
+		 * Writes the length of the string followed by its UTF-16 code units,
+		 * or -1 if the string is null.
+		 */
+		void writeString(String s) {
+			if (s == null) {
+				writeInt(-1);
+				return;
+			}
+			int stringLength = s.length();
+			writeInt(stringLength);
+			ensureCapacity(2 * stringLength);
+			for (int i = 0; i < stringLength; i++) {
+				char c = s.charAt(i);
+				this.bytes[this.length++] = (byte) (c >>> 8);
+				this.bytes[this.length++] = (byte) c;
+			}
+		}
+
+		void writeTimeValue(TimeValue value) {
+			writeLong(value.getYear());
+			writeByte(value.getMonth());
+			writeByte(value.getDay());
+			writeByte(value.getHour());
+			writeByte(value.getMinute());
+			writeByte(value.getSecond());
+			writeByte(value.getPrecision());
+			writeString(value.getPreferredCalendarModel());
+			writeInt(value.getBeforeTolerance());
+			writeInt(value.getAfterTolerance());
+			writeInt(value.getTimezoneOffset());
+		}
+
+		void writeGlobeCoordinatesValue(GlobeCoordinatesValue value) {
+			writeString(value.getGlobe());
+			writeDouble(value.getLatitude());
+			writeDouble(value.getLongitude());
+			writeDouble(value.getPrecision());
+		}
+
+		void writeQuantityValue(QuantityValue value) {
+			writeString(value.getNumericValue().toString());
+			writeString(value.getLowerBound() == null ? null : value
+					.getLowerBound().toString());
+			writeString(value.getUpperBound() == null ? null : value
+					.getUpperBound().toString());
+			writeString(value.getUnit());
+		}
+
+		void ensureCapacity(int extra) {
+			if (this.length + extra > this.bytes.length) {
+				byte[] newBytes = new byte[Math.max(2 * this.bytes.length,
+						this.length + extra)];
+				System.arraycopy(this.bytes, 0, newBytes, 0, this.length);
+				this.bytes = newBytes;
+			}
+		}
+
+		String hash() {
+			return murmurHash3(this.bytes, this.length);
+		}
+	}
+
+	/**
+	 * Encoder of the snaks of references: the property, the type of snak and
+	 * the value if any, preceded by its kind.
+	 */
+	static class SnakEncoder extends Encoder implements SnakVisitor<Void>,
+			ValueVisitor<Void> {
+
+		/**
+		 * Number of snaks encoded in the buffer.
+		 */
+		int snakCount = 0;
+
+		/**
+		 * Offsets of the encodings: snak i is encoded between bounds[i] and
+		 * bounds[i + 1].
+		 */
+		int[] bounds = new int[17];
+
+		/**
+		 * Indexes of the snaks, in the byte order of their encodings after
+		 * {@link #sortSnaks()}.
+		 */
+		int[] order = new int[16];
+
+		void clear() {
+			this.length = 0;
+			this.snakCount = 0;
+		}
+
+		void addSnak(Snak snak) {
+			snak.accept(this);
+			if (this.snakCount + 2 > this.bounds.length) {
+				this.bounds = Arrays.copyOf(this.bounds, 2 * this.bounds.length);
+				this.order = Arrays.copyOf(this.order, 2 * this.order.length);
+			}
+			this.bounds[++this.snakCount] = this.length;
+		}
+
+		/**
+		 * Sorts the snaks by insertion, since references only have a few
+		 * snaks.
+		 */
+		void sortSnaks() {
+			for (int i = 0; i < this.snakCount; i++) {
+				int snak = i;
+				int j = i;
+				while (j > 0 && compareSnaks(this.order[j - 1], snak) > 0) {
+					this.order[j] = this.order[j - 1];
+					j--;
+				}
+				this.order[j] = snak;
+			}
+		}
+
+		int compareSnaks(int snak1, int snak2) {
+			return compareBytes(this.bytes, this.bounds[snak1],
+					this.bounds[snak1 + 1], this.bounds[snak2],
+					this.bounds[snak2 + 1]);
+		}
+
+		@Override
+		public Void visit(ValueSnak snak) {
+			writeString(snak.getPropertyId().getIri());
+			writeByte(VALUE_SNAK);
+			return snak.getValue().accept(this);
+		}
+
+		@Override
+		public Void visit(SomeValueSnak snak) {
+			writeString(snak.getPropertyId().getIri());
+			writeByte(SOME_VALUE_SNAK);
+			return null;
+		}
+
+		@Override
+		public Void visit(NoValueSnak snak) {
+			writeString(snak.getPropertyId().getIri());
+			writeByte(NO_VALUE_SNAK);
+			return null;
+		}
+
+		@Override
+		public Void visit(EntityIdValue value) {
+			writeByte(ENTITY_ID_VALUE);
+			writeString(value.getIri());
+			return null;
+		}
+
+		@Override
+		public Void visit(GlobeCoordinatesValue value) {
+			writeByte(GLOBE_COORDINATES_VALUE);
+			writeGlobeCoordinatesValue(value);
+			return null;
+		}
+
+		@Override
+		public Void visit(MonolingualTextValue value) {
+			writeByte(MONOLINGUAL_TEXT_VALUE);
+			writeString(value.getText());
+			writeString(value.getLanguageCode());
+			return null;
+		}
+
+		@Override
+		public Void visit(QuantityValue value) {
+			writeByte(QUANTITY_VALUE);
+			writeQuantityValue(value);
+			return null;
+		}
+
+		@Override
+		public Void visit(StringValue value) {
+			writeByte(STRING_VALUE);
+			writeString(value.getString());
+			return null;
+		}
+
+		@Override
+		public Void visit(TimeValue value) {
+			writeByte(TIME_VALUE);
+			writeTimeValue(value);
+			return null;
+		}
+
+		/**
+		 * The contents of unsupported values are not exposed, so only their
+		 * hash code is encoded besides their type.
+		 */
+		@Override
+		public Void visit(UnsupportedValue value) {
+			writeByte(UNSUPPORTED_VALUE);
+			writeString(value.getTypeJsonString());
+			writeInt(value.hashCode());
+			return null;
+		}
+	}
+
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	/**
+	 * Computes the 128 bit MurmurHash3 (x64 variant, seed 0) of the first bytes
+	 * of an array.
+	 *
+	 * @param data
+	 *            the array to hash
+	 * @param length
+	 *            the number of bytes to hash
+	 * @return the hash, as 32 lowercase hexadecimal digits
+	 */
+	@SuppressWarnings("fallthrough")
+	static String murmurHash3(byte[] data, int length) {
+		long h1 = 0;
+		long h2 = 0;
+		int blocks = length / 16;
+
+		for (int i = 0; i < blocks; i++) {
+			long k1 = getLittleEndianLong(data, 16 * i);
+			long k2 = getLittleEndianLong(data, 16 * i + 8);
+
+			h1 ^= mixK1(k1);
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+
+			h2 ^= mixK2(k2);
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+
+		int tail = 16 * blocks;
+		long k1 = 0;
+		long k2 = 0;
+		switch (length & 15) {
+		case 15:
+			k2 ^= ((long) data[tail + 14] & 0xff) << 48;
+		case 14:
+			k2 ^= ((long) data[tail + 13] & 0xff) << 40;
+		case 13:
+			k2 ^= ((long) data[tail + 12] & 0xff) << 32;
+		case 12:
+			k2 ^= ((long) data[tail + 11] & 0xff) << 24;
+		case 11:
+			k2 ^= ((long) data[tail + 10] & 0xff) << 16;
+		case 10:
+			k2 ^= ((long) data[tail + 9] & 0xff) << 8;
+		case 9:
+			k2 ^= ((long) data[tail + 8] & 0xff);
+			h2 ^= mixK2(k2);
+		case 8:
+			k1 ^= ((long) data[tail + 7] & 0xff) << 56;
+		case 7:
+			k1 ^= ((long) data[tail + 6] & 0xff) << 48;
+		case 6:
+			k1 ^= ((long) data[tail + 5] & 0xff) << 40;
+		case 5:
+			k1 ^= ((long) data[tail + 4] & 0xff) << 32;
+		case 4:
+			k1 ^= ((long) data[tail + 3] & 0xff) << 24;
+		case 3:
+			k1 ^= ((long) data[tail + 2] & 0xff) << 16;
+		case 2:
+			k1 ^= ((long) data[tail + 1] & 0xff) << 8;
+		case 1:
+			k1 ^= ((long) data[tail] & 0xff);
+			h1 ^= mixK1(k1);
+		}
+
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+		h1 += h2;
+		h2 += h1;
+
+		char[] hexChars = new char[32];
+		writeHex(h1, hexChars, 0);
+		writeHex(h2, hexChars, 16);
+		return new String(hexChars);
+	}
+
+	private static long getLittleEndianLong(byte[] data, int offset) {
+		long result = 0;
+		for (int i = 7; i >= 0; i--) {
+			result = (result << 8) | (data[offset + i] & 0xff);
+		}
+		return result;
+	}
+
+	private static long mixK1(long k1) {
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		return k1 * C2;
+	}
+
+	private static long mixK2(long k2) {
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		return k2 * C1;
+	}
+
+	private static long fmix(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	/**
+	 * Writes the bytes of a long in little-endian order as hexadecimal digits,
+	 * following the usual byte order of MurmurHash3 digests.
+	 */
+	private static void writeHex(long x, char[] hexChars, int offset) {
+		for (int i = 0; i < 8; i++) {
+			int v = (int) (x >>> (8 * i)) & 0xff;
+			hexChars[offset + 2 * i] = Vocabulary.hexArray[v >>> 4];
+			hexChars[offset + 2 * i + 1] = Vocabulary.hexArray[v & 0x0f];
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+
+/**
+ * {@link RdfWriter} producing N-Triples without going through rdf4j. Terms
+ * given as strings are encoded directly as UTF-8 into a reusable buffer,
+ * without creating {@link IRI} or {@link Literal} objects, and the encodings
+ * of the constant IRIs of {@link RdfWriter} and {@link Vocabulary} are
+ * computed once. The output is the same as that of the rdf4j N-Triples
+ * writer: non-ASCII characters are not escaped, characters which are not
+ * allowed in IRIs are percent-encoded, and literals of type xsd:string are
+ * written as plain literals.
+ */
+public class NTriplesRdfWriter extends RdfWriter {
+
+	/**
+	 * Size of the buffer, which is written to the output when full.
+	 */
+	static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * IRI constants of {@link RdfWriter} whose encodings are precomputed.
+	 */
+	static final IRI[] CONSTANT_IRI_LIST = {
+			RdfWriter.RDF_TYPE, RdfWriter.RDFS_LABEL, RdfWriter.RDFS_SEE_ALSO,
+			RdfWriter.RDFS_LITERAL, RdfWriter.RDFS_SUBCLASS_OF,
+			RdfWriter.RDFS_SUBPROPERTY_OF, RdfWriter.OWL_THING, RdfWriter.OWL_CLASS,
+			RdfWriter.OWL_OBJECT_PROPERTY, RdfWriter.OWL_DATATYPE_PROPERTY,
+			RdfWriter.OWL_RESTRICTION, RdfWriter.OWL_SOME_VALUES_FROM,
+			RdfWriter.OWL_ON_PROPERTY, RdfWriter.OWL_COMPLEMENT_OF,
+			RdfWriter.XSD_DOUBLE, RdfWriter.XSD_DECIMAL, RdfWriter.XSD_INT,
+			RdfWriter.XSD_DATE, RdfWriter.XSD_G_YEAR, RdfWriter.XSD_G_YEAR_MONTH,
+			RdfWriter.XSD_DATETIME, RdfWriter.XSD_STRING, RdfWriter.SKOS_ALT_LABEL,
+			RdfWriter.SCHEMA_ABOUT, RdfWriter.SCHEMA_ARTICLE,
+			RdfWriter.SCHEMA_DESCRIPTION, RdfWriter.SCHEMA_IN_LANGUAGE,
+			RdfWriter.PROV_WAS_DERIVED_FROM, RdfWriter.WB_ITEM,
+			RdfWriter.WB_REFERENCE, RdfWriter.WB_PROPERTY, RdfWriter.WB_STATEMENT,
+			RdfWriter.WB_QUANTITY_VALUE, RdfWriter.WB_TIME_VALUE,
+			RdfWriter.WB_GLOBE_COORDINATES_VALUE, RdfWriter.WB_PROPERTY_TYPE,
+			RdfWriter.WB_GEO_GLOBE, RdfWriter.WB_GEO_LATITUDE,
+			RdfWriter.WB_GEO_LONGITUDE, RdfWriter.WB_GEO_PRECISION, RdfWriter.WB_TIME,
+			RdfWriter.WB_TIME_PRECISION, RdfWriter.WB_TIME_TIMEZONE,
+			RdfWriter.WB_TIME_CALENDAR_MODEL, RdfWriter.WB_QUANTITY_AMOUNT,
+			RdfWriter.WB_QUANTITY_LOWER_BOUND, RdfWriter.WB_QUANTITY_UPPER_BOUND,
+			RdfWriter.WB_QUANTITY_UNIT, RdfWriter.OGC_LOCATION, RdfWriter.WB_RANK,
+			RdfWriter.WB_BEST_RANK, RdfWriter.WB_BADGE };
+
+	/**
+	 * IRI string constants of {@link Vocabulary} used as subjects or objects,
+	 * whose encodings are precomputed in addition to those of
+	 * {@link #CONSTANT_IRI_LIST}.
+	 */
+	static final String[] CONSTANT_IRI_STRING_LIST = {
+			Vocabulary.RDF_LANG_STRING, Vocabulary.WB_NORMAL_RANK,
+			Vocabulary.WB_PREFERRED_RANK, Vocabulary.WB_DEPRECATED_RANK,
+			Vocabulary.WB_NO_UNIT, Vocabulary.WB_DIRECT_CLAIM_PROP,
+			Vocabulary.WB_CLAIM_PROP, Vocabulary.WB_STATEMENT_PROP,
+			Vocabulary.WB_STATEMENT_VALUE_PROP, Vocabulary.WB_QUALIFIER_PROP,
+			Vocabulary.WB_QUALIFIER_VALUE_PROP, Vocabulary.WB_REFERENCE_PROP,
+			Vocabulary.WB_REFERENCE_VALUE_PROP, Vocabulary.WB_NO_VALUE_PROP };
+
+	/**
+	 * Encodings of the IRIs of {@link #CONSTANT_IRI_LIST}.
+	 */
+	static final Map<IRI, byte[]> CONSTANT_IRIS = new IdentityHashMap<>();
+
+	/**
+	 * Encodings of the IRIs of {@link #CONSTANT_IRI_LIST} and
+	 * {@link #CONSTANT_IRI_STRING_LIST}, by string.
+	 */
+	static final Map<String, byte[]> CONSTANT_IRI_STRINGS = new HashMap<>();
+
+	static {
+		for (IRI iri : CONSTANT_IRI_LIST) {
+			byte[] bytes = encodeIri(iri.stringValue());
+			CONSTANT_IRIS.put(iri, bytes);
+			CONSTANT_IRI_STRINGS.put(iri.stringValue(), bytes);
+		}
+		for (String iri : CONSTANT_IRI_STRING_LIST) {
+			CONSTANT_IRI_STRINGS.put(iri, encodeIri(iri));
+		}
+	}
+
+	static final byte[] XSD_INT_SUFFIX = ("^^<" + Vocabulary.XSD_INT + ">")
+			.getBytes(StandardCharsets.UTF_8);
+
+	final OutputStream output;
+
+	final byte[] buffer;
+
+	int position = 0;
+
+	/**
+	 * Creates a writer of N-Triples.
+	 *
+	 * @param output
+	 *            the stream to write to
+	 */
+	public NTriplesRdfWriter(OutputStream output) {
+		this(output, BUFFER_SIZE);
+	}
+
+	NTriplesRdfWriter(OutputStream output, int bufferSize) {
+		this.output = output;
+		this.buffer = new byte[bufferSize];
+	}
+
+	@Override
+	public void start() throws RDFHandlerException {
+		this.tripleCount = 0;
+		this.position = 0;
+	}
+
+	@Override
+	public void finish() throws RDFHandlerException {
+		try {
+			flushBuffer();
+			this.output.flush();
+		} catch (IOException e) {
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	@Override
+	public void writeNamespaceDeclaration(String prefix, String uri)
+			throws RDFHandlerException {
+		// N-Triples has no namespaces
+	}
+
+	@Override
+	public void writeTripleStringObject(Resource subject, IRI predicate,
+			String objectLiteral) throws RDFHandlerException {
+		startTriple(subject, predicate);
+		writeLiteral(objectLiteral);
+		endTriple();
+	}
+
+	@Override
+	public void writeTripleIntegerObject(Resource subject, IRI predicate,
+			int objectLiteral) throws RDFHandlerException {
+		startTriple(subject, predicate);
+		writeLiteral(Integer.toString(objectLiteral));
+		writeBytes(XSD_INT_SUFFIX);
+		endTriple();
+	}
+
+	@Override
+	public void writeTripleUriObject(String subjectUri, IRI predicate,
+			String objectUri) throws RDFHandlerException {
+		startTriple(subjectUri, predicate);
+		writeIri(objectUri);
+		endTriple();
+	}
+
+	@Override
+	public void writeTripleUriObject(Resource subject, IRI predicate,
+			String objectUri) throws RDFHandlerException {
+		startTriple(subject, predicate);
+		writeIri(objectUri);
+		endTriple();
+	}
+
+	@Override
+	public void writeTripleValueObject(String subjectUri, IRI predicate,
+			Value object) throws RDFHandlerException {
+		startTriple(subjectUri, predicate);
+		writeValue(object);
+		endTriple();
+	}
+
+	@Override
+	public void writeTripleValueObject(Resource subject, IRI predicate,
+			Value object) throws RDFHandlerException {
+		startTriple(subject, predicate);
+		writeValue(object);
+		endTriple();
+	}
+
+	@Override
+	public void writeTripleLiteralObject(Resource subject, IRI predicate,
+			String objectLexicalValue, IRI datatype) throws RDFHandlerException {
+		startTriple(subject, predicate);
+		writeLiteral(objectLexicalValue);
+		writeDatatype(datatype);
+		endTriple();
+	}
+
+	void startTriple(Resource subject, IRI predicate) {
+		writeResource(subject);
+		writeByte(' ');
+		writeIri(predicate);
+		writeByte(' ');
+	}
+
+	void startTriple(String subjectUri, IRI predicate) {
+		writeIri(subjectUri);
+		writeByte(' ');
+		writeIri(predicate);
+		writeByte(' ');
+	}
+
+	void endTriple() {
+		ensureCapacity(3);
+		this.buffer[this.position++] = ' ';
+		this.buffer[this.position++] = '.';
+		this.buffer[this.position++] = '\n';
+		this.tripleCount++;
+	}
+
+	void writeValue(Value value) {
+		if (value instanceof Resource) {
+			writeResource((Resource) value);
+		} else {
+			Literal literal = (Literal) value;
+			writeLiteral(literal.getLabel());
+			Optional<String> language = literal.getLanguage();
+			if (language.isPresent()) {
+				writeByte('@');
+				writeString(language.get(), false);
+			} else {
+				writeDatatype(literal.getDatatype());
+			}
+		}
+	}
+
+	void writeResource(Resource resource) {
+		if (resource instanceof IRI) {
+			writeIri((IRI) resource);
+		} else {
+			writeByte('_');
+			writeByte(':');
+			writeString(((BNode) resource).getID(), false);
+		}
+	}
+
+	void writeIri(IRI iri) {
+		byte[] bytes = CONSTANT_IRIS.get(iri);
+		if (bytes != null) {
+			writeBytes(bytes);
+		} else {
+			writeIriString(iri.stringValue());
+		}
+	}
+
+	void writeIri(String iri) {
+		byte[] bytes = CONSTANT_IRI_STRINGS.get(iri);
+		if (bytes != null) {
+			writeBytes(bytes);
+		} else {
+			writeIriString(iri);
+		}
+	}
+
+	void writeIriString(String iri) {
+		writeByte('<');
+		writeString(iri, true);
+		writeByte('>');
+	}
+
+	void writeLiteral(String lexicalValue) {
+		writeByte('"');
+		writeString(lexicalValue, false);
+		writeByte('"');
+	}
+
+	/**
+	 * Writes the datatype of a literal, unless it is xsd:string.
+	 */
+	void writeDatatype(IRI datatype) {
+		if (!RdfWriter.XSD_STRING.equals(datatype)) {
+			writeByte('^');
+			writeByte('^');
+			writeIri(datatype);
+		}
+	}
+
+	void writeByte(char c) {
+		ensureCapacity(1);
+		this.buffer[this.position++] = (byte) c;
+	}
+
+	void writeBytes(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		if (bytes.length > this.buffer.length) {
+			try {
+				this.output.write(bytes);
+			} catch (IOException e) {
+				throw new RDFHandlerException(e);
+			}
+			return;
+		}
+		System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+		this.position += bytes.length;
+	}
+
+	/**
+	 * Encodes a string as UTF-8 into the buffer, encoding the characters
+	 * which are not allowed in IRIs or in literals as the rdf4j N-Triples
+	 * writer does. In IRIs, they are percent-encoded; in literals, only tabs,
+	 * line breaks, quotes and backslashes are escaped. Unpaired surrogates
+	 * are replaced by a question mark.
+	 *
+	 * @param string
+	 *            the string to write
+	 * @param iri
+	 *            true if the string is an IRI, false if it is a literal
+	 */
+	void writeString(String string, boolean iri) {
+		int length = string.length();
+		for (int i = 0; i < length; i++) {
+			char c = string.charAt(i);
+			// at most 4 bytes are written per character, for surrogate pairs
+			ensureCapacity(4);
+			if (c < 0x80) {
+				if (iri) {
+					if (isAllowedInIri(c)) {
+						this.buffer[this.position++] = (byte) c;
+					} else {
+						percentEncode(c);
+					}
+				} else {
+					writeLiteralCharacter(c);
+				}
+			} else if (c < 0x800) {
+				this.buffer[this.position++] = (byte) (0xc0 | (c >> 6));
+				this.buffer[this.position++] = (byte) (0x80 | (c & 0x3f));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(string.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, string.charAt(++i));
+				this.buffer[this.position++] = (byte) (0xf0 | (codePoint >> 18));
+				this.buffer[this.position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				this.buffer[this.position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				this.buffer[this.position++] = (byte) (0x80 | (codePoint & 0x3f));
+			} else if (Character.isSurrogate(c)) {
+				this.buffer[this.position++] = '?';
+			} else {
+				this.buffer[this.position++] = (byte) (0xe0 | (c >> 12));
+				this.buffer[this.position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				this.buffer[this.position++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+	}
+
+	static boolean isAllowedInIri(char c) {
+		return c > 0x20 && c != '<' && c != '>' && c != '"' && c != '{'
+				&& c != '}' && c != '|' && c != '^' && c != '`' && c != '\\'
+				&& c != 0x7f;
+	}
+
+	/**
+	 * Percent-encodes an ASCII character. As in rdf4j, the hexadecimal code
+	 * is not padded, so that control characters below 0x10 take a single
+	 * digit.
+	 */
+	void percentEncode(char c) {
+		this.buffer[this.position++] = '%';
+		if (c >= 0x10) {
+			this.buffer[this.position++] = hexDigit(c >> 4);
+		}
+		this.buffer[this.position++] = hexDigit(c & 0xf);
+	}
+
+	static byte hexDigit(int value) {
+		return (byte) Character.toUpperCase(Character.forDigit(value, 16));
+	}
+
+	void writeLiteralCharacter(char c) {
+		switch (c) {
+		case '\\':
+			this.buffer[this.position++] = '\\';
+			this.buffer[this.position++] = '\\';
+			return;
+		case '"':
+			this.buffer[this.position++] = '\\';
+			this.buffer[this.position++] = '"';
+			return;
+		case '\n':
+			this.buffer[this.position++] = '\\';
+			this.buffer[this.position++] = 'n';
+			return;
+		case '\r':
+			this.buffer[this.position++] = '\\';
+			this.buffer[this.position++] = 'r';
+			return;
+		case '\t':
+			this.buffer[this.position++] = '\\';
+			this.buffer[this.position++] = 't';
+			return;
+		default:
+			this.buffer[this.position++] = (byte) c;
+		}
+	}
+
+	void ensureCapacity(int length) {
+		if (this.position + length > this.buffer.length) {
+			try {
+				flushBuffer();
+			} catch (IOException e) {
+				throw new RDFHandlerException(e);
+			}
+		}
+	}
+
+	void flushBuffer() throws IOException {
+		this.output.write(this.buffer, 0, this.position);
+		this.position = 0;
+	}
+
+	static byte[] encodeIri(String iri) {
+		// large enough to never be flushed
+		NTriplesRdfWriter writer = new NTriplesRdfWriter(null,
+				4 * iri.length() + 2);
+		writer.writeIriString(iri);
+		byte[] bytes = new byte[writer.position];
+		System.arraycopy(writer.buffer, 0, bytes, 0, writer.position);
+		return bytes;
+	}
+}
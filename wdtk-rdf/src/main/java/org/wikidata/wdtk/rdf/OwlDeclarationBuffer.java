@@ -20,9 +20,7 @@ package org.wikidata.wdtk.rdf;
  * #L%
  */
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.eclipse.rdf4j.model.Resource;
@@ -43,14 +41,40 @@ import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
  */
 public class OwlDeclarationBuffer {
 
-	final List<PropertyIdValue> objectPropertyQueue = new ArrayList<>();
-	final List<PropertyIdValue> datatypePropertyQueue = new ArrayList<>();
-	final List<IRI> objectPropertyUriQueue = new ArrayList<>();
-	final List<IRI> datatypePropertyUriQueue = new ArrayList<>();
-	final Set<PropertyIdValue> declaredProperties = new HashSet<>();
-	final Set<IRI> declaredPropertyUris = new HashSet<>();
-	final List<EntityIdValue> classEntityQueue = new ArrayList<>();
-	final Set<EntityIdValue> declaredClassEntities = new HashSet<>();
+	final Set<PropertyIdValue> objectPropertyQueue = new LinkedHashSet<>();
+	final Set<PropertyIdValue> datatypePropertyQueue = new LinkedHashSet<>();
+	final Set<IRI> objectPropertyUriQueue = new LinkedHashSet<>();
+	final Set<IRI> datatypePropertyUriQueue = new LinkedHashSet<>();
+	final DeduplicationSet declaredProperties = new DeduplicationSet();
+	final DeduplicationSet declaredPropertyUris = new DeduplicationSet();
+	final Set<EntityIdValue> classEntityQueue = new LinkedHashSet<>();
+	final DeduplicationSet declaredClassEntities = new DeduplicationSet();
+
+	/**
+	 * Sets the maximal number of declared properties and classes which are
+	 * remembered to avoid duplicate declarations.
+	 *
+	 * @param capacity
+	 *            the maximal number of declarations of each kind
+	 * @see DeduplicationSet
+	 */
+	public void setDeduplicationCapacity(int capacity) {
+		this.declaredProperties.setMaxCapacity(capacity);
+		this.declaredPropertyUris.setMaxCapacity(capacity);
+		this.declaredClassEntities.setMaxCapacity(capacity);
+	}
+
+	/**
+	 * Returns the number of declarations which were forgotten because of the
+	 * bounded capacity of this buffer, and which may thus be written again.
+	 *
+	 * @return the number of evicted declarations
+	 */
+	public long getDeduplicationEvictionCount() {
+		return this.declaredProperties.getEvictionCount()
+				+ this.declaredPropertyUris.getEvictionCount()
+				+ this.declaredClassEntities.getEvictionCount();
+	}
 
 	/**
 	 * Adds the given property id value to the list of properties that should be
@@ -60,7 +84,7 @@ public class OwlDeclarationBuffer {
 	 *            the property to declare
 	 */
 	public void addObjectProperty(PropertyIdValue propertyIdValue) {
-		if (!this.declaredProperties.contains(propertyIdValue)) {
+		if (!this.declaredProperties.contains(propertyIdValue.getIri())) {
 			this.objectPropertyQueue.add(propertyIdValue);
 		}
 	}
@@ -73,7 +97,7 @@ public class OwlDeclarationBuffer {
 	 *            the property to declare
 	 */
 	public void addObjectProperty(IRI propertyUri) {
-		if (!this.declaredPropertyUris.contains(propertyUri)) {
+		if (!this.declaredPropertyUris.contains(propertyUri.stringValue())) {
 			this.objectPropertyUriQueue.add(propertyUri);
 		}
 	}
@@ -86,7 +110,7 @@ public class OwlDeclarationBuffer {
 	 *            the property to declare
 	 */
 	public void addDatatypeProperty(PropertyIdValue propertyIdValue) {
-		if (!this.declaredProperties.contains(propertyIdValue)) {
+		if (!this.declaredProperties.contains(propertyIdValue.getIri())) {
 			this.datatypePropertyQueue.add(propertyIdValue);
 		}
 	}
@@ -99,7 +123,7 @@ public class OwlDeclarationBuffer {
 	 *            the property to declare
 	 */
 	public void addDatatypeProperty(IRI propertyUri) {
-		if (!this.declaredPropertyUris.contains(propertyUri)) {
+		if (!this.declaredPropertyUris.contains(propertyUri.stringValue())) {
 			this.datatypePropertyUriQueue.add(propertyUri);
 		}
 	}
@@ -112,11 +136,38 @@ public class OwlDeclarationBuffer {
 	 *            the property to declare
 	 */
 	public void addClass(EntityIdValue entityIdValue) {
-		if (!this.declaredClassEntities.contains(entityIdValue)) {
+		if (!this.declaredClassEntities.contains(entityIdValue.getIri())) {
 			this.classEntityQueue.add(entityIdValue);
 		}
 	}
 
+	/**
+	 * Adds the declarations that are still to be written by the given buffer
+	 * to the declarations of this buffer, in the order in which they were
+	 * added to the given buffer. This is used to merge the declarations
+	 * collected by several converters into a single set of declarations.
+	 *
+	 * @param other
+	 *            the buffer whose pending declarations should be added
+	 */
+	public void addDeclarations(OwlDeclarationBuffer other) {
+		for (PropertyIdValue propertyIdValue : other.objectPropertyQueue) {
+			addObjectProperty(propertyIdValue);
+		}
+		for (PropertyIdValue propertyIdValue : other.datatypePropertyQueue) {
+			addDatatypeProperty(propertyIdValue);
+		}
+		for (IRI propertyUri : other.objectPropertyUriQueue) {
+			addObjectProperty(propertyUri);
+		}
+		for (IRI propertyUri : other.datatypePropertyUriQueue) {
+			addDatatypeProperty(propertyUri);
+		}
+		for (EntityIdValue entityIdValue : other.classEntityQueue) {
+			addClass(entityIdValue);
+		}
+	}
+
 	/**
 	 * Writes OWL declarations for properties that have been added recently.
 	 * Declared properties are stored so that duplicate declarations are
@@ -138,7 +189,7 @@ public class OwlDeclarationBuffer {
 			throws RDFHandlerException {
 		boolean anyStatements = fullStatements || simpleClaims;
 		for (PropertyIdValue propertyIdValue : this.objectPropertyQueue) {
-			if (!this.declaredProperties.add(propertyIdValue)) {
+			if (!this.declaredProperties.add(propertyIdValue.getIri())) {
 				continue;
 			}
 			if (anyStatements) {
@@ -178,7 +229,7 @@ public class OwlDeclarationBuffer {
 		this.objectPropertyQueue.clear();
 
 		for (PropertyIdValue propertyIdValue : this.datatypePropertyQueue) {
-			if (!this.declaredProperties.add(propertyIdValue)) {
+			if (!this.declaredProperties.add(propertyIdValue.getIri())) {
 				continue;
 			}
 			if (anyStatements) {
@@ -220,7 +271,7 @@ public class OwlDeclarationBuffer {
 		this.datatypePropertyQueue.clear();
 
 		for (IRI propertyUri : this.objectPropertyUriQueue) {
-			if (!this.declaredPropertyUris.add(propertyUri)) {
+			if (!this.declaredPropertyUris.add(propertyUri.stringValue())) {
 				continue;
 			}
 			rdfWriter.writeTripleValueObject(propertyUri, RdfWriter.RDF_TYPE,
@@ -229,7 +280,7 @@ public class OwlDeclarationBuffer {
 		this.objectPropertyUriQueue.clear();
 
 		for (IRI propertyUri : this.datatypePropertyUriQueue) {
-			if (!this.declaredPropertyUris.add(propertyUri)) {
+			if (!this.declaredPropertyUris.add(propertyUri.stringValue())) {
 				continue;
 			}
 			rdfWriter.writeTripleValueObject(propertyUri, RdfWriter.RDF_TYPE,
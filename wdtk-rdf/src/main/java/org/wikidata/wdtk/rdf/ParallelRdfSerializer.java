@@ -0,0 +1,389 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.turtle.TurtleWriter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+
+/**
+ * RDF serializer converting {@link EntityDocument} objects in several threads.
+ * Documents are grouped in chunks, and each chunk is converted by a worker
+ * thread into a buffer, with its own {@link RdfWriter} and
+ * {@link RdfConverter}. The buffers are written to the output in the order
+ * in which the documents were received, so that the output does not depend
+ * on the scheduling of the threads.
+ * <p>
+ * Only line-based formats can be concatenated in this way: N-Triples and
+ * Turtle. Namespaces are declared once at the beginning of Turtle output:
+ * the Turtle writers of the chunks know the prefixes and use them, but never
+ * declare them. OWL declarations of the properties used in the documents are
+ * merged and written once at the end of the output. Auxiliary triples of
+ * complex values and references are written with each chunk, so that triples
+ * of a value used in several chunks are repeated; RDF stores ignore such
+ * duplicates.
+ * <p>
+ * The {@link PropertyRegister} is shared by all threads. Since property
+ * documents may be processed after the items which use them, the register
+ * should know all property types in advance (for instance from a snapshot
+ * loaded with {@link PropertyRegister#loadSnapshot(java.io.InputStream)})
+ * if the output needs to be reproducible.
+ */
+public class ParallelRdfSerializer implements EntityDocumentDumpProcessor {
+
+	/**
+	 * Number of documents converted together by a worker by default.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	final RDFFormat format;
+	final OutputStream output;
+	final Sites sites;
+	final PropertyRegister propertyRegister;
+	final int threads;
+
+	int tasks = RdfSerializer.TASK_ALL_ENTITIES
+			| RdfSerializer.TASK_ALL_EXACT_DATA;
+	int chunkSize = DEFAULT_CHUNK_SIZE;
+	long tripleCount = 0;
+
+	/**
+	 * OWL declarations of all chunks written so far, in the order of the
+	 * chunks.
+	 */
+	final OwlDeclarationBuffer owlDeclarations = new OwlDeclarationBuffer();
+
+	ExecutorService executor;
+	List<EntityDocument> currentChunk;
+	final Queue<Future<Chunk>> pendingChunks = new ArrayDeque<>();
+
+	/**
+	 * Creates a new parallel RDF serializer for the specified format and
+	 * output stream.
+	 *
+	 * @param format
+	 *            RDF format, either RDFFormat.TURTLE or RDFFormat.NTRIPLES
+	 * @param output
+	 *            the output stream to write to
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            the register used by all threads to find property types
+	 * @param threads
+	 *            the number of worker threads
+	 */
+	public ParallelRdfSerializer(RDFFormat format, OutputStream output,
+			Sites sites, PropertyRegister propertyRegister, int threads) {
+		if (!RDFFormat.TURTLE.equals(format)
+				&& !RDFFormat.NTRIPLES.equals(format)) {
+			throw new IllegalArgumentException("Unsupported format for parallel serialization: "
+					+ format);
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive");
+		}
+		this.format = format;
+		this.output = output;
+		this.sites = sites;
+		this.propertyRegister = propertyRegister;
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the tasks that should be performed during export. The value should
+	 * be a combination of flags such as {@link RdfSerializer#TASK_STATEMENTS}.
+	 *
+	 * @param tasks
+	 *            the tasks to be performed
+	 */
+	public void setTasks(int tasks) {
+		this.tasks = tasks;
+	}
+
+	/**
+	 * Returns the tasks that should be performed during export. The value
+	 * should be a combination of flags such as
+	 * {@link RdfSerializer#TASK_STATEMENTS}.
+	 *
+	 * @return tasks to be performed
+	 */
+	public int getTasks() {
+		return this.tasks;
+	}
+
+	/**
+	 * Sets the number of documents converted together by a worker. Larger
+	 * chunks reduce the overhead per document, but more documents are kept
+	 * in memory: up to twice the number of threads chunks are pending at the
+	 * same time.
+	 *
+	 * @param chunkSize
+	 *            the number of documents per chunk
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("The chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Returns the number of documents converted together by a worker.
+	 *
+	 * @return the number of documents per chunk
+	 */
+	public int getChunkSize() {
+		return this.chunkSize;
+	}
+
+	/**
+	 * Returns the number of triples that have been written so far. Triples of
+	 * chunks which are still being converted are not counted.
+	 *
+	 * @return number of triples
+	 */
+	public long getTripleCount() {
+		return this.tripleCount;
+	}
+
+	@Override
+	public void open() {
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			RdfWriter rdfWriter = createWriter(buffer, true);
+			RdfConverter rdfConverter = createConverter(rdfWriter);
+			rdfWriter.start();
+			rdfConverter.writeNamespaceDeclarations();
+			rdfConverter.writeBasicDeclarations();
+			rdfWriter.finish();
+			this.output.write(buffer.toByteArray());
+			this.tripleCount = rdfWriter.getTripleCount();
+		} catch (RDFHandlerException | IOException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		}
+		// daemon threads do not keep the JVM alive if the serializer is not closed
+		this.executor = Executors.newFixedThreadPool(this.threads, runnable -> {
+			Thread thread = new Thread(runnable, "ParallelRdfSerializer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.currentChunk = new ArrayList<>(this.chunkSize);
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		addDocument(itemDocument);
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		addDocument(propertyDocument);
+	}
+
+	@Override
+	public void close() {
+		try {
+			submitCurrentChunk();
+			writePendingChunks(0);
+
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			RdfWriter rdfWriter = createChunkWriter(buffer);
+			RdfConverter rdfConverter = createConverter(rdfWriter);
+			rdfWriter.start();
+			rdfConverter.writeNamespaceDeclarations();
+			this.owlDeclarations.writePropertyDeclarations(rdfWriter,
+					rdfConverter.hasTask(RdfSerializer.TASK_STATEMENTS),
+					rdfConverter.hasTask(RdfSerializer.TASK_SIMPLE_STATEMENTS));
+			rdfWriter.finish();
+			this.output.write(buffer.toByteArray());
+			this.tripleCount += rdfWriter.getTripleCount();
+		} catch (RDFHandlerException | IOException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		} finally {
+			this.executor.shutdownNow();
+		}
+		try {
+			this.output.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	/**
+	 * Adds a document to the current chunk, and submits the chunk once it is
+	 * full. Blocks while too many chunks are pending. If a chunk cannot be
+	 * converted or written, the worker threads are stopped, since the
+	 * serializer cannot be used any further.
+	 */
+	void addDocument(EntityDocument document) {
+		this.currentChunk.add(document);
+		if (this.currentChunk.size() >= this.chunkSize) {
+			try {
+				submitCurrentChunk();
+				writePendingChunks(2 * this.threads);
+			} catch (IOException e) { // we cannot recover here
+				this.executor.shutdownNow();
+				throw new RuntimeException(e.toString(), e);
+			} catch (RuntimeException e) {
+				this.executor.shutdownNow();
+				throw e;
+			}
+		}
+	}
+
+	void submitCurrentChunk() {
+		if (this.currentChunk.isEmpty()) {
+			return;
+		}
+		final List<EntityDocument> documents = this.currentChunk;
+		this.currentChunk = new ArrayList<>(this.chunkSize);
+		this.pendingChunks.add(this.executor.submit(() -> convertChunk(documents)));
+	}
+
+	/**
+	 * Writes the oldest pending chunks to the output until at most the given
+	 * number of chunks are pending.
+	 */
+	void writePendingChunks(int maxPendingChunks) throws IOException {
+		while (this.pendingChunks.size() > maxPendingChunks) {
+			Chunk chunk;
+			try {
+				chunk = this.pendingChunks.remove().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e.toString(), e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause().toString(), e.getCause());
+			}
+			this.output.write(chunk.bytes);
+			this.owlDeclarations.addDeclarations(chunk.owlDeclarations);
+			this.tripleCount += chunk.tripleCount;
+		}
+	}
+
+	/**
+	 * Converts documents in a worker thread. OWL declarations are kept in the
+	 * buffer of the converter, to be merged with those of the other chunks.
+	 */
+	Chunk convertChunk(List<EntityDocument> documents) throws RDFHandlerException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		RdfWriter rdfWriter = createChunkWriter(buffer);
+		RdfConverter rdfConverter = new RdfConverter(rdfWriter, this.sites,
+				this.propertyRegister) {
+			@Override
+			public void writeOWLDeclarations() {
+				// merged and written at the end of the output
+			}
+		};
+		rdfConverter.setTasks(this.tasks);
+		rdfWriter.start();
+		rdfConverter.writeNamespaceDeclarations();
+		for (EntityDocument document : documents) {
+			if (document instanceof ItemDocument) {
+				rdfConverter.writeItemDocument((ItemDocument) document);
+			} else if (document instanceof PropertyDocument) {
+				rdfConverter.writePropertyDocument((PropertyDocument) document);
+			}
+		}
+		rdfWriter.finish();
+		return new Chunk(buffer.toByteArray(),
+				rdfConverter.owlDeclarationBuffer, rdfWriter.getTripleCount());
+	}
+
+	/**
+	 * Creates a writer for the output of a chunk, which is appended to the
+	 * output after the namespace declarations written by {@link #open()}.
+	 */
+	RdfWriter createChunkWriter(OutputStream buffer) {
+		return createWriter(buffer, false);
+	}
+
+	/**
+	 * Creates a writer for a part of the output. Turtle is written by a plain
+	 * {@link TurtleWriter}, which writes the namespace declarations as they
+	 * are given, rather than the one created by
+	 * {@link org.eclipse.rdf4j.rio.Rio}, which only declares the namespaces
+	 * used in its own output. The triples of each subject are written
+	 * together by the converters in any case.
+	 *
+	 * @param buffer
+	 *            the stream to write to
+	 * @param declareNamespaces
+	 *            false if the namespaces declared to a Turtle writer should
+	 *            be used to abbreviate IRIs, but not written
+	 */
+	RdfWriter createWriter(OutputStream buffer, boolean declareNamespaces) {
+		if (RDFFormat.TURTLE.equals(this.format)) {
+			return new RdfWriter(new TurtleWriter(buffer) {
+				@Override
+				protected void writeNamespace(String prefix, String name)
+						throws IOException {
+					// chunks rely on the declarations written by open()
+					if (declareNamespaces) {
+						super.writeNamespace(prefix, name);
+					}
+				}
+			});
+		}
+		return RdfWriter.create(this.format, buffer);
+	}
+
+	RdfConverter createConverter(RdfWriter rdfWriter) {
+		RdfConverter rdfConverter = new RdfConverter(rdfWriter, this.sites,
+				this.propertyRegister);
+		rdfConverter.setTasks(this.tasks);
+		return rdfConverter;
+	}
+
+	/**
+	 * Result of the conversion of a chunk.
+	 */
+	static class Chunk {
+
+		final byte[] bytes;
+		final OwlDeclarationBuffer owlDeclarations;
+		final long tripleCount;
+
+		Chunk(byte[] bytes, OwlDeclarationBuffer owlDeclarations,
+				long tripleCount) {
+			this.bytes = bytes;
+			this.owlDeclarations = owlDeclarations;
+			this.tripleCount = tripleCount;
+		}
+	}
+}
@@ -23,10 +23,18 @@ import java.io.IOException;
  */
 
 import java.util.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.Map.Entry;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -41,6 +49,7 @@ import org.wikidata.wdtk.datamodel.implementation.EntityIdValueImpl;
 import org.wikidata.wdtk.datamodel.implementation.PropertyIdValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentProcessor;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
@@ -61,10 +70,20 @@ import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
  * This class helps to manage information about Properties that has to obtained
  * by a webservice.
  *
+ * The register can be shared by converters running in several threads, as
+ * done by {@link ParallelRdfSerializer}. Known properties are looked up
+ * without locking.
+ *
+ * To avoid Web requests during a conversion, the register can be filled in
+ * advance: from the property documents of a dump, by processing them with
+ * the register as an {@link EntityDocumentProcessor} in a first pass, or
+ * from a snapshot written by {@link #writeSnapshot(OutputStream)}. Fetching
+ * can then be disabled with {@link #setOnlineFetching(boolean)}.
+ *
  * @author Michael Guenther
  *
  */
-public class PropertyRegister {
+public class PropertyRegister implements EntityDocumentProcessor {
 
 	static final Logger logger = LoggerFactory
 			.getLogger(PropertyRegister.class);
@@ -119,6 +138,25 @@ public class PropertyRegister {
 	 */
 	final Set<String> knownMissing;
 
+	/**
+	 * Largest property number for which lookups are cached.
+	 */
+	static final int MAX_CACHED_PROPERTY_NUMBER = 1 << 20;
+
+	/**
+	 * Cache of the information found for properties, indexed by property
+	 * number, read without locking. Entries are immutable, so that they can
+	 * be read safely while another thread adds entries; a missing entry is
+	 * looked up in the maps with the lock held.
+	 */
+	volatile PropertyInfo[] propertyInfos = new PropertyInfo[0];
+
+	/**
+	 * True if information about unknown properties is fetched from the Web
+	 * API.
+	 */
+	volatile boolean onlineFetching = true;
+
 	static final PropertyRegister WIKIDATA_PROPERTY_REGISTER = new PropertyRegister(
 			"P1921", BasicApiConnection.getWikidataApiConnection(),
 			Datamodel.SITE_WIKIDATA);
@@ -174,10 +212,7 @@ public class PropertyRegister {
 	 *         not be determined
 	 */
 	public String getPropertyType(PropertyIdValue propertyIdValue) {
-		if (!datatypes.containsKey(propertyIdValue.getId())) {
-			fetchPropertyInformation(propertyIdValue);
-		}
-		return datatypes.get(propertyIdValue.getId());
+		return getPropertyInfo(propertyIdValue).datatype;
 	}
 
 	/**
@@ -187,10 +222,10 @@ public class PropertyRegister {
 	 * @param propertyIdValue
 	 * @param datatypeIri
 	 */
-	public void setPropertyType(PropertyIdValue propertyIdValue,
+	public synchronized void setPropertyType(PropertyIdValue propertyIdValue,
 			String datatypeIri) {
 		datatypes.put(propertyIdValue.getId(), datatypeIri);
-
+		clearPropertyInfo(propertyIdValue.getId());
 	}
 
 	/**
@@ -204,11 +239,115 @@ public class PropertyRegister {
 	 *         was found for the given property
 	 */
 	public String getPropertyUriPattern(PropertyIdValue propertyIdValue) {
-		if (!this.datatypes.containsKey(propertyIdValue.getId())) {
-			fetchPropertyInformation(propertyIdValue);
+		return getPropertyInfo(propertyIdValue).uriPattern;
+	}
+
+	/**
+	 * Returns true if information about unknown properties is fetched from
+	 * the Web API.
+	 *
+	 * @return whether properties are fetched online
+	 */
+	public boolean isOnlineFetching() {
+		return this.onlineFetching;
+	}
+
+	/**
+	 * Sets whether information about unknown properties is fetched from the
+	 * Web API. If disabled, the type and URI pattern of unknown properties
+	 * are null, and the conversion never waits for the network.
+	 *
+	 * @param onlineFetching
+	 *            whether properties are fetched online
+	 */
+	public synchronized void setOnlineFetching(boolean onlineFetching) {
+		this.onlineFetching = onlineFetching;
+		this.propertyInfos = new PropertyInfo[0];
+	}
+
+	/**
+	 * Registers the datatype and URI pattern of a property document, for
+	 * instance when reading the property documents of a dump before
+	 * converting it.
+	 *
+	 * @param propertyDocument
+	 *            the document of the property
+	 */
+	@Override
+	public synchronized void processPropertyDocument(
+			PropertyDocument propertyDocument) {
+		addPropertyInformation(propertyDocument.getEntityId().getId(),
+				propertyDocument);
+	}
+
+	/**
+	 * Writes the datatypes and URI patterns of all known properties, so that
+	 * they can be loaded later with {@link #loadSnapshot(InputStream)}. Each
+	 * line contains the id, datatype IRI and URI pattern of a property,
+	 * separated by tabulations, in the order of property numbers.
+	 *
+	 * @param output
+	 *            the stream to write to, which is not closed
+	 * @throws IOException
+	 *             if the snapshot could not be written
+	 */
+	public synchronized void writeSnapshot(OutputStream output)
+			throws IOException {
+		SortedMap<Integer, String> propertyIds = new TreeMap<>();
+		for (String propertyId : this.datatypes.keySet()) {
+			int number = getPropertyNumber(propertyId);
+			if (number >= 0) {
+				propertyIds.put(number, propertyId);
+			}
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(output,
+				StandardCharsets.UTF_8));
+		for (String propertyId : propertyIds.values()) {
+			String datatype = this.datatypes.get(propertyId);
+			String uriPattern = this.uriPatterns.get(propertyId);
+			writer.write(propertyId);
+			writer.write('\t');
+			writer.write(datatype == null ? "" : datatype);
+			writer.write('\t');
+			writer.write(uriPattern == null ? "" : uriPattern);
+			writer.write('\n');
 		}
-		return this.uriPatterns.get(propertyIdValue.getId());
+		writer.flush();
+	}
 
+	/**
+	 * Adds the properties of a snapshot written by
+	 * {@link #writeSnapshot(OutputStream)} to the register.
+	 *
+	 * @param input
+	 *            the stream to read from, which is not closed
+	 * @throws IOException
+	 *             if the snapshot could not be read or is malformed
+	 */
+	public synchronized void loadSnapshot(InputStream input)
+			throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				input, StandardCharsets.UTF_8));
+		String line;
+		int count = 0;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] fields = line.split("\t", -1);
+			if (fields.length != 3 || getPropertyNumber(fields[0]) < 0) {
+				throw new IOException("Invalid line in property register snapshot: "
+						+ line);
+			}
+			this.datatypes.put(fields[0], fields[1].isEmpty() ? null : fields[1]);
+			if (!fields[2].isEmpty()) {
+				this.uriPatterns.put(fields[0], fields[2]);
+			}
+			count++;
+		}
+		this.propertyInfos = new PropertyInfo[0];
+		logger.info("Loaded type information for " + count
+				+ " properties from snapshot.");
 	}
 
 	/**
@@ -301,6 +440,76 @@ public class PropertyRegister {
 		return DatatypeIdValue.DT_MONOLINGUAL_TEXT;
 	}
 
+	/**
+	 * Returns the information about a property, from the cache if possible,
+	 * fetching it online if needed.
+	 */
+	PropertyInfo getPropertyInfo(PropertyIdValue propertyIdValue) {
+		int number = getPropertyNumber(propertyIdValue.getId());
+		PropertyInfo[] infos = this.propertyInfos;
+		if (number >= 0 && number < infos.length) {
+			PropertyInfo info = infos[number];
+			if (info != null) {
+				return info;
+			}
+		}
+		return loadPropertyInfo(propertyIdValue, number);
+	}
+
+	synchronized PropertyInfo loadPropertyInfo(
+			PropertyIdValue propertyIdValue, int number) {
+		String propertyId = propertyIdValue.getId();
+		if (!this.datatypes.containsKey(propertyId) && this.onlineFetching) {
+			fetchPropertyInformation(propertyIdValue);
+		}
+		PropertyInfo info = new PropertyInfo(this.datatypes.get(propertyId),
+				this.uriPatterns.get(propertyId));
+		if (number >= 0 && number < MAX_CACHED_PROPERTY_NUMBER) {
+			PropertyInfo[] infos = this.propertyInfos;
+			if (number >= infos.length) {
+				infos = Arrays.copyOf(infos,
+						Math.max(number + 1, 2 * infos.length));
+				infos[number] = info;
+				this.propertyInfos = infos;
+			} else {
+				infos[number] = info;
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Removes the cached information of a property, after it has changed.
+	 * Must be called with the lock held.
+	 */
+	void clearPropertyInfo(String propertyId) {
+		int number = getPropertyNumber(propertyId);
+		PropertyInfo[] infos = this.propertyInfos;
+		if (number >= 0 && number < infos.length) {
+			infos[number] = null;
+		}
+	}
+
+	/**
+	 * Returns the number of a property id such as "P31", or -1 if the string
+	 * is not a property id.
+	 */
+	static int getPropertyNumber(String propertyId) {
+		int length = propertyId.length();
+		if (length < 2 || length > 10 || propertyId.charAt(0) != 'P') {
+			return -1;
+		}
+		int number = 0;
+		for (int i = 1; i < length; i++) {
+			char c = propertyId.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			number = 10 * number + (c - '0');
+		}
+		return number;
+	}
+
 	/**
 	 * Fetches the information of the given property from the Web API. Further
 	 * properties are fetched in the same request and results cached so as to
@@ -348,34 +557,10 @@ public class PropertyRegister {
 				continue;
 			}
 
-			String datatype = ((PropertyDocument) propertyDocument)
-					.getDatatype().getIri();
-			this.datatypes.put(entry.getKey(), datatype);
+			String datatype = addPropertyInformation(entry.getKey(),
+					(PropertyDocument) propertyDocument);
 			logger.info("Fetched type information for property "
 					+ entry.getKey() + " online: " + datatype);
-
-			if (!DatatypeIdValue.DT_STRING.equals(datatype) && !DatatypeIdValue.DT_EXTERNAL_ID.equals(datatype)) {
-				continue;
-			}
-
-			for (StatementGroup sg : ((PropertyDocument) propertyDocument)
-					.getStatementGroups()) {
-				if (!sg.getProperty().getId().equals(this.uriPatternPropertyId)) {
-					continue;
-				}
-				for (Statement statement : sg) {
-					if (statement.getMainSnak() instanceof ValueSnak
-							&& statement.getValue() instanceof StringValue) {
-						String uriPattern = ((StringValue) statement.getValue()).getString();
-						if (this.uriPatterns.containsKey(entry.getKey())) {
-							logger.info("Found multiple URI patterns for property "
-									+ entry.getKey()
-									+ " but only one is supported in current code.");
-						}
-						this.uriPatterns.put(entry.getKey(), uriPattern);
-					}
-				}
-			}
 		}
 
 		if (!this.datatypes.containsKey(property.getId())) {
@@ -385,13 +570,53 @@ public class PropertyRegister {
 		}
 	}
 
+	/**
+	 * Stores the datatype of a property, and its URI pattern if it has one.
+	 * Must be called with the lock held.
+	 *
+	 * @param propertyId
+	 *            the id of the property
+	 * @param propertyDocument
+	 *            the document of the property
+	 * @return the IRI of the datatype
+	 */
+	String addPropertyInformation(String propertyId,
+			PropertyDocument propertyDocument) {
+		String datatype = propertyDocument.getDatatype().getIri();
+		this.datatypes.put(propertyId, datatype);
+		clearPropertyInfo(propertyId);
+
+		if (!DatatypeIdValue.DT_STRING.equals(datatype) && !DatatypeIdValue.DT_EXTERNAL_ID.equals(datatype)) {
+			return datatype;
+		}
+
+		for (StatementGroup sg : propertyDocument.getStatementGroups()) {
+			if (!sg.getProperty().getId().equals(this.uriPatternPropertyId)) {
+				continue;
+			}
+			for (Statement statement : sg) {
+				if (statement.getMainSnak() instanceof ValueSnak
+						&& statement.getValue() instanceof StringValue) {
+					String uriPattern = ((StringValue) statement.getValue()).getString();
+					if (this.uriPatterns.containsKey(propertyId)) {
+						logger.info("Found multiple URI patterns for property "
+								+ propertyId
+								+ " but only one is supported in current code.");
+					}
+					this.uriPatterns.put(propertyId, uriPattern);
+				}
+			}
+		}
+		return datatype;
+	}
+
 	/**
 	 * Fetches type information for all known properties from the given SPARQL endpoint, and adds it to the register.
 	 * The SPARQL endpoint must support the wikibase:propertyType predicate.
 	 *
 	 * @param endpoint URI of the SPARQL service to use, for example "https://query.wikidata.org/sparql"
 	 */
-	public void fetchUsingSPARQL(URI endpoint) {
+	public synchronized void fetchUsingSPARQL(URI endpoint) {
 		try {
 			// this query is written without assuming any PREFIXES like wd: or wdt: to ensure it is as portable
 			// as possible (the PropertyRegister might be used with private Wikibase instances and SPARQL endpoints
@@ -432,6 +657,7 @@ public class PropertyRegister {
 				}
 			}
 
+			this.propertyInfos = new PropertyInfo[0];
 			logger.info("Fetched type information for " + count + " properties (" +
 					countPatterns + " with URI patterns) using SPARQL.");
 		} catch(IOException|URISyntaxException e) {
@@ -439,4 +665,18 @@ public class PropertyRegister {
 					+ e.toString());
 		}
 	}
+
+	/**
+	 * Information found about a property.
+	 */
+	static class PropertyInfo {
+
+		final String datatype;
+		final String uriPattern;
+
+		PropertyInfo(String datatype, String uriPattern) {
+			this.datatype = datatype;
+			this.uriPattern = uriPattern;
+		}
+	}
 }
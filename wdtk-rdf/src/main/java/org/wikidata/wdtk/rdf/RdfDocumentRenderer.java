@@ -0,0 +1,260 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Sites;
+
+/**
+ * Renders single entity documents to RDF, as done by a {@link RdfSerializer}
+ * which would only process this document. This is meant for services
+ * converting documents fetched online, for instance with a
+ * {@link org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher}, one at a time.
+ * <p>
+ * Each thread renders into its own reusable buffer. Renderings are cached for
+ * a given entity id, revision id, combination of tasks and format, so that
+ * rendering the same revision again does not convert it anymore. Documents
+ * without a revision id (that is, with revision id 0) are never cached,
+ * since their content cannot be identified. The cache is bounded by the
+ * total size of the renderings it holds, and evicts the least recently used
+ * ones when full. The object is thread-safe.
+ */
+public class RdfDocumentRenderer {
+
+	/**
+	 * Default maximal number of bytes held in the cache.
+	 */
+	public static final long DEFAULT_CACHE_SIZE = 64L << 20;
+
+	final Sites sites;
+	final PropertyRegister propertyRegister;
+
+	private final long cacheSize;
+
+	/**
+	 * Renderings in access order, so that the least recently used one comes
+	 * first.
+	 */
+	private final Map<String, byte[]> renderings = new LinkedHashMap<>(16,
+			0.75f, true);
+
+	/**
+	 * Total size of the renderings held in the cache.
+	 */
+	private long cachedBytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	private final ThreadLocal<ByteArrayOutputStream> buffers = ThreadLocal
+			.withInitial(ByteArrayOutputStream::new);
+
+	/**
+	 * Constructs a renderer with a cache of {@link #DEFAULT_CACHE_SIZE}
+	 * bytes.
+	 *
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            the register used to find the datatypes of properties
+	 */
+	public RdfDocumentRenderer(Sites sites, PropertyRegister propertyRegister) {
+		this(sites, propertyRegister, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructs a renderer.
+	 *
+	 * @param sites
+	 *            information about site links
+	 * @param propertyRegister
+	 *            the register used to find the datatypes of properties
+	 * @param cacheSize
+	 *            the maximal number of bytes held in the cache, or 0 to
+	 *            disable caching
+	 */
+	public RdfDocumentRenderer(Sites sites, PropertyRegister propertyRegister,
+			long cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException(
+					"The size of the cache cannot be negative");
+		}
+		this.sites = sites;
+		this.propertyRegister = propertyRegister;
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Renders a document to RDF. The result contains the namespace and basic
+	 * declarations written by {@link RdfSerializer#open()}, followed by the
+	 * triples of the document. Cached renderings are copied, so the result
+	 * may be modified by the caller.
+	 *
+	 * @param document
+	 *            the document to render
+	 * @param format
+	 *            RDF format, such as RDFFormat.TURTLE
+	 * @param tasks
+	 *            the tasks to be performed, as for
+	 *            {@link RdfSerializer#setTasks(int)}
+	 * @return the serialization of the document in the given format
+	 * @throws RDFHandlerException
+	 *             if there was a problem writing the RDF triples
+	 */
+	public byte[] render(EntityDocument document, RDFFormat format, int tasks)
+			throws RDFHandlerException {
+		String key = null;
+		if (this.cacheSize > 0 && document.getRevisionId() != 0) {
+			key = getKey(document, format, tasks);
+			synchronized (this) {
+				byte[] rendering = this.renderings.get(key);
+				if (rendering != null) {
+					this.hits++;
+					return rendering.clone();
+				}
+				this.misses++;
+			}
+		}
+
+		byte[] rendering = convert(document, format, tasks);
+
+		if (key != null && rendering.length <= this.cacheSize) {
+			synchronized (this) {
+				byte[] previous = this.renderings.put(key, rendering);
+				if (previous != null) {
+					this.cachedBytes -= previous.length;
+				}
+				this.cachedBytes += rendering.length;
+				Iterator<byte[]> iterator = this.renderings.values().iterator();
+				while (this.cachedBytes > this.cacheSize) {
+					this.cachedBytes -= iterator.next().length;
+					iterator.remove();
+					this.evictions++;
+				}
+			}
+			return rendering.clone();
+		}
+		return rendering;
+	}
+
+	/**
+	 * Converts a document into the buffer of the current thread, and returns
+	 * a copy of the result.
+	 */
+	byte[] convert(EntityDocument document, RDFFormat format, int tasks)
+			throws RDFHandlerException {
+		ByteArrayOutputStream buffer = this.buffers.get();
+		buffer.reset();
+		RdfWriter rdfWriter = RdfWriter.create(format, buffer);
+		RdfConverter rdfConverter = new RdfConverter(rdfWriter, this.sites,
+				this.propertyRegister);
+		rdfConverter.setTasks(tasks);
+
+		rdfWriter.start();
+		rdfConverter.writeNamespaceDeclarations();
+		rdfConverter.writeBasicDeclarations();
+		rdfConverter.writeEntityDocument(document);
+		rdfWriter.finish();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Returns the number of renderings which were found in the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of cacheable renderings which were not found in the
+	 * cache, and had to be converted.
+	 *
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	/**
+	 * Returns the number of renderings which were removed from the cache to
+	 * make room for new ones.
+	 *
+	 * @return the number of evicted renderings
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+	}
+
+	/**
+	 * Returns the number of renderings currently held in the cache.
+	 *
+	 * @return the number of cached renderings
+	 */
+	public synchronized int size() {
+		return this.renderings.size();
+	}
+
+	/**
+	 * Returns the total size of the renderings currently held in the cache.
+	 *
+	 * @return the number of cached bytes
+	 */
+	public synchronized long getCachedBytes() {
+		return this.cachedBytes;
+	}
+
+	/**
+	 * Returns the maximal number of bytes held in the cache.
+	 *
+	 * @return the size of the cache
+	 */
+	public long getCacheSize() {
+		return this.cacheSize;
+	}
+
+	/**
+	 * Removes all renderings from the cache and resets its statistics.
+	 */
+	public synchronized void clear() {
+		this.renderings.clear();
+		this.cachedBytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	private static String getKey(EntityDocument document, RDFFormat format,
+			int tasks) {
+		return document.getEntityId().getIri() + "#"
+				+ document.getRevisionId() + "#" + tasks + "#"
+				+ format.getName();
+	}
+}
@@ -79,7 +79,7 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 	public RdfSerializer(RDFFormat format, OutputStream output, Sites sites,
 			PropertyRegister propertyRegister) {
 		this.output = output;
-		this.rdfWriter = new RdfWriter(format, output);
+		this.rdfWriter = RdfWriter.create(format, output);
 		this.rdfConverter = new RdfConverter(this.rdfWriter, sites,
 				propertyRegister);
 	}
@@ -106,6 +106,30 @@ public class RdfSerializer implements EntityDocumentDumpProcessor {
 		return this.rdfConverter.getTasks();
 	}
 
+	/**
+	 * Sets the maximal number of values, references and declarations of each
+	 * kind which are remembered to avoid duplicate triples. The default is
+	 * {@link DeduplicationSet#DEFAULT_MAX_CAPACITY}.
+	 *
+	 * @param capacity
+	 *            the maximal number of remembered objects of each kind
+	 * @see AbstractRdfConverter#setDeduplicationCapacity(int)
+	 */
+	public void setDeduplicationCapacity(int capacity) {
+		this.rdfConverter.setDeduplicationCapacity(capacity);
+	}
+
+	/**
+	 * Returns the number of values, references and declarations which were
+	 * forgotten because of the bounded deduplication capacity, and whose
+	 * triples may have been written more than once.
+	 *
+	 * @return the number of evicted objects
+	 */
+	public long getDeduplicationEvictionCount() {
+		return this.rdfConverter.getDeduplicationEvictionCount();
+	}
+
 	/**
 	 * Returns the number of triples that have been written so far.
 	 *
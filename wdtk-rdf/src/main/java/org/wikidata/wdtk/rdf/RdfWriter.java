@@ -155,6 +155,35 @@ public class RdfWriter {
 		this.writer = writer;
 	}
 
+	/**
+	 * Constructor for subclasses which serialize triples without rdf4j.
+	 */
+	protected RdfWriter() {
+		this.writer = null;
+	}
+
+	/**
+	 * Creates a writer for the specified format and output stream. N-Triples
+	 * are written by a {@link NTriplesRdfWriter}, which is faster than the
+	 * rdf4j writer, and {@link BinaryRdfWriter#FORMAT} by a
+	 * {@link BinaryRdfWriter}.
+	 *
+	 * @param format
+	 *            RDF format, such as RDFFormat.TURTLE
+	 * @param output
+	 *            the output stream to write to
+	 * @return the writer
+	 */
+	public static RdfWriter create(RDFFormat format, OutputStream output)
+			throws UnsupportedRDFormatException {
+		if (RDFFormat.NTRIPLES.equals(format)) {
+			return new NTriplesRdfWriter(output);
+		} else if (BinaryRdfWriter.FORMAT.equals(format)) {
+			return new BinaryRdfWriter(output);
+		}
+		return new RdfWriter(format, output);
+	}
+
 	public long getTripleCount() {
 		return this.tripleCount;
 	}
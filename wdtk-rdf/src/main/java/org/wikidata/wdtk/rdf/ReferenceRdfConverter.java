@@ -44,7 +44,7 @@ public class ReferenceRdfConverter {
 
 	final List<Reference> referenceQueue = new ArrayList<>();
 	final List<Resource> referenceSubjectQueue = new ArrayList<>();
-	final Set<Resource> declaredReferences = new HashSet<>();
+	final DeduplicationSet declaredReferences = new DeduplicationSet();
 	final String siteUri;
 
 	/**
@@ -94,7 +94,7 @@ public class ReferenceRdfConverter {
 		Iterator<Reference> referenceIterator = this.referenceQueue.iterator();
 		for (Resource resource : this.referenceSubjectQueue) {
 			final Reference reference = referenceIterator.next();
-			if (this.declaredReferences.add(resource)) {
+			if (this.declaredReferences.add(resource.stringValue())) {
 				writeReference(reference, resource);
 			}
 		}
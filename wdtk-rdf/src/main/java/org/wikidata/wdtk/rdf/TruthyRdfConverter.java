@@ -0,0 +1,177 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Snak;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementDocument;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+import org.wikidata.wdtk.datamodel.interfaces.ValueSnak;
+import org.wikidata.wdtk.rdf.values.AnyValueConverter;
+
+/**
+ * Converter writing only the "truthy" triples of statement documents, that
+ * is, one direct triple (using a wdt: property) for the main snak of each
+ * statement of best rank. A statement has best rank if it is preferred, or if
+ * it is normal and no statement of its group is preferred. Deprecated
+ * statements are never written. As in the truthy dumps of Wikidata,
+ * statements with qualifiers are included, unlike with
+ * {@link RdfSerializer#TASK_SIMPLE_STATEMENTS}.
+ * <p>
+ * Each statement group is traversed without building intermediate
+ * collections, and no statement, reference or value nodes are created. No OWL
+ * declarations are written either, so that the output consists exclusively of
+ * triples whose subject is the converted entity.
+ */
+public class TruthyRdfConverter {
+
+	final RdfWriter rdfWriter;
+	final PropertyRegister propertyRegister;
+	final AnyValueConverter valueRdfConverter;
+	final SnakRdfConverter snakRdfConverter;
+
+	/**
+	 * Direct properties already used, indexed by property id.
+	 */
+	final Map<String, IRI> directProperties = new HashMap<>();
+
+	/**
+	 * Creates a converter writing to the given writer.
+	 *
+	 * @param rdfWriter
+	 *            the writer to write triples to
+	 * @param propertyRegister
+	 *            the register used to find the datatypes of properties
+	 */
+	public TruthyRdfConverter(RdfWriter rdfWriter,
+			PropertyRegister propertyRegister) {
+		this.rdfWriter = rdfWriter;
+		this.propertyRegister = propertyRegister;
+		// the declarations collected in this buffer are never written
+		OwlDeclarationBuffer owlDeclarationBuffer = new OwlDeclarationBuffer();
+		this.valueRdfConverter = new AnyValueConverter(rdfWriter,
+				owlDeclarationBuffer, propertyRegister);
+		this.snakRdfConverter = new SnakRdfConverter(rdfWriter,
+				owlDeclarationBuffer, propertyRegister, this.valueRdfConverter);
+	}
+
+	/**
+	 * Writes the namespace declarations used in the truthy triples.
+	 *
+	 * @throws RDFHandlerException
+	 *             if there was a problem writing the declarations
+	 */
+	public void writeNamespaceDeclarations() throws RDFHandlerException {
+		this.rdfWriter.writeNamespaceDeclaration("wd",
+				this.propertyRegister.getUriPrefix());
+		this.rdfWriter.writeNamespaceDeclaration("wdt",
+				Vocabulary.PREFIX_PROPERTY_DIRECT);
+		this.rdfWriter.writeNamespaceDeclaration("wdno",
+				Vocabulary.PREFIX_WIKIDATA_NO_VALUE);
+		this.rdfWriter.writeNamespaceDeclaration("rdf", Vocabulary.PREFIX_RDF);
+		this.rdfWriter.writeNamespaceDeclaration("xsd", Vocabulary.PREFIX_XSD);
+		this.rdfWriter.writeNamespaceDeclaration("geo", Vocabulary.PREFIX_GEO);
+	}
+
+	/**
+	 * Writes the truthy triples of the given document.
+	 *
+	 * @param document
+	 *            the document whose statements should be written
+	 * @throws RDFHandlerException
+	 *             if there was a problem writing the triples
+	 */
+	public void writeStatements(StatementDocument document)
+			throws RDFHandlerException {
+		Resource subject = null;
+		for (StatementGroup statementGroup : document.getStatementGroups()) {
+			StatementRank bestRank = getBestRank(statementGroup);
+			if (bestRank == null) {
+				continue;
+			}
+			if (subject == null) {
+				subject = this.rdfWriter.getUri(document.getEntityId().getIri());
+			}
+			for (Statement statement : statementGroup) {
+				if (statement.getRank() == bestRank) {
+					writeMainSnak(subject, statement.getMainSnak());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the rank of the truthy statements of a statement group.
+	 *
+	 * @param statementGroup
+	 *            the statement group to inspect
+	 * @return {@link StatementRank#PREFERRED} if one of the statements is
+	 *         preferred, {@link StatementRank#NORMAL} if none is preferred but
+	 *         one is normal, or null if all statements are deprecated
+	 */
+	static StatementRank getBestRank(StatementGroup statementGroup) {
+		StatementRank bestRank = null;
+		for (Statement statement : statementGroup) {
+			StatementRank rank = statement.getRank();
+			if (rank == StatementRank.PREFERRED) {
+				return rank;
+			} else if (rank == StatementRank.NORMAL) {
+				bestRank = rank;
+			}
+		}
+		return bestRank;
+	}
+
+	void writeMainSnak(Resource subject, Snak snak) {
+		if (snak instanceof ValueSnak) {
+			ValueSnak valueSnak = (ValueSnak) snak;
+			Value value = this.valueRdfConverter.getRdfValue(
+					valueSnak.getValue(), valueSnak.getPropertyId(), true);
+			if (value != null) {
+				this.rdfWriter.writeTripleValueObject(subject,
+						getDirectProperty(valueSnak.getPropertyId()), value);
+			}
+		} else {
+			// some value and no value snaks are rare enough
+			this.snakRdfConverter.writeSnak(snak, subject,
+					PropertyContext.DIRECT);
+		}
+	}
+
+	IRI getDirectProperty(PropertyIdValue propertyIdValue) {
+		IRI property = this.directProperties.get(propertyIdValue.getId());
+		if (property == null) {
+			property = this.rdfWriter.getUri(Vocabulary.getPropertyUri(
+					propertyIdValue, PropertyContext.DIRECT));
+			this.directProperties.put(propertyIdValue.getId(), property);
+		}
+		return property;
+	}
+}
@@ -0,0 +1,118 @@
+package org.wikidata.wdtk.rdf;
+
+/*
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+/**
+ * {@link EntityDocumentDumpProcessor} writing the truthy triples of entity
+ * documents, using a {@link TruthyRdfConverter}. This is much faster than
+ * running a {@link RdfSerializer} with
+ * {@link RdfSerializer#TASK_SIMPLE_STATEMENTS} when only the direct triples of
+ * best rank statements are needed.
+ */
+public class TruthyRdfSerializer implements EntityDocumentDumpProcessor {
+
+	final OutputStream output;
+	final RdfWriter rdfWriter;
+	final PropertyRegister propertyRegister;
+	final TruthyRdfConverter truthyRdfConverter;
+
+	/**
+	 * Creates a new serializer for the specified format and output stream.
+	 *
+	 * @param format
+	 *            RDF format, such as RDFFormat.NTRIPLES
+	 * @param output
+	 *            the output stream to write to
+	 * @param propertyRegister
+	 *            the register used to find the datatypes of properties
+	 */
+	public TruthyRdfSerializer(RDFFormat format, OutputStream output,
+			PropertyRegister propertyRegister) {
+		this.output = output;
+		this.propertyRegister = propertyRegister;
+		this.rdfWriter = RdfWriter.create(format, output);
+		this.truthyRdfConverter = new TruthyRdfConverter(this.rdfWriter,
+				propertyRegister);
+	}
+
+	/**
+	 * Returns the number of triples that have been written so far.
+	 *
+	 * @return number of triples
+	 */
+	public long getTripleCount() {
+		return this.rdfWriter.getTripleCount();
+	}
+
+	@Override
+	public void open() {
+		try {
+			this.rdfWriter.start();
+			this.truthyRdfConverter.writeNamespaceDeclarations();
+		} catch (RDFHandlerException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	@Override
+	public void processItemDocument(ItemDocument itemDocument) {
+		try {
+			this.truthyRdfConverter.writeStatements(itemDocument);
+		} catch (RDFHandlerException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	@Override
+	public void processPropertyDocument(PropertyDocument propertyDocument) {
+		this.propertyRegister.setPropertyType(propertyDocument.getEntityId(),
+				propertyDocument.getDatatype().getIri());
+		try {
+			this.truthyRdfConverter.writeStatements(propertyDocument);
+		} catch (RDFHandlerException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			this.rdfWriter.finish();
+		} catch (RDFHandlerException e) { // we cannot recover here
+			throw new RuntimeException(e.toString(), e);
+		}
+		try {
+			this.output.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e.toString(), e);
+		}
+	}
+
+}
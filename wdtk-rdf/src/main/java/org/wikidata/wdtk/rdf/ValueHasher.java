@@ -0,0 +1,72 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+
+/**
+ * Strategy computing the hashes used in the IRIs of value nodes, and of
+ * references which do not have a hash. Implementations must be thread-safe,
+ * and return the same hash for equal objects.
+ *
+ * @see Vocabulary#setValueHasher(ValueHasher)
+ */
+public interface ValueHasher {
+
+	/**
+	 * Returns the hash of a time value.
+	 *
+	 * @param value
+	 *            the value to hash
+	 * @return the hash, as a string of lowercase hexadecimal digits
+	 */
+	String getTimeValueHash(TimeValue value);
+
+	/**
+	 * Returns the hash of a globe coordinates value.
+	 *
+	 * @param value
+	 *            the value to hash
+	 * @return the hash, as a string of lowercase hexadecimal digits
+	 */
+	String getGlobeCoordinatesValueHash(GlobeCoordinatesValue value);
+
+	/**
+	 * Returns the hash of a quantity value.
+	 *
+	 * @param value
+	 *            the value to hash
+	 * @return the hash, as a string of lowercase hexadecimal digits
+	 */
+	String getQuantityValueHash(QuantityValue value);
+
+	/**
+	 * Returns the hash of a reference which does not have a hash of its own.
+	 *
+	 * @param reference
+	 *            the reference to hash
+	 * @return the hash, as a string of lowercase hexadecimal digits
+	 */
+	String getReferenceHash(Reference reference);
+}
@@ -20,10 +20,6 @@ package org.wikidata.wdtk.rdf;
  * #L%
  */
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 import org.wikidata.wdtk.datamodel.interfaces.*;
@@ -39,15 +35,7 @@ import org.wikidata.wdtk.wikibaseapi.RandomGuidGenerator;
  */
 public class Vocabulary {
 
-	final static MessageDigest md;
-	static {
-		try {
-			md = MessageDigest.getInstance("MD5");
-		} catch (NoSuchAlgorithmException e) {
-			throw new RuntimeException(
-					"Your Java does not support MD5 hashes. You should be concerned.");
-		}
-	}
+	private static volatile ValueHasher valueHasher = new Murmur3ValueHasher();
 
 	private final static GuidGenerator GUID_GENERATOR = new RandomGuidGenerator();
 
@@ -542,59 +530,42 @@ public class Vocabulary {
 		if (hash != null) {
 			return PREFIX_WIKIDATA_REFERENCE + hash;
 		}
-
-		md.reset();
-		reference.getSnakGroups().stream()
-				.flatMap(g -> g.getSnaks().stream())
-				.map(Objects::hashCode)
-				.sorted()
-				.forEach(i -> updateMessageDigestWithInt(md, i));
-
-		return PREFIX_WIKIDATA_REFERENCE + bytesToHex(md.digest());
+		return PREFIX_WIKIDATA_REFERENCE + valueHasher.getReferenceHash(reference);
 	}
 
 	public static String getTimeValueUri(TimeValue value) {
-		md.reset();
-		updateMessageDigestWithLong(md, value.getYear());
-		md.update(value.getMonth());
-		md.update(value.getDay());
-		md.update(value.getHour());
-		md.update(value.getMinute());
-		md.update(value.getSecond());
-		md.update(value.getPrecision());
-		updateMessageDigestWithString(md, value.getPreferredCalendarModel());
-		updateMessageDigestWithInt(md, value.getBeforeTolerance());
-		updateMessageDigestWithInt(md, value.getAfterTolerance());
-		updateMessageDigestWithInt(md, value.getTimezoneOffset());
-
-		return PREFIX_WIKIDATA_VALUE + bytesToHex(md.digest());
+		return PREFIX_WIKIDATA_VALUE + valueHasher.getTimeValueHash(value);
 	}
 
 	public static String getGlobeCoordinatesValueUri(GlobeCoordinatesValue value) {
-		md.reset();
-		updateMessageDigestWithString(md, value.getGlobe());
-		updateMessageDigestWithLong(md, Double.valueOf(value.getLatitude())
-				.hashCode());
-		updateMessageDigestWithLong(md, Double.valueOf(value.getLongitude())
-				.hashCode());
-		updateMessageDigestWithLong(md, Double.valueOf(value.getPrecision())
-				.hashCode());
-
-		return PREFIX_WIKIDATA_VALUE + bytesToHex(md.digest());
+		return PREFIX_WIKIDATA_VALUE
+				+ valueHasher.getGlobeCoordinatesValueHash(value);
 	}
 
 	public static String getQuantityValueUri(QuantityValue value) {
-		md.reset();
-		updateMessageDigestWithInt(md, value.getNumericValue().hashCode());
-		if(value.getLowerBound() != null) {
-			updateMessageDigestWithInt(md, value.getLowerBound().hashCode());
-		}
-		if(value.getUpperBound() != null) {
-			updateMessageDigestWithInt(md, value.getUpperBound().hashCode());
-		}
-		updateMessageDigestWithInt(md, value.getUnit().hashCode());
+		return PREFIX_WIKIDATA_VALUE + valueHasher.getQuantityValueHash(value);
+	}
+
+	/**
+	 * Sets the strategy used to compute the hashes in the IRIs of values, and
+	 * of references which do not have a hash. By default, a
+	 * {@link Murmur3ValueHasher} is used. An {@link Md5ValueHasher} can be set
+	 * to get the same IRIs as earlier versions of this library.
+	 *
+	 * @param valueHasher
+	 *            the new strategy
+	 */
+	public static void setValueHasher(ValueHasher valueHasher) {
+		Vocabulary.valueHasher = Objects.requireNonNull(valueHasher);
+	}
 
-		return PREFIX_WIKIDATA_VALUE + bytesToHex(md.digest());
+	/**
+	 * Returns the strategy used to compute the hashes in the IRIs of values.
+	 *
+	 * @return the current strategy
+	 */
+	public static ValueHasher getValueHasher() {
+		return valueHasher;
 	}
 
 	public static String getStatementRankUri(StatementRank rank) {
@@ -610,29 +581,6 @@ public class Vocabulary {
 		}
 	}
 
-	static ByteBuffer longByteBuffer = ByteBuffer.allocate(Long.SIZE / 8);
-
-	static void updateMessageDigestWithLong(MessageDigest md, long x) {
-		longByteBuffer.putLong(0, x);
-		longByteBuffer.rewind(); // important!
-		md.update(longByteBuffer);
-	}
-
-	static ByteBuffer intByteBuffer = ByteBuffer.allocate(Integer.SIZE / 8);
-
-	static void updateMessageDigestWithInt(MessageDigest md, int x) {
-		intByteBuffer.putInt(0, x);
-		intByteBuffer.rewind(); // important!
-		md.update(intByteBuffer);
-	}
-
-	static void updateMessageDigestWithString(MessageDigest md, String s) {
-		if (s == null) {
-			return;
-		}
-		md.update(s.getBytes(StandardCharsets.UTF_8));
-	}
-
 	final protected static char[] hexArray = "0123456789abcdef".toCharArray();
 
 	static String bytesToHex(byte[] bytes) {
@@ -32,6 +32,7 @@ import org.wikidata.wdtk.datamodel.interfaces.StringValue;
 import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
 import org.wikidata.wdtk.datamodel.interfaces.UnsupportedValue;
 import org.wikidata.wdtk.datamodel.interfaces.ValueVisitor;
+import org.wikidata.wdtk.rdf.DeduplicationSet;
 import org.wikidata.wdtk.rdf.OwlDeclarationBuffer;
 import org.wikidata.wdtk.rdf.PropertyRegister;
 import org.wikidata.wdtk.rdf.RdfWriter;
@@ -128,6 +129,36 @@ public class AnyValueConverter implements
 				this.currentPropertyIdValue, this.simple);
 	}
 
+	/**
+	 * Sets the maximal number of values remembered by each converter of
+	 * complex values, to avoid writing the auxiliary triples of a value
+	 * several times.
+	 *
+	 * @param capacity
+	 *            the maximal number of values per kind of value
+	 * @see DeduplicationSet
+	 */
+	public void setDeduplicationCapacity(int capacity) {
+		this.timeValueConverter.declaredValues.setMaxCapacity(capacity);
+		this.globeCoordinatesValueConverter.declaredValues
+				.setMaxCapacity(capacity);
+		this.quantityValueConverter.declaredValues.setMaxCapacity(capacity);
+	}
+
+	/**
+	 * Returns the number of values which were forgotten because of the
+	 * bounded capacity of the converters, and whose auxiliary triples may
+	 * thus be written again.
+	 *
+	 * @return the number of evicted values
+	 */
+	public long getDeduplicationEvictionCount() {
+		return this.timeValueConverter.declaredValues.getEvictionCount()
+				+ this.globeCoordinatesValueConverter.declaredValues
+						.getEvictionCount()
+				+ this.quantityValueConverter.declaredValues.getEvictionCount();
+	}
+
 	@Override
 	public void writeAuxiliaryTriples() throws RDFHandlerException {
 		this.entityIdValueConverter.writeAuxiliaryTriples();
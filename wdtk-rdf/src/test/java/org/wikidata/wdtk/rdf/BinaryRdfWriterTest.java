@@ -0,0 +1,171 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+
+public class BinaryRdfWriterTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	final ValueFactory factory = SimpleValueFactory.getInstance();
+
+	List<Statement> writeTriples(RdfWriter writer) {
+		IRI subject = writer.getUri("http://www.wikidata.org/entity/Q42");
+		BNode bnode = this.factory.createBNode("b1");
+		writer.start();
+		writer.writeTripleUriObject(subject, RdfWriter.RDF_TYPE,
+				Vocabulary.WB_ITEM);
+		writer.writeTripleValueObject(subject, RdfWriter.RDFS_LABEL,
+				writer.getLiteral("Douglas \"Noël\" Adams\n☃😀", "en"));
+		writer.writeTripleStringObject(subject, RdfWriter.SCHEMA_IN_LANGUAGE,
+				"en");
+		writer.writeTripleIntegerObject(subject, RdfWriter.WB_RANK, 42);
+		writer.writeTripleLiteralObject(subject, RdfWriter.WB_TIME,
+				"2001-05-11T00:00:00Z", RdfWriter.XSD_DATETIME);
+		writer.writeTripleValueObject(subject, RdfWriter.WB_BADGE, bnode);
+		writer.writeTripleValueObject("http://www.wikidata.org/entity/Q1",
+				RdfWriter.SCHEMA_ABOUT, subject);
+		writer.writeTripleUriObject("http://www.wikidata.org/entity/Q1",
+				RdfWriter.RDF_TYPE, Vocabulary.WB_ITEM);
+		writer.finish();
+
+		IRI q1 = this.factory.createIRI("http://www.wikidata.org/entity/Q1");
+		IRI item = this.factory.createIRI(Vocabulary.WB_ITEM);
+		return Arrays.asList(
+				this.factory.createStatement(subject, RdfWriter.RDF_TYPE, item),
+				this.factory.createStatement(subject, RdfWriter.RDFS_LABEL,
+						this.factory.createLiteral("Douglas \"Noël\" Adams\n☃😀",
+								"en")),
+				this.factory.createStatement(subject,
+						RdfWriter.SCHEMA_IN_LANGUAGE,
+						this.factory.createLiteral("en")),
+				this.factory.createStatement(subject, RdfWriter.WB_RANK,
+						this.factory.createLiteral("42", RdfWriter.XSD_INT)),
+				this.factory.createStatement(subject, RdfWriter.WB_TIME,
+						this.factory.createLiteral("2001-05-11T00:00:00Z",
+								RdfWriter.XSD_DATETIME)),
+				this.factory.createStatement(subject, RdfWriter.WB_BADGE, bnode),
+				this.factory.createStatement(q1, RdfWriter.SCHEMA_ABOUT, subject),
+				this.factory.createStatement(q1, RdfWriter.RDF_TYPE, item));
+	}
+
+	List<Statement> read(byte[] bytes) throws IOException {
+		List<Statement> statements = new ArrayList<>();
+		BinaryRdfReader reader = new BinaryRdfReader(new ByteArrayInputStream(
+				bytes));
+		reader.parse(new StatementCollector(statements));
+		assertEquals(statements.size(), reader.getTripleCount());
+		return statements;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryRdfWriter writer = new BinaryRdfWriter(out);
+		List<Statement> expected = writeTriples(writer);
+
+		List<Statement> statements = read(out.toByteArray());
+		// triples are grouped by predicate
+		assertEquals(expected.size(), statements.size());
+		assertTrue(statements.containsAll(expected));
+		assertEquals(8, writer.getTripleCount());
+	}
+
+	@Test
+	public void testSmallBlocksAndDictionary() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryRdfWriter writer = new BinaryRdfWriter(out, 2, 3);
+		List<Statement> expected = writeTriples(writer);
+
+		List<Statement> statements = read(out.toByteArray());
+		assertEquals(expected.size(), statements.size());
+		assertTrue(statements.containsAll(expected));
+	}
+
+	@Test
+	public void testItemDocument() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RdfSerializer serializer = new RdfSerializer(BinaryRdfWriter.FORMAT,
+				out, new SitesImpl(), new MockPropertyRegister());
+		assertTrue(serializer.rdfWriter instanceof BinaryRdfWriter);
+		serializer.open();
+		serializer.processItemDocument(this.objectFactory.createItemDocument());
+		serializer.close();
+
+		List<Statement> statements = read(out.toByteArray());
+		assertEquals(serializer.getTripleCount(), statements.size());
+
+		// the same triples as N-Triples, up to blank node labels
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		RdfSerializer nTriplesSerializer = new RdfSerializer(
+				RDFFormat.NTRIPLES, expected, new SitesImpl(),
+				new MockPropertyRegister());
+		nTriplesSerializer.open();
+		nTriplesSerializer.processItemDocument(this.objectFactory
+				.createItemDocument());
+		nTriplesSerializer.close();
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		NTriplesRdfWriter nTriplesWriter = new NTriplesRdfWriter(actual);
+		nTriplesWriter.start();
+		for (Statement statement : statements) {
+			nTriplesWriter.writeTripleValueObject(statement.getSubject(),
+					statement.getPredicate(), statement.getObject());
+		}
+		nTriplesWriter.finish();
+		assertEquals(sortedLines(expected), sortedLines(actual));
+	}
+
+	@Test(expected = RDFParseException.class)
+	public void testInvalidInput() throws IOException {
+		read("<http://example.com/> .\n".getBytes());
+	}
+
+	static List<String> sortedLines(ByteArrayOutputStream out)
+			throws IOException {
+		List<String> lines = new ArrayList<>();
+		for (String line : out.toString("UTF-8").split("\n")) {
+			lines.add(line.replaceAll("_:[^ ]*", "_:b"));
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+}
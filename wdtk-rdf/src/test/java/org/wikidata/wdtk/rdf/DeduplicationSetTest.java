@@ -0,0 +1,89 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DeduplicationSetTest {
+
+	@Test
+	public void testAddAndContains() {
+		DeduplicationSet set = new DeduplicationSet();
+		assertFalse(set.contains("http://www.wikidata.org/value/1"));
+		assertTrue(set.add("http://www.wikidata.org/value/1"));
+		assertTrue(set.contains("http://www.wikidata.org/value/1"));
+		assertFalse(set.add("http://www.wikidata.org/value/1"));
+		assertTrue(set.add("http://www.wikidata.org/value/2"));
+		assertEquals(2, set.size());
+		assertEquals(0, set.getEvictionCount());
+	}
+
+	@Test
+	public void testGrowth() {
+		DeduplicationSet set = new DeduplicationSet();
+		for (int i = 0; i < 100000; i++) {
+			assertTrue(set.add("Q" + i));
+		}
+		for (int i = 0; i < 100000; i++) {
+			assertFalse(set.add("Q" + i));
+		}
+		assertEquals(100000, set.size());
+		assertEquals(0, set.getEvictionCount());
+	}
+
+	@Test
+	public void testBoundedCapacity() {
+		DeduplicationSet set = new DeduplicationSet(1000);
+		assertEquals(1024, set.getMaxCapacity());
+		int added = 0;
+		for (int i = 0; i < 100000; i++) {
+			if (set.add("Q" + i)) {
+				added++;
+			}
+		}
+		assertEquals(100000, added);
+		assertEquals(1024, set.table.length);
+		assertEquals(100000, set.size() + set.getEvictionCount());
+		// the most recent strings are remembered
+		assertFalse(set.add("Q99999"));
+	}
+
+	@Test
+	public void testReduceCapacity() {
+		DeduplicationSet set = new DeduplicationSet();
+		for (int i = 0; i < 1000; i++) {
+			set.add("Q" + i);
+		}
+		set.setMaxCapacity(16);
+		assertEquals(0, set.size());
+		assertEquals(1000, set.getEvictionCount());
+		assertTrue(set.add("Q1"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new DeduplicationSet(0);
+	}
+}
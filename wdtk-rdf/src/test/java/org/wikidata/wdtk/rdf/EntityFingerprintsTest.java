@@ -0,0 +1,131 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.rdf.EntityFingerprints.Fingerprint;
+
+public class EntityFingerprintsTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	@Test
+	public void testComputeFingerprint() {
+		ItemDocument document = this.objectFactory.createItemDocument()
+				.withRevisionId(1234);
+		Fingerprint fingerprint = EntityFingerprints
+				.computeFingerprint(document);
+
+		assertEquals(1234, fingerprint.getRevisionId());
+		assertEquals(fingerprint.getContentHash(), EntityFingerprints
+				.computeFingerprint(document.withRevisionId(5678))
+				.getContentHash());
+		assertFalse(fingerprint.getContentHash() == EntityFingerprints
+				.computeFingerprint(document.withLabel(Datamodel
+						.makeMonolingualTextValue("changed", "fr")))
+				.getContentHash());
+	}
+
+	@Test
+	public void testWriteAndLoad() throws IOException {
+		EntityFingerprints fingerprints = new EntityFingerprints();
+		fingerprints.processItemDocument(this.objectFactory.createItemDocument()
+				.withRevisionId(1234));
+		fingerprints.processPropertyDocument(this.objectFactory
+				.createEmptyPropertyDocument());
+		fingerprints.put("Q1", new Fingerprint(1, -1L));
+		fingerprints.put("L1", new Fingerprint(2, 3L));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		fingerprints.write(out);
+		EntityFingerprints loaded = EntityFingerprints
+				.load(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(4, loaded.size());
+		assertEquals(fingerprints.get("Q10"), loaded.get("Q10"));
+		assertEquals(fingerprints.get("P1"), loaded.get("P1"));
+		assertEquals(new Fingerprint(1, -1L), loaded.get("Q1"));
+		assertEquals(new Fingerprint(2, 3L), loaded.get("L1"));
+		assertNull(loaded.get("Q2"));
+	}
+
+	@Test
+	public void testEncodeId() {
+		assertEquals(84, EntityFingerprints.encodeId("Q42"));
+		assertEquals(63, EntityFingerprints.encodeId("P31"));
+		assertEquals("Q42", EntityFingerprints.decodeId(84));
+		assertEquals("P31", EntityFingerprints.decodeId(63));
+		assertEquals(0, EntityFingerprints.encodeId("Q042"));
+		assertEquals(0, EntityFingerprints.encodeId("L1"));
+		assertEquals(0, EntityFingerprints.encodeId("Q"));
+		assertEquals(0, EntityFingerprints.encodeId("Q1-S1"));
+	}
+
+	@Test
+	public void testManyEntities() {
+		EntityFingerprints fingerprints = new EntityFingerprints();
+		Set<String> entityIds = new HashSet<>();
+		for (int i = 1; i <= 1000; i++) {
+			fingerprints.put("Q" + i, new Fingerprint(i, -i));
+			fingerprints.put("P" + i, new Fingerprint(i, i));
+			entityIds.add("Q" + i);
+			entityIds.add("P" + i);
+		}
+		fingerprints.put("Q1", new Fingerprint(5, 6));
+		fingerprints.put("L1", new Fingerprint(7, 8));
+		fingerprints.put("Q01", new Fingerprint(9, 10));
+		entityIds.add("L1");
+		entityIds.add("Q01");
+
+		assertEquals(2002, fingerprints.size());
+		assertEquals(new Fingerprint(5, 6), fingerprints.get("Q1"));
+		assertEquals(new Fingerprint(1000, -1000), fingerprints.get("Q1000"));
+		assertEquals(new Fingerprint(1000, 1000), fingerprints.get("P1000"));
+		assertEquals(new Fingerprint(7, 8), fingerprints.get("L1"));
+		assertEquals(new Fingerprint(9, 10), fingerprints.get("Q01"));
+		assertNull(fingerprints.get("Q1001"));
+		assertNull(fingerprints.get("L2"));
+
+		assertEquals(2002, fingerprints.getEntityIds().size());
+		assertEquals(entityIds, new HashSet<>(fingerprints.getEntityIds()));
+		assertTrue(fingerprints.getEntityIds().contains("P500"));
+		assertFalse(fingerprints.getEntityIds().contains("P1001"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testLoadInvalidLine() throws IOException {
+		EntityFingerprints.load(new ByteArrayInputStream(
+				"Q1\tnot a number\t0\n".getBytes()));
+	}
+}
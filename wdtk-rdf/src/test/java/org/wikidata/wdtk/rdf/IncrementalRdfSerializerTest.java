@@ -0,0 +1,141 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
+
+public class IncrementalRdfSerializerTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	final ItemDocument oldQ10 = withSomeValueStatement(
+			this.objectFactory.createItemDocument()).withRevisionId(1);
+	final ItemDocument oldQ20 = ItemDocumentBuilder
+			.forItemId(Datamodel.makeWikidataItemIdValue("Q20"))
+			.withLabel("unchanged", "en").withRevisionId(2).build();
+	final PropertyDocument oldP1 = this.objectFactory
+			.createEmptyPropertyDocument();
+
+	final ItemDocument newQ10 = this.oldQ10.withLabel(
+			Datamodel.makeMonolingualTextValue("changed", "fr"))
+			.withRevisionId(3);
+	final ItemDocument newQ20 = this.oldQ20.withRevisionId(4);
+	final ItemDocument newQ30 = ItemDocumentBuilder
+			.forItemId(Datamodel.makeWikidataItemIdValue("Q30"))
+			.withLabel("added", "en").withRevisionId(5).build();
+
+	@Test
+	public void testIncrementalExport() throws IOException {
+		EntityFingerprints previous = new EntityFingerprints();
+		previous.processItemDocument(this.oldQ10);
+		previous.processItemDocument(this.oldQ20);
+		previous.processPropertyDocument(this.oldP1);
+
+		ByteArrayOutputStream insertions = new ByteArrayOutputStream();
+		IncrementalRdfSerializer serializer = new IncrementalRdfSerializer(
+				insertions, new SitesImpl(), new MockPropertyRegister(),
+				previous);
+		serializer.open();
+		serializer.processItemDocument(this.newQ10);
+		serializer.processItemDocument(this.newQ20);
+		serializer.processItemDocument(this.newQ30);
+		serializer.close();
+
+		assertEquals(1, serializer.getUnchangedCount());
+		assertEquals(1, serializer.getChangedCount());
+		assertEquals(1, serializer.getAddedCount());
+		assertEquals(1, serializer.getDeletedCount());
+		assertEquals(new HashSet<>(Arrays.asList("Q10", "P1")),
+				serializer.getObsoleteEntityIds());
+		assertEquals(3, serializer.getFingerprints().size());
+		assertEquals(4, serializer.getFingerprints().get("Q20")
+				.getRevisionId());
+
+		String inserted = insertions.toString("UTF-8");
+		assertTrue(inserted.contains("\"changed\"@fr"));
+		assertTrue(inserted.contains("\"added\"@en"));
+		assertFalse(inserted.contains("\"unchanged\"@en"));
+
+		ByteArrayOutputStream deletions = new ByteArrayOutputStream();
+		EntityDocumentDumpProcessor deletionSerializer = serializer
+				.getDeletionSerializer(deletions);
+		deletionSerializer.open();
+		deletionSerializer.processItemDocument(this.oldQ10);
+		deletionSerializer.processItemDocument(this.oldQ20);
+		deletionSerializer.processPropertyDocument(this.oldP1);
+		deletionSerializer.close();
+
+		String deleted = deletions.toString("UTF-8");
+		assertFalse(deleted.isEmpty());
+		for (String line : deleted.split("\n")) {
+			assertTrue(line,
+					line.startsWith("<" + this.oldQ10.getEntityId().getIri() + ">")
+					|| line.startsWith("<" + this.oldP1.getEntityId().getIri() + ">")
+					|| line.startsWith("<" + Vocabulary.PREFIX_WIKIDATA_STATEMENT));
+		}
+		assertFalse(deleted.contains("_:"));
+		assertFalse(deleted.contains("\"changed\"@fr"));
+		assertTrue(deleted.contains("<" + this.oldP1.getEntityId().getIri()
+				+ ">"));
+	}
+
+	@Test
+	public void testBlankNodeObject() {
+		assertTrue(hasBlankNodeObject("<http://a> <http://b> _:node1 .\n"));
+		assertFalse(hasBlankNodeObject("<http://a> <http://b> <http://c> .\n"));
+		assertFalse(hasBlankNodeObject("<http://a> <http://b> \"x _:y\" .\n"));
+		assertFalse(hasBlankNodeObject("<http://a> <http://b> \"x _:y\"@en .\n"));
+	}
+
+	/**
+	 * Adds a statement whose value is written as a blank node.
+	 */
+	static ItemDocument withSomeValueStatement(ItemDocument document) {
+		return document.withStatement(StatementBuilder
+				.forSubjectAndProperty(document.getEntityId(),
+						Datamodel.makePropertyIdValue("P10",
+								document.getEntityId().getSiteIri()))
+				.withSomeValue().withId("Q10$some-value").build());
+	}
+
+	static boolean hasBlankNodeObject(String line) {
+		byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+		return IncrementalRdfSerializer.DeletionSerializer.hasBlankNodeObject(
+				bytes, 0, bytes.length - 1);
+	}
+}
@@ -0,0 +1,143 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+
+public class NTriplesRdfWriterTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	@Test
+	public void testSameOutputAsRdf4j() throws IOException {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		RdfWriter rdf4jWriter = new RdfWriter(RDFFormat.NTRIPLES, expected);
+		RdfWriter directWriter = new NTriplesRdfWriter(actual);
+		BNode bnode = rdf4jWriter.getFreshBNode();
+
+		for (RdfWriter writer : new RdfWriter[] { rdf4jWriter, directWriter }) {
+			IRI subject = writer.getUri("http://www.wikidata.org/entity/Q42");
+			writer.start();
+			writer.writeTripleUriObject(subject, RdfWriter.RDF_TYPE,
+					Vocabulary.WB_ITEM);
+			writer.writeTripleValueObject(subject, RdfWriter.RDFS_LABEL,
+					writer.getLiteral("Douglas \"Noël\" Adams\n☃😀", "en"));
+			writer.writeTripleStringObject(subject,
+					RdfWriter.SCHEMA_IN_LANGUAGE, "en\\gb");
+			writer.writeTripleIntegerObject(subject, RdfWriter.WB_RANK, 42);
+			writer.writeTripleLiteralObject(subject, RdfWriter.WB_TIME,
+					"2001-05-11T00:00:00Z", RdfWriter.XSD_DATETIME);
+			writer.writeTripleValueObject(subject, RdfWriter.WB_BADGE, bnode);
+			writer.writeTripleValueObject(
+					"http://www.wikidata.org/entity/Q1é",
+					RdfWriter.SCHEMA_ABOUT, subject);
+			writer.finish();
+		}
+
+		assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+		assertEquals(7, directWriter.getTripleCount());
+	}
+
+	@Test
+	public void testItemDocument() throws IOException {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		RdfSerializer rdf4jSerializer = new RdfSerializer(RDFFormat.TURTLE,
+				expected, new SitesImpl(), new MockPropertyRegister());
+		RdfSerializer directSerializer = new RdfSerializer(RDFFormat.NTRIPLES,
+				actual, new SitesImpl(), new MockPropertyRegister());
+		assertTrue(directSerializer.rdfWriter instanceof NTriplesRdfWriter);
+
+		for (RdfSerializer serializer : new RdfSerializer[] { rdf4jSerializer,
+				directSerializer }) {
+			serializer.open();
+			serializer.processItemDocument(this.objectFactory.createItemDocument());
+			serializer.processPropertyDocument(this.objectFactory
+					.createEmptyPropertyDocument());
+			serializer.close();
+		}
+
+		assertEquals(RdfTestHelpers.parseRdf(expected.toString("UTF-8")),
+				RdfTestHelpers.parseRdf(actual.toString("UTF-8")));
+		assertEquals(rdf4jSerializer.getTripleCount(),
+				directSerializer.getTripleCount());
+	}
+
+	@Test
+	public void testSmallBuffer() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NTriplesRdfWriter writer = new NTriplesRdfWriter(out, 16);
+		writer.start();
+		writer.writeTripleUriObject("http://example.com/a-long-subject",
+				RdfWriter.RDF_TYPE, "http://example.com/a-long-object");
+		writer.finish();
+
+		assertEquals("<http://example.com/a-long-subject> <"
+				+ Vocabulary.RDF_TYPE + "> <http://example.com/a-long-object> .\n",
+				out.toString("UTF-8"));
+	}
+
+	@Test
+	public void testIriEncoding() throws IOException {
+		String subject = "http://example.com/a b|c";
+		String object = "http://example.com/{<c>}^\"`\\";
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		RdfWriter rdf4jWriter = new RdfWriter(RDFFormat.NTRIPLES, expected);
+		RdfWriter directWriter = new NTriplesRdfWriter(actual);
+
+		for (RdfWriter writer : new RdfWriter[] { rdf4jWriter, directWriter }) {
+			writer.start();
+			writer.writeTripleUriObject(subject, RdfWriter.RDF_TYPE, object);
+			writer.writeTripleStringObject(writer.getUri(subject),
+					RdfWriter.RDFS_LABEL, "a\u0001\u007f\ud800b");
+			writer.finish();
+		}
+
+		assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+		assertTrue(actual.toString("UTF-8").startsWith(
+				"<http://example.com/a%20b%7Cc> "));
+
+		Model model = Rio.parse(new ByteArrayInputStream(actual.toByteArray()),
+				"", RDFFormat.NTRIPLES);
+		assertEquals(2, model.size());
+		assertTrue(model.contains(
+				SimpleValueFactory.getInstance().createIRI("http://example.com/a%20b%7Cc"),
+				RdfWriter.RDF_TYPE,
+				SimpleValueFactory.getInstance().createIRI(
+						"http://example.com/%7B%3Cc%3E%7D%5E%22%60%5C")));
+	}
+}
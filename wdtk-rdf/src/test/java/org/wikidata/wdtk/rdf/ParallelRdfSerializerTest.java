@@ -0,0 +1,158 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocumentDumpProcessor;
+
+public class ParallelRdfSerializerTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	@Test
+	public void testTurtleSerialization() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelRdfSerializer serializer = new ParallelRdfSerializer(
+				RDFFormat.TURTLE, out, new SitesImpl(),
+				new MockPropertyRegister(), 2);
+		serializer.setChunkSize(1);
+		serialize(serializer);
+
+		String output = out.toString("UTF-8");
+		assertEquals(output.indexOf("@prefix wd:"),
+				output.lastIndexOf("@prefix wd:"));
+		assertEquals(getSequentialOutput(), RdfTestHelpers.parseRdf(output));
+	}
+
+	@Test
+	public void testNTriplesSerialization() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelRdfSerializer serializer = new ParallelRdfSerializer(
+				RDFFormat.NTRIPLES, out, new SitesImpl(),
+				new MockPropertyRegister(), 3);
+		serializer.setChunkSize(2);
+		serialize(serializer);
+
+		Model model = RdfTestHelpers.parseRdf(out.toString("UTF-8"));
+		assertEquals(getSequentialOutput(), model);
+		assertTrue(serializer.getTripleCount() >= model.size());
+	}
+
+	@Test
+	public void testSimpleStatementsOnly() throws IOException {
+		int tasks = RdfSerializer.TASK_ALL_ENTITIES
+				| RdfSerializer.TASK_SIMPLE_STATEMENTS;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ParallelRdfSerializer serializer = new ParallelRdfSerializer(
+				RDFFormat.TURTLE, out, new SitesImpl(),
+				new MockPropertyRegister(), 2);
+		serializer.setTasks(tasks);
+		serialize(serializer);
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		RdfSerializer rdfSerializer = new RdfSerializer(RDFFormat.NTRIPLES,
+				expected, new SitesImpl(), new MockPropertyRegister());
+		rdfSerializer.setTasks(tasks);
+		serialize(rdfSerializer);
+		assertEquals(RdfTestHelpers.parseRdf(expected.toString("UTF-8")),
+				RdfTestHelpers.parseRdf(out.toString("UTF-8")));
+	}
+
+	@Test
+	public void testWorkersStoppedOnFailure() {
+		OutputStream out = new OutputStream() {
+			boolean opened = false;
+
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("write failed");
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				if (this.opened) {
+					throw new IOException("write failed");
+				}
+				// the declarations written by open() are accepted
+				this.opened = true;
+			}
+		};
+		ParallelRdfSerializer serializer = new ParallelRdfSerializer(
+				RDFFormat.NTRIPLES, out, new SitesImpl(),
+				new MockPropertyRegister(), 1);
+		serializer.setChunkSize(1);
+		serializer.open();
+		try {
+			for (int i = 0; i < 5; i++) {
+				serializer.processItemDocument(this.objectFactory
+						.createItemDocument());
+			}
+			fail("the write error was not reported");
+		} catch (RuntimeException e) {
+			assertTrue(serializer.executor.isShutdown());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedFormat() {
+		new ParallelRdfSerializer(RDFFormat.RDFXML, new ByteArrayOutputStream(),
+				new SitesImpl(), new MockPropertyRegister(), 2);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidChunkSize() {
+		new ParallelRdfSerializer(RDFFormat.TURTLE, new ByteArrayOutputStream(),
+				new SitesImpl(), new MockPropertyRegister(), 2).setChunkSize(0);
+	}
+
+	/**
+	 * Serializes the documents sequentially. The reference output is written
+	 * as N-Triples: the Turtle writer of rdf4j checks with an assertion that
+	 * no statement is written twice, which {@link #serialize} does.
+	 */
+	Model getSequentialOutput() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serialize(new RdfSerializer(RDFFormat.NTRIPLES, out, new SitesImpl(),
+				new MockPropertyRegister()));
+		return RdfTestHelpers.parseRdf(out.toString("UTF-8"));
+	}
+
+	void serialize(EntityDocumentDumpProcessor serializer) {
+		serializer.open();
+		for (int i = 0; i < 5; i++) {
+			serializer.processItemDocument(this.objectFactory.createItemDocument());
+			serializer.processPropertyDocument(this.objectFactory
+					.createEmptyPropertyDocument());
+		}
+		serializer.close();
+	}
+}
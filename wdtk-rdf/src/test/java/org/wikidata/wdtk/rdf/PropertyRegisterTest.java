@@ -24,7 +24,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import org.hamcrest.core.IsCollectionContaining;
@@ -38,6 +41,7 @@ import org.wikidata.wdtk.datamodel.interfaces.DataObjectFactory;
 import org.wikidata.wdtk.datamodel.interfaces.DatatypeIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyDocument;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.Statement;
 import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
@@ -55,9 +59,10 @@ public class PropertyRegisterTest {
 	final TestObjectFactory objectFactory = new TestObjectFactory();
 	final DataObjectFactory dataObjectFactory = new DataObjectFactoryImpl();
 
+	final Map<String, EntityDocument> mockResult = new HashMap<>();
+
 	@Before
 	public void setUp() throws MediaWikiApiErrorException, IOException {
-		Map<String, EntityDocument> mockResult = new HashMap<>();
 		List<StatementGroup> mockStatementGroups = new ArrayList<>();
 
 		PropertyIdValue pid434 = dataObjectFactory.getPropertyIdValue("P434",
@@ -248,4 +253,62 @@ public class PropertyRegisterTest {
 		assertEquals("P1921", pr.uriPatternPropertyId);
 	}
 
+	@Test
+	public void testProcessPropertyDocument() {
+		PropertyRegister register = new PropertyRegister("P1921",
+				new BasicApiConnection("http://localhost/"), this.siteIri);
+		register.setOnlineFetching(false);
+		register.processPropertyDocument((PropertyDocument) this.mockResult.get("P434"));
+
+		PropertyIdValue pid434 = dataObjectFactory.getPropertyIdValue("P434", this.siteIri);
+		assertEquals(DatatypeIdValue.DT_STRING, register.getPropertyType(pid434));
+		assertEquals("http://musicbrainz.org/$1/artist", register.getPropertyUriPattern(pid434));
+		assertNull(register.getPropertyType(dataObjectFactory.getPropertyIdValue("P23", this.siteIri)));
+		assertEquals("no requests should be made offline",
+				1, register.smallestUnfetchedPropertyIdNumber);
+	}
+
+	@Test
+	public void testSetPropertyTypeAfterLookup() {
+		this.propertyRegister.setOnlineFetching(false);
+		PropertyIdValue pid = dataObjectFactory.getPropertyIdValue("P5", this.siteIri);
+		assertNull(this.propertyRegister.getPropertyType(pid));
+		this.propertyRegister.setPropertyType(pid, DatatypeIdValue.DT_ITEM);
+		assertEquals(DatatypeIdValue.DT_ITEM, this.propertyRegister.getPropertyType(pid));
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		this.propertyRegister.getPropertyType(dataObjectFactory.getPropertyIdValue("P434", this.siteIri));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.propertyRegister.writeSnapshot(out);
+		assertEquals("P23\t" + DatatypeIdValue.DT_ITEM + "\t\n"
+				+ "P434\t" + DatatypeIdValue.DT_STRING + "\thttp://musicbrainz.org/$1/artist\n"
+				+ "P508\t" + DatatypeIdValue.DT_EXTERNAL_ID + "\thttp://purl.org/bncf/tid/$1\n",
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+		PropertyRegister register = new PropertyRegister("P1921",
+				new BasicApiConnection("http://localhost/"), this.siteIri);
+		register.setOnlineFetching(false);
+		register.loadSnapshot(new ByteArrayInputStream(out.toByteArray()));
+		PropertyIdValue pid508 = dataObjectFactory.getPropertyIdValue("P508", this.siteIri);
+		assertEquals(DatatypeIdValue.DT_EXTERNAL_ID, register.getPropertyType(pid508));
+		assertEquals("http://purl.org/bncf/tid/$1", register.getPropertyUriPattern(pid508));
+		assertNull(register.getPropertyUriPattern(dataObjectFactory.getPropertyIdValue("P23", this.siteIri)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidSnapshot() throws IOException {
+		this.propertyRegister.loadSnapshot(new ByteArrayInputStream(
+				"Q42\tfoo\t\n".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testGetPropertyNumber() {
+		assertEquals(31, PropertyRegister.getPropertyNumber("P31"));
+		assertEquals(-1, PropertyRegister.getPropertyNumber("Q31"));
+		assertEquals(-1, PropertyRegister.getPropertyNumber("P"));
+		assertEquals(-1, PropertyRegister.getPropertyNumber("P3a"));
+	}
+
 }
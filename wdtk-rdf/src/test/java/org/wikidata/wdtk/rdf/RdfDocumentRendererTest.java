@@ -0,0 +1,136 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+public class RdfDocumentRendererTest {
+
+	final TestObjectFactory objectFactory = new TestObjectFactory();
+
+	final ItemDocument document = this.objectFactory.createItemDocument()
+			.withRevisionId(1);
+
+	final int tasks = RdfSerializer.TASK_ALL_ENTITIES
+			| RdfSerializer.TASK_ALL_EXACT_DATA;
+
+	@Test
+	public void testSameOutputAsSerializer() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		RdfSerializer serializer = new RdfSerializer(RDFFormat.NTRIPLES,
+				output, new SitesImpl(), new MockPropertyRegister());
+		serializer.setTasks(this.tasks);
+		serializer.open();
+		serializer.processItemDocument(this.document);
+		serializer.close();
+
+		RdfDocumentRenderer renderer = new RdfDocumentRenderer(
+				new SitesImpl(), new MockPropertyRegister());
+		byte[] rendering = renderer.render(this.document, RDFFormat.NTRIPLES,
+				this.tasks);
+		// blank node labels differ between conversions
+		assertEquals(
+				new String(output.toByteArray(), StandardCharsets.UTF_8)
+						.replaceAll("_:\\w+", "_:b"),
+				new String(rendering, StandardCharsets.UTF_8)
+						.replaceAll("_:\\w+", "_:b"));
+	}
+
+	@Test
+	public void testCache() {
+		RdfDocumentRenderer renderer = new RdfDocumentRenderer(
+				new SitesImpl(), new MockPropertyRegister());
+		byte[] rendering = renderer.render(this.document, RDFFormat.NTRIPLES,
+				this.tasks);
+		byte[] cached = renderer.render(this.document, RDFFormat.NTRIPLES,
+				this.tasks);
+		assertArrayEquals(rendering, cached);
+		assertNotSame(rendering, cached);
+		assertEquals(1, renderer.getHits());
+		assertEquals(1, renderer.getMisses());
+
+		// other tasks, formats and revisions are rendered separately
+		byte[] labels = renderer.render(this.document, RDFFormat.NTRIPLES,
+				RdfSerializer.TASK_ALL_ENTITIES | RdfSerializer.TASK_LABELS);
+		assertFalse(Arrays.equals(rendering, labels));
+		renderer.render(this.document, BinaryRdfWriter.FORMAT, this.tasks);
+		renderer.render(this.document.withRevisionId(2), RDFFormat.NTRIPLES,
+				this.tasks);
+		assertEquals(1, renderer.getHits());
+		assertEquals(4, renderer.getMisses());
+		assertEquals(4, renderer.size());
+
+		// documents without revision id are not cached
+		renderer.render(this.document.withRevisionId(0), RDFFormat.NTRIPLES,
+				this.tasks);
+		assertEquals(4, renderer.getMisses());
+		assertEquals(4, renderer.size());
+
+		// the cached rendering cannot be modified by the callers
+		Arrays.fill(rendering, (byte) 0);
+		Arrays.fill(cached, (byte) 0);
+		assertArrayEquals(labels, renderer.render(this.document,
+				RDFFormat.NTRIPLES, RdfSerializer.TASK_ALL_ENTITIES
+						| RdfSerializer.TASK_LABELS));
+		assertFalse(renderer.render(this.document, RDFFormat.NTRIPLES,
+				this.tasks)[0] == 0);
+
+		renderer.clear();
+		assertEquals(0, renderer.size());
+		assertEquals(0, renderer.getCachedBytes());
+	}
+
+	@Test
+	public void testEviction() {
+		RdfDocumentRenderer unbounded = new RdfDocumentRenderer(
+				new SitesImpl(), new MockPropertyRegister());
+		int length = unbounded.render(this.document, RDFFormat.NTRIPLES,
+				this.tasks).length;
+
+		RdfDocumentRenderer renderer = new RdfDocumentRenderer(
+				new SitesImpl(), new MockPropertyRegister(), 2 * length);
+		renderer.render(this.document, RDFFormat.NTRIPLES, this.tasks);
+		renderer.render(this.document.withRevisionId(2), RDFFormat.NTRIPLES,
+				this.tasks);
+		// makes the first revision the most recently used
+		renderer.render(this.document, RDFFormat.NTRIPLES, this.tasks);
+		renderer.render(this.document.withRevisionId(3), RDFFormat.NTRIPLES,
+				this.tasks);
+		assertEquals(2, renderer.size());
+		assertEquals(1, renderer.getEvictions());
+		assertEquals(2 * length, renderer.getCachedBytes());
+
+		renderer.render(this.document, RDFFormat.NTRIPLES, this.tasks);
+		assertEquals(2, renderer.getHits());
+	}
+}
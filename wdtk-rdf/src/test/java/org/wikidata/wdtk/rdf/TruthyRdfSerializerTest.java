@@ -0,0 +1,115 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+import org.wikidata.wdtk.datamodel.interfaces.StatementRank;
+
+public class TruthyRdfSerializerTest {
+
+	final ItemIdValue q1 = Datamodel.makeWikidataItemIdValue("Q1");
+	final PropertyIdValue p10 = Datamodel.makeWikidataPropertyIdValue("P10");
+	final PropertyIdValue p1001 = Datamodel
+			.makeWikidataPropertyIdValue("P1001");
+	final PropertyIdValue p1002 = Datamodel
+			.makeWikidataPropertyIdValue("P1002");
+	final PropertyIdValue p1003 = Datamodel
+			.makeWikidataPropertyIdValue("P1003");
+
+	final ItemDocument document = ItemDocumentBuilder.forItemId(this.q1)
+			.withLabel("label", "en")
+			.withStatement(StatementBuilder.forSubjectAndProperty(this.q1, this.p1001)
+					.withValue(Datamodel.makeWikidataItemIdValue("Q5"))
+					.withRank(StatementRank.PREFERRED).build())
+			.withStatement(StatementBuilder.forSubjectAndProperty(this.q1, this.p1001)
+					.withValue(Datamodel.makeWikidataItemIdValue("Q6"))
+					.build())
+			.withStatement(StatementBuilder.forSubjectAndProperty(this.q1, this.p1002)
+					.withValue(Datamodel.makeWikidataItemIdValue("Q7"))
+					.withRank(StatementRank.DEPRECATED).build())
+			.withStatement(StatementBuilder.forSubjectAndProperty(this.q1, this.p1003)
+					.withValue(Datamodel.makeStringValue("truthy"))
+					.withQualifierValue(this.p1003,
+							Datamodel.makeStringValue("qualifier"))
+					.build())
+			.withStatement(StatementBuilder.forSubjectAndProperty(this.q1, this.p10)
+					.withNoValue().build())
+			.build();
+
+	@Test
+	public void testTruthyTriples() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		TruthyRdfSerializer serializer = new TruthyRdfSerializer(
+				RDFFormat.NTRIPLES, output, new MockPropertyRegister());
+		serializer.open();
+		serializer.processItemDocument(this.document);
+		serializer.close();
+
+		String subject = "<" + this.q1.getIri() + "> ";
+		Set<String> expected = new HashSet<>(Arrays.asList(
+				subject + "<" + Vocabulary.PREFIX_PROPERTY_DIRECT + "P1001> <"
+						+ Datamodel.makeWikidataItemIdValue("Q5").getIri()
+						+ "> .",
+				subject + "<" + Vocabulary.PREFIX_PROPERTY_DIRECT
+						+ "P1003> \"truthy\" .",
+				subject + "<" + Vocabulary.RDF_TYPE + "> <"
+						+ Vocabulary.PREFIX_WIKIDATA_NO_VALUE + "P10> ."));
+		assertEquals(expected, new HashSet<>(Arrays.asList(output
+				.toString("UTF-8").split("\n"))));
+		assertEquals(3, serializer.getTripleCount());
+	}
+
+	@Test
+	public void testBestRank() {
+		for (StatementGroup statementGroup : this.document
+				.getStatementGroups()) {
+			StatementRank bestRank = TruthyRdfConverter
+					.getBestRank(statementGroup);
+			switch (statementGroup.getProperty().getId()) {
+			case "P1001":
+				assertEquals(StatementRank.PREFERRED, bestRank);
+				break;
+			case "P1002":
+				assertNull(bestRank);
+				break;
+			default:
+				assertEquals(StatementRank.NORMAL, bestRank);
+			}
+		}
+	}
+}
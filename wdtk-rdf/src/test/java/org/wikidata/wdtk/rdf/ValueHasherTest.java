@@ -0,0 +1,203 @@
+package org.wikidata.wdtk.rdf;
+
+/*-
+ * #%L
+ * Wikidata Toolkit RDF
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.implementation.SitesImpl;
+import org.wikidata.wdtk.datamodel.interfaces.GlobeCoordinatesValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.QuantityValue;
+import org.wikidata.wdtk.datamodel.interfaces.Reference;
+import org.wikidata.wdtk.datamodel.interfaces.Snak;
+import org.wikidata.wdtk.datamodel.interfaces.SnakGroup;
+import org.wikidata.wdtk.datamodel.interfaces.TimeValue;
+
+public class ValueHasherTest {
+
+	final GlobeCoordinatesValue globeCoordinates = Datamodel
+			.makeGlobeCoordinatesValue(51, 13, GlobeCoordinatesValue.PREC_DEGREE,
+					GlobeCoordinatesValue.GLOBE_EARTH);
+
+	final TimeValue time = Datamodel.makeTimeValue(2008, (byte) 1, (byte) 1,
+			(byte) 0, (byte) 0, (byte) 0, TimeValue.PREC_DAY, 0, 0, 0,
+			TimeValue.CM_GREGORIAN_PRO);
+
+	final QuantityValue quantity = Datamodel.makeQuantityValue(
+			new BigDecimal("1.5"), new BigDecimal("1"), new BigDecimal("2"),
+			Datamodel.makeWikidataItemIdValue("Q11573"));
+
+	@Test
+	public void testMd5Compatibility() {
+		assertEquals("ffc4e2c3e1979c0dd53184be282bd01c", new Md5ValueHasher()
+				.getGlobeCoordinatesValueHash(this.globeCoordinates));
+	}
+
+	@Test
+	public void testMurmur3() {
+		byte[] bytes = "The quick brown fox jumps over the lazy dog".getBytes();
+		assertEquals("6c1b07bc7bbc4be347939ac4a93c437a",
+				Murmur3ValueHasher.murmurHash3(bytes, bytes.length));
+		assertEquals("00000000000000000000000000000000",
+				Murmur3ValueHasher.murmurHash3(new byte[0], 0));
+		assertEquals("c7e1fbec37d0f0a901c50c2cd88cd344", new Murmur3ValueHasher()
+				.getGlobeCoordinatesValueHash(this.globeCoordinates));
+	}
+
+	@Test
+	public void testEqualValues() {
+		ValueHasher hasher = new Murmur3ValueHasher();
+		TimeValue otherTime = Datamodel.makeTimeValue(2008, (byte) 1,
+				(byte) 1, (byte) 0, (byte) 0, (byte) 0, TimeValue.PREC_DAY, 0,
+				0, 0, TimeValue.CM_GREGORIAN_PRO);
+		QuantityValue otherQuantity = Datamodel.makeQuantityValue(
+				new BigDecimal("1.5"), new BigDecimal("1"), new BigDecimal("2"),
+				Datamodel.makeWikidataItemIdValue("Q11573"));
+
+		assertEquals(hasher.getTimeValueHash(this.time),
+				hasher.getTimeValueHash(otherTime));
+		assertEquals(hasher.getQuantityValueHash(this.quantity),
+				hasher.getQuantityValueHash(otherQuantity));
+		assertTrue(hasher.getQuantityValueHash(this.quantity).matches(
+				"[0-9a-f]{32}"));
+	}
+
+	@Test
+	public void testDistinctValues() {
+		ValueHasher hasher = new Murmur3ValueHasher();
+		QuantityValue unbounded = Datamodel.makeQuantityValue(
+				new BigDecimal("1.5"), Datamodel.makeWikidataItemIdValue("Q11573"));
+		QuantityValue otherUnit = Datamodel.makeQuantityValue(
+				new BigDecimal("1.5"), new BigDecimal("1"), new BigDecimal("2"),
+				ItemIdValue.NULL);
+		QuantityValue otherScale = Datamodel.makeQuantityValue(
+				new BigDecimal("1.50"), new BigDecimal("1"), new BigDecimal("2"),
+				Datamodel.makeWikidataItemIdValue("Q11573"));
+
+		String hash = hasher.getQuantityValueHash(this.quantity);
+		assertFalse(hash.equals(hasher.getQuantityValueHash(unbounded)));
+		assertFalse(hash.equals(hasher.getQuantityValueHash(otherUnit)));
+		assertFalse(hash.equals(hasher.getQuantityValueHash(otherScale)));
+	}
+
+	@Test
+	public void testReferenceSnaks() {
+		ValueHasher hasher = new Murmur3ValueHasher();
+		PropertyIdValue p1 = Datamodel.makeWikidataPropertyIdValue("P1");
+		PropertyIdValue p2 = Datamodel.makeWikidataPropertyIdValue("P2");
+		Snak time = Datamodel.makeValueSnak(p1, this.time);
+		Snak quantity = Datamodel.makeValueSnak(p2, this.quantity);
+		Reference reference = makeReference(time, quantity);
+
+		assertEquals(hasher.getReferenceHash(reference),
+				hasher.getReferenceHash(makeReference(quantity, time)));
+		assertFalse(hasher.getReferenceHash(reference).equals(hasher
+				.getReferenceHash(makeReference(time))));
+		assertFalse(hasher.getReferenceHash(reference).equals(hasher
+				.getReferenceHash(makeReference(time,
+						Datamodel.makeValueSnak(p1, this.quantity)))));
+		assertFalse(hasher.getReferenceHash(makeReference(
+				Datamodel.makeSomeValueSnak(p1))).equals(hasher
+				.getReferenceHash(makeReference(Datamodel.makeNoValueSnak(p1)))));
+	}
+
+	@Test
+	public void testReferenceHashStable() {
+		ValueHasher hasher = new Murmur3ValueHasher();
+		List<Snak> snaks = new ArrayList<>();
+		for (int i = 1; i <= 20; i++) {
+			snaks.add(Datamodel.makeValueSnak(Datamodel
+					.makeWikidataPropertyIdValue("P" + i), Datamodel
+					.makeStringValue("value " + (i * 7 % 20))));
+		}
+		snaks.add(Datamodel.makeValueSnak(Datamodel
+				.makeWikidataPropertyIdValue("P21"), this.time));
+		snaks.add(Datamodel.makeSomeValueSnak(Datamodel
+				.makeWikidataPropertyIdValue("P22")));
+
+		assertEquals("d8c89655b1ba4429e3289ff50d8a0acc", hasher.getReferenceHash(makeReference(snaks
+				.toArray(new Snak[0]))));
+		Collections.reverse(snaks);
+		assertEquals("d8c89655b1ba4429e3289ff50d8a0acc", hasher.getReferenceHash(makeReference(snaks
+				.toArray(new Snak[0]))));
+		assertEquals("ffeaf319f55933cd6fab3f5002545f81", hasher.getReferenceHash(makeReference()));
+	}
+
+	@Test
+	public void testSetValueHasher() {
+		ValueHasher previous = Vocabulary.getValueHasher();
+		Vocabulary.setValueHasher(new Md5ValueHasher());
+		try {
+			assertEquals(Vocabulary.PREFIX_WIKIDATA_VALUE
+					+ "ffc4e2c3e1979c0dd53184be282bd01c",
+					Vocabulary.getGlobeCoordinatesValueUri(this.globeCoordinates));
+		} finally {
+			Vocabulary.setValueHasher(previous);
+		}
+	}
+
+	/**
+	 * Renders a document with the IRIs of earlier versions of this library,
+	 * as in the fixture written before hashing was made pluggable.
+	 */
+	@Test
+	public void testMd5Fixture() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		RdfWriter rdfWriter = new RdfWriter(RDFFormat.TURTLE, out);
+		RdfConverter rdfConverter = new RdfConverter(rdfWriter,
+				new SitesImpl(), new MockPropertyRegister());
+		ValueHasher previous = Vocabulary.getValueHasher();
+		Vocabulary.setValueHasher(new Md5ValueHasher());
+		try {
+			rdfWriter.start();
+			rdfConverter.writeItemDocument(new TestObjectFactory()
+					.createItemDocument());
+			rdfWriter.finish();
+		} finally {
+			Vocabulary.setValueHasher(previous);
+		}
+		assertEquals(RdfTestHelpers.parseRdf(out.toString()),
+				RdfTestHelpers.parseRdf(RdfTestHelpers
+						.getResourceFromFile("ItemDocumentMd5.rdf")));
+	}
+
+	static Reference makeReference(Snak... snaks) {
+		List<SnakGroup> snakGroups = new ArrayList<>();
+		for (Snak snak : snaks) {
+			snakGroups.add(Datamodel.makeSnakGroup(Collections
+					.singletonList(snak)));
+		}
+		return Datamodel.makeReference(snakGroups);
+	}
+}
@@ -0,0 +1,531 @@
+package org.wikidata.wdtk.testing;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Testing Utilities
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP server answering like the api.php endpoint of a Wikibase
+ * site, for tests and benchmarks of API clients which should not send
+ * requests to a real site. It binds to the loopback interface on a free
+ * port, which is found with {@link #getApiUrl()}.
+ * <p>
+ * The server supports the following requests:
+ * <ul>
+ * <li>action=wbgetentities with ids, answered from entities registered with
+ * {@link #addEntity(JsonNode)} or loaded from wbgetentities responses with
+ * {@link #addEntities(InputStream)}; unknown ids are reported missing;</li>
+ * <li>action=wbeditentity, which returns the edited entity with a new
+ * revision id, or creates an entity from the submitted data if the "new"
+ * parameter is given. The changes submitted for existing entities are not
+ * applied;</li>
+ * <li>action=query with meta=tokens, which returns fixed tokens, and with
+ * meta=userinfo, which returns an anonymous user whose rights include
+ * "apihighlimits" if enabled with {@link #setHighLimits(boolean)}.</li>
+ * </ul>
+ * Each request is answered after a configurable latency. Requests whose
+ * maxlag parameter is lower than the lag set with {@link #setLag(double)}
+ * fail with a maxlag error, and a configurable fraction of the requests fail
+ * with an internal API error. Responses are compressed with gzip if the
+ * client accepts it.
+ */
+public class MockWikibaseApiServer implements AutoCloseable {
+
+	/**
+	 * Path of the API endpoint on the server.
+	 */
+	public static final String API_PATH = "/w/api.php";
+
+	/**
+	 * CSRF token returned by the server. It is not checked for edits.
+	 */
+	public static final String CSRF_TOKEN = "42307b93c79b0cb558d2dfb4c3c92e0955e06041+\\";
+
+	/**
+	 * Login token returned by the server.
+	 */
+	public static final String LOGIN_TOKEN = "b5780b6e2f27e20b450921d9461010b4";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Entities served by the server, indexed by id.
+	 */
+	private final Map<String, ObjectNode> entities = new ConcurrentHashMap<>();
+
+	private final AtomicLong nextItemId = new AtomicLong(1000000);
+
+	private final AtomicLong lastRevisionId = new AtomicLong(1000000);
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicLong errorCount = new AtomicLong();
+
+	private volatile long latency = 0;
+
+	private volatile long latencyJitter = 0;
+
+	private volatile double errorRate = 0;
+
+	private volatile double lag = 0;
+
+	private volatile boolean highLimits = false;
+
+	private HttpServer server;
+
+	private ExecutorService executor;
+
+	/**
+	 * Starts the server on a free port of the loopback interface.
+	 *
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public synchronized void start() throws IOException {
+		if (this.server != null) {
+			throw new IllegalStateException("The server is already started");
+		}
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		this.server.createContext(API_PATH, this::handle);
+		// requests wait for their latency on their own thread, so that they
+		// are answered concurrently
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "MockWikibaseApiServer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+	/**
+	 * Stops the server, closing the open connections.
+	 */
+	public synchronized void stop() {
+		if (this.server != null) {
+			this.server.stop(0);
+			this.executor.shutdownNow();
+			this.server = null;
+			this.executor = null;
+		}
+	}
+
+	@Override
+	public void close() {
+		stop();
+	}
+
+	/**
+	 * Returns the URL of the API endpoint, to be used as the base URL of API
+	 * connections.
+	 *
+	 * @return the URL of the api.php endpoint
+	 */
+	public synchronized String getApiUrl() {
+		if (this.server == null) {
+			throw new IllegalStateException("The server is not started");
+		}
+		InetSocketAddress address = this.server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort() + API_PATH;
+	}
+
+	/**
+	 * Adds an entity to the entities served by the server, or replaces the
+	 * entity with the same id.
+	 *
+	 * @param entity
+	 *            the JSON serialization of the entity, as in wbgetentities
+	 *            responses, which must have an "id" field
+	 */
+	public void addEntity(JsonNode entity) {
+		if (!entity.isObject() || !entity.path("id").isTextual()) {
+			throw new IllegalArgumentException("Entities must be JSON objects with an id");
+		}
+		this.entities.put(entity.get("id").asText(), ((ObjectNode) entity).deepCopy());
+	}
+
+	/**
+	 * Adds the entities of a wbgetentities response to the entities served by
+	 * the server. Missing entities of the response are ignored.
+	 *
+	 * @param wbGetEntitiesResponse
+	 *            stream of the JSON response, which is closed
+	 * @throws IOException
+	 *             if the stream is not a valid JSON document
+	 */
+	public void addEntities(InputStream wbGetEntitiesResponse) throws IOException {
+		JsonNode root;
+		try (InputStream stream = wbGetEntitiesResponse) {
+			root = this.mapper.readTree(stream);
+		}
+		Iterator<JsonNode> iterator = root.path("entities").elements();
+		while (iterator.hasNext()) {
+			JsonNode entity = iterator.next();
+			if (!entity.has("missing")) {
+				addEntity(entity);
+			}
+		}
+	}
+
+	/**
+	 * Adds the entities of a wbgetentities response stored as a resource.
+	 *
+	 * @param resourceClass
+	 *            the class used to load the resource
+	 * @param resourcePath
+	 *            the path of the resource
+	 * @throws IOException
+	 *             if the resource cannot be read
+	 */
+	public void addEntitiesFromResource(Class<?> resourceClass, String resourcePath) throws IOException {
+		InputStream stream = resourceClass.getResourceAsStream(resourcePath);
+		if (stream == null) {
+			throw new IOException("Resource not found: " + resourcePath);
+		}
+		addEntities(stream);
+	}
+
+	/**
+	 * Returns the entity served for the given id.
+	 *
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the JSON serialization of the entity, or null if there is no
+	 *         such entity
+	 */
+	public JsonNode getEntity(String entityId) {
+		return this.entities.get(entityId);
+	}
+
+	/**
+	 * Sets the time the server waits before answering each request.
+	 *
+	 * @param latency
+	 *            the minimal response time in milliseconds
+	 * @param jitter
+	 *            the maximal random time in milliseconds added to the latency
+	 */
+	public void setLatency(long latency, long jitter) {
+		if (latency < 0 || jitter < 0) {
+			throw new IllegalArgumentException("The latency cannot be negative");
+		}
+		this.latency = latency;
+		this.latencyJitter = jitter;
+	}
+
+	/**
+	 * Sets the fraction of requests which fail with an internal API error.
+	 *
+	 * @param errorRate
+	 *            a probability between 0 and 1
+	 */
+	public void setErrorRate(double errorRate) {
+		if (errorRate < 0 || errorRate > 1) {
+			throw new IllegalArgumentException("The error rate must be between 0 and 1");
+		}
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Sets the replication lag reported by the server. Requests with a maxlag
+	 * parameter lower than this lag fail with a maxlag error.
+	 *
+	 * @param lag
+	 *            the lag in seconds
+	 */
+	public void setLag(double lag) {
+		this.lag = lag;
+	}
+
+	/**
+	 * Sets whether the user reported by meta=userinfo has the "apihighlimits"
+	 * right, which lets clients request 500 instead of 50 values at once.
+	 *
+	 * @param highLimits
+	 *            true if the user should have high limits
+	 */
+	public void setHighLimits(boolean highLimits) {
+		this.highLimits = highLimits;
+	}
+
+	/**
+	 * Returns the number of requests received by the server.
+	 *
+	 * @return the number of requests
+	 */
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * Returns the number of requests answered with a maxlag or an injected
+	 * error.
+	 *
+	 * @return the number of errors
+	 */
+	public long getErrorCount() {
+		return this.errorCount.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			this.requestCount.incrementAndGet();
+			Map<String, String> parameters = getParameters(exchange);
+			waitForLatency();
+			sendResponse(exchange, answer(parameters));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Computes the JSON response to a request.
+	 */
+	JsonNode answer(Map<String, String> parameters) {
+		String maxlag = parameters.get("maxlag");
+		if (maxlag != null) {
+			try {
+				if (this.lag > Double.parseDouble(maxlag)) {
+					this.errorCount.incrementAndGet();
+					return getMaxlagError();
+				}
+			} catch (NumberFormatException e) {
+				return getError("badinteger", "Invalid value for maxlag: " + maxlag);
+			}
+		}
+		if (this.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < this.errorRate) {
+			this.errorCount.incrementAndGet();
+			return getError("internal_api_error_DBQueryError", "A database query error has occurred.");
+		}
+
+		String action = parameters.getOrDefault("action", "");
+		switch (action) {
+		case "wbgetentities":
+			return getEntities(parameters);
+		case "wbeditentity":
+			return editEntity(parameters);
+		case "query":
+			return query(parameters);
+		default:
+			return getError("badvalue", "Unrecognized value for parameter \"action\": " + action);
+		}
+	}
+
+	private JsonNode getEntities(Map<String, String> parameters) {
+		String ids = parameters.get("ids");
+		if (ids == null) {
+			return getError("param-missing", "Only the ids parameter is supported by this server.");
+		}
+		ObjectNode response = this.mapper.createObjectNode();
+		ObjectNode entitiesNode = response.putObject("entities");
+		for (String id : ids.split("\\|")) {
+			ObjectNode entity = this.entities.get(id);
+			if (entity != null) {
+				entitiesNode.set(id, entity);
+			} else {
+				entitiesNode.putObject(id).put("id", id).put("missing", "");
+			}
+		}
+		response.put("success", 1);
+		return response;
+	}
+
+	private JsonNode editEntity(Map<String, String> parameters) {
+		ObjectNode entity;
+		if (parameters.containsKey("new")) {
+			try {
+				JsonNode data = this.mapper.readTree(parameters.getOrDefault("data", "{}"));
+				if (!data.isObject()) {
+					return getError("invalid-json", "Invalid JSON data");
+				}
+				entity = (ObjectNode) data;
+			} catch (IOException e) {
+				return getError("invalid-json", "Invalid JSON data");
+			}
+			String type = parameters.get("new");
+			String prefix = "property".equals(type) ? "P" : "Q";
+			String id = prefix + this.nextItemId.incrementAndGet();
+			entity.put("id", id);
+			entity.put("type", type);
+			if ("property".equals(type) && !entity.has("datatype")) {
+				entity.put("datatype", "string");
+			}
+			entity.put("lastrevid", this.lastRevisionId.incrementAndGet());
+			this.entities.put(id, entity);
+		} else {
+			String id = parameters.get("id");
+			entity = id == null ? null : this.entities.get(id);
+			if (entity == null) {
+				return getError("no-such-entity", "Could not find such an entity (Invalid id: " + id + ")");
+			}
+			// stored entities are never modified, since they may be
+			// serialized by other threads
+			entity = entity.deepCopy();
+			entity.put("lastrevid", this.lastRevisionId.incrementAndGet());
+			this.entities.put(id, entity);
+		}
+
+		ObjectNode response = this.mapper.createObjectNode();
+		response.set("entity", entity);
+		response.put("success", 1);
+		return response;
+	}
+
+	private JsonNode query(Map<String, String> parameters) {
+		ObjectNode response = this.mapper.createObjectNode();
+		response.put("batchcomplete", "");
+		ObjectNode query = response.putObject("query");
+		for (String meta : parameters.getOrDefault("meta", "").split("\\|")) {
+			if ("tokens".equals(meta)) {
+				ObjectNode tokens = query.putObject("tokens");
+				String type = parameters.getOrDefault("type", "csrf");
+				for (String tokenType : type.split("\\|")) {
+					tokens.put(tokenType + "token", "login".equals(tokenType) ? LOGIN_TOKEN : CSRF_TOKEN);
+				}
+			} else if ("userinfo".equals(meta)) {
+				ObjectNode userInfo = query.putObject("userinfo");
+				userInfo.put("id", 0);
+				userInfo.put("name", "127.0.0.1");
+				userInfo.put("anon", "");
+				ArrayNode rights = userInfo.putArray("rights");
+				rights.add("read");
+				rights.add("edit");
+				if (this.highLimits) {
+					rights.add("apihighlimits");
+				}
+			}
+		}
+		return response;
+	}
+
+	private JsonNode getMaxlagError() {
+		ObjectNode response = getError("maxlag", String.format("Waiting for all: %.2f seconds lagged.", this.lag));
+		ObjectNode error = (ObjectNode) response.get("error");
+		error.put("host", "all");
+		error.put("lag", this.lag);
+		error.put("type", "db");
+		return response;
+	}
+
+	private ObjectNode getError(String code, String info) {
+		ObjectNode response = this.mapper.createObjectNode();
+		ObjectNode error = response.putObject("error");
+		error.put("code", code);
+		error.put("info", info);
+		response.put("servedby", "mock");
+		return response;
+	}
+
+	private void waitForLatency() throws InterruptedException {
+		long wait = this.latency;
+		if (this.latencyJitter > 0) {
+			wait += ThreadLocalRandom.current().nextLong(this.latencyJitter + 1);
+		}
+		if (wait > 0) {
+			TimeUnit.MILLISECONDS.sleep(wait);
+		}
+	}
+
+	private void sendResponse(HttpExchange exchange, JsonNode response) throws IOException {
+		byte[] body = this.mapper.writeValueAsBytes(response);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		if (response.has("error") && "maxlag".equals(response.get("error").path("code").asText())) {
+			exchange.getResponseHeaders().set("Retry-After", "5");
+		}
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(body);
+			}
+			body = compressed.toByteArray();
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+		}
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream stream = exchange.getResponseBody()) {
+			stream.write(body);
+		}
+	}
+
+	/**
+	 * Reads the parameters from the query string and, for POST requests,
+	 * from the URL-encoded body.
+	 */
+	private Map<String, String> getParameters(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = new HashMap<>();
+		parseQueryString(exchange.getRequestURI().getRawQuery(), parameters);
+		if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			try (InputStream stream = exchange.getRequestBody()) {
+				byte[] buffer = new byte[8192];
+				int count;
+				while ((count = stream.read(buffer)) >= 0) {
+					body.write(buffer, 0, count);
+				}
+			}
+			parseQueryString(new String(body.toByteArray(), StandardCharsets.UTF_8), parameters);
+		}
+		return parameters;
+	}
+
+	private static void parseQueryString(String queryString, Map<String, String> parameters)
+			throws UnsupportedEncodingException {
+		if (queryString == null || queryString.isEmpty()) {
+			return;
+		}
+		for (String pair : queryString.split("&")) {
+			int separator = pair.indexOf('=');
+			if (separator < 0) {
+				parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+			} else {
+				parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+						URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+			}
+		}
+	}
+}
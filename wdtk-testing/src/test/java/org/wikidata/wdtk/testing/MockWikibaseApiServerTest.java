@@ -0,0 +1,177 @@
+package org.wikidata.wdtk.testing;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Testing Utilities
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class MockWikibaseApiServerTest {
+
+	private static final String ENTITIES = "{\"entities\":{"
+			+ "\"Q42\":{\"id\":\"Q42\",\"type\":\"item\",\"lastrevid\":12,\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Douglas Adams\"}}},"
+			+ "\"Q6\":{\"id\":\"Q6\",\"missing\":\"\"}},\"success\":1}";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private MockWikibaseApiServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new MockWikibaseApiServer();
+		server.addEntities(new ByteArrayInputStream(ENTITIES.getBytes(StandardCharsets.UTF_8)));
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	@Test
+	public void testGetEntities() throws IOException {
+		JsonNode root = post("action=wbgetentities&format=json&ids=Q42%7CQ6", false);
+		assertEquals("Douglas Adams", root.path("entities").path("Q42").path("labels").path("en").path("value").asText());
+		assertTrue(root.path("entities").path("Q6").has("missing"));
+		assertEquals(1, root.path("success").asInt());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void testGzipResponse() throws IOException {
+		JsonNode root = post("action=wbgetentities&format=json&ids=Q42", true);
+		assertEquals("Q42", root.path("entities").path("Q42").path("id").asText());
+	}
+
+	@Test
+	public void testTokens() throws IOException {
+		JsonNode root = post("action=query&meta=tokens&type=csrf&format=json", false);
+		assertEquals(MockWikibaseApiServer.CSRF_TOKEN, root.path("query").path("tokens").path("csrftoken").asText());
+	}
+
+	@Test
+	public void testUserInfo() throws IOException {
+		JsonNode root = post("action=query&meta=userinfo&uiprop=rights&format=json", false);
+		assertFalse(root.path("query").path("userinfo").path("rights").toString().contains("apihighlimits"));
+
+		server.setHighLimits(true);
+		root = post("action=query&meta=userinfo&uiprop=rights&format=json", false);
+		assertTrue(root.path("query").path("userinfo").path("rights").toString().contains("\"apihighlimits\""));
+	}
+
+	@Test
+	public void testEditEntity() throws IOException {
+		JsonNode root = post("action=wbeditentity&id=Q42&data=%7B%7D&token="
+				+ URLEncoder.encode(MockWikibaseApiServer.CSRF_TOKEN, "UTF-8") + "&format=json", false);
+		long revision = root.path("entity").path("lastrevid").asLong();
+		assertTrue(revision > 12);
+		assertEquals(revision, server.getEntity("Q42").path("lastrevid").asLong());
+
+		root = post("action=wbeditentity&new=item&data="
+				+ URLEncoder.encode("{\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"New\"}}}", "UTF-8")
+				+ "&format=json", false);
+		String id = root.path("entity").path("id").asText();
+		assertEquals("item", root.path("entity").path("type").asText());
+		assertEquals("New", server.getEntity(id).path("labels").path("en").path("value").asText());
+	}
+
+	@Test
+	public void testEditMissingEntity() throws IOException {
+		JsonNode root = post("action=wbeditentity&id=Q6&data=%7B%7D&format=json", false);
+		assertEquals("no-such-entity", root.path("error").path("code").asText());
+	}
+
+	@Test
+	public void testMaxlag() throws IOException {
+		server.setLag(6.5);
+		JsonNode root = post("action=wbeditentity&id=Q42&data=%7B%7D&maxlag=5&format=json", false);
+		assertEquals("maxlag", root.path("error").path("code").asText());
+		assertEquals(6.5, root.path("error").path("lag").asDouble(), 1e-9);
+		// requests without maxlag are answered
+		root = post("action=wbgetentities&ids=Q42&format=json", false);
+		assertEquals(1, root.path("success").asInt());
+		assertEquals(1, server.getErrorCount());
+	}
+
+	@Test
+	public void testCurrentLag() throws IOException {
+		JsonNode root = post("action=query&maxlag=-1&format=json", false);
+		assertEquals(0, root.path("error").path("lag").asDouble(), 1e-9);
+	}
+
+	@Test
+	public void testErrorInjection() throws IOException {
+		server.setErrorRate(1);
+		JsonNode root = post("action=wbgetentities&ids=Q42&format=json", false);
+		assertEquals("internal_api_error_DBQueryError", root.path("error").path("code").asText());
+		assertEquals(1, server.getErrorCount());
+	}
+
+	@Test
+	public void testLatency() throws IOException {
+		server.setLatency(100, 10);
+		long start = System.nanoTime();
+		post("action=wbgetentities&ids=Q42&format=json", false);
+		assertTrue(System.nanoTime() - start >= 100000000L);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidErrorRate() {
+		server.setErrorRate(2);
+	}
+
+	private JsonNode post(String body, boolean gzip) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(server.getApiUrl()).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoOutput(true);
+		connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+		if (gzip) {
+			connection.setRequestProperty("Accept-Encoding", "gzip");
+		}
+		try (OutputStream stream = connection.getOutputStream()) {
+			stream.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		if (gzip) {
+			assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+		}
+		try (InputStream stream = gzip ? new GZIPInputStream(connection.getInputStream())
+				: connection.getInputStream()) {
+			return mapper.readTree(stream);
+		}
+	}
+}
@@ -20,6 +20,7 @@ package org.wikidata.wdtk.wikibaseapi;
  * #L%
  */
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -33,13 +34,19 @@ import org.wikidata.wdtk.wikibaseapi.apierrors.AssertUserFailedException;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorHandler;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.URLEncoder;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class to build up and hold a connection to a Wikibase API.
@@ -83,6 +90,16 @@ public abstract class ApiConnection {
 	 */
 	protected static final String ASSERT_PARAMETER = "assert";
 
+	/**
+	 * Name of the header used to request compressed responses.
+	 */
+	static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+
+	/**
+	 * Name of the header giving the compression of a response.
+	 */
+	static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+
 	protected static final MediaType URLENCODED_MEDIA_TYPE = MediaType.parse("application/x-www-form-urlencoded");
 
 	/**
@@ -127,6 +144,46 @@ public abstract class ApiConnection {
 	 */
 	private final ObjectMapper mapper = new ObjectMapper();
 
+	/**
+	 * Tokens which are being fetched asynchronously, so that concurrent
+	 * requests needing the same token share a single query.
+	 */
+	private final Map<String, CompletableFuture<String>> pendingTokens = new HashMap<>();
+
+	/**
+	 * Controller of the rate of edits sent through this connection, created
+	 * when it is first needed.
+	 */
+	private EditRateController editRateController;
+
+	/**
+	 * Settings of the HTTP client, or null to use the defaults of the client.
+	 */
+	private HttpClientSettings httpClientSettings;
+
+	/**
+	 * Response times of the requests sent through this connection, by API
+	 * action.
+	 */
+	private final Map<String, LatencyHistogram> latencyHistograms = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of requests sent through this connection.
+	 */
+	private final AtomicLong requestCount = new AtomicLong();
+
+	/**
+	 * Number of bytes of response bodies read from the network, before
+	 * decompression.
+	 */
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	/**
+	 * Number of bytes of response bodies read by the callers, after
+	 * decompression.
+	 */
+	private final AtomicLong bytesDecoded = new AtomicLong();
+
 	/**
 	 * Creates an object to manage a connection to the Web API of a Wikibase
 	 * site.
@@ -167,6 +224,21 @@ public abstract class ApiConnection {
 	 */
 	protected abstract OkHttpClient.Builder getClientBuilder();
 
+	/**
+	 * Returns the object which paces the edits sent through this connection.
+	 * It is shared by all {@link WikibaseDataEditor} objects using this
+	 * connection, and exposes the current edit rate and lag.
+	 *
+	 * @return the edit rate controller of this connection
+	 */
+	@JsonIgnore
+	public synchronized EditRateController getEditRateController() {
+		if (this.editRateController == null) {
+			this.editRateController = new EditRateController();
+		}
+		return this.editRateController;
+	}
+
 	/**
 	 * Getter for the apiBaseUrl.
 	 */
@@ -225,6 +297,29 @@ public abstract class ApiConnection {
 		return Collections.unmodifiableMap(tokens);
 	}
 
+	/**
+	 * Returns the settings of the HTTP client.
+	 *
+	 * @return the settings, or null if the defaults of the client are used
+	 */
+	@JsonIgnore
+	public HttpClientSettings getHttpClientSettings() {
+		return httpClientSettings;
+	}
+
+	/**
+	 * Sets the connection pool, concurrency, protocols, response cache and DNS
+	 * cache of the HTTP client. The client is rebuilt with these settings for
+	 * the next request.
+	 *
+	 * @param settings
+	 *            the settings, or null to use the defaults of the client
+	 */
+	public synchronized void setHttpClientSettings(HttpClientSettings settings) {
+		httpClientSettings = settings;
+		client = null;
+	}
+
 	/**
 	 * Sets the maximum time to wait for when establishing a connection, in milliseconds.
 	 * For negative values, no timeout is set.
@@ -289,22 +384,69 @@ public abstract class ApiConnection {
 	 *     if a network error occurred
 	 */
 	String getOrFetchToken(String tokenType) throws IOException, MediaWikiApiErrorException {
-		if (tokens.containsKey(tokenType)) {
-			return tokens.get(tokenType);
+		synchronized (tokens) {
+			if (tokens.containsKey(tokenType)) {
+				return tokens.get(tokenType);
+			}
 		}
 		String value = fetchToken(tokenType);
-		tokens.put(tokenType, value);
+		synchronized (tokens) {
+			tokens.put(tokenType, value);
+		}
 		// TODO if fetchToken raises an exception, we could try to recover here:
 		// (1) Check if we are still logged in; maybe log in again
 		// (2) If there is another error, maybe just run the operation again
 		return value;
 	}
 
+	/**
+	 * Return a token of given type, without blocking if it has to be fetched.
+	 * Concurrent calls for a token which is not known yet share the same
+	 * query.
+	 *
+	 * @param tokenType The kind of token to retrieve like "csrf" or "login"
+	 * @return a future token, which fails with a
+	 *     {@link MediaWikiApiErrorException} or an {@link IOException} if the
+	 *     token could not be fetched
+	 */
+	CompletableFuture<String> getOrFetchTokenAsync(String tokenType) {
+		CompletableFuture<String> future;
+		synchronized (tokens) {
+			if (tokens.containsKey(tokenType)) {
+				return CompletableFuture.completedFuture(tokens.get(tokenType));
+			}
+			future = pendingTokens.get(tokenType);
+			if (future != null) {
+				return future;
+			}
+			future = new CompletableFuture<>();
+			pendingTokens.put(tokenType, future);
+		}
+
+		CompletableFuture<String> result = future;
+		sendJsonRequestAsync("POST", getTokenParameters(tokenType)).whenComplete((root, exception) -> {
+			synchronized (tokens) {
+				pendingTokens.remove(tokenType);
+				if (exception == null) {
+					tokens.put(tokenType, getToken(root, tokenType));
+				}
+			}
+			if (exception == null) {
+				result.complete(getToken(root, tokenType));
+			} else {
+				result.completeExceptionally(exception);
+			}
+		});
+		return result;
+	}
+
 	/**
 	 * Remove fetched value of given token.
 	 */
 	void clearToken(String tokenType) {
-		tokens.remove(tokenType);
+		synchronized (tokens) {
+			tokens.remove(tokenType);
+		}
 	}
 
 	/**
@@ -320,12 +462,19 @@ public abstract class ApiConnection {
 	 *     if MediaWiki returned an error when fetching the token
 	 */
 	private String fetchToken(String tokenType) throws IOException, MediaWikiApiErrorException {
+		JsonNode root = this.sendJsonRequest("POST", getTokenParameters(tokenType));
+		return getToken(root, tokenType);
+	}
+
+	private Map<String, String> getTokenParameters(String tokenType) {
 		Map<String, String> params = new HashMap<>();
 		params.put(ApiConnection.PARAM_ACTION, "query");
 		params.put("meta", "tokens");
 		params.put("type", tokenType);
+		return params;
+	}
 
-		JsonNode root = this.sendJsonRequest("POST", params);
+	private String getToken(JsonNode root, String tokenType) {
 		return root.path("query").path("tokens").path(tokenType + "token").textValue();
 	}
 
@@ -346,16 +495,57 @@ public abstract class ApiConnection {
 	 * @throws MediaWikiApiErrorException if the API returns an error
 	 */
 	public JsonNode sendJsonRequest(String requestMethod, Map<String,String> parameters) throws IOException, MediaWikiApiErrorException {
+		setJsonParameters(parameters);
+		try (InputStream response = sendRequest(requestMethod, parameters)) {
+			return readJsonResponse(response);
+		}
+	}
+
+	/**
+	 * Sends a request to the API with the given parameters and the given
+	 * request method, without blocking the calling thread. The request is
+	 * queued by the HTTP client and its result is parsed by one of the
+	 * client's threads. Errors and warnings are handled as in
+	 * {@link #sendJsonRequest(String, Map)}.
+	 *
+	 * @param requestMethod
+	 *            either POST or GET
+	 * @param parameters
+	 *            Maps parameter keys to values. Out of this map the function
+	 *            will create a query string for the request.
+	 * @return future API result, which fails with a
+	 *         {@link MediaWikiApiErrorException} if the API returns an error,
+	 *         or with an {@link IOException} for network errors
+	 */
+	public CompletableFuture<JsonNode> sendJsonRequestAsync(String requestMethod, Map<String,String> parameters) {
+		setJsonParameters(parameters);
+		return sendRequestAsync(requestMethod, parameters).thenApply(response -> {
+			try (InputStream stream = response) {
+				return readJsonResponse(stream);
+			} catch (IOException | MediaWikiApiErrorException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Sets the parameters common to all requests expecting a JSON response.
+	 *
+	 * @param parameters
+	 *            the parameters of the request, which are modified
+	 */
+	void setJsonParameters(Map<String,String> parameters) {
 		parameters.put(ApiConnection.PARAM_FORMAT, "json");
 		if (loggedIn) {
 			parameters.put(ApiConnection.ASSERT_PARAMETER, "user");
 		}
-		try (InputStream response = sendRequest(requestMethod, parameters)) {
-			JsonNode root = this.mapper.readTree(response);
-			this.checkErrors(root);
-			this.logWarnings(root);
-			return root;
-		}
+	}
+
+	private JsonNode readJsonResponse(InputStream response) throws IOException, MediaWikiApiErrorException {
+		JsonNode root = this.mapper.readTree(response);
+		this.checkErrors(root);
+		this.logWarnings(root);
+		return root;
 	}
 
 	/**
@@ -377,32 +567,200 @@ public abstract class ApiConnection {
 	 */
 	public InputStream sendRequest(String requestMethod,
 			Map<String, String> parameters) throws IOException {
-		Request request;
+		Request request = buildRequest(requestMethod, parameters);
+		String action = parameters.get(PARAM_ACTION);
+		long start = System.nanoTime();
+		Response response = getClient().newCall(request).execute();
+		recordLatency(action, System.nanoTime() - start);
+		return getResponseStream(response);
+	}
+
+	/**
+	 * Sends a request to the API with the given parameters and the given
+	 * request method, without blocking the calling thread. The future is
+	 * completed by one of the threads of the HTTP client once the response
+	 * headers are received; the caller is responsible for closing the
+	 * resulting stream.
+	 *
+	 * @param requestMethod
+	 *            either POST or GET
+	 * @param parameters
+	 *            Maps parameter keys to values. Out of this map the function
+	 *            will create a query string for the request.
+	 * @return future API result, which fails with an {@link IOException}
+	 *         for network errors
+	 */
+	public CompletableFuture<InputStream> sendRequestAsync(String requestMethod,
+			Map<String, String> parameters) {
+		CompletableFuture<InputStream> future = new CompletableFuture<>();
+		Request request = buildRequest(requestMethod, parameters);
+		String action = parameters.get(PARAM_ACTION);
+		long start = System.nanoTime();
+		getClient().newCall(request).enqueue(new Callback() {
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				future.completeExceptionally(e);
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) {
+				recordLatency(action, System.nanoTime() - start);
+				try {
+					future.complete(getResponseStream(response));
+				} catch (IOException e) {
+					response.close();
+					future.completeExceptionally(e);
+				}
+			}
+		});
+		return future;
+	}
+
+	private Request buildRequest(String requestMethod, Map<String, String> parameters) {
 		String queryString = getQueryString(parameters);
+		Request.Builder builder;
 		if ("GET".equalsIgnoreCase(requestMethod)) {
-			request = new Request.Builder().url(apiBaseUrl + "?" + queryString).build();
+			builder = new Request.Builder().url(apiBaseUrl + "?" + queryString);
 		} else if ("POST".equalsIgnoreCase(requestMethod)) {
-			request = new Request.Builder().url(apiBaseUrl).post(RequestBody.create(URLENCODED_MEDIA_TYPE, queryString)).build();
+			builder = new Request.Builder().url(apiBaseUrl).post(RequestBody.create(URLENCODED_MEDIA_TYPE, queryString));
 		} else {
 			throw new IllegalArgumentException("Expected the requestMethod to be either GET or POST, but got " + requestMethod);
 		}
+		// Requesting compression explicitly means that the HTTP client leaves
+		// the body untouched, so that the bytes on the wire can be counted.
+		return builder.header(HEADER_ACCEPT_ENCODING, "gzip").build();
+	}
 
-		if (client == null) {
-			buildClient();
-		}
-		Response response = client.newCall(request).execute();
-		return Objects.requireNonNull(response.body()).byteStream();
+	/**
+	 * Returns the body of a response, decompressed if needed, and records the
+	 * request in the statistics of this connection.
+	 */
+	private InputStream getResponseStream(Response response) throws IOException {
+		return decodeResponse(Objects.requireNonNull(response.body()).byteStream(),
+				response.header(HEADER_CONTENT_ENCODING));
 	}
 
-	private void buildClient() {
-		OkHttpClient.Builder builder = getClientBuilder();
-		if (connectTimeout >= 0) {
-			builder.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+	/**
+	 * Wraps the body of a response in a stream which decompresses it
+	 * according to its content encoding, and counts the bytes read before
+	 * and after decompression.
+	 *
+	 * @param body
+	 *            the body as received from the network
+	 * @param contentEncoding
+	 *            the value of the Content-Encoding header, or null
+	 * @return the decoded body
+	 * @throws IOException
+	 *             if the body is not valid for its content encoding
+	 */
+	InputStream decodeResponse(InputStream body, String contentEncoding) throws IOException {
+		requestCount.incrementAndGet();
+		InputStream received = new CountingInputStream(body, bytesReceived);
+		if ("gzip".equalsIgnoreCase(contentEncoding)) {
+			try {
+				received = new GZIPInputStream(received);
+			} catch (IOException e) {
+				received.close();
+				throw e;
+			}
 		}
-		if (readTimeout >= 0) {
-			builder.readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+		return new CountingInputStream(received, bytesDecoded);
+	}
+
+	/**
+	 * Returns the number of requests sent through this connection whose
+	 * response was received.
+	 *
+	 * @return the number of requests
+	 */
+	@JsonIgnore
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Returns the number of bytes of response bodies received through this
+	 * connection, as transferred on the network. Responses are requested
+	 * with gzip compression, so this is usually much smaller than
+	 * {@link #getBytesDecoded()}. Only the bytes actually read by the callers
+	 * are counted.
+	 *
+	 * @return the number of compressed bytes received
+	 */
+	@JsonIgnore
+	public long getBytesReceived() {
+		return bytesReceived.get();
+	}
+
+	/**
+	 * Returns the number of bytes of response bodies read through this
+	 * connection, after decompression.
+	 *
+	 * @return the number of decompressed bytes read
+	 */
+	@JsonIgnore
+	public long getBytesDecoded() {
+		return bytesDecoded.get();
+	}
+
+	/**
+	 * Returns the histograms of the response times of the requests sent
+	 * through this connection, by API action (such as "wbgetentities"). The
+	 * response time of a request is measured until the headers of the
+	 * response are received, and does not include reading the body. The
+	 * returned map is updated as requests are sent.
+	 *
+	 * @return a read-only view of the histograms by action
+	 */
+	@JsonIgnore
+	public Map<String, LatencyHistogram> getLatencyHistograms() {
+		return Collections.unmodifiableMap(latencyHistograms);
+	}
+
+	/**
+	 * Records the response time of a request in the histogram of its action.
+	 *
+	 * @param action
+	 *            the action of the request, or null if it has none
+	 * @param nanos
+	 *            the response time in nanoseconds
+	 */
+	void recordLatency(String action, long nanos) {
+		latencyHistograms.computeIfAbsent(action == null ? "" : action, key -> new LatencyHistogram())
+				.record(nanos);
+	}
+
+	/**
+	 * Resets the request and byte counts and the response time histograms of
+	 * this connection.
+	 */
+	public void resetStatistics() {
+		requestCount.set(0);
+		bytesReceived.set(0);
+		bytesDecoded.set(0);
+		latencyHistograms.clear();
+	}
+
+	/**
+	 * Returns the HTTP client, building it if needed. Synchronized since
+	 * requests can be sent by several threads.
+	 */
+	private synchronized OkHttpClient getClient() {
+		if (client == null) {
+			OkHttpClient.Builder builder = getClientBuilder();
+			if (httpClientSettings != null) {
+				httpClientSettings.apply(builder);
+			}
+			if (connectTimeout >= 0) {
+				builder.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+			}
+			if (readTimeout >= 0) {
+				builder.readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+			}
+			client = builder.build();
 		}
-		client = builder.build();
+		return client;
 	}
 
 	/**
@@ -542,4 +900,42 @@ public abstract class ApiConnection {
 		return builder.toString();
 	}
 
+
+	/**
+	 * Stream adding the number of bytes read to a counter.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+
+		private final AtomicLong counter;
+
+		CountingInputStream(InputStream in, AtomicLong counter) {
+			super(in);
+			this.counter = counter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				counter.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = super.read(b, off, len);
+			if (count > 0) {
+				counter.addAndGet(count);
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long count = super.skip(n);
+			counter.addAndGet(count);
+			return count;
+		}
+	}
 }
@@ -0,0 +1,79 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dns;
+
+/**
+ * Resolves host names with another {@link Dns}, and reuses the resolved
+ * addresses for a fixed time. Failed lookups are not cached.
+ */
+class CachingDns implements Dns {
+
+	private final Dns delegate;
+
+	private final long cacheDuration;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a DNS cache.
+	 *
+	 * @param delegate
+	 *            the DNS used to resolve host names which are not cached
+	 * @param cacheDuration
+	 *            the time during which addresses are reused, in milliseconds
+	 */
+	CachingDns(Dns delegate, long cacheDuration) {
+		this.delegate = delegate;
+		this.cacheDuration = TimeUnit.MILLISECONDS.toNanos(cacheDuration);
+	}
+
+	@Override
+	public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+		long now = System.nanoTime();
+		Entry entry = entries.get(hostname);
+		if (entry != null && now - entry.resolutionTime < cacheDuration) {
+			return entry.addresses;
+		}
+		List<InetAddress> addresses = delegate.lookup(hostname);
+		entries.put(hostname, new Entry(addresses, now));
+		return addresses;
+	}
+
+	private static class Entry {
+
+		final List<InetAddress> addresses;
+		final long resolutionTime;
+
+		Entry(List<InetAddress> addresses, long resolutionTime) {
+			this.addresses = addresses;
+			this.resolutionTime = resolutionTime;
+		}
+	}
+}
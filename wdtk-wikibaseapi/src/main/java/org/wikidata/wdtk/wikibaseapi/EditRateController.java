@@ -0,0 +1,359 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Controls the rate of the edits sent through an {@link ApiConnection}. All
+ * editing actions using the same connection share one controller, obtained
+ * with {@link ApiConnection#getEditRateController()}, so that several
+ * {@link WikibaseDataEditor} objects do not add up their edit rates.
+ * <p>
+ * The edits are paced by a token bucket, which allows bursts of
+ * {@link #getBurstSize()} edits and refills at {@link #getEditRate()} edits
+ * per second. This rate follows an additive increase, multiplicative
+ * decrease scheme: it is halved whenever an edit fails because of replication
+ * lag, reduced when the lag read with {@link WbEditingAction#getCurrentLag()}
+ * gets close to the maxlag parameter, and increased by a fraction of the
+ * maximal rate after each successful edit. The increase is suspended while
+ * the response times of the server are much longer than usual.
+ */
+public class EditRateController {
+
+	/**
+	 * Maximal edit rate used by default, in edits per second. It corresponds
+	 * to an average time of 2 seconds per edit.
+	 */
+	public static final double DEFAULT_MAX_EDIT_RATE = 0.5;
+
+	/**
+	 * Burst size used by default. Wikidata.org seems to block fast editors
+	 * after 9 edits, so this size seems to make sense.
+	 */
+	public static final int DEFAULT_BURST_SIZE = 9;
+
+	/**
+	 * Fraction of the maximal edit rate which is added to the edit rate after
+	 * each successful edit.
+	 */
+	static final double ADDITIVE_INCREASE = 0.05;
+
+	/**
+	 * Factor applied to the edit rate when an edit fails because of lag.
+	 */
+	static final double MULTIPLICATIVE_DECREASE = 0.5;
+
+	/**
+	 * Factor applied to the edit rate when the reported lag exceeds half of
+	 * the maxlag parameter, without edits failing yet.
+	 */
+	static final double LAG_WARNING_DECREASE = 0.8;
+
+	/**
+	 * Fraction of the maximal edit rate below which the edit rate is never
+	 * reduced. If the maximal edit rate is not limited, this is the minimal
+	 * rate in edits per second.
+	 */
+	static final double MIN_RATE_FRACTION = 0.01;
+
+	/**
+	 * Weight of a new response time in the average response time.
+	 */
+	static final double LATENCY_SMOOTHING = 0.2;
+
+	/**
+	 * Ratio between the average and the usual response time above which the
+	 * edit rate is no longer increased.
+	 */
+	static final double LATENCY_TOLERANCE = 2.0;
+
+	private double maxEditRate = DEFAULT_MAX_EDIT_RATE;
+
+	private double editRate = DEFAULT_MAX_EDIT_RATE;
+
+	private int burstSize = DEFAULT_BURST_SIZE;
+
+	/**
+	 * Number of tokens in the bucket. Negative when edits have been scheduled
+	 * ahead of the available tokens.
+	 */
+	private double availableTokens = DEFAULT_BURST_SIZE;
+
+	/**
+	 * Time (as given by {@link System#nanoTime()}) when
+	 * {@link #availableTokens} was last updated.
+	 */
+	private long lastRefillTime = System.nanoTime();
+
+	/**
+	 * Time of the last reservation, used to measure the actual edit rate.
+	 */
+	private long lastReservationTime = 0;
+
+	/**
+	 * Moving average of the actual edit rate, used as a starting point when
+	 * the edit rate has to be reduced while it is not limited.
+	 */
+	private double observedEditRate = 0;
+
+	/**
+	 * Last lag reported by the server in seconds.
+	 */
+	private double lag = 0;
+
+	/**
+	 * Moving average of the response times of edits, in milliseconds.
+	 */
+	private double averageLatency = 0;
+
+	/**
+	 * Lowest value of {@link #averageLatency} so far, taken as the usual
+	 * response time of the server.
+	 */
+	private double baselineLatency = 0;
+
+	private long editCount = 0;
+
+	private long maxlagErrorCount = 0;
+
+	/**
+	 * Takes a token from the bucket, to start an edit.
+	 *
+	 * @return the delay in nanoseconds after which the edit may start
+	 */
+	public synchronized long reserve() {
+		long now = System.nanoTime();
+		if (this.lastReservationTime != 0 && now > this.lastReservationTime) {
+			double instantRate = 1e9 / (now - this.lastReservationTime);
+			this.observedEditRate = this.observedEditRate == 0 ? instantRate
+					: this.observedEditRate + LATENCY_SMOOTHING * (instantRate - this.observedEditRate);
+		}
+		this.lastReservationTime = now;
+		if (Double.isInfinite(this.editRate)) {
+			return 0;
+		}
+		refillTokens();
+		this.availableTokens -= 1;
+		if (this.availableTokens >= 0) {
+			return 0;
+		}
+		return (long) (-this.availableTokens / this.editRate * 1e9);
+	}
+
+	/**
+	 * Records a successful edit, and increases the edit rate unless the
+	 * server answers much more slowly than usual.
+	 *
+	 * @param latency
+	 *            the response time of the edit, in nanoseconds
+	 */
+	public synchronized void onSuccess(long latency) {
+		this.editCount++;
+		double latencyMillis = latency / 1e6;
+		if (this.averageLatency == 0) {
+			this.averageLatency = latencyMillis;
+			this.baselineLatency = latencyMillis;
+		} else {
+			this.averageLatency += LATENCY_SMOOTHING * (latencyMillis - this.averageLatency);
+			this.baselineLatency = Math.min(this.baselineLatency, this.averageLatency);
+		}
+		if (this.editRate < this.maxEditRate
+				&& this.averageLatency <= LATENCY_TOLERANCE * this.baselineLatency) {
+			refillTokens();
+			double step = Double.isInfinite(this.maxEditRate) ? this.editRate : this.maxEditRate;
+			this.editRate = Math.min(this.maxEditRate, this.editRate + step * ADDITIVE_INCREASE);
+		}
+	}
+
+	/**
+	 * Records an edit which failed because the lag exceeded the maxlag
+	 * parameter, and halves the edit rate.
+	 *
+	 * @param lag
+	 *            the lag reported by the server in seconds, or 0 if unknown
+	 */
+	public synchronized void onMaxlag(double lag) {
+		this.maxlagErrorCount++;
+		if (lag > 0) {
+			this.lag = lag;
+		}
+		decrease(MULTIPLICATIVE_DECREASE);
+		this.availableTokens = Math.min(this.availableTokens, 0);
+	}
+
+	/**
+	 * Records the current lag of the server. The edit rate is reduced if the
+	 * lag exceeds half of the maxlag parameter.
+	 *
+	 * @param lag
+	 *            the lag in seconds
+	 * @param maxLag
+	 *            the value of the maxlag parameter used for edits
+	 */
+	public synchronized void onLag(double lag, int maxLag) {
+		this.lag = lag;
+		if (lag <= 0) {
+			return;
+		} else if (lag >= maxLag) {
+			decrease(MULTIPLICATIVE_DECREASE);
+		} else if (2 * lag >= maxLag) {
+			decrease(LAG_WARNING_DECREASE);
+		}
+	}
+
+	/**
+	 * Returns the current edit rate, which is lower than
+	 * {@link #getMaxEditRate()} after the server reported lag.
+	 *
+	 * @return the rate in edits per second, infinite if not limited
+	 */
+	public synchronized double getEditRate() {
+		return this.editRate;
+	}
+
+	/**
+	 * Returns the edit rate used when there is no lag.
+	 *
+	 * @return the rate in edits per second, infinite if not limited
+	 */
+	public synchronized double getMaxEditRate() {
+		return this.maxEditRate;
+	}
+
+	/**
+	 * Sets the edit rate used when there is no lag. The current edit rate is
+	 * reset to this value.
+	 *
+	 * @param editsPerSecond
+	 *            the new rate, which must be positive; use
+	 *            {@link Double#POSITIVE_INFINITY} to edit as fast as possible
+	 *            as long as there is no lag
+	 */
+	public synchronized void setMaxEditRate(double editsPerSecond) {
+		if (!(editsPerSecond > 0)) {
+			throw new IllegalArgumentException("The edit rate must be positive");
+		}
+		refillTokens();
+		this.maxEditRate = editsPerSecond;
+		this.editRate = editsPerSecond;
+	}
+
+	/**
+	 * Returns the number of edits that can be started at once after a period
+	 * without edits.
+	 *
+	 * @return the capacity of the token bucket
+	 */
+	public synchronized int getBurstSize() {
+		return this.burstSize;
+	}
+
+	/**
+	 * Sets the number of edits that can be started at once after a period
+	 * without edits.
+	 *
+	 * @param burstSize
+	 *            the capacity of the token bucket, at least 1
+	 */
+	public synchronized void setBurstSize(int burstSize) {
+		if (burstSize < 1) {
+			throw new IllegalArgumentException("The burst size must be positive");
+		}
+		refillTokens();
+		this.burstSize = burstSize;
+		this.availableTokens = Math.min(this.availableTokens, burstSize);
+	}
+
+	/**
+	 * Returns the last lag reported by the server, either in a maxlag error or
+	 * when reading the current lag.
+	 *
+	 * @return the lag in seconds, or 0 if no lag was reported
+	 */
+	public synchronized double getLag() {
+		return this.lag;
+	}
+
+	/**
+	 * Returns the moving average of the response times of successful edits.
+	 *
+	 * @return the average response time in milliseconds
+	 */
+	public synchronized double getAverageLatency() {
+		return this.averageLatency;
+	}
+
+	/**
+	 * Returns the number of successful edits recorded so far.
+	 *
+	 * @return the number of edits
+	 */
+	public synchronized long getEditCount() {
+		return this.editCount;
+	}
+
+	/**
+	 * Returns the number of edits which failed because of lag so far.
+	 *
+	 * @return the number of maxlag errors
+	 */
+	public synchronized long getMaxlagErrorCount() {
+		return this.maxlagErrorCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("EditRateController {rate: %.3f/s, max rate: %.3f/s, lag: %.1fs, "
+				+ "latency: %.0fms, edits: %d, maxlag errors: %d}", this.editRate, this.maxEditRate,
+				this.lag, this.averageLatency, this.editCount, this.maxlagErrorCount);
+	}
+
+	/**
+	 * Multiplies the edit rate by the given factor, without going below the
+	 * minimal rate.
+	 */
+	private void decrease(double factor) {
+		refillTokens();
+		double minRate;
+		double currentRate;
+		if (Double.isInfinite(this.maxEditRate)) {
+			minRate = MIN_RATE_FRACTION;
+			currentRate = Double.isInfinite(this.editRate) ? Math.max(1, this.observedEditRate) : this.editRate;
+		} else {
+			minRate = this.maxEditRate * MIN_RATE_FRACTION;
+			currentRate = this.editRate;
+		}
+		this.editRate = Math.max(minRate, currentRate * factor);
+	}
+
+	/**
+	 * Adds the tokens accumulated since the last refill at the current rate.
+	 */
+	private void refillTokens() {
+		long now = System.nanoTime();
+		if (Double.isInfinite(this.editRate)) {
+			this.availableTokens = this.burstSize;
+		} else {
+			this.availableTokens = Math.min(this.burstSize,
+					this.availableTokens + (now - this.lastRefillTime) * this.editRate / 1e9);
+		}
+		this.lastRefillTime = now;
+	}
+}
@@ -0,0 +1,451 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.helpers.StreamingJsonSerializer;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.util.DirectoryManager;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Cache for entity documents fetched by a {@link WikibaseDataFetcher}. Once
+ * set with {@link WikibaseDataFetcher#setCache(EntityDocumentCache)}, the
+ * fetcher answers requests for documents by id from the cache when possible.
+ * <p>
+ * Documents are cached for a given entity id and a given setting of the
+ * {@link org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter} of the
+ * fetcher, so that changing the filter never returns documents with the wrong
+ * content. Documents older than the maximal age of the cache are not dropped,
+ * but revalidated: the fetcher retrieves the current revision ids of all such
+ * documents in cheap "props=info" requests, and only fetches again those
+ * documents which were edited in the meantime.
+ * <p>
+ * The cache holds at most a fixed number of documents in memory and evicts
+ * the least recently used one when full. Optionally, documents can also be
+ * stored on disk with a {@link DirectoryManager}, where they are kept after
+ * being evicted from memory. Documents read from disk are always
+ * revalidated before being used. The object is thread-safe and can be shared
+ * between several fetchers for the same site.
+ */
+public class EntityDocumentCache {
+
+	static final Logger logger = LoggerFactory.getLogger(EntityDocumentCache.class);
+
+	/**
+	 * Default number of documents kept in memory.
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	/**
+	 * Default time after which documents are revalidated, in milliseconds.
+	 */
+	public static final long DEFAULT_MAX_AGE = 60000;
+
+	private final int capacity;
+
+	private final long maxAge;
+
+	private final LruMap entries;
+
+	/**
+	 * Directory where documents are stored on disk, or null if documents are
+	 * only kept in memory.
+	 */
+	private final DirectoryManager directoryManager;
+
+	/**
+	 * Mapper reading the documents stored on disk.
+	 */
+	private final ObjectMapper mapper;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long diskHits = 0;
+	private long revalidations = 0;
+	private long invalidations = 0;
+
+	/**
+	 * Constructs a cache holding {@link #DEFAULT_CAPACITY} documents in
+	 * memory, revalidated after {@link #DEFAULT_MAX_AGE} milliseconds.
+	 */
+	public EntityDocumentCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_AGE);
+	}
+
+	/**
+	 * Constructs a cache holding documents in memory only.
+	 *
+	 * @param capacity
+	 *            the maximal number of documents held in memory
+	 * @param maxAge
+	 *            the time after which documents are revalidated, in
+	 *            milliseconds
+	 */
+	public EntityDocumentCache(int capacity, long maxAge) {
+		this(capacity, maxAge, null, null);
+	}
+
+	/**
+	 * Constructs a cache holding documents in memory, and storing them on
+	 * disk as well.
+	 *
+	 * @param capacity
+	 *            the maximal number of documents held in memory
+	 * @param maxAge
+	 *            the time after which documents are revalidated, in
+	 *            milliseconds
+	 * @param directoryManager
+	 *            the directory where documents are stored, or null to keep
+	 *            documents in memory only
+	 * @param siteIri
+	 *            the IRI identifying the site the documents come from, used
+	 *            to read documents from disk
+	 */
+	public EntityDocumentCache(int capacity, long maxAge,
+			DirectoryManager directoryManager, String siteIri) {
+		Validate.isTrue(capacity > 0, "The capacity of the cache must be positive");
+		Validate.isTrue(maxAge >= 0, "The maximal age of documents cannot be negative");
+		Validate.isTrue(directoryManager == null || siteIri != null,
+				"A site IRI is needed to read documents from disk");
+		this.capacity = capacity;
+		this.maxAge = maxAge;
+		this.entries = new LruMap(capacity);
+		this.directoryManager = directoryManager;
+		this.mapper = directoryManager == null ? null : new DatamodelMapper(siteIri);
+	}
+
+	/**
+	 * Returns the number of lookups which found a document in memory or on
+	 * disk, whether it had to be revalidated or not.
+	 *
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups which did not find any document.
+	 *
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of lookups which found a document on disk but not in
+	 * memory.
+	 *
+	 * @return the number of documents read from disk
+	 */
+	public synchronized long getDiskHits() {
+		return diskHits;
+	}
+
+	/**
+	 * Returns the number of documents whose revision was checked again
+	 * because they were older than the maximal age.
+	 *
+	 * @return the number of revalidated documents
+	 */
+	public synchronized long getRevalidations() {
+		return revalidations;
+	}
+
+	/**
+	 * Returns the number of documents which were dropped because a newer
+	 * revision was found.
+	 *
+	 * @return the number of invalidated documents
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * Returns the number of documents which were removed from memory to make
+	 * room for new ones.
+	 *
+	 * @return the number of evicted documents
+	 */
+	public synchronized long getEvictions() {
+		return entries.evictions;
+	}
+
+	/**
+	 * Returns the number of documents currently held in memory.
+	 *
+	 * @return the size of the cache
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the maximal number of documents held in memory.
+	 *
+	 * @return the capacity of the cache
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the time after which documents are revalidated.
+	 *
+	 * @return the maximal age of documents, in milliseconds
+	 */
+	public long getMaxAge() {
+		return maxAge;
+	}
+
+	/**
+	 * Removes all documents of the given entity from memory, for all
+	 * settings of filters. Documents stored on disk are revalidated anyway
+	 * when they are read.
+	 *
+	 * @param entityId
+	 *            the id of the entity, such as "Q42"
+	 */
+	public synchronized void invalidate(String entityId) {
+		Iterator<CachedDocument> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().entityId.equals(entityId)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all documents from memory and resets the statistics of the
+	 * cache.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		hits = 0;
+		misses = 0;
+		diskHits = 0;
+		revalidations = 0;
+		invalidations = 0;
+		entries.evictions = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "EntityDocumentCache {size = " + entries.size() + ", hits = "
+				+ hits + ", misses = " + misses + ", revalidations = "
+				+ revalidations + ", invalidations = " + invalidations
+				+ ", evictions = " + entries.evictions + "}";
+	}
+
+	/**
+	 * Looks up the document of the given entity for the given filter
+	 * settings, in memory and then on disk.
+	 *
+	 * @param filterKey
+	 *            string describing the filter settings of the fetcher
+	 * @param entityId
+	 *            the id of the entity
+	 * @return the cached document, or null if there is none
+	 */
+	synchronized CachedDocument get(String filterKey, String entityId) {
+		String key = getKey(filterKey, entityId);
+		CachedDocument cached = entries.get(key);
+		if (cached == null && directoryManager != null) {
+			EntityDocument document = readFromDisk(filterKey, entityId);
+			if (document != null) {
+				// documents on disk are revalidated before being used
+				cached = new CachedDocument(entityId, document, Long.MIN_VALUE);
+				entries.put(key, cached);
+				diskHits++;
+			}
+		}
+		if (cached == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return cached;
+	}
+
+	/**
+	 * Stores a document which was just fetched.
+	 */
+	void put(String filterKey, String entityId, EntityDocument document) {
+		synchronized (this) {
+			entries.put(getKey(filterKey, entityId),
+					new CachedDocument(entityId, document, System.currentTimeMillis()));
+		}
+		if (directoryManager != null) {
+			writeToDisk(filterKey, entityId, document);
+		}
+	}
+
+	/**
+	 * Records that the cached document is still the current revision of the
+	 * entity.
+	 */
+	synchronized void markValidated(String filterKey, String entityId) {
+		CachedDocument cached = entries.get(getKey(filterKey, entityId));
+		if (cached != null) {
+			cached.validatedAt = System.currentTimeMillis();
+		}
+		revalidations++;
+	}
+
+	/**
+	 * Drops the cached document, which is not the current revision of the
+	 * entity anymore.
+	 */
+	synchronized void markInvalid(String filterKey, String entityId) {
+		entries.remove(getKey(filterKey, entityId));
+		revalidations++;
+		invalidations++;
+	}
+
+	private String getKey(String filterKey, String entityId) {
+		return filterKey + "#" + entityId;
+	}
+
+	private String getFileName(String filterKey, String entityId) {
+		return entityId + "-" + digest(filterKey) + ".json.gz";
+	}
+
+	private EntityDocument readFromDisk(String filterKey, String entityId) {
+		String fileName = getFileName(filterKey, entityId);
+		if (!directoryManager.hasFile(fileName)) {
+			return null;
+		}
+		try (InputStream stream = directoryManager.getInputStreamForFile(fileName, CompressionType.GZIP)) {
+			return mapper.reader()
+					.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT)
+					.forType(EntityDocumentImpl.class)
+					.readValue(stream);
+		} catch (IOException e) {
+			logger.warn("Could not read cached document " + fileName + ": " + e.toString());
+			return null;
+		}
+	}
+
+	private void writeToDisk(String filterKey, String entityId, EntityDocument document) {
+		String fileName = getFileName(filterKey, entityId);
+		byte[] json = StreamingJsonSerializer.getJsonBytes(document);
+		if (json == null) {
+			return;
+		}
+		try (OutputStream stream = new GZIPOutputStream(directoryManager.getOutputStreamForFile(fileName))) {
+			stream.write(json);
+		} catch (IOException e) {
+			logger.warn("Could not store cached document " + fileName + ": " + e.toString());
+		}
+	}
+
+	/**
+	 * Returns a short digest of the filter settings, to be used in file
+	 * names.
+	 */
+	private static String digest(String filterKey) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256")
+					.digest(filterKey.getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder();
+			for (int i = 0; i < 8; i++) {
+				builder.append(String.format("%02x", hash[i]));
+			}
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException("Your Java version does not support SHA-256.", e);
+		}
+	}
+
+	/**
+	 * Document held in the cache, with the time of its last validation.
+	 */
+	class CachedDocument {
+
+		final String entityId;
+		final EntityDocument document;
+		long validatedAt;
+
+		CachedDocument(String entityId, EntityDocument document, long validatedAt) {
+			this.entityId = entityId;
+			this.document = document;
+			this.validatedAt = validatedAt;
+		}
+
+		/**
+		 * Returns true if the revision of the document should be checked
+		 * before using it.
+		 */
+		boolean isStale() {
+			synchronized (EntityDocumentCache.this) {
+				return validatedAt == Long.MIN_VALUE
+						|| System.currentTimeMillis() - validatedAt >= maxAge;
+			}
+		}
+	}
+
+	/**
+	 * Map in access order which drops its least recently used entry when it
+	 * grows beyond its capacity.
+	 */
+	private static class LruMap extends LinkedHashMap<String, CachedDocument> {
+
+		private static final long serialVersionUID = 6209581523718592614L;
+
+		private final int maxSize;
+		long evictions = 0;
+
+		LruMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedDocument> eldest) {
+			if (size() > maxSize) {
+				evictions++;
+				return true;
+			}
+			return false;
+		}
+	}
+}
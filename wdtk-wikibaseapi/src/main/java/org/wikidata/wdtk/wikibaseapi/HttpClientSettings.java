@@ -0,0 +1,360 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Dns;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Settings of the HTTP client of an {@link ApiConnection}, for services
+ * sending many requests: connection pool, number of concurrent requests,
+ * HTTP/2, response cache and DNS cache. The default values are those of the
+ * HTTP client.
+ * <p>
+ * The settings are applied with
+ * {@link ApiConnection#setHttpClientSettings(HttpClientSettings)}. Changes
+ * made afterwards are only taken into account when the settings are set
+ * again.
+ */
+public class HttpClientSettings {
+
+	static final Logger logger = LoggerFactory.getLogger(HttpClientSettings.class);
+
+	/**
+	 * Maximal number of idle connections kept open by default.
+	 */
+	public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+	/**
+	 * Time in milliseconds after which idle connections are closed by
+	 * default.
+	 */
+	public static final long DEFAULT_KEEP_ALIVE_DURATION = TimeUnit.MINUTES.toMillis(5);
+
+	/**
+	 * Maximal number of concurrent asynchronous requests by default.
+	 */
+	public static final int DEFAULT_MAX_REQUESTS = 64;
+
+	/**
+	 * Maximal number of concurrent asynchronous requests to the same host by
+	 * default.
+	 */
+	public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
+	private int maxIdleConnections = DEFAULT_MAX_IDLE_CONNECTIONS;
+
+	private long keepAliveDuration = DEFAULT_KEEP_ALIVE_DURATION;
+
+	private int maxRequests = DEFAULT_MAX_REQUESTS;
+
+	private int maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST;
+
+	private boolean http2Enabled = true;
+
+	private File cacheDirectory = null;
+
+	private long cacheMaxSize = 0;
+
+	private long dnsCacheDuration = 0;
+
+	/**
+	 * Response cache, created when the settings are first applied and shared
+	 * by the clients built afterwards, since a cache directory can only be
+	 * used by one cache.
+	 */
+	private Cache cache;
+
+	/**
+	 * DNS cache, shared by the clients built with these settings.
+	 */
+	private CachingDns dns;
+
+	/**
+	 * Connection pool and dispatcher, shared by the clients built with these
+	 * settings, so that rebuilding a client does not leave idle connections
+	 * and threads behind.
+	 */
+	private ConnectionPool connectionPool;
+	private Dispatcher dispatcher;
+
+	/**
+	 * Settings the connection pool was created with.
+	 */
+	private int poolMaxIdleConnections;
+	private long poolKeepAliveDuration;
+
+	/**
+	 * Returns the maximal number of idle connections kept open for later
+	 * requests.
+	 *
+	 * @return the number of idle connections
+	 */
+	public int getMaxIdleConnections() {
+		return maxIdleConnections;
+	}
+
+	/**
+	 * Sets the maximal number of idle connections kept open for later
+	 * requests.
+	 *
+	 * @param maxIdleConnections
+	 *            the number of idle connections, 0 to close connections after
+	 *            each request
+	 */
+	public void setMaxIdleConnections(int maxIdleConnections) {
+		if (maxIdleConnections < 0) {
+			throw new IllegalArgumentException("The number of idle connections cannot be negative");
+		}
+		this.maxIdleConnections = maxIdleConnections;
+	}
+
+	/**
+	 * Returns the time after which idle connections are closed.
+	 *
+	 * @return the keep-alive duration in milliseconds
+	 */
+	public long getKeepAliveDuration() {
+		return keepAliveDuration;
+	}
+
+	/**
+	 * Sets the time after which idle connections are closed.
+	 *
+	 * @param keepAliveDuration
+	 *            the keep-alive duration in milliseconds
+	 */
+	public void setKeepAliveDuration(long keepAliveDuration) {
+		if (keepAliveDuration <= 0) {
+			throw new IllegalArgumentException("The keep-alive duration must be positive");
+		}
+		this.keepAliveDuration = keepAliveDuration;
+	}
+
+	/**
+	 * Returns the maximal number of asynchronous requests running at the same
+	 * time. Further requests are queued.
+	 *
+	 * @return the number of concurrent requests
+	 */
+	public int getMaxRequests() {
+		return maxRequests;
+	}
+
+	/**
+	 * Sets the maximal number of asynchronous requests running at the same
+	 * time. Further requests are queued.
+	 *
+	 * @param maxRequests
+	 *            the number of concurrent requests, at least 1
+	 */
+	public void setMaxRequests(int maxRequests) {
+		if (maxRequests < 1) {
+			throw new IllegalArgumentException("The number of concurrent requests must be positive");
+		}
+		this.maxRequests = maxRequests;
+	}
+
+	/**
+	 * Returns the maximal number of asynchronous requests to the same host
+	 * running at the same time.
+	 *
+	 * @return the number of concurrent requests per host
+	 */
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+
+	/**
+	 * Sets the maximal number of asynchronous requests to the same host
+	 * running at the same time. With HTTP/2, these requests share a single
+	 * connection.
+	 *
+	 * @param maxRequestsPerHost
+	 *            the number of concurrent requests per host, at least 1
+	 */
+	public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+		if (maxRequestsPerHost < 1) {
+			throw new IllegalArgumentException("The number of concurrent requests must be positive");
+		}
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+
+	/**
+	 * Returns true if HTTP/2 is preferred when the server supports it.
+	 *
+	 * @return whether HTTP/2 is enabled
+	 */
+	public boolean isHttp2Enabled() {
+		return http2Enabled;
+	}
+
+	/**
+	 * Sets whether HTTP/2 is preferred when the server supports it, which
+	 * multiplexes concurrent requests on one connection. If disabled, only
+	 * HTTP/1.1 is used.
+	 *
+	 * @param http2Enabled
+	 *            whether HTTP/2 is enabled
+	 */
+	public void setHttp2Enabled(boolean http2Enabled) {
+		this.http2Enabled = http2Enabled;
+	}
+
+	/**
+	 * Returns the directory of the response cache.
+	 *
+	 * @return the directory, or null if responses are not cached
+	 */
+	public File getCacheDirectory() {
+		return cacheDirectory;
+	}
+
+	/**
+	 * Returns the maximal size of the response cache.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getCacheMaxSize() {
+		return cacheMaxSize;
+	}
+
+	/**
+	 * Enables the caching of responses on disk. Only the responses which the
+	 * server allows to cache are stored; for the MediaWiki API, this mostly
+	 * concerns GET requests with the maxage or smaxage parameters.
+	 * <p>
+	 * If the directory or the size change, the previous cache is closed, so
+	 * the clients built with it should not be used anymore. Setting the same
+	 * directory and size again keeps the current cache.
+	 *
+	 * @param directory
+	 *            the directory of the cache, or null to disable caching
+	 * @param maxSize
+	 *            the maximal size of the cache in bytes
+	 */
+	public synchronized void setCache(File directory, long maxSize) {
+		if (directory != null && maxSize <= 0) {
+			throw new IllegalArgumentException("The cache size must be positive");
+		}
+		long newMaxSize = directory == null ? 0 : maxSize;
+		if (newMaxSize == this.cacheMaxSize && Objects.equals(directory, this.cacheDirectory)) {
+			return;
+		}
+		if (this.cache != null) {
+			try {
+				this.cache.close();
+			} catch (IOException e) {
+				logger.warn("Could not close the response cache: " + e.toString());
+			}
+			this.cache = null;
+		}
+		this.cacheDirectory = directory;
+		this.cacheMaxSize = newMaxSize;
+	}
+
+	/**
+	 * Returns the time during which the addresses resolved for a host name
+	 * are reused.
+	 *
+	 * @return the duration in milliseconds, 0 if addresses are not cached by
+	 *         the client
+	 */
+	public long getDnsCacheDuration() {
+		return dnsCacheDuration;
+	}
+
+	/**
+	 * Sets the time during which the addresses resolved for a host name are
+	 * reused, independently of the caching policy of the JVM.
+	 *
+	 * @param dnsCacheDuration
+	 *            the duration in milliseconds, 0 to resolve host names with
+	 *            the default policy of the JVM
+	 */
+	public synchronized void setDnsCacheDuration(long dnsCacheDuration) {
+		if (dnsCacheDuration < 0) {
+			throw new IllegalArgumentException("The DNS cache duration cannot be negative");
+		}
+		this.dnsCacheDuration = dnsCacheDuration;
+		this.dns = null;
+	}
+
+	/**
+	 * Applies these settings to an HTTP client builder.
+	 *
+	 * @param builder
+	 *            the builder to configure
+	 * @return the builder
+	 */
+	synchronized OkHttpClient.Builder apply(OkHttpClient.Builder builder) {
+		if (connectionPool == null || poolMaxIdleConnections != maxIdleConnections
+				|| poolKeepAliveDuration != keepAliveDuration) {
+			if (connectionPool != null) {
+				// connections in use are closed once released
+				connectionPool.evictAll();
+			}
+			connectionPool = new ConnectionPool(maxIdleConnections, keepAliveDuration,
+					TimeUnit.MILLISECONDS);
+			poolMaxIdleConnections = maxIdleConnections;
+			poolKeepAliveDuration = keepAliveDuration;
+		}
+		builder.connectionPool(connectionPool);
+		if (dispatcher == null) {
+			dispatcher = new Dispatcher();
+		}
+		dispatcher.setMaxRequests(maxRequests);
+		dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+		builder.dispatcher(dispatcher);
+		if (http2Enabled) {
+			builder.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+		} else {
+			builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+		}
+		if (cacheDirectory != null) {
+			if (cache == null) {
+				cache = new Cache(cacheDirectory, cacheMaxSize);
+			}
+			builder.cache(cache);
+		}
+		if (dnsCacheDuration > 0) {
+			if (dns == null) {
+				dns = new CachingDns(Dns.SYSTEM, dnsCacheDuration);
+			}
+			builder.dns(dns);
+		}
+		return builder;
+	}
+}
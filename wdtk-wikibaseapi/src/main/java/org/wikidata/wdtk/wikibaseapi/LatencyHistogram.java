@@ -0,0 +1,174 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of response times, recorded by an {@link ApiConnection} for each
+ * API action. Times are counted in logarithmic buckets of microseconds, each
+ * power of two being split in {@value #SUB_BUCKETS} buckets, so that
+ * percentiles are accurate to 12.5%. Recording is lock-free and can be done
+ * by several threads.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets for each power of two.
+	 */
+	static final int SUB_BUCKETS = 8;
+
+	/**
+	 * Number of bits needed to index the buckets of one power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * Enough buckets for any positive long value.
+	 */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong totalMicros = new AtomicLong();
+
+	private final AtomicLong maxMicros = new AtomicLong();
+
+	/**
+	 * Records a response time.
+	 *
+	 * @param nanos
+	 *            the response time in nanoseconds
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		buckets.incrementAndGet(getBucket(micros));
+		count.incrementAndGet();
+		totalMicros.addAndGet(micros);
+		long max;
+		while ((max = maxMicros.get()) < micros && !maxMicros.compareAndSet(max, micros)) {
+			// retry until no other thread updates the maximum concurrently
+		}
+	}
+
+	/**
+	 * Returns the number of recorded response times.
+	 *
+	 * @return the number of requests
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the average response time.
+	 *
+	 * @return the average in milliseconds, or 0 if nothing was recorded
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : totalMicros.get() / 1000.0 / n;
+	}
+
+	/**
+	 * Returns the longest response time.
+	 *
+	 * @return the maximum in milliseconds
+	 */
+	public double getMax() {
+		return maxMicros.get() / 1000.0;
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of the response times.
+	 *
+	 * @param percentile
+	 *            the percentile, between 0 and 100
+	 * @return the response time in milliseconds below which the given
+	 *         percentage of the response times fall, or 0 if nothing was
+	 *         recorded
+	 */
+	public double getPercentile(double percentile) {
+		if (percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("The percentile must be between 0 and 100");
+		}
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(getBucketUpperBound(i), maxMicros.get()) / 1000.0;
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears the recorded response times.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		totalMicros.set(0);
+		maxMicros.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LatencyHistogram {count: %d, mean: %.1fms, p50: %.1fms, p90: %.1fms, "
+				+ "p99: %.1fms, max: %.1fms}", getCount(), getMean(), getPercentile(50),
+				getPercentile(90), getPercentile(99), getMax());
+	}
+
+	/**
+	 * Returns the index of the bucket of a value. Values below
+	 * {@link #SUB_BUCKETS} have their own bucket.
+	 */
+	static int getBucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the largest value counted in a bucket.
+	 */
+	static long getBucketUpperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -158,6 +158,33 @@ public class StatementUpdate {
 	@JsonIgnore
 	StatementDocument currentDocument;
 
+	/**
+	 * Statement ids of {@link #toDelete}, for fast lookups.
+	 */
+	private final Set<String> toDeleteIds;
+	/**
+	 * Indexes of the lists of statements in {@link #toKeep}, by property.
+	 */
+	private final Map<PropertyIdValue, StatementIndex> toKeepIndexes;
+
+	/**
+	 * Positions of the statements of one list in {@link StatementUpdate#toKeep},
+	 * indexed by statement id and by claim fingerprint (see
+	 * {@link StatementUpdate#getClaimFingerprint(Claim)}).
+	 */
+	private static class StatementIndex {
+
+		/**
+		 * First position of each non-empty statement id.
+		 */
+		final Map<String, Integer> ids = new HashMap<>();
+		/**
+		 * Positions of the statements with a given claim fingerprint, in
+		 * increasing order.
+		 */
+		final Map<Integer, List<Integer>> claims = new HashMap<>();
+	}
+
 	/**
 	 * Constructor. Marks the given lists of statements for being added to or
 	 * deleted from the given document, respectively. The current content of the
@@ -177,6 +204,8 @@ public class StatementUpdate {
 		this.currentDocument = currentDocument;
 		this.toKeep = new HashMap<>();
 		this.toDelete = new ArrayList<>();
+		this.toDeleteIds = new HashSet<>();
+		this.toKeepIndexes = new HashMap<>();
 		markStatementsForUpdate(currentDocument, addStatements,
 				deleteStatements);
 		this.mapper = new DatamodelMapper(currentDocument.getEntityId().getSiteIri());
@@ -320,41 +349,34 @@ public class StatementUpdate {
 	 */
 	protected void markStatementsForDeletion(StatementDocument currentDocument,
 			List<Statement> deleteStatements) {
-		for (Statement statement : deleteStatements) {
-			boolean found = false;
-			for (StatementGroup sg : currentDocument.getStatementGroups()) {
-				if (!sg.getProperty().equals(statement.getMainSnak().getPropertyId())) {
-					continue;
-				}
-
-				Statement changedStatement = null;
-				for (Statement existingStatement : sg) {
-					if (existingStatement.equals(statement)) {
-						found = true;
-						toDelete.add(statement.getStatementId());
-					} else if (existingStatement.getStatementId().equals(
-							statement.getStatementId())) {
-						// (we assume all existing statement ids to be nonempty
-						// here)
-						changedStatement = existingStatement;
-						break;
-					}
-				}
+		if (deleteStatements.isEmpty()) {
+			return;
+		}
+		// (we assume all existing statement ids to be nonempty here)
+		Map<String, Statement> existingStatements = new HashMap<>();
+		for (StatementGroup sg : currentDocument.getStatementGroups()) {
+			for (Statement existingStatement : sg) {
+				existingStatements.putIfAbsent(existingStatement.getStatementId(), existingStatement);
+			}
+		}
 
-				if (!found) {
-					StringBuilder warning = new StringBuilder();
-					warning.append("Cannot delete statement (id ")
-							.append(statement.getStatementId())
-							.append(") since it is not present in data. Statement was:\n")
-							.append(statement);
-
-					if (changedStatement != null) {
-						warning.append(
-								"\nThe data contains another statement with the same id: maybe it has been edited? Other statement was:\n")
-								.append(changedStatement);
-					}
-					logger.warn(warning.toString());
+		for (Statement statement : deleteStatements) {
+			Statement existingStatement = existingStatements.get(statement.getStatementId());
+			if (statement.equals(existingStatement)) {
+				markForDeletion(statement.getStatementId());
+			} else {
+				StringBuilder warning = new StringBuilder();
+				warning.append("Cannot delete statement (id ")
+						.append(statement.getStatementId())
+						.append(") since it is not present in data. Statement was:\n")
+						.append(statement);
+
+				if (existingStatement != null) {
+					warning.append(
+							"\nThe data contains another statement with the same id: maybe it has been edited? Other statement was:\n")
+							.append(existingStatement);
 				}
+				logger.warn(warning.toString());
 			}
 		}
 	}
@@ -381,7 +403,7 @@ public class StatementUpdate {
 		for (StatementGroup sg : currentDocument.getStatementGroups()) {
 			if (this.toKeep.containsKey(sg.getProperty())) {
 				for (Statement statement : sg) {
-					if (!this.toDelete.contains(statement.getStatementId())) {
+					if (!this.toDeleteIds.contains(statement.getStatementId())) {
 						addStatement(statement, false);
 					}
 				}
@@ -410,20 +432,33 @@ public class StatementUpdate {
 		// same statement id
 		// (2) the toKeep structure does not contain two statements that can
 		// be merged
-		if (this.toKeep.containsKey(pid)) {
-			List<StatementWithUpdate> statements = this.toKeep.get(pid);
-			for (int i = 0; i < statements.size(); i++) {
+		List<StatementWithUpdate> statements = this.toKeep.get(pid);
+		StatementIndex index;
+		if (statements == null) {
+			statements = new ArrayList<>();
+			index = new StatementIndex();
+			this.toKeep.put(pid, statements);
+			this.toKeepIndexes.put(pid, index);
+		} else {
+			index = this.toKeepIndexes.get(pid);
+		}
+
+		// The statement is compared to the kept statements in order: the first
+		// one with the same non-empty id, or which can be merged with it, is
+		// used. Only statements with the same claim fingerprint can be merged,
+		// unless fingerprints are disabled by a subclass.
+		String statementId = statement.getStatementId();
+		Integer sameIdPosition = isEmptyId(statementId) ? null : index.ids.get(statementId);
+		int fingerprint = useFingerprints() ? getClaimFingerprint(statement.getClaim()) : 0;
+		List<Integer> candidates = index.claims.get(fingerprint);
+		if (candidates != null) {
+			for (int i : candidates) {
+				if (sameIdPosition != null && sameIdPosition <= i) {
+					break;
+				}
 				Statement currentStatement = statements.get(i).statement;
 				boolean currentIsNew = statements.get(i).write;
 
-				if (!"".equals(currentStatement.getStatementId())
-						&& currentStatement.getStatementId().equals(
-								statement.getStatementId())) {
-					// Same, non-empty id: ignore existing statement as if
-					// deleted
-					return;
-				}
-
 				Statement newStatement = mergeStatements(statement,
 						currentStatement);
 				if (newStatement != null) {
@@ -438,6 +473,15 @@ public class StatementUpdate {
 
 					statements.set(i, new StatementWithUpdate(newStatement,
 							writeNewStatement));
+					String currentId = currentStatement.getStatementId();
+					if (!isEmptyId(currentId)
+							&& !currentId.equals(newStatement.getStatementId())
+							&& Integer.valueOf(i).equals(index.ids.get(currentId))) {
+						updateFirstPosition(index, statements, currentId);
+					}
+					if (!isEmptyId(newStatement.getStatementId())) {
+						index.ids.merge(newStatement.getStatementId(), i, Math::min);
+					}
 
 					// Impossible with default merge code:
 					// Kept here for future extensions that may choose to not
@@ -445,23 +489,101 @@ public class StatementUpdate {
 					if (!"".equals(statement.getStatementId())
 							&& !newStatement.getStatementId().equals(
 									statement.getStatementId())) {
-						this.toDelete.add(statement.getStatementId());
+						markForDeletion(statement.getStatementId());
 					}
 					if (!"".equals(currentStatement.getStatementId())
 							&& !newStatement.getStatementId().equals(
 									currentStatement.getStatementId())) {
-						this.toDelete.add(currentStatement.getStatementId());
+						markForDeletion(currentStatement.getStatementId());
 					}
 					return;
 				}
 			}
+		}
 
-			statements.add(new StatementWithUpdate(statement, isNew));
-		} else {
-			List<StatementWithUpdate> statements = new ArrayList<>();
-			statements.add(new StatementWithUpdate(statement, isNew));
-			this.toKeep.put(pid, statements);
+		if (sameIdPosition != null) {
+			// Same, non-empty id: ignore existing statement as if
+			// deleted
+			return;
+		}
+
+		int position = statements.size();
+		statements.add(new StatementWithUpdate(statement, isNew));
+		if (!isEmptyId(statementId)) {
+			index.ids.putIfAbsent(statementId, position);
 		}
+		index.claims.computeIfAbsent(fingerprint, k -> new ArrayList<>(1)).add(position);
+	}
+
+	/**
+	 * Marks a statement id for deletion.
+	 */
+	private void markForDeletion(String statementId) {
+		this.toDelete.add(statementId);
+		this.toDeleteIds.add(statementId);
+	}
+
+	/**
+	 * Updates the first position of a statement id in the index, after the
+	 * statement at this position got another id.
+	 */
+	private static void updateFirstPosition(StatementIndex index,
+			List<StatementWithUpdate> statements, String statementId) {
+		for (int i = 0; i < statements.size(); i++) {
+			if (statementId.equals(statements.get(i).statement.getStatementId())) {
+				index.ids.put(statementId, i);
+				return;
+			}
+		}
+		index.ids.remove(statementId);
+	}
+
+	private static boolean isEmptyId(String statementId) {
+		return statementId == null || statementId.isEmpty();
+	}
+
+	/**
+	 * Tells whether statements and references are indexed by fingerprints
+	 * (see {@link #getClaimFingerprint(Claim)}), so that only those with the
+	 * same fingerprint are compared with
+	 * {@link #equivalentClaims(Claim, Claim)} and
+	 * {@link #addBestReferenceToList(Reference, List)}. Subclasses which
+	 * override these methods, or {@link #isSameSnakSet(Iterator, Iterator)},
+	 * so that claims or references with different main snaks or snaks can
+	 * match, must return false, in which case each new statement is compared
+	 * with all kept statements, and each reference with all the references
+	 * merged so far. This method is called while the update is constructed.
+	 *
+	 * @return true if fingerprints are used, which is the default
+	 */
+	protected boolean useFingerprints() {
+		return true;
+	}
+
+	/**
+	 * Returns a hash of the main snak and qualifiers of a claim, which does not
+	 * depend on the order of the qualifiers. Claims which are equivalent in the
+	 * sense of {@link #equivalentClaims(Claim, Claim)} have the same
+	 * fingerprint.
+	 *
+	 * @param claim
+	 *            the claim to hash
+	 * @return the fingerprint of the claim
+	 */
+	static int getClaimFingerprint(Claim claim) {
+		return 31 * claim.getMainSnak().hashCode() + getSnakSetFingerprint(claim.getAllQualifiers());
+	}
+
+	/**
+	 * Returns a hash of a set of snaks which does not depend on their order,
+	 * consistent with {@link #isSameSnakSet(Iterator, Iterator)}.
+	 */
+	static int getSnakSetFingerprint(Iterator<Snak> snaks) {
+		int fingerprint = 0;
+		while (snaks.hasNext()) {
+			fingerprint += snaks.next().hashCode();
+		}
+		return fingerprint;
 	}
 
 	/**
@@ -518,15 +640,41 @@ public class StatementUpdate {
 			List<? extends Reference> references1,
 			List<? extends Reference> references2) {
 		List<Reference> result = new ArrayList<>();
+		if (!useFingerprints()) {
+			for (Reference reference : references1) {
+				addBestReferenceToList(reference, result);
+			}
+			for (Reference reference : references2) {
+				addBestReferenceToList(reference, result);
+			}
+			return result;
+		}
+		Map<Integer, List<Reference>> fingerprints = new HashMap<>();
 		for (Reference reference : references1) {
-			addBestReferenceToList(reference, result);
+			addReferenceToList(reference, result, fingerprints);
 		}
 		for (Reference reference : references2) {
-			addBestReferenceToList(reference, result);
+			addReferenceToList(reference, result, fingerprints);
 		}
 		return result;
 	}
 
+	/**
+	 * Adds a reference to a list unless it contains the same snaks as one of
+	 * the references of the list. Only references with the same fingerprint
+	 * are compared.
+	 */
+	private void addReferenceToList(Reference reference,
+			List<Reference> referenceList, Map<Integer, List<Reference>> fingerprints) {
+		List<Reference> candidates = fingerprints.computeIfAbsent(
+				getSnakSetFingerprint(reference.getAllSnaks()), k -> new ArrayList<>(1));
+		int size = candidates.size();
+		addBestReferenceToList(reference, candidates);
+		if (candidates.size() > size) {
+			referenceList.add(reference);
+		}
+	}
+
 	protected void addBestReferenceToList(Reference reference,
 			List<Reference> referenceList) {
 		for (Reference existingReference : referenceList) {
@@ -38,6 +38,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Java implementation for the wbeditentity API action.
@@ -92,28 +93,10 @@ public class WbEditingAction {
 	double maxLagBackOffFactor = 1.5;
 	
 	/**
-	 * Number of recent editing times to monitor in order to avoid editing too
-	 * fast. Wikidata.org seems to block fast editors after 9 edits, so this
-	 * size seems to make sense.
+	 * Controller pacing the edits, shared by all editing actions using the
+	 * same connection.
 	 */
-	final static int editTimeWindow = 9;
-
-	/**
-	 * Average time to wait after each edit. Individual edits can be faster than
-	 * this, but it is ensured that this time will be taken per edit in the long
-	 * run.
-	 */
-	int averageMsecsPerEdit = 2000;
-
-	/**
-	 * Times of the last {@link #editTimeWindow} edits. Used in a loop. Most
-	 * recent edit time is at {@link #curEditTimeSlot}.
-	 */
-	final long[] recentEditTimes = new long[editTimeWindow];
-	/**
-	 * @see #recentEditTimes
-	 */
-	int curEditTimeSlot = 0;
+	final EditRateController rateController;
 
 	/**
 	 * Number of edits that will be performed before the object enters
@@ -121,6 +104,14 @@ public class WbEditingAction {
 	 */
 	int remainingEdits = -1;
 
+	/**
+	 * If false, this object does not wait for {@link #rateController} before
+	 * edits and passes maxlag errors on to the caller, which is then
+	 * responsible for throttling. This is used by
+	 * {@link WikibaseEditExecutor}, which runs several edits concurrently.
+	 */
+	boolean throttled = true;
+
 	/**
 	 * Creates an object to modify data on a Wikibase site. The API is used to
 	 * request the changes. The site URI is necessary since it is not contained
@@ -138,6 +129,7 @@ public class WbEditingAction {
 		this.connection = connection;
 		this.siteIri = siteIri;
 		this.mapper = new DatamodelMapper(siteIri);
+		this.rateController = connection.getEditRateController();
 	}
 
 	/**
@@ -201,11 +193,18 @@ public class WbEditingAction {
 	 * This means that it will only wait as long as necessary. If your program
 	 * takes time between edits for other reasons, there will be no additional
 	 * delay caused by this feature.
+	 * <p>
+	 * This time corresponds to the maximal rate of the
+	 * {@link EditRateController} of the connection, which is shared by all
+	 * editing actions using this connection. The actual time per edit is
+	 * longer when the site reports replication lag.
 	 *
-	 * @return average time per edit in milliseconds
+	 * @return average time per edit in milliseconds, or 0 if the rate of
+	 *         edits is not limited
 	 */
 	public int getAverageTimePerEdit() {
-		return this.averageMsecsPerEdit;
+		double maxEditRate = this.rateController.getMaxEditRate();
+		return Double.isInfinite(maxEditRate) ? 0 : (int) Math.round(1000 / maxEditRate);
 	}
 
 	/**
@@ -213,10 +212,12 @@ public class WbEditingAction {
 	 * milliseconds. See {@link #getAverageTimePerEdit()} for details.
 	 *
 	 * @param milliseconds
-	 *            the new value in milliseconds
+	 *            the new value in milliseconds, or 0 to not limit the rate of
+	 *            edits as long as there is no lag
 	 */
 	public void setAverageTimePerEdit(int milliseconds) {
-		this.averageMsecsPerEdit = milliseconds;
+		this.rateController.setMaxEditRate(milliseconds > 0 ? 1000.0 / milliseconds
+				: Double.POSITIVE_INFINITY);
 	}
 
 	/**
@@ -728,29 +729,35 @@ public class WbEditingAction {
 		parameters.put("maxlag", Integer.toString(this.maxLag));
 		parameters.put("token", connection.getOrFetchToken("csrf"));
 
-		if (this.remainingEdits > 0) {
-			this.remainingEdits--;
-		} else if (this.remainingEdits == 0) {
+		if (!consumeRemainingEdit()) {
 			logger.info("Not editing entity (simulation mode). Request parameters were: "
 					+ parameters.toString());
 			return null;
 		}
 
-		checkEditSpeed();
+		if (this.throttled) {
+			waitForRateController();
+		}
 		JsonNode result = null;
 		
 		int retry = getMaxLagMaxRetries();
 		int maxLagSleepTime = getMaxLagFirstWaitTime();
 		MediaWikiApiErrorException lastException = null;
 		while (retry > 0) {
+			long start = System.nanoTime();
 			try {
 				result = this.connection.sendJsonRequest("POST", parameters);
+				this.rateController.onSuccess(System.nanoTime() - start);
 				break;
 			} catch (TokenErrorException e) { // try again with a fresh token
 				lastException = e;
 				connection.clearToken("csrf");
 				parameters.put("token", connection.getOrFetchToken("csrf"));
-			} catch (MaxlagErrorException e) { // wait for 5 seconds
+			} catch (MaxlagErrorException e) {
+				this.rateController.onMaxlag(e.getLag());
+				if (!this.throttled) {
+					throw e;
+				}
 				lastException = e;
 				logger.warn(e.getMessage() + String.format(" -- pausing for %d milliseconds.", maxLagSleepTime));
 				try {
@@ -816,20 +823,26 @@ public class WbEditingAction {
 	}
 
 	/**
-	 * Makes sure that we are not editing too fast. The method stores the last
-	 * {@link WbEditingAction#editTimeWindow} time points when an edit was
-	 * made. If the time since the oldest edit in this window is shorter than
-	 * {@link #averageMsecsPerEdit} milliseconds, then the method will pause the
-	 * thread for the remaining time.
-	 */
-	private void checkEditSpeed() {
-		long currentTime = System.nanoTime();
-		int nextIndex = (this.curEditTimeSlot + 1) % editTimeWindow;
-		if (this.recentEditTimes[nextIndex] != 0
-				&& (currentTime - this.recentEditTimes[nextIndex]) / 1000000 < this.averageMsecsPerEdit
-						* editTimeWindow) {
-			long sleepTime = this.averageMsecsPerEdit * editTimeWindow
-					- (currentTime - this.recentEditTimes[nextIndex]) / 1000000;
+	 * Decrements the number of remaining edits, if this number is limited.
+	 *
+	 * @return false if no edits remain and we are in simulation mode
+	 */
+	private synchronized boolean consumeRemainingEdit() {
+		if (this.remainingEdits > 0) {
+			this.remainingEdits--;
+		} else if (this.remainingEdits == 0) {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Makes sure that we are not editing too fast, by waiting until the
+	 * {@link EditRateController} of the connection allows the next edit.
+	 */
+	private void waitForRateController() {
+		long sleepTime = TimeUnit.NANOSECONDS.toMillis(this.rateController.reserve());
+		if (sleepTime > 0) {
 			logger.info("We are editing too fast. Pausing for " + sleepTime
 					+ " milliseconds.");
 			try {
@@ -837,11 +850,7 @@ public class WbEditingAction {
 			} catch (InterruptedException ex) {
 				Thread.currentThread().interrupt();
 			}
-			currentTime = System.nanoTime();
 		}
-
-		this.recentEditTimes[nextIndex] = currentTime;
-		this.curEditTimeSlot = nextIndex;
 	}
 	
 	/**
@@ -911,6 +920,7 @@ public class WbEditingAction {
 		try {
 			this.connection.sendJsonRequest("POST", parameters);
 		} catch (MaxlagErrorException e) {
+			this.rateController.onLag(e.getLag(), this.maxLag);
 			return e.getLag();
 		}
 		throw new IllegalStateException("MediaWiki did not return any maxlag value");
@@ -21,8 +21,8 @@ package org.wikidata.wdtk.wikibaseapi;
  */
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
-import java.util.Map.Entry;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import org.slf4j.Logger;
@@ -34,9 +34,14 @@ import org.wikidata.wdtk.datamodel.implementation.EntityIdValueImpl;
 import org.wikidata.wdtk.datamodel.interfaces.*;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 /**
  * Java implementation of the wbgetentities action.
@@ -64,6 +69,11 @@ public class WbGetEntitiesAction {
 	 */
 	final ObjectMapper mapper;
 
+	/**
+	 * Reader binding the JSON of entities to documents.
+	 */
+	private final ObjectReader entityReader;
+
 	/**
 	 * Creates an object to fetch data from the given ApiConnection. The site
 	 * URI is necessary since it is not contained in the data retrieved from the
@@ -80,6 +90,8 @@ public class WbGetEntitiesAction {
 		this.connection = connection;
 		this.siteIri = siteIri;
 		this.mapper = new DatamodelMapper(siteIri);
+		this.entityReader = this.mapper.readerFor(EntityDocumentImpl.class)
+				.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
 	}
 
 	/**
@@ -190,53 +202,30 @@ public class WbGetEntitiesAction {
 
 		Map<String, EntityDocument> result = new HashMap<>();
 
-		try {
-			JsonNode root = this.connection.sendJsonRequest("POST", parameters);
-
-			JsonNode entities = root.path("entities");
-			Iterator<Entry<String,JsonNode>> entitiesIterator = entities.fields();
-			int i = 0;
-			while(entitiesIterator.hasNext()) {
-				Entry<String,JsonNode> entry = entitiesIterator.next();
-				JsonNode entityNode = entry.getValue();
-				if(!entityNode.has("missing")) {
-					try {
-						EntityDocument ed = mapper.reader()
-								.with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT)
-								.treeToValue(entityNode, EntityDocumentImpl.class);
-
-						if (titles == null) {
-							// We use the JSON key rather than the id of the value
-							// so that retrieving redirected entities works.
-							result.put(entry.getKey(), ed);
-						} else {
-							if (ed instanceof ItemDocument) {
-								SiteLink siteLink = ((ItemDocument) ed).getSiteLinks().get(sites);
-								if(siteLink != null) {
-									result.put(siteLink.getPageTitle(), ed);
-								}
-							} else if(ed instanceof MediaInfoDocument) {
-								result.put(entityNode.get("title").textValue(), ed);
-							}
-						}
-					} catch (JsonProcessingException e) {
-						logger.error("Error when reading JSON for entity "
-								+ entityNode.path("id").asText("UNKNOWN")
-								+ ": " + e.toString());
-					}
-				} else if(entityNode.has("id")) {
-					try {
-						EntityIdValue entityIdValue = EntityIdValueImpl.fromId(entityNode.get("id").asText(), siteIri);
-						if(entityIdValue instanceof MediaInfoIdValue) {
-							//TODO: bad hack, it would be much nicer if the API would return the page title
-							result.put(titlesList.get(i), Datamodel.makeMediaInfoDocument((MediaInfoIdValue) entityIdValue));
-						}
-					} catch (IllegalArgumentException e) {
-						logger.warn("Invalid entity id returned: " + entityNode.get("id").asText());
+		this.connection.setJsonParameters(parameters);
+		try (InputStream response = this.connection.sendRequest("POST", parameters);
+				JsonParser parser = this.mapper.getFactory().createParser(response)) {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new JsonParseException(parser, "Expected a JSON object as API response");
+			}
+			// everything but the entities is kept to check for errors and warnings
+			ObjectNode envelope = this.mapper.createObjectNode();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				if (parser.nextToken() == JsonToken.START_OBJECT && "entities".equals(fieldName)) {
+					int i = 0;
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						String key = parser.getCurrentName();
+						parser.nextToken();
+						readEntity(parser, key, sites, titlesList, i, result);
+						i++;
 					}
+				} else {
+					envelope.set(fieldName, this.mapper.readTree(parser));
 				}
-				i++;
 			}
+			this.connection.checkErrors(envelope);
+			this.connection.logWarnings(envelope);
 		} catch (IOException e) {
 			logger.error("Could not retrive data: " + e.toString());
 			throw e;
@@ -245,4 +234,88 @@ public class WbGetEntitiesAction {
 		return result;
 	}
 
+	/**
+	 * Reads the JSON object of one entity from the given parser, and adds the
+	 * corresponding document to the result. The tokens of the entity are
+	 * buffered before being bound to a document, so that missing entities can
+	 * be recognized and errors in one entity do not prevent reading the
+	 * others.
+	 *
+	 * @param parser
+	 *            the parser, positioned at the start of the entity
+	 * @param key
+	 *            the key of the entity in the response
+	 * @param sites
+	 *            the site of the requested titles, if any
+	 * @param titlesList
+	 *            the requested titles, or an empty list if entities are
+	 *            requested by id
+	 * @param position
+	 *            the position of the entity in the response
+	 * @param result
+	 *            the map where the document is added
+	 */
+	private void readEntity(JsonParser parser, String key, String sites,
+			List<String> titlesList, int position, Map<String, EntityDocument> result)
+			throws IOException {
+		if (parser.currentToken() != JsonToken.START_OBJECT) {
+			parser.skipChildren();
+			return;
+		}
+		TokenBuffer buffer = new TokenBuffer(parser);
+		boolean missing = false;
+		String id = null;
+		String entityTitle = null;
+		buffer.writeStartObject();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			buffer.writeFieldName(fieldName);
+			JsonToken token = parser.nextToken();
+			if ("missing".equals(fieldName)) {
+				missing = true;
+			} else if ("id".equals(fieldName) && token == JsonToken.VALUE_STRING) {
+				id = parser.getText();
+			} else if ("title".equals(fieldName) && token == JsonToken.VALUE_STRING) {
+				entityTitle = parser.getText();
+			}
+			buffer.copyCurrentStructure(parser);
+		}
+		buffer.writeEndObject();
+
+		if (!missing) {
+			try (JsonParser entityParser = buffer.asParser()) {
+				EntityDocument ed = this.entityReader.readValue(entityParser);
+
+				if (titlesList.isEmpty()) {
+					// We use the JSON key rather than the id of the value
+					// so that retrieving redirected entities works.
+					result.put(key, ed);
+				} else {
+					if (ed instanceof ItemDocument) {
+						SiteLink siteLink = ((ItemDocument) ed).getSiteLinks().get(sites);
+						if(siteLink != null) {
+							result.put(siteLink.getPageTitle(), ed);
+						}
+					} else if(ed instanceof MediaInfoDocument) {
+						result.put(entityTitle, ed);
+					}
+				}
+			} catch (JsonProcessingException e) {
+				logger.error("Error when reading JSON for entity "
+						+ (id == null ? "UNKNOWN" : id)
+						+ ": " + e.toString());
+			}
+		} else if(id != null) {
+			try {
+				EntityIdValue entityIdValue = EntityIdValueImpl.fromId(id, siteIri);
+				if(entityIdValue instanceof MediaInfoIdValue && position < titlesList.size()) {
+					//TODO: bad hack, it would be much nicer if the API would return the page title
+					result.put(titlesList.get(position), Datamodel.makeMediaInfoDocument((MediaInfoIdValue) entityIdValue));
+				}
+			} catch (IllegalArgumentException e) {
+				logger.warn("Invalid entity id returned: " + id);
+			}
+		}
+	}
+
 }
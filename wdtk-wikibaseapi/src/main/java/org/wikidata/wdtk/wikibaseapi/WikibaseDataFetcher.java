@@ -21,14 +21,27 @@ package org.wikidata.wdtk.wikibaseapi;
  */
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
 import org.wikidata.wdtk.datamodel.interfaces.MediaInfoIdValue;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 /**
  * Simple class to fetch data from Wikibase via the online API.
  *
@@ -37,6 +50,30 @@ import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
  */
 public class WikibaseDataFetcher {
 
+	static final Logger logger = LoggerFactory
+			.getLogger(WikibaseDataFetcher.class);
+
+	/**
+	 * Number of values that the API accepts in one list parameter.
+	 */
+	static final int DEFAULT_MAX_LIST_SIZE = 50;
+
+	/**
+	 * Number of values that the API accepts in one list parameter for users
+	 * with the {@link #RIGHT_API_HIGH_LIMITS} right, such as bots.
+	 */
+	static final int HIGH_LIMITS_MAX_LIST_SIZE = 500;
+
+	/**
+	 * User right raising the limits of the API.
+	 */
+	static final String RIGHT_API_HIGH_LIMITS = "apihighlimits";
+
+	/**
+	 * Connection to the API, used to query the rights of the user.
+	 */
+	final ApiConnection connection;
+
 	/**
 	 * API Action to fetch data.
 	 */
@@ -58,9 +95,51 @@ public class WikibaseDataFetcher {
 
 	/**
 	 * Maximal value for the size of a list that can be processed by the
-	 * Wikibase API in one cycle
+	 * Wikibase API in one cycle, or 0 if it should be determined from the
+	 * rights of the user.
+	 */
+	int maxListSize = 0;
+
+	/**
+	 * Maximal list size found from the rights of the user, completed once
+	 * they were queried, or null if they were not requested yet.
+	 */
+	private CompletableFuture<Integer> detectedMaxListSize;
+
+	/**
+	 * Name of the user whose rights gave {@link #detectedMaxListSize}.
+	 */
+	private String detectedMaxListSizeUser;
+
+	/**
+	 * Maximal number of requests that are sent to the API at the same time
+	 * when fetching lists of entities.
+	 */
+	int maxConcurrentRequests = 1;
+
+	/**
+	 * Minimal delay between the starts of two consecutive requests, in
+	 * milliseconds.
+	 */
+	long minRequestInterval = 0;
+
+	/**
+	 * Time (as given by {@link System#nanoTime()}) before which the next
+	 * request should not be started.
 	 */
-	int maxListSize = 50;
+	private long nextRequestTime = System.nanoTime();
+
+	/**
+	 * Executor sending the requests of lists of entities, created when it is
+	 * first needed. Its number of threads bounds the number of concurrent
+	 * requests.
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * Cache for documents fetched by id, or null if documents are not cached.
+	 */
+	private EntityDocumentCache cache;
 
 	/**
 	 * Creates an object to fetch data from wikidata.org. This convenience
@@ -102,6 +181,7 @@ public class WikibaseDataFetcher {
 	 *            "http://www.wikidata.org/entity/"
 	 */
 	public WikibaseDataFetcher(ApiConnection connection, String siteUri) {
+		this.connection = connection;
 		this.wbGetEntitiesAction = new WbGetEntitiesAction(connection, siteUri);
 		this.wbSearchEntitiesAction = new WbSearchEntitiesAction(connection, siteUri);
 		this.mediaInfoIdQueryAction = new MediaInfoIdQueryAction(connection, siteUri);
@@ -171,23 +251,46 @@ public class WikibaseDataFetcher {
 	 */
 	public Map<String, EntityDocument> getEntityDocuments(List<String> entityIds)
 			throws MediaWikiApiErrorException, IOException {
-		Map<String, EntityDocument> result = new HashMap<>();
-		List<String> newEntityIds = new ArrayList<>(entityIds);
-		boolean moreItems = !newEntityIds.isEmpty();
-		while (moreItems) {
-			List<String> subListOfEntityIds;
-			if (newEntityIds.size() <= maxListSize) {
-				subListOfEntityIds = newEntityIds;
-				moreItems = false;
-			} else {
-				subListOfEntityIds = newEntityIds.subList(0, maxListSize);
-			}
-			WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
-			properties.ids = ApiConnection.implodeObjects(subListOfEntityIds);
-			result.putAll(getEntityDocumentMap(subListOfEntityIds.size(), properties));
-			subListOfEntityIds.clear();
+		if (this.cache == null) {
+			return fetchInChunks(entityIds, this::getEntityDocumentsChunk);
 		}
-		return result;
+		return getCachedEntityDocuments(entityIds);
+	}
+
+	/**
+	 * Asynchronously fetches the documents for the entities of the given
+	 * string IDs. The requests are sent as described in
+	 * {@link #setMaxConcurrentRequests(int)}. The future fails with a
+	 * {@link MediaWikiApiErrorException} or an {@link IOException} if one of
+	 * the requests fails.
+	 *
+	 * @param entityIds
+	 *            list of string IDs (e.g., "P31", "Q42") of requested entities
+	 * @return future map from IDs for which data could be found to the
+	 *         documents that were retrieved
+	 */
+	public CompletableFuture<Map<String, EntityDocument>> getEntityDocumentsAsync(
+			List<String> entityIds) {
+		return fetchInChunksAsync(entityIds, this::getEntityDocumentsChunk);
+	}
+
+	/**
+	 * Asynchronously fetches the documents for the entities of the given
+	 * string IDs, and gives the documents of each request to the consumer as
+	 * soon as it is completed. The consumer is never called by several threads
+	 * at the same time, but the order in which requests complete is not
+	 * specified.
+	 *
+	 * @param entityIds
+	 *            list of string IDs (e.g., "P31", "Q42") of requested entities
+	 * @param consumer
+	 *            receives maps from IDs for which data could be found to the
+	 *            documents that were retrieved
+	 * @return future completed when all documents were given to the consumer
+	 */
+	public CompletableFuture<Void> getEntityDocumentsAsync(List<String> entityIds,
+			Consumer<Map<String, EntityDocument>> consumer) {
+		return fetchInChunksAsync(entityIds, this::getEntityDocumentsChunk, consumer);
 	}
 
 	/**
@@ -259,26 +362,46 @@ public class WikibaseDataFetcher {
 	public Map<String, EntityDocument> getEntityDocumentsByTitle(
 			String siteKey, List<String> titles)
 			throws MediaWikiApiErrorException, IOException {
-		List<String> newTitles = new ArrayList<>(titles);
-		Map<String, EntityDocument> result = new HashMap<>();
-		boolean moreItems = !newTitles.isEmpty();
+		return fetchInChunks(titles, chunk -> getEntityDocumentsByTitleChunk(siteKey, chunk));
+	}
 
-		while (moreItems) {
-			List<String> subListOfTitles;
-			if (newTitles.size() <= maxListSize) {
-				subListOfTitles = newTitles;
-				moreItems = false;
-			} else {
-				subListOfTitles = newTitles.subList(0, maxListSize);
-			}
-			WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
-			properties.titles = ApiConnection.implodeObjects(subListOfTitles);
-			properties.sites = siteKey;
-			result.putAll(getEntityDocumentMap(subListOfTitles.size(),
-					properties));
-			subListOfTitles.clear();
-		}
-		return result;
+	/**
+	 * Asynchronously fetches the documents for the entities that have pages
+	 * of the given titles on the given site. The requests are sent as
+	 * described in {@link #setMaxConcurrentRequests(int)}.
+	 *
+	 * @param siteKey
+	 *            wiki site id, e.g. "enwiki"
+	 * @param titles
+	 *            list of string titles (e.g. "Douglas Adams") of requested
+	 *            entities
+	 * @return future map from titles for which data could be found to the
+	 *         documents that were retrieved
+	 */
+	public CompletableFuture<Map<String, EntityDocument>> getEntityDocumentsByTitleAsync(
+			String siteKey, List<String> titles) {
+		return fetchInChunksAsync(titles, chunk -> getEntityDocumentsByTitleChunk(siteKey, chunk));
+	}
+
+	/**
+	 * Asynchronously fetches the documents for the entities that have pages
+	 * of the given titles on the given site, and gives the documents of each
+	 * request to the consumer as soon as it is completed.
+	 *
+	 * @param siteKey
+	 *            wiki site id, e.g. "enwiki"
+	 * @param titles
+	 *            list of string titles (e.g. "Douglas Adams") of requested
+	 *            entities
+	 * @param consumer
+	 *            receives maps from titles for which data could be found to
+	 *            the documents that were retrieved
+	 * @return future completed when all documents were given to the consumer
+	 * @see #getEntityDocumentsAsync(List, Consumer)
+	 */
+	public CompletableFuture<Void> getEntityDocumentsByTitleAsync(String siteKey,
+			List<String> titles, Consumer<Map<String, EntityDocument>> consumer) {
+		return fetchInChunksAsync(titles, chunk -> getEntityDocumentsByTitleChunk(siteKey, chunk), consumer);
 	}
 
 	/**
@@ -362,22 +485,162 @@ public class WikibaseDataFetcher {
 	 */
 	public Map<String, MediaInfoIdValue> getMediaInfoIdsByFileName(List<String> fileNames)
 			throws IOException, MediaWikiApiErrorException {
-		List<String> newFileNames = new ArrayList<>(fileNames);
-		Map<String, MediaInfoIdValue> result = new HashMap<>();
-		boolean moreItems = !newFileNames.isEmpty();
-
-		while (moreItems) {
-			List<String> subListOfFileNames;
-			if (newFileNames.size() <= maxListSize) {
-				subListOfFileNames = newFileNames;
-				moreItems = false;
-			} else {
-				subListOfFileNames = newFileNames.subList(0, maxListSize);
-			}
-			result.putAll(mediaInfoIdQueryAction.getMediaInfoIds(subListOfFileNames));
-			subListOfFileNames.clear();
+		return fetchInChunks(fileNames, mediaInfoIdQueryAction::getMediaInfoIds);
+	}
+
+	/**
+	 * Asynchronously fetches the MediaInfoIds of files with the given names.
+	 * The requests are sent as described in
+	 * {@link #setMaxConcurrentRequests(int)}.
+	 *
+	 * @param fileNames
+	 *            list of file names of the requested MediaInfoIds
+	 * @return future map from file names for which data could be found to the
+	 *         MediaInfoIds that were retrieved
+	 * @see #getMediaInfoIdsByFileName(List)
+	 */
+	public CompletableFuture<Map<String, MediaInfoIdValue>> getMediaInfoIdsByFileNameAsync(
+			List<String> fileNames) {
+		return fetchInChunksAsync(fileNames, mediaInfoIdQueryAction::getMediaInfoIds);
+	}
+
+	/**
+	 * Asynchronously fetches the MediaInfoIds of files with the given names,
+	 * and gives the ids found by each request to the consumer as soon as it
+	 * is completed.
+	 *
+	 * @param fileNames
+	 *            list of file names of the requested MediaInfoIds
+	 * @param consumer
+	 *            receives maps from file names for which data could be found
+	 *            to the MediaInfoIds that were retrieved
+	 * @return future completed when all ids were given to the consumer
+	 * @see #getEntityDocumentsAsync(List, Consumer)
+	 */
+	public CompletableFuture<Void> getMediaInfoIdsByFileNameAsync(List<String> fileNames,
+			Consumer<Map<String, MediaInfoIdValue>> consumer) {
+		return fetchInChunksAsync(fileNames, mediaInfoIdQueryAction::getMediaInfoIds, consumer);
+	}
+
+	/**
+	 * Returns the cache used for documents fetched by id.
+	 *
+	 * @return the cache, or null if documents are not cached
+	 */
+	public EntityDocumentCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Sets the cache used for documents fetched by id with
+	 * {@link #getEntityDocument(String)} and
+	 * {@link #getEntityDocuments(List)}. Documents are cached together with
+	 * the settings of the {@link #getFilter() filter}, so the filter can still
+	 * be changed while using a cache. Documents fetched by title and
+	 * asynchronous requests do not use the cache.
+	 *
+	 * @param cache
+	 *            the cache to use, or null to disable caching
+	 */
+	public void setCache(EntityDocumentCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the maximal number of requests sent to the API at the same time
+	 * when fetching lists of entities.
+	 *
+	 * @return the maximal number of concurrent requests
+	 */
+	public int getMaxConcurrentRequests() {
+		return this.maxConcurrentRequests;
+	}
+
+	/**
+	 * Sets the maximal number of requests sent to the API at the same time
+	 * when fetching lists of entities. Lists longer than the number of
+	 * entities that the API accepts in one request are split in several
+	 * requests; by default, these requests are sent one after the other.
+	 * <p>
+	 * Please be considerate with public Wikibase sites: the Wikimedia API
+	 * etiquette recommends sending requests in series. Use
+	 * {@link #setMinRequestInterval(long)} to space out the requests.
+	 *
+	 * @param maxConcurrentRequests
+	 *            the maximal number of concurrent requests, at least 1
+	 */
+	public synchronized void setMaxConcurrentRequests(int maxConcurrentRequests) {
+		if (maxConcurrentRequests < 1) {
+			throw new IllegalArgumentException(
+					"The maximal number of concurrent requests must be positive");
 		}
-		return result;
+		if (this.executor != null && maxConcurrentRequests != this.maxConcurrentRequests) {
+			// requests which are already submitted are still sent
+			this.executor.shutdown();
+			this.executor = null;
+		}
+		this.maxConcurrentRequests = maxConcurrentRequests;
+	}
+
+	/**
+	 * Returns the maximal number of entities, titles or file names requested
+	 * from the API at once. Unless it was set with
+	 * {@link #setMaxListSize(int)}, this is 500 if the user of the connection
+	 * has the "apihighlimits" right (usually granted to bots), and 50
+	 * otherwise. The rights of the user are only queried when a longer list
+	 * is fetched, once per user: until then, this method returns 50.
+	 *
+	 * @return the maximal number of values in one request
+	 */
+	public synchronized int getMaxListSize() {
+		if (this.maxListSize > 0) {
+			return this.maxListSize;
+		}
+		if (this.detectedMaxListSize != null && this.detectedMaxListSize.isDone()
+				&& Objects.equals(this.connection.getCurrentUser(), this.detectedMaxListSizeUser)) {
+			return this.detectedMaxListSize.join();
+		}
+		return DEFAULT_MAX_LIST_SIZE;
+	}
+
+	/**
+	 * Sets the maximal number of entities, titles or file names requested from
+	 * the API at once. Lists which are longer are split in several requests.
+	 *
+	 * @param maxListSize
+	 *            the maximal number of values in one request, or 0 to
+	 *            determine it from the rights of the user
+	 */
+	public void setMaxListSize(int maxListSize) {
+		if (maxListSize < 0) {
+			throw new IllegalArgumentException("The maximal list size cannot be negative");
+		}
+		this.maxListSize = maxListSize;
+	}
+
+	/**
+	 * Returns the minimal delay between the starts of two requests sent when
+	 * fetching lists of entities.
+	 *
+	 * @return the delay in milliseconds
+	 */
+	public long getMinRequestInterval() {
+		return this.minRequestInterval;
+	}
+
+	/**
+	 * Sets the minimal delay between the starts of two requests sent when
+	 * fetching lists of entities, whether they are sent in series or
+	 * concurrently. The default is 0.
+	 *
+	 * @param minRequestInterval
+	 *            the delay in milliseconds
+	 */
+	public void setMinRequestInterval(long minRequestInterval) {
+		if (minRequestInterval < 0) {
+			throw new IllegalArgumentException("The delay between requests cannot be negative");
+		}
+		this.minRequestInterval = minRequestInterval;
 	}
 
 	/**
@@ -404,6 +667,285 @@ public class WikibaseDataFetcher {
 		return this.wbGetEntitiesAction.wbGetEntities(properties);
 	}
 
+	/**
+	 * Fetches the entities with the given ids, which should be few enough to
+	 * be fetched with a single request.
+	 */
+	private Map<String, EntityDocument> getEntityDocumentsChunk(List<String> entityIds)
+			throws MediaWikiApiErrorException, IOException {
+		WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
+		properties.ids = ApiConnection.implodeObjects(entityIds);
+		return getEntityDocumentMap(entityIds.size(), properties);
+	}
+
+	/**
+	 * Fetches the documents for the given ids, using the cache for documents
+	 * which were fetched before. Cached documents older than the maximal age
+	 * of the cache are only used if their revision is still the current one.
+	 */
+	private Map<String, EntityDocument> getCachedEntityDocuments(List<String> entityIds)
+			throws MediaWikiApiErrorException, IOException {
+		EntityDocumentCache currentCache = this.cache;
+		String filterKey = getFilterKey();
+		Map<String, EntityDocument> result = new HashMap<>();
+		Map<String, EntityDocument> staleDocuments = new HashMap<>();
+		List<String> missingIds = new ArrayList<>();
+		for (String entityId : entityIds) {
+			EntityDocumentCache.CachedDocument cached = currentCache.get(filterKey, entityId);
+			if (cached == null) {
+				missingIds.add(entityId);
+			} else if (cached.isStale()) {
+				staleDocuments.put(entityId, cached.document);
+			} else {
+				result.put(entityId, cached.document);
+			}
+		}
+
+		if (!staleDocuments.isEmpty()) {
+			Map<String, Long> revisionIds = fetchInChunks(
+					new ArrayList<>(staleDocuments.keySet()), this::getRevisionIdsChunk);
+			for (Map.Entry<String, EntityDocument> entry : staleDocuments.entrySet()) {
+				Long revisionId = revisionIds.get(entry.getKey());
+				long cachedRevisionId = entry.getValue().getRevisionId();
+				if (revisionId != null && cachedRevisionId != 0 && revisionId == cachedRevisionId) {
+					currentCache.markValidated(filterKey, entry.getKey());
+					result.put(entry.getKey(), entry.getValue());
+				} else {
+					currentCache.markInvalid(filterKey, entry.getKey());
+					missingIds.add(entry.getKey());
+				}
+			}
+		}
+
+		Map<String, EntityDocument> fetched = fetchInChunks(missingIds, this::getEntityDocumentsChunk);
+		for (Map.Entry<String, EntityDocument> entry : fetched.entrySet()) {
+			currentCache.put(filterKey, entry.getKey(), entry.getValue());
+		}
+		result.putAll(fetched);
+		return result;
+	}
+
+	/**
+	 * Fetches the current revision ids of the entities with the given ids,
+	 * which should be few enough to be fetched with a single request.
+	 */
+	private Map<String, Long> getRevisionIdsChunk(List<String> entityIds)
+			throws MediaWikiApiErrorException, IOException {
+		Map<String, EntityDocument> documents = this.wbGetEntitiesAction.wbGetEntities(
+				ApiConnection.implodeObjects(entityIds), null, null, "info", null, null);
+		Map<String, Long> revisionIds = new HashMap<>();
+		for (Map.Entry<String, EntityDocument> entry : documents.entrySet()) {
+			revisionIds.put(entry.getKey(), entry.getValue().getRevisionId());
+		}
+		return revisionIds;
+	}
+
+	/**
+	 * Returns a string describing the parameters set by the filter, which
+	 * determine the content of the fetched documents.
+	 */
+	private String getFilterKey() {
+		WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
+		configureProperties(properties);
+		return properties.props + "|" + properties.languages + "|" + properties.sitefilter;
+	}
+
+	/**
+	 * Fetches the entities with the given titles, which should be few enough
+	 * to be fetched with a single request.
+	 */
+	private Map<String, EntityDocument> getEntityDocumentsByTitleChunk(String siteKey, List<String> titles)
+			throws MediaWikiApiErrorException, IOException {
+		WbGetEntitiesActionData properties = new WbGetEntitiesActionData();
+		properties.titles = ApiConnection.implodeObjects(titles);
+		properties.sites = siteKey;
+		return getEntityDocumentMap(titles.size(), properties);
+	}
+
+	/**
+	 * Fetches the values for the given keys with as many requests as needed
+	 * to respect {@link #getMaxListSize()}, sending them concurrently if allowed.
+	 */
+	private <T> Map<String, T> fetchInChunks(List<String> keys, ChunkFetcher<T> fetcher)
+			throws MediaWikiApiErrorException, IOException {
+		if (this.maxConcurrentRequests > 1) {
+			try {
+				return fetchInChunksAsync(keys, fetcher).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof MediaWikiApiErrorException) {
+					throw (MediaWikiApiErrorException) e.getCause();
+				} else if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				} else if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		Map<String, T> result = new HashMap<>();
+		for (List<String> chunk : splitInChunks(keys, resolveMaxListSize(keys.size()).join())) {
+			waitBeforeRequest();
+			result.putAll(fetcher.fetch(chunk));
+		}
+		return result;
+	}
+
+	private <T> CompletableFuture<Map<String, T>> fetchInChunksAsync(List<String> keys,
+			ChunkFetcher<T> fetcher) {
+		Map<String, T> result = new HashMap<>();
+		return fetchInChunksAsync(keys, fetcher, result::putAll).thenApply(v -> result);
+	}
+
+	/**
+	 * Submits one task per request to the executor, once the maximal list
+	 * size is known. Once a request has failed, the requests which were not
+	 * sent yet are skipped.
+	 */
+	private <T> CompletableFuture<Void> fetchInChunksAsync(List<String> keys,
+			ChunkFetcher<T> fetcher, Consumer<Map<String, T>> consumer) {
+		return resolveMaxListSize(keys.size()).thenCompose(
+				chunkSize -> submitChunks(splitInChunks(keys, chunkSize), fetcher, consumer));
+	}
+
+	private <T> CompletableFuture<Void> submitChunks(List<List<String>> chunks,
+			ChunkFetcher<T> fetcher, Consumer<Map<String, T>> consumer) {
+		ExecutorService chunkExecutor = getExecutor();
+		AtomicBoolean failed = new AtomicBoolean(false);
+		Object consumerLock = new Object();
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[chunks.size()];
+		for (int i = 0; i < futures.length; i++) {
+			List<String> chunk = chunks.get(i);
+			futures[i] = CompletableFuture.runAsync(() -> {
+				if (failed.get()) {
+					return;
+				}
+				try {
+					waitBeforeRequest();
+					Map<String, T> values = fetcher.fetch(chunk);
+					synchronized (consumerLock) {
+						consumer.accept(values);
+					}
+				} catch (MediaWikiApiErrorException | IOException e) {
+					failed.set(true);
+					throw new CompletionException(e);
+				} catch (RuntimeException e) {
+					failed.set(true);
+					throw e;
+				}
+			}, chunkExecutor);
+		}
+		return CompletableFuture.allOf(futures);
+	}
+
+	/**
+	 * Splits the given list in lists of at most the given number of elements.
+	 */
+	private List<List<String>> splitInChunks(List<String> keys, int chunkSize) {
+		List<List<String>> chunks = new ArrayList<>();
+		for (int start = 0; start < keys.size(); start += chunkSize) {
+			chunks.add(new ArrayList<>(keys.subList(start, Math.min(keys.size(), start + chunkSize))));
+		}
+		return chunks;
+	}
+
+	/**
+	 * Returns the maximal list size to use for a list of the given size. The
+	 * rights of the user are not queried if the list fits in one request in
+	 * any case. Otherwise, they are queried once per user by a task of the
+	 * executor, so that the request is not sent while holding the lock of
+	 * the fetcher, and callers of the asynchronous methods are not blocked.
+	 */
+	private synchronized CompletableFuture<Integer> resolveMaxListSize(int listSize) {
+		if (this.maxListSize > 0) {
+			return CompletableFuture.completedFuture(this.maxListSize);
+		}
+		String user = this.connection.getCurrentUser();
+		if (this.detectedMaxListSize != null && Objects.equals(user, this.detectedMaxListSizeUser)) {
+			return this.detectedMaxListSize;
+		}
+		if (listSize <= DEFAULT_MAX_LIST_SIZE) {
+			return CompletableFuture.completedFuture(DEFAULT_MAX_LIST_SIZE);
+		}
+		this.detectedMaxListSize = CompletableFuture.supplyAsync(
+				() -> hasHighLimits() ? HIGH_LIMITS_MAX_LIST_SIZE : DEFAULT_MAX_LIST_SIZE,
+				getExecutor());
+		this.detectedMaxListSizeUser = user;
+		return this.detectedMaxListSize;
+	}
+
+	/**
+	 * Checks if the user of the connection has the "apihighlimits" right.
+	 * Errors are logged and result in the default limits.
+	 */
+	private boolean hasHighLimits() {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put(ApiConnection.PARAM_ACTION, "query");
+		parameters.put("meta", "userinfo");
+		parameters.put("uiprop", "rights");
+		try {
+			JsonNode root = this.connection.sendJsonRequest("POST", parameters);
+			for (JsonNode right : root.path("query").path("userinfo").path("rights")) {
+				if (RIGHT_API_HIGH_LIMITS.equals(right.asText())) {
+					return true;
+				}
+			}
+		} catch (IOException | MediaWikiApiErrorException e) {
+			logger.warn("Could not retrieve the rights of the user, using the default API limits: "
+					+ e.toString());
+		}
+		return false;
+	}
+
+	/**
+	 * Waits until the next request can be started without violating
+	 * {@link #minRequestInterval}.
+	 *
+	 * @throws InterruptedIOException
+	 *             if the thread is interrupted while waiting
+	 */
+	private void waitBeforeRequest() throws InterruptedIOException {
+		long delay;
+		synchronized (this) {
+			long now = System.nanoTime();
+			long start = Math.max(now, this.nextRequestTime);
+			this.nextRequestTime = start + TimeUnit.MILLISECONDS.toNanos(this.minRequestInterval);
+			delay = start - now;
+		}
+		if (delay > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to send a request");
+			}
+		}
+	}
+
+	private synchronized ExecutorService getExecutor() {
+		if (this.executor == null) {
+			ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrentRequests,
+					maxConcurrentRequests, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+					runnable -> {
+						Thread thread = new Thread(runnable, "WikibaseDataFetcher");
+						thread.setDaemon(true);
+						return thread;
+					});
+			pool.allowCoreThreadTimeOut(true);
+			this.executor = pool;
+		}
+		return this.executor;
+	}
+
+	/**
+	 * Fetches the values for a list of keys that is small enough to be
+	 * processed with one request.
+	 */
+	@FunctionalInterface
+	private interface ChunkFetcher<T> {
+		Map<String, T> fetch(List<String> keys) throws MediaWikiApiErrorException, IOException;
+	}
+
 	public List<WbSearchEntitiesResult> searchEntities(String search)
 			throws MediaWikiApiErrorException, IOException {
 		WbGetEntitiesSearchData properties = new WbGetEntitiesSearchData();
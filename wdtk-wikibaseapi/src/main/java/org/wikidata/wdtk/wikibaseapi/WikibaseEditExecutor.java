@@ -0,0 +1,339 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.wikidata.wdtk.datamodel.interfaces.StatementDocument;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MaxlagErrorException;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+
+/**
+ * Runs a queue of {@link StatementUpdate} and {@link TermStatementUpdate}
+ * jobs, with several edits in flight at the same time. Edits on the same
+ * entity are never run concurrently: they are performed in the order in
+ * which they were submitted.
+ * <p>
+ * Unlike {@link WikibaseDataEditor}, no thread sleeps to pace the edits.
+ * Their starts are scheduled according to the {@link EditRateController} of
+ * the connection, which is shared with the editors using it and adapts the
+ * edit rate to the lag of the site. When an edit fails because of a high
+ * lag, it is retried after an exponential backoff with random jitter.
+ * <p>
+ * The settings of the given {@link WikibaseDataEditor} (bot flag, maxlag
+ * parameter, retries, backoff and remaining edits) are copied when the
+ * executor is created.
+ */
+public class WikibaseEditExecutor {
+
+	static final Logger logger = LoggerFactory
+			.getLogger(WikibaseEditExecutor.class);
+
+	/**
+	 * API action used to perform the edits, which leaves throttling to this
+	 * object.
+	 */
+	final WbEditingAction wbEditingAction;
+
+	/**
+	 * If true, the bot flag will be set for all edits.
+	 */
+	final boolean editAsBot;
+
+	/**
+	 * Maximal number of edits in flight at the same time, including edits
+	 * waiting to be retried.
+	 */
+	final int maxConcurrentEdits;
+
+	/**
+	 * Number of times an edit is attempted before giving up because of lag.
+	 */
+	final int maxLagMaxRetries;
+
+	/**
+	 * Initial wait time in milliseconds before retrying an edit which failed
+	 * because of lag.
+	 */
+	final int maxLagFirstWaitTime;
+
+	/**
+	 * Factor by which the wait time before a retry is multiplied at each
+	 * attempt.
+	 */
+	final double maxLagBackOffFactor;
+
+	/**
+	 * Controller pacing the edits, shared by all editing actions using the
+	 * same connection.
+	 */
+	final EditRateController rateController;
+
+	/**
+	 * Jobs which are not started yet, in submission order.
+	 */
+	private final Deque<EditJob> pendingJobs = new ArrayDeque<>();
+
+	/**
+	 * Ids of the entities edited by the jobs in flight.
+	 */
+	private final Set<String> activeEntities = new HashSet<>();
+
+	private int activeEdits = 0;
+
+	private boolean shutdown = false;
+
+	/**
+	 * Runs the edits, and delays their starts and retries.
+	 */
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	/**
+	 * Creates an executor running edits with the settings of the given
+	 * editor.
+	 *
+	 * @param editor
+	 *            the editor whose connection and settings should be used
+	 * @param maxConcurrentEdits
+	 *            the maximal number of edits in flight at the same time, at
+	 *            least 1
+	 */
+	public WikibaseEditExecutor(WikibaseDataEditor editor, int maxConcurrentEdits) {
+		if (maxConcurrentEdits < 1) {
+			throw new IllegalArgumentException(
+					"The maximal number of concurrent edits must be positive");
+		}
+		this.wbEditingAction = new WbEditingAction(
+				editor.wbEditingAction.connection, editor.siteIri);
+		this.wbEditingAction.setMaxLag(editor.getMaxLag());
+		this.wbEditingAction.setRemainingEdits(editor.getRemainingEdits());
+		this.wbEditingAction.throttled = false;
+		this.editAsBot = editor.editAsBot();
+		this.maxConcurrentEdits = maxConcurrentEdits;
+		this.maxLagMaxRetries = editor.getMaxLagMaxRetries();
+		this.maxLagFirstWaitTime = editor.getMaxLagFirstWaitTime();
+		this.maxLagBackOffFactor = editor.getMaxLagBackOffFactor();
+		this.rateController = this.wbEditingAction.rateController;
+
+		this.scheduler = new ScheduledThreadPoolExecutor(maxConcurrentEdits,
+				runnable -> {
+					Thread thread = new Thread(runnable, "WikibaseEditExecutor");
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/**
+	 * Adds an update to the queue. The update is performed once an edit slot
+	 * and a token are available, and no other update of the same entity is in
+	 * flight.
+	 *
+	 * @param update
+	 *            the statement or term update to perform
+	 * @param summary
+	 *            summary for the edit; will be prepended by an automatically
+	 *            generated comment
+	 * @param tags
+	 *            string identifiers of the tags to apply to the edit. Ignored
+	 *            if null or empty.
+	 * @return a future completed with the updated document, or with the
+	 *         {@link MediaWikiApiErrorException} or {@link IOException} which
+	 *         made the edit fail
+	 */
+	public CompletableFuture<StatementDocument> submit(StatementUpdate update,
+			String summary, List<String> tags) {
+		EditJob job = new EditJob(update, summary, tags);
+		synchronized (this) {
+			if (this.shutdown) {
+				throw new IllegalStateException("The edit executor has been shut down");
+			}
+			this.pendingJobs.add(job);
+			dispatch();
+		}
+		return job.future;
+	}
+
+	/**
+	 * Stops accepting new updates. The updates which are already submitted
+	 * are still performed, after which the threads of this executor stop.
+	 */
+	public synchronized void shutdown() {
+		this.shutdown = true;
+		if (this.activeEdits == 0) {
+			this.scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Waits until all submitted updates are performed, after
+	 * {@link #shutdown()} was called.
+	 *
+	 * @param timeout
+	 *            the maximal time to wait
+	 * @param unit
+	 *            the unit of the timeout
+	 * @return true if all updates were performed, false if the timeout
+	 *         elapsed first
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return this.scheduler.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Returns the number of edits in flight, including edits waiting for a
+	 * token or for a retry.
+	 *
+	 * @return the number of started edits
+	 */
+	public synchronized int getActiveEdits() {
+		return this.activeEdits;
+	}
+
+	/**
+	 * Returns the number of submitted updates which are not started yet.
+	 *
+	 * @return the size of the queue
+	 */
+	public synchronized int getPendingEdits() {
+		return this.pendingJobs.size();
+	}
+
+	/**
+	 * Returns the object which paces the edits of this executor. It is shared
+	 * by all editors using the same connection.
+	 *
+	 * @return the edit rate controller of the connection
+	 */
+	public EditRateController getRateController() {
+		return this.rateController;
+	}
+
+	/**
+	 * Starts as many pending jobs as the free edit slots allow, skipping the
+	 * jobs whose entity is being edited. Must be called while holding the
+	 * lock of this object.
+	 */
+	private void dispatch() {
+		Iterator<EditJob> iterator = this.pendingJobs.iterator();
+		while (this.activeEdits < this.maxConcurrentEdits && iterator.hasNext()) {
+			EditJob job = iterator.next();
+			if (this.activeEntities.add(job.entityId)) {
+				iterator.remove();
+				this.activeEdits++;
+				schedule(job, this.rateController.reserve());
+			}
+		}
+	}
+
+	private void schedule(EditJob job, long delay) {
+		this.scheduler.schedule(() -> run(job), delay, TimeUnit.NANOSECONDS);
+	}
+
+	private void run(EditJob job) {
+		StatementDocument result;
+		try {
+			result = job.update.performEdit(this.wbEditingAction, this.editAsBot,
+					job.summary, job.tags);
+		} catch (MaxlagErrorException e) {
+			retry(job, e);
+			return;
+		} catch (MediaWikiApiErrorException | IOException | RuntimeException e) {
+			finish(job);
+			job.future.completeExceptionally(e);
+			return;
+		}
+		finish(job);
+		job.future.complete(result);
+	}
+
+	/**
+	 * Schedules the job again after a jittered backoff, unless it has run out
+	 * of retries. The edit rate has already been reduced by the editing
+	 * action.
+	 */
+	private void retry(EditJob job, MaxlagErrorException e) {
+		synchronized (this) {
+			job.attempts++;
+			if (job.attempts < this.maxLagMaxRetries) {
+				double backOff = this.maxLagFirstWaitTime
+						* Math.pow(this.maxLagBackOffFactor, job.attempts - 1);
+				long jitteredBackOff = TimeUnit.MILLISECONDS.toNanos(
+						(long) (backOff / 2 + ThreadLocalRandom.current().nextDouble(backOff / 2 + 1)));
+				logger.warn(e.getMessage() + String.format(" -- retrying edit of %s in %d milliseconds.",
+						job.entityId, TimeUnit.NANOSECONDS.toMillis(jitteredBackOff)));
+				schedule(job, Math.max(jitteredBackOff, this.rateController.reserve()));
+				return;
+			}
+		}
+		logger.error("Gave up editing " + job.entityId
+				+ " after several retries. Last error was: " + e.toString());
+		finish(job);
+		job.future.completeExceptionally(e);
+	}
+
+	/**
+	 * Releases the edit slot and the entity of a job, and starts the next
+	 * jobs.
+	 */
+	private synchronized void finish(EditJob job) {
+		this.activeEntities.remove(job.entityId);
+		this.activeEdits--;
+		dispatch();
+		if (this.shutdown && this.activeEdits == 0) {
+			this.scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * An update waiting to be performed, with the future to complete with
+	 * its result.
+	 */
+	private static class EditJob {
+
+		final StatementUpdate update;
+		final String entityId;
+		final String summary;
+		final List<String> tags;
+		final CompletableFuture<StatementDocument> future = new CompletableFuture<>();
+		int attempts = 0;
+
+		EditJob(StatementUpdate update, String summary, List<String> tags) {
+			this.update = update;
+			this.entityId = update.currentDocument.getEntityId().getId();
+			this.summary = summary;
+			this.tags = tags;
+		}
+	}
+}
@@ -24,10 +24,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpCookie;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPOutputStream;
 
 import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
@@ -351,4 +357,97 @@ public class BasicApiConnectionTest {
 	public void testUnsupportedMethod() throws IOException, MediaWikiApiErrorException {
 		connection.sendJsonRequest("PUT", new HashMap<>());
 	}
+
+	@Test
+	public void testGetMethodAsync() throws IOException, InterruptedException, ExecutionException {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("action", "wbgetentities");
+		parameters.put("languages", "fr");
+		parameters.put("ids", "Q8");
+		parameters.put("sitefilter", "enwiki");
+		parameters.put("props", "info");
+		JsonNode root = connection.sendJsonRequestAsync("GET", parameters).get();
+		assertEquals("{\"entities\":{\"Q8\":{\"pageid\":134,\"ns\":0,\"title\":\"Q8\",\"lastrevid\":1174289176,\"modified\":\"2020-05-05T12:39:07Z\",\"type\":\"item\",\"id\":\"Q8\"}},\"success\":1}", mapper.writeValueAsString(root));
+	}
+
+	@Test
+	public void testErrorAsync() throws LoginFailedException, InterruptedException {
+		connection.login("username", "password");
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("action", "query");
+		try {
+			connection.sendJsonRequestAsync("POST", parameters).get();
+			fail("Expected an API error");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AssertUserFailedException);
+		}
+	}
+
+	@Test
+	public void testGetLoginTokenAsync() throws InterruptedException, ExecutionException {
+		int requestCount = server.getRequestCount();
+		CompletableFuture<String> first = connection.getOrFetchTokenAsync("login");
+		CompletableFuture<String> second = connection.getOrFetchTokenAsync("login");
+		assertEquals("b5780b6e2f27e20b450921d9461010b4", first.get());
+		assertEquals("b5780b6e2f27e20b450921d9461010b4", second.get());
+		assertEquals("b5780b6e2f27e20b450921d9461010b4", connection.getTokens().get("login"));
+		// both calls share the same query
+		assertEquals(requestCount + 1, server.getRequestCount());
+	}
+
+	@Test
+	public void testDecodeGzipResponse() throws IOException {
+		byte[] content = "{\"entities\":{},\"success\":1}".getBytes("UTF-8");
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(content);
+		}
+		long requestCount = connection.getRequestCount();
+		try (InputStream stream = connection.decodeResponse(
+				new ByteArrayInputStream(compressed.toByteArray()), "gzip")) {
+			ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8];
+			int count;
+			while ((count = stream.read(buffer)) >= 0) {
+				decoded.write(buffer, 0, count);
+			}
+			assertArrayEquals(content, decoded.toByteArray());
+		}
+		assertEquals(requestCount + 1, connection.getRequestCount());
+		assertEquals(compressed.size(), connection.getBytesReceived());
+		assertEquals(content.length, connection.getBytesDecoded());
+
+		connection.resetStatistics();
+		assertEquals(0, connection.getRequestCount());
+		assertEquals(0, connection.getBytesReceived());
+		assertEquals(0, connection.getBytesDecoded());
+	}
+
+	@Test
+	public void testUncompressedResponseStatistics() throws InterruptedException, ExecutionException {
+		connection.resetStatistics();
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("action", "wbgetentities");
+		parameters.put("languages", "fr");
+		parameters.put("ids", "Q8");
+		parameters.put("sitefilter", "enwiki");
+		parameters.put("props", "info");
+		connection.sendJsonRequestAsync("GET", parameters).get();
+		assertEquals(1, connection.getRequestCount());
+		assertTrue(connection.getBytesReceived() > 0);
+		assertEquals(connection.getBytesReceived(), connection.getBytesDecoded());
+		assertEquals(1, connection.getLatencyHistograms().get("wbgetentities").getCount());
+	}
+
+	@Test
+	public void testHttpClientSettings() throws InterruptedException, ExecutionException {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setMaxIdleConnections(1);
+		settings.setMaxRequestsPerHost(2);
+		settings.setHttp2Enabled(false);
+		settings.setDnsCacheDuration(60000);
+		connection.setHttpClientSettings(settings);
+		assertEquals("b5780b6e2f27e20b450921d9461010b4", connection.getOrFetchTokenAsync("login").get());
+		assertEquals(1, connection.getLatencyHistograms().get("query").getCount());
+	}
 }
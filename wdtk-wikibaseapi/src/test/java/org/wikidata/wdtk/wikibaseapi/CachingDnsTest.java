@@ -0,0 +1,77 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import okhttp3.Dns;
+
+public class CachingDnsTest {
+
+	private int lookups = 0;
+
+	private final Dns delegate = hostname -> {
+		lookups++;
+		if ("unknown.invalid".equals(hostname)) {
+			throw new UnknownHostException(hostname);
+		}
+		return Collections.singletonList(InetAddress.getByAddress(hostname, new byte[] { 127, 0, 0, 1 }));
+	};
+
+	@Test
+	public void testCachedLookup() throws UnknownHostException {
+		CachingDns dns = new CachingDns(delegate, 60000);
+		List<InetAddress> addresses = dns.lookup("www.wikidata.org");
+		assertEquals(addresses, dns.lookup("www.wikidata.org"));
+		assertEquals(1, lookups);
+		dns.lookup("commons.wikimedia.org");
+		assertEquals(2, lookups);
+	}
+
+	@Test
+	public void testExpiredEntry() throws UnknownHostException, InterruptedException {
+		CachingDns dns = new CachingDns(delegate, 1);
+		dns.lookup("www.wikidata.org");
+		Thread.sleep(5);
+		dns.lookup("www.wikidata.org");
+		assertEquals(2, lookups);
+	}
+
+	@Test
+	public void testFailedLookupNotCached() {
+		CachingDns dns = new CachingDns(delegate, 60000);
+		for (int i = 0; i < 2; i++) {
+			try {
+				dns.lookup("unknown.invalid");
+			} catch (UnknownHostException e) {
+				// expected
+			}
+		}
+		assertEquals(2, lookups);
+	}
+}
@@ -0,0 +1,141 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class EditRateControllerTest {
+
+	@Test
+	public void testDefaults() {
+		EditRateController controller = new EditRateController();
+		assertEquals(EditRateController.DEFAULT_MAX_EDIT_RATE, controller.getMaxEditRate(), 1e-9);
+		assertEquals(EditRateController.DEFAULT_MAX_EDIT_RATE, controller.getEditRate(), 1e-9);
+		assertEquals(EditRateController.DEFAULT_BURST_SIZE, controller.getBurstSize());
+		assertEquals(0, controller.getLag(), 1e-9);
+		assertEquals(0, controller.getEditCount());
+		assertEquals(0, controller.getMaxlagErrorCount());
+	}
+
+	@Test
+	public void testBurstThenPacing() {
+		EditRateController controller = new EditRateController();
+		controller.setMaxEditRate(10);
+		controller.setBurstSize(3);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0, controller.reserve());
+		}
+		long delay = controller.reserve();
+		assertTrue(delay > TimeUnit.MILLISECONDS.toNanos(50));
+		assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(100));
+		// reservations are queued one after the other
+		assertTrue(controller.reserve() > delay + TimeUnit.MILLISECONDS.toNanos(50));
+	}
+
+	@Test
+	public void testUnlimitedRate() {
+		EditRateController controller = new EditRateController();
+		controller.setMaxEditRate(Double.POSITIVE_INFINITY);
+		for (int i = 0; i < 100; i++) {
+			assertEquals(0, controller.reserve());
+		}
+		controller.onMaxlag(6);
+		assertTrue(controller.getEditRate() < Double.POSITIVE_INFINITY);
+		assertTrue(controller.getEditRate() >= EditRateController.MIN_RATE_FRACTION);
+	}
+
+	@Test
+	public void testAdditiveIncreaseMultiplicativeDecrease() {
+		EditRateController controller = new EditRateController();
+		controller.setMaxEditRate(10);
+
+		controller.onMaxlag(6.5);
+		assertEquals(5, controller.getEditRate(), 1e-9);
+		assertEquals(6.5, controller.getLag(), 1e-9);
+		controller.onMaxlag(0);
+		assertEquals(2.5, controller.getEditRate(), 1e-9);
+		assertEquals(6.5, controller.getLag(), 1e-9);
+		assertEquals(2, controller.getMaxlagErrorCount());
+
+		controller.onSuccess(TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(3, controller.getEditRate(), 1e-9);
+		for (int i = 0; i < 100; i++) {
+			controller.onSuccess(TimeUnit.MILLISECONDS.toNanos(100));
+		}
+		assertEquals(10, controller.getEditRate(), 1e-9);
+		assertEquals(101, controller.getEditCount());
+	}
+
+	@Test
+	public void testMinimalRate() {
+		EditRateController controller = new EditRateController();
+		controller.setMaxEditRate(10);
+		for (int i = 0; i < 20; i++) {
+			controller.onMaxlag(10);
+		}
+		assertEquals(10 * EditRateController.MIN_RATE_FRACTION, controller.getEditRate(), 1e-9);
+	}
+
+	@Test
+	public void testSlowResponsesSuspendIncrease() {
+		EditRateController controller = new EditRateController();
+		controller.setMaxEditRate(10);
+		controller.onSuccess(TimeUnit.MILLISECONDS.toNanos(100));
+		controller.onMaxlag(6);
+		assertEquals(5, controller.getEditRate(), 1e-9);
+
+		// response times ten times longer than usual
+		for (int i = 0; i < 10; i++) {
+			controller.onSuccess(TimeUnit.MILLISECONDS.toNanos(1000));
+		}
+		assertTrue(controller.getAverageLatency() > 200);
+		assertTrue(controller.getEditRate() < 10);
+	}
+
+	@Test
+	public void testReportedLag() {
+		EditRateController controller = new EditRateController();
+		controller.setMaxEditRate(10);
+		controller.onLag(1, 5);
+		assertEquals(10, controller.getEditRate(), 1e-9);
+		assertEquals(1, controller.getLag(), 1e-9);
+		controller.onLag(3, 5);
+		assertEquals(10 * EditRateController.LAG_WARNING_DECREASE, controller.getEditRate(), 1e-9);
+		controller.onLag(5, 5);
+		assertEquals(5 * EditRateController.LAG_WARNING_DECREASE, controller.getEditRate(), 1e-9);
+		assertEquals(0, controller.getMaxlagErrorCount());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRate() {
+		new EditRateController().setMaxEditRate(-1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBurstSize() {
+		new EditRateController().setBurstSize(0);
+	}
+}
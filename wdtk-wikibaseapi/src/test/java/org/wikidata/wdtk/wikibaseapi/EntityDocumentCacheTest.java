@@ -0,0 +1,141 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.testing.MockDirectoryManager;
+
+public class EntityDocumentCacheTest {
+
+	private static final String FILTER = "info|labels||";
+	private static final String OTHER_FILTER = "info||";
+
+	private ItemDocument makeItem(String id, long revisionId) {
+		ItemIdValue itemId = Datamodel.makeWikidataItemIdValue(id);
+		return Datamodel.makeItemDocument(itemId,
+				Collections.singletonList(Datamodel.makeMonolingualTextValue(id, "en")),
+				Collections.emptyList(), Collections.emptyList(),
+				Collections.emptyList(), Collections.emptyMap(), revisionId);
+	}
+
+	@Test
+	public void testGetAndPut() {
+		EntityDocumentCache cache = new EntityDocumentCache(10, 60000);
+		ItemDocument q42 = makeItem("Q42", 1234);
+
+		assertNull(cache.get(FILTER, "Q42"));
+		cache.put(FILTER, "Q42", q42);
+		EntityDocumentCache.CachedDocument cached = cache.get(FILTER, "Q42");
+
+		assertEquals(q42, cached.document);
+		assertFalse(cached.isStale());
+		assertNull(cache.get(OTHER_FILTER, "Q42"));
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testEviction() {
+		EntityDocumentCache cache = new EntityDocumentCache(2, 60000);
+		cache.put(FILTER, "Q1", makeItem("Q1", 1));
+		cache.put(FILTER, "Q2", makeItem("Q2", 2));
+		cache.get(FILTER, "Q1");
+		cache.put(FILTER, "Q3", makeItem("Q3", 3));
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		// Q2 was the least recently used document
+		assertNull(cache.get(FILTER, "Q2"));
+		assertEquals(makeItem("Q1", 1), cache.get(FILTER, "Q1").document);
+	}
+
+	@Test
+	public void testStaleness() {
+		EntityDocumentCache cache = new EntityDocumentCache(10, 0);
+		cache.put(FILTER, "Q42", makeItem("Q42", 1234));
+		assertTrue(cache.get(FILTER, "Q42").isStale());
+
+		cache.markInvalid(FILTER, "Q42");
+		assertNull(cache.get(FILTER, "Q42"));
+		assertEquals(1, cache.getRevalidations());
+		assertEquals(1, cache.getInvalidations());
+	}
+
+	@Test
+	public void testInvalidate() {
+		EntityDocumentCache cache = new EntityDocumentCache();
+		cache.put(FILTER, "Q42", makeItem("Q42", 1234));
+		cache.put(OTHER_FILTER, "Q42", makeItem("Q42", 1234));
+		cache.put(FILTER, "Q1", makeItem("Q1", 1));
+
+		cache.invalidate("Q42");
+
+		assertEquals(1, cache.size());
+		assertNull(cache.get(FILTER, "Q42"));
+		assertNull(cache.get(OTHER_FILTER, "Q42"));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void testDiskTier() throws IOException {
+		MockDirectoryManager directoryManager = new MockDirectoryManager(
+				Paths.get(System.getProperty("user.dir")), true, false);
+		EntityDocumentCache cache = new EntityDocumentCache(1, 60000,
+				directoryManager, Datamodel.SITE_WIKIDATA);
+		ItemDocument q42 = makeItem("Q42", 1234);
+		cache.put(FILTER, "Q42", q42);
+		cache.put(FILTER, "Q1", makeItem("Q1", 1));
+
+		EntityDocumentCache.CachedDocument cached = cache.get(FILTER, "Q42");
+
+		assertEquals(q42, cached.document);
+		// documents read from disk are always revalidated
+		assertTrue(cached.isStale());
+		assertEquals(1, cache.getDiskHits());
+		assertNull(cache.get(OTHER_FILTER, "Q42"));
+
+		// another cache can reuse the same directory
+		EntityDocumentCache otherCache = new EntityDocumentCache(1, 60000,
+				directoryManager, Datamodel.SITE_WIKIDATA);
+		assertEquals(makeItem("Q1", 1), otherCache.get(FILTER, "Q1").document);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity() {
+		new EntityDocumentCache(0, 1000);
+	}
+}
@@ -0,0 +1,127 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+import okhttp3.OkHttpClient;
+
+public class HttpClientSettingsTest {
+
+	@Test
+	public void testDefaults() {
+		HttpClientSettings settings = new HttpClientSettings();
+		assertEquals(HttpClientSettings.DEFAULT_MAX_IDLE_CONNECTIONS, settings.getMaxIdleConnections());
+		assertEquals(HttpClientSettings.DEFAULT_KEEP_ALIVE_DURATION, settings.getKeepAliveDuration());
+		assertEquals(HttpClientSettings.DEFAULT_MAX_REQUESTS, settings.getMaxRequests());
+		assertEquals(HttpClientSettings.DEFAULT_MAX_REQUESTS_PER_HOST, settings.getMaxRequestsPerHost());
+		assertTrue(settings.isHttp2Enabled());
+		assertNull(settings.getCacheDirectory());
+		assertEquals(0, settings.getDnsCacheDuration());
+	}
+
+	@Test
+	public void testApply() {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setMaxIdleConnections(20);
+		settings.setKeepAliveDuration(60000);
+		settings.setMaxRequests(128);
+		settings.setMaxRequestsPerHost(16);
+		settings.setHttp2Enabled(false);
+		settings.setCache(new File("target/http-cache"), 1024 * 1024);
+		settings.setDnsCacheDuration(60000);
+		OkHttpClient.Builder builder = new OkHttpClient.Builder();
+		assertSame(builder, settings.apply(builder));
+		assertEquals(16, settings.getMaxRequestsPerHost());
+		assertEquals(1024 * 1024, settings.getCacheMaxSize());
+	}
+
+	@Test
+	public void testReuseConnectionPoolAndDispatcher() {
+		HttpClientSettings settings = new HttpClientSettings();
+		OkHttpClient client1 = settings.apply(new OkHttpClient.Builder()).build();
+		settings.setMaxRequests(8);
+		OkHttpClient client2 = settings.apply(new OkHttpClient.Builder()).build();
+		assertSame(client1.connectionPool(), client2.connectionPool());
+		assertSame(client1.dispatcher(), client2.dispatcher());
+		assertEquals(8, client2.dispatcher().getMaxRequests());
+
+		settings.setMaxIdleConnections(2);
+		OkHttpClient client3 = settings.apply(new OkHttpClient.Builder()).build();
+		assertNotSame(client2.connectionPool(), client3.connectionPool());
+		assertSame(client2.dispatcher(), client3.dispatcher());
+	}
+
+	@Test
+	public void testDisableCache() {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setCache(new File("target/http-cache"), 1024);
+		settings.setCache(null, 1024);
+		assertNull(settings.getCacheDirectory());
+		assertEquals(0, settings.getCacheMaxSize());
+	}
+
+	@Test
+	public void testReplaceCache() {
+		HttpClientSettings settings = new HttpClientSettings();
+		settings.setCache(new File("target/http-cache"), 1024);
+		OkHttpClient client1 = settings.apply(new OkHttpClient.Builder()).build();
+		settings.setCache(new File("target/http-cache"), 1024);
+		OkHttpClient client2 = settings.apply(new OkHttpClient.Builder()).build();
+		assertSame(client1.cache(), client2.cache());
+		assertFalse(client1.cache().isClosed());
+
+		settings.setCache(new File("target/http-cache-2"), 1024);
+		OkHttpClient client3 = settings.apply(new OkHttpClient.Builder()).build();
+		assertTrue(client1.cache().isClosed());
+		assertNotSame(client1.cache(), client3.cache());
+
+		settings.setCache(null, 0);
+		assertTrue(client3.cache().isClosed());
+	}
+
+	@Test
+	public void testSetOnConnection() {
+		MockBasicApiConnection connection = new MockBasicApiConnection();
+		HttpClientSettings settings = new HttpClientSettings();
+		connection.setHttpClientSettings(settings);
+		assertSame(settings, connection.getHttpClientSettings());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxRequests() {
+		new HttpClientSettings().setMaxRequests(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCacheSize() {
+		new HttpClientSettings().setCache(new File("target/http-cache"), 0);
+	}
+}
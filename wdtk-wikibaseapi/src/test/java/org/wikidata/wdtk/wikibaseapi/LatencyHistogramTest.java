@@ -0,0 +1,76 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testEmpty() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean(), 1e-9);
+		assertEquals(0, histogram.getPercentile(99), 1e-9);
+	}
+
+	@Test
+	public void testBuckets() {
+		for (long value = 0; value < 100000; value++) {
+			int bucket = LatencyHistogram.getBucket(value);
+			long upperBound = LatencyHistogram.getBucketUpperBound(bucket);
+			assertTrue(value <= upperBound);
+			assertTrue(upperBound - value <= value / LatencyHistogram.SUB_BUCKETS);
+			assertEquals(bucket, LatencyHistogram.getBucket(upperBound));
+		}
+		int last = LatencyHistogram.getBucket(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.getBucketUpperBound(last));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+		}
+		assertEquals(100, histogram.getCount());
+		assertEquals(50.5, histogram.getMean(), 1e-9);
+		assertEquals(100, histogram.getMax(), 1e-9);
+		assertEquals(50, histogram.getPercentile(50), 50 * 0.125);
+		assertEquals(90, histogram.getPercentile(90), 90 * 0.125);
+		assertEquals(100, histogram.getPercentile(100), 1e-9);
+		assertTrue(histogram.getPercentile(99) >= 99);
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax(), 1e-9);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPercentile() {
+		new LatencyHistogram().getPercentile(101);
+	}
+}
@@ -27,6 +27,7 @@ import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -111,4 +112,16 @@ public class MockBasicApiConnection extends BasicApiConnection {
 		}
 	}
 
+	@Override
+	public CompletableFuture<InputStream> sendRequestAsync(String requestMethod,
+			Map<String, String> parameters) {
+		CompletableFuture<InputStream> result = new CompletableFuture<>();
+		try {
+			result.complete(sendRequest(requestMethod, parameters));
+		} catch (IOException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
 }
@@ -22,9 +22,11 @@ package org.wikidata.wdtk.wikibaseapi;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -35,6 +37,7 @@ import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
 import org.wikidata.wdtk.datamodel.helpers.ReferenceBuilder;
 import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
 import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.Claim;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
@@ -381,4 +384,166 @@ public class StatementUpdateTest {
 		assertFalse(su.isEmptyEdit());
 	}
 
+	@Test
+	public void testClaimFingerprint() {
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withQualifierValue(P2, Q2)
+				.withQualifierValue(P3, Q3).withId("ID-s1").build();
+		Statement s2 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withQualifierValue(P3, Q3)
+				.withQualifierValue(P2, Q2).build();
+		Statement s3 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withQualifierValue(P2, Q2).build();
+
+		assertEquals(StatementUpdate.getClaimFingerprint(s1.getClaim()),
+				StatementUpdate.getClaimFingerprint(s2.getClaim()));
+		assertNotEquals(StatementUpdate.getClaimFingerprint(s1.getClaim()),
+				StatementUpdate.getClaimFingerprint(s3.getClaim()));
+	}
+
+	@Test
+	public void testMergeSameReferenceTwice() {
+		Reference r1 = ReferenceBuilder.newInstance().withPropertyValue(P1, Q1)
+				.build();
+
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withReference(r1).withId("ID-s1").build();
+		Statement s2 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withReference(r1).build();
+
+		ItemDocument currentDocument = ItemDocumentBuilder.forItemId(Q1)
+				.withStatement(s1).build();
+
+		StatementUpdate su = new StatementUpdate(currentDocument,
+				Collections.singletonList(s2), Collections.emptyList());
+
+		assertEquals(1, su.toKeep.get(P1).size());
+		assertEquals(s1, su.toKeep.get(P1).get(0).statement);
+		assertFalse(su.toKeep.get(P1).get(0).write);
+		assertTrue(su.isEmptyEdit());
+	}
+
+	@Test(timeout = 10000)
+	public void testLargeDocument() {
+		int size = 20000;
+		Reference r1 = ReferenceBuilder.newInstance().withPropertyValue(P2, Q2)
+				.build();
+		ItemDocumentBuilder builder = ItemDocumentBuilder.forItemId(Q1);
+		List<Statement> existing = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			Statement statement = StatementBuilder.forSubjectAndProperty(Q1, P1)
+					.withValue(Datamodel.makeStringValue("value " + i))
+					.withQualifierValue(P3, Q3).withId("ID-" + i).build();
+			existing.add(statement);
+			builder.withStatement(statement);
+		}
+		ItemDocument currentDocument = builder.build();
+
+		Statement duplicate = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Datamodel.makeStringValue("value 12345"))
+				.withQualifierValue(P3, Q3).withReference(r1).build();
+		Statement added = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Datamodel.makeStringValue("new value")).build();
+		Statement changed = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Datamodel.makeStringValue("changed value")).withId("ID-7").build();
+
+		StatementUpdate su = new StatementUpdate(currentDocument,
+				Arrays.asList(duplicate, added),
+				Arrays.asList(existing.get(3), existing.get(19999), changed));
+
+		Statement merged = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Datamodel.makeStringValue("value 12345"))
+				.withQualifierValue(P3, Q3).withReference(r1).withId("ID-12345").build();
+
+		assertEquals(Arrays.asList("ID-3", "ID-19999"), su.toDelete);
+		assertEquals(size - 2 + 1, su.toKeep.get(P1).size());
+		assertEquals(merged, su.toKeep.get(P1).get(0).statement);
+		assertTrue(su.toKeep.get(P1).get(0).write);
+		assertEquals(added, su.toKeep.get(P1).get(1).statement);
+		assertTrue(su.toKeep.get(P1).get(1).write);
+		assertEquals(4, su.getUpdatedStatements().size());
+	}
+
+	@Test
+	public void testSharedStatementId() {
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).build();
+		Statement s2 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q2).withId("ID-x").build();
+		Statement s3 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withId("ID-x").build();
+		Statement s4 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withId("ID-y").build();
+		Statement s5 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q3).withId("ID-x").build();
+
+		// s3 is merged with s1, so that two statements have the id ID-x,
+		// until s4 is merged with them
+		StatementUpdate su = new StatementUpdate(
+				ItemDocumentBuilder.forItemId(Q1).build(),
+				Arrays.asList(s1, s2, s3, s4, s5), Collections.emptyList());
+
+		assertEquals(2, su.toKeep.get(P1).size());
+		assertEquals("ID-y", su.toKeep.get(P1).get(0).statement.getStatementId());
+		assertEquals(s2, su.toKeep.get(P1).get(1).statement);
+	}
+
+	@Test
+	public void testOverriddenEquivalentClaims() {
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withId("ID-s1").build();
+		Statement s2 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q2).build();
+		ItemDocument currentDocument = ItemDocumentBuilder.forItemId(Q1)
+				.withStatement(s1).build();
+
+		StatementUpdate su = new StatementUpdate(currentDocument,
+				Collections.singletonList(s2), Collections.emptyList()) {
+			@Override
+			protected boolean useFingerprints() {
+				return false;
+			}
+
+			@Override
+			protected boolean equivalentClaims(Claim claim1, Claim claim2) {
+				return true;
+			}
+		};
+
+		assertEquals(1, su.toKeep.get(P1).size());
+		assertEquals("ID-s1", su.toKeep.get(P1).get(0).statement.getStatementId());
+	}
+
+	@Test
+	public void testOverriddenAddBestReferenceToList() {
+		Reference r1 = ReferenceBuilder.newInstance().withPropertyValue(P1, Q1)
+				.build();
+		Reference r2 = ReferenceBuilder.newInstance().withPropertyValue(P2, Q2)
+				.build();
+		Statement s1 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withReference(r1).withId("ID-s1").build();
+		Statement s2 = StatementBuilder.forSubjectAndProperty(Q1, P1)
+				.withValue(Q1).withReference(r2).build();
+		ItemDocument currentDocument = ItemDocumentBuilder.forItemId(Q1)
+				.withStatement(s1).build();
+
+		StatementUpdate su = new StatementUpdate(currentDocument,
+				Collections.singletonList(s2), Collections.emptyList()) {
+			@Override
+			protected boolean useFingerprints() {
+				return false;
+			}
+
+			@Override
+			protected void addBestReferenceToList(Reference reference,
+					List<Reference> referenceList) {
+				if (referenceList.isEmpty()) {
+					referenceList.add(reference);
+				}
+			}
+		};
+
+		assertEquals(Collections.singletonList(r1),
+				su.toKeep.get(P1).get(0).statement.getReferences());
+	}
 }
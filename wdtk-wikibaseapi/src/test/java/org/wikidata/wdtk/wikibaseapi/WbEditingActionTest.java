@@ -23,6 +23,8 @@ import static org.junit.Assert.assertEquals;
  */
 
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -209,6 +211,61 @@ public class WbEditingActionTest {
 				con, Datamodel.SITE_WIKIDATA);
 		double lag = weea.getCurrentLag();
 		assertEquals(3.45, lag, 0.001);
+		// the lag exceeds half of the maxlag parameter
+		assertEquals(3.45, con.getEditRateController().getLag(), 0.001);
+		assertEquals(0.5 * EditRateController.LAG_WARNING_DECREASE,
+				con.getEditRateController().getEditRate(), 1e-9);
+	}
+
+	@Test
+	public void testMaxLagReducesEditRate() throws IOException {
+		MockBasicApiConnection con = new MockBasicApiConnection();
+		Map<String, String> params = new HashMap<>();
+		params.put("action", "query");
+		params.put("meta", "tokens");
+		params.put("type", "csrf");
+		params.put("format", "json");
+		con.setWebResourceFromPath(params, this.getClass(),
+				"/query-csrf-token-loggedin-response.json",
+				CompressionType.NONE);
+
+		params.clear();
+		params.put("action", "wbeditentity");
+		params.put("id", "Q42");
+		params.put("token", "42307b93c79b0cb558d2dfb4c3c92e0955e06041+\\");
+		params.put("format", "json");
+		params.put("data", "{}");
+		params.put("maxlag", "5");
+		con.setWebResourceFromPath(params, this.getClass(),
+				"/error-maxlag.json", CompressionType.NONE);
+
+		WbEditingAction weea = new WbEditingAction(con,
+				Datamodel.SITE_WIKIDATA);
+		weea.setMaxLagFirstWaitTime(0);
+		weea.setMaxLagMaxRetries(2);
+		try {
+			weea.wbEditEntity("Q42", null, null, null, "{}", false, false, 0, null, null);
+			fail("The edit should have failed");
+		} catch (MediaWikiApiErrorException e) {
+			assertTrue(e instanceof MaxlagErrorException);
+		}
+		assertEquals(2, con.getEditRateController().getMaxlagErrorCount());
+		assertEquals(0.5 / 4, con.getEditRateController().getEditRate(), 1e-9);
+	}
+
+	@Test
+	public void testAverageTimePerEditIsShared() {
+		MockBasicApiConnection con = new MockBasicApiConnection();
+		WbEditingAction weea1 = new WbEditingAction(con, Datamodel.SITE_WIKIDATA);
+		WbEditingAction weea2 = new WbEditingAction(con, Datamodel.SITE_WIKIDATA);
+		assertEquals(2000, weea2.getAverageTimePerEdit());
+
+		weea1.setAverageTimePerEdit(250);
+		assertEquals(250, weea2.getAverageTimePerEdit());
+		assertEquals(4.0, con.getEditRateController().getMaxEditRate(), 1e-9);
+
+		weea1.setAverageTimePerEdit(0);
+		assertEquals(0, weea2.getAverageTimePerEdit());
 	}
 
 }
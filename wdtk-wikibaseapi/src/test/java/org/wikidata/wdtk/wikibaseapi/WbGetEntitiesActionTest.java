@@ -21,6 +21,7 @@ package org.wikidata.wdtk.wikibaseapi;
  */
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -33,6 +34,7 @@ import org.wikidata.wdtk.datamodel.helpers.Datamodel;
 import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
 import org.wikidata.wdtk.util.CompressionType;
 import org.wikidata.wdtk.wikibaseapi.apierrors.MediaWikiApiErrorException;
+import org.wikidata.wdtk.wikibaseapi.apierrors.NoSuchEntityErrorException;
 
 public class WbGetEntitiesActionTest {
 
@@ -122,6 +124,38 @@ public class WbGetEntitiesActionTest {
 		action.wbGetEntities(properties);
 	}
 
+	@Test
+	public void testWbGetEntitiesEnvelope() throws MediaWikiApiErrorException, IOException {
+		Map<String, String> params = new HashMap<>();
+		params.put("action", "wbgetentities");
+		params.put("format", "json");
+		params.put("ids", "Q1|Q2|Q3");
+		// warnings come after the entities, the second entity cannot be read
+		this.con.setWebResource(params, "{\"entities\":{"
+				+ "\"Q1\":{\"type\":\"item\",\"id\":\"Q1\",\"lastrevid\":12},"
+				+ "\"Q2\":{\"type\":\"item\",\"id\":\"Q2\",\"labels\":\"not an object\"},"
+				+ "\"Q3\":{\"id\":\"Q3\",\"missing\":\"\"}},"
+				+ "\"success\":1,\"warnings\":{\"main\":{\"*\":\"Unrecognized parameter\"}}}");
+
+		Map<String, EntityDocument> result = action.wbGetEntities("Q1|Q2|Q3", null, null, null, null, null);
+
+		assertEquals(1, result.size());
+		assertEquals(12, result.get("Q1").getRevisionId());
+		assertFalse(result.containsKey("Q3"));
+	}
+
+	@Test(expected = NoSuchEntityErrorException.class)
+	public void testWbGetEntitiesError() throws MediaWikiApiErrorException, IOException {
+		Map<String, String> params = new HashMap<>();
+		params.put("action", "wbgetentities");
+		params.put("format", "json");
+		params.put("ids", "bogus");
+		this.con.setWebResourceFromPath(params, getClass(),
+				"/wbgetentities-bogus.json", CompressionType.NONE);
+
+		action.wbGetEntities("bogus", null, null, null, null, null);
+	}
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testIdsAndTitles() throws MediaWikiApiErrorException, IOException {
 		action.wbGetEntities("Q42", null, "Tim Berners Lee", null, null, null);
@@ -22,6 +22,7 @@ package org.wikidata.wdtk.wikibaseapi;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -370,6 +371,262 @@ public class WikibaseDataFetcherTest {
 		assertEquals("M925243", result.get("File:Albert Einstein Head.jpg").getId());
 	}
 
+	@Test
+	public void testWbGetEntitiesConcurrently() throws IOException,
+			MediaWikiApiErrorException {
+		List<String> entityIds = Arrays.asList("Q6", "Q42", "P31", "Q1");
+		mockSplittedEntities();
+
+		wdf.maxListSize = 3;
+		wdf.setMaxConcurrentRequests(2);
+
+		Map<String, EntityDocument> results = wdf.getEntityDocuments(entityIds);
+
+		assertEquals(3, results.size());
+		assertTrue(results.containsKey("Q1"));
+		assertTrue(results.containsKey("P31"));
+		assertTrue(results.containsKey("Q42"));
+	}
+
+	@Test
+	public void testWbGetEntitiesAsyncStreaming() throws IOException,
+			InterruptedException, ExecutionException {
+		List<String> entityIds = Arrays.asList("Q6", "Q42", "P31", "Q1");
+		mockSplittedEntities();
+
+		wdf.maxListSize = 3;
+		wdf.setMaxConcurrentRequests(2);
+		wdf.setMinRequestInterval(10);
+
+		List<Map<String, EntityDocument>> chunks = new ArrayList<>();
+		wdf.getEntityDocumentsAsync(entityIds, chunks::add).get();
+
+		assertEquals(2, chunks.size());
+		Set<String> ids = new HashSet<>();
+		for (Map<String, EntityDocument> chunk : chunks) {
+			ids.addAll(chunk.keySet());
+		}
+		assertEquals(new HashSet<>(Arrays.asList("Q1", "Q42", "P31")), ids);
+	}
+
+	@Test(expected = IOException.class)
+	public void testWbGetEntitiesConcurrentlyError() throws IOException,
+			MediaWikiApiErrorException {
+		mockSplittedEntities();
+
+		wdf.maxListSize = 3;
+		wdf.setMaxConcurrentRequests(2);
+
+		// the second request is not mocked
+		wdf.getEntityDocuments("Q6", "Q42", "P31", "Q2");
+	}
+
+	@Test
+	public void testGetEntitiesTitleAsync() throws IOException,
+			InterruptedException, ExecutionException {
+		Map<String, String> parameters = new HashMap<>();
+		this.setStandardParameters(parameters);
+		parameters.put("titles", "Douglas Adams");
+		parameters.put("sites", "enwiki");
+		con.setWebResourceFromPath(parameters, getClass(),
+				"/wbgetentities-Douglas-Adams.json", CompressionType.NONE);
+
+		Map<String, EntityDocument> result = wdf.getEntityDocumentsByTitleAsync(
+				"enwiki", Collections.singletonList("Douglas Adams")).get();
+
+		assertEquals("Q42", result.get("Douglas Adams").getEntityId().getId());
+	}
+
+	@Test
+	public void testGetMediaInfoIdsAsync() throws IOException,
+			InterruptedException, ExecutionException {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("action", "query");
+		parameters.put("format", "json");
+		parameters.put("titles", "File:Cat.jpg");
+		con.setWebResourceFromPath(parameters, getClass(),
+				"/query-Cat.jpg.json", CompressionType.NONE);
+
+		Map<String, MediaInfoIdValue> result = wdf.getMediaInfoIdsByFileNameAsync(
+				Collections.singletonList("Cat.jpg")).get();
+
+		assertEquals("M32455073", result.get("Cat.jpg").getId());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxConcurrentRequests() {
+		wdf.setMaxConcurrentRequests(0);
+	}
+
+	@Test
+	public void testCachedEntityDocuments() throws IOException,
+			MediaWikiApiErrorException {
+		mockSplittedEntities();
+		EntityDocumentCache cache = new EntityDocumentCache();
+		wdf.setCache(cache);
+		wdf.maxListSize = 3;
+
+		wdf.getEntityDocuments("Q6", "Q42", "P31");
+		// no request is needed for cached documents
+		con.webResources.clear();
+		Map<String, EntityDocument> results = wdf.getEntityDocuments("Q42", "P31");
+
+		assertEquals(2, results.size());
+		assertEquals(199399943, results.get("P31").getRevisionId());
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	@Test(expected = IOException.class)
+	public void testCachedEntityDocumentsFilterChange() throws IOException,
+			MediaWikiApiErrorException {
+		mockSplittedEntities();
+		wdf.setCache(new EntityDocumentCache());
+		wdf.maxListSize = 3;
+
+		wdf.getEntityDocuments("Q6", "Q42", "P31");
+		con.webResources.clear();
+		// documents with fewer languages are not cached yet
+		wdf.getFilter().setLanguageFilter(Collections.singleton("en"));
+		wdf.getEntityDocuments("Q42");
+	}
+
+	@Test
+	public void testCachedEntityDocumentsRevalidation() throws IOException,
+			MediaWikiApiErrorException {
+		mockSplittedEntities();
+		EntityDocumentCache cache = new EntityDocumentCache(10, 0);
+		wdf.setCache(cache);
+		wdf.maxListSize = 3;
+		wdf.getEntityDocuments("Q6", "Q42", "P31");
+		con.webResources.clear();
+
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("action", "wbgetentities");
+		parameters.put("format", "json");
+		parameters.put("props", "info");
+		parameters.put("ids", "Q42|P31");
+		con.setWebResource(parameters, "{\"entities\":{"
+				+ "\"Q42\":{\"type\":\"item\",\"id\":\"Q42\",\"lastrevid\":196015688},"
+				+ "\"P31\":{\"type\":\"property\",\"datatype\":\"wikibase-item\",\"id\":\"P31\",\"lastrevid\":199399999}},"
+				+ "\"success\":1}");
+		Map<String, String> p31Parameters = new HashMap<>();
+		setStandardParameters(p31Parameters);
+		p31Parameters.put("ids", "P31");
+		con.setWebResourceFromPath(p31Parameters, this.getClass(),
+				"/wbgetentities-Q6-Q42-P31.json", CompressionType.NONE);
+
+		Map<String, EntityDocument> results = wdf.getEntityDocuments(Arrays.asList("Q42", "P31"));
+
+		assertEquals(2, results.size());
+		assertEquals(2, cache.getRevalidations());
+		// P31 was edited, so it was fetched again
+		assertEquals(1, cache.getInvalidations());
+	}
+
+	@Test
+	public void testHighLimitsFromUserRights() throws IOException,
+			MediaWikiApiErrorException {
+		mockUserRights("[\"read\",\"edit\",\"apihighlimits\"]");
+		List<String> entityIds = getItemIds(120);
+		mockEmptyEntities(entityIds);
+
+		wdf.getEntityDocuments(entityIds);
+		assertEquals(WikibaseDataFetcher.HIGH_LIMITS_MAX_LIST_SIZE, wdf.getMaxListSize());
+	}
+
+	@Test
+	public void testHighLimitsFromUserRightsAsync() {
+		mockUserRights("[\"read\",\"edit\",\"apihighlimits\"]");
+		List<String> entityIds = getItemIds(120);
+		mockEmptyEntities(entityIds);
+
+		assertTrue(wdf.getEntityDocumentsAsync(entityIds).join().isEmpty());
+		assertEquals(WikibaseDataFetcher.HIGH_LIMITS_MAX_LIST_SIZE, wdf.getMaxListSize());
+	}
+
+	@Test
+	public void testDefaultLimitsFromUserRights() throws IOException,
+			MediaWikiApiErrorException {
+		mockUserRights("[\"read\",\"edit\"]");
+		List<String> entityIds = getItemIds(120);
+		mockEmptyEntities(entityIds.subList(0, 50));
+		mockEmptyEntities(entityIds.subList(50, 100));
+		mockEmptyEntities(entityIds.subList(100, 120));
+
+		wdf.getEntityDocuments(entityIds);
+		assertEquals(WikibaseDataFetcher.DEFAULT_MAX_LIST_SIZE, wdf.getMaxListSize());
+	}
+
+	@Test
+	public void testDefaultLimitsIfRightsUnavailable() throws IOException,
+			MediaWikiApiErrorException {
+		// the user rights are not mocked
+		List<String> entityIds = getItemIds(60);
+		mockEmptyEntities(entityIds.subList(0, 50));
+		mockEmptyEntities(entityIds.subList(50, 60));
+
+		wdf.getEntityDocuments(entityIds);
+		assertEquals(WikibaseDataFetcher.DEFAULT_MAX_LIST_SIZE, wdf.getMaxListSize());
+	}
+
+	@Test
+	public void testMaxListSizeNotDetectedByGetter() {
+		mockUserRights("[\"read\",\"edit\",\"apihighlimits\"]");
+		// the rights are only queried when a longer list is fetched
+		assertEquals(WikibaseDataFetcher.DEFAULT_MAX_LIST_SIZE, wdf.getMaxListSize());
+	}
+
+	@Test
+	public void testExplicitMaxListSize() {
+		wdf.setMaxListSize(10);
+		assertEquals(10, wdf.getMaxListSize());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeMaxListSize() {
+		wdf.setMaxListSize(-1);
+	}
+
+	private void mockUserRights(String rights) {
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("action", "query");
+		parameters.put("meta", "userinfo");
+		parameters.put("uiprop", "rights");
+		parameters.put("format", "json");
+		con.setWebResource(parameters, "{\"query\":{\"userinfo\":{\"id\":1,\"name\":\"Bot\",\"rights\":"
+				+ rights + "}}}");
+	}
+
+	private void mockEmptyEntities(List<String> entityIds) {
+		Map<String, String> parameters = new HashMap<>();
+		setStandardParameters(parameters);
+		parameters.put("ids", ApiConnection.implodeObjects(entityIds));
+		con.setWebResource(parameters, "{\"entities\":{},\"success\":1}");
+	}
+
+	private List<String> getItemIds(int count) {
+		List<String> entityIds = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			entityIds.add("Q" + i);
+		}
+		return entityIds;
+	}
+
+	private void mockSplittedEntities() throws IOException {
+		Map<String, String> parameters1 = new HashMap<>();
+		setStandardParameters(parameters1);
+		parameters1.put("ids", "Q6|Q42|P31");
+		con.setWebResourceFromPath(parameters1, this.getClass(),
+				"/wbgetentities-Q6-Q42-P31.json", CompressionType.NONE);
+
+		Map<String, String> parameters2 = new HashMap<>();
+		setStandardParameters(parameters2);
+		parameters2.put("ids", "Q1");
+		con.setWebResourceFromPath(parameters2, this.getClass(),
+				"/wbgetentities-Q1.json", CompressionType.NONE);
+	}
+
 	private void setStandardParameters(Map<String, String> parameters) {
 		parameters.put("action", "wbgetentities");
 		parameters.put("format", "json");
@@ -0,0 +1,291 @@
+package org.wikidata.wdtk.wikibaseapi;
+
+/*-
+ * #%L
+ * Wikidata Toolkit Wikibase API
+ * %%
+ * Copyright (C) 2014 - 2020 Wikidata Toolkit Developers
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.ItemDocumentBuilder;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.helpers.StatementBuilder;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.PropertyIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementDocument;
+import org.wikidata.wdtk.util.CompressionType;
+import org.wikidata.wdtk.wikibaseapi.apierrors.MaxlagErrorException;
+
+public class WikibaseEditExecutorTest {
+
+	static final String GUID = "8372EF7A-B72C-7DE2-98D0-DFB4-8EC8392AC28E";
+
+	final ItemIdValue Q5 = Datamodel.makeWikidataItemIdValue("Q5");
+	final PropertyIdValue P31 = Datamodel.makeWikidataPropertyIdValue("P31");
+
+	SlowMockApiConnection con;
+	WikibaseDataEditor wde;
+
+	/**
+	 * Mock connection which takes some time to answer edits, fails the first
+	 * edits with a maxlag error if requested, and records how many edits are
+	 * in flight.
+	 */
+	static class SlowMockApiConnection extends MockBasicApiConnection {
+
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		final AtomicInteger maxlagErrors = new AtomicInteger();
+		final Map<String, AtomicInteger> inFlightPerEntity = new HashMap<>();
+		volatile boolean sameEntityOverlap = false;
+
+		@Override
+		public InputStream sendRequest(String requestMethod,
+				Map<String, String> parameters) throws IOException {
+			if (!"wbsetclaim".equals(parameters.get("action"))) {
+				return super.sendRequest(requestMethod, parameters);
+			}
+			String entityId = parameters.get("claim").replaceAll(".*\"id\":\"(Q[0-9]+)\\$.*", "$1");
+			AtomicInteger entityCount;
+			synchronized (this) {
+				entityCount = inFlightPerEntity.computeIfAbsent(entityId, k -> new AtomicInteger());
+			}
+			if (entityCount.incrementAndGet() > 1) {
+				sameEntityOverlap = true;
+			}
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inFlight.decrementAndGet();
+			entityCount.decrementAndGet();
+			if (maxlagErrors.getAndDecrement() > 0) {
+				return new ByteArrayInputStream(
+						"{\"error\":{\"code\":\"maxlag\",\"info\":\"Waiting for 10.64.16.27: 2 seconds lagged\",\"lag\":2}}"
+								.getBytes(StandardCharsets.UTF_8));
+			}
+			return super.sendRequest(requestMethod, parameters);
+		}
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		this.con = new SlowMockApiConnection();
+		Map<String, String> params = new HashMap<>();
+		params.put("action", "query");
+		params.put("meta", "tokens");
+		params.put("type", "csrf");
+		params.put("format", "json");
+		this.con.setWebResourceFromPath(params, this.getClass(),
+				"/query-csrf-token-loggedin-response.json",
+				CompressionType.NONE);
+		this.wde = new WikibaseDataEditor(this.con, Datamodel.SITE_WIKIDATA,
+				new MockGuidGenerator(GUID));
+		this.wde.setMaxLagFirstWaitTime(1);
+	}
+
+	private ItemDocument makeItem(String id, long revisionId) {
+		return ItemDocumentBuilder.forItemId(Datamodel.makeWikidataItemIdValue(id))
+				.withRevisionId(revisionId).build();
+	}
+
+	/**
+	 * Prepares an update adding a statement to the given item, and mocks the
+	 * corresponding API response.
+	 */
+	private StatementUpdate mockUpdate(ItemDocument document) {
+		ItemIdValue id = document.getEntityId();
+		Statement newStatement = StatementBuilder.forSubjectAndProperty(id, P31)
+				.withValue(Q5).build();
+		Statement savedStatement = StatementBuilder.forSubjectAndProperty(id, P31)
+				.withValue(Q5).withId(id.getId() + "$" + GUID).build();
+		String statementJson = JsonSerializer.getJsonString(savedStatement);
+
+		Map<String, String> params = new HashMap<>();
+		params.put("action", "wbsetclaim");
+		params.put("summary", "Adding a claim");
+		params.put("token", "42307b93c79b0cb558d2dfb4c3c92e0955e06041+\\");
+		params.put("format", "json");
+		params.put("baserevid", Long.toString(document.getRevisionId()));
+		params.put("maxlag", "5");
+		params.put("claim", statementJson);
+		con.setWebResource(params, "{\"pageinfo\":{\"lastrevid\":"
+				+ (document.getRevisionId() + 1) + "},\"success\":1,\"claim\":" + statementJson + "}");
+
+		StatementUpdate update = new StatementUpdate(document,
+				Collections.singletonList(newStatement), Collections.emptyList());
+		update.setGuidGenerator(new MockGuidGenerator(GUID));
+		return update;
+	}
+
+	@Test
+	public void testConcurrentEdits() throws Exception {
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 3);
+		executor.getRateController().setMaxEditRate(1000);
+		List<CompletableFuture<StatementDocument>> futures = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			futures.add(executor.submit(mockUpdate(makeItem("Q" + i, 100 + i)),
+					"Adding a claim", null));
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+		for (int i = 1; i <= 10; i++) {
+			StatementDocument result = futures.get(i - 1).get();
+			assertEquals("Q" + i, result.getEntityId().getId());
+			assertEquals(101 + i, result.getRevisionId());
+			assertEquals(Q5, result.getAllStatements().next().getValue());
+		}
+		assertTrue(con.maxInFlight.get() <= 3);
+		assertEquals(0, executor.getActiveEdits());
+		assertEquals(0, executor.getPendingEdits());
+	}
+
+	@Test
+	public void testSameEntityNotConcurrent() throws Exception {
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 4);
+		executor.getRateController().setMaxEditRate(1000);
+		List<CompletableFuture<StatementDocument>> futures = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(executor.submit(mockUpdate(makeItem("Q1", 100 + i)),
+					"Adding a claim", null));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+		assertEquals(false, con.sameEntityOverlap);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(101 + i, futures.get(i).get().getRevisionId());
+		}
+	}
+
+	@Test
+	public void testRateLimit() throws Exception {
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 4);
+		executor.getRateController().setMaxEditRate(50);
+		executor.getRateController().setBurstSize(1);
+		List<CompletableFuture<StatementDocument>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int i = 1; i <= 6; i++) {
+			futures.add(executor.submit(mockUpdate(makeItem("Q" + i, 100)),
+					"Adding a claim", null));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+		// the first edit starts at once, the next ones every 20 milliseconds
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+	}
+
+	@Test
+	public void testRetryOnMaxlag() throws Exception {
+		con.maxlagErrors.set(2);
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 1);
+		executor.getRateController().setMaxEditRate(1000);
+
+		StatementDocument result = executor.submit(mockUpdate(makeItem("Q1", 100)),
+				"Adding a claim", null).get(10, TimeUnit.SECONDS);
+
+		assertEquals(101, result.getRevisionId());
+		assertTrue(executor.getRateController().getEditRate() < executor.getRateController().getMaxEditRate());
+		assertTrue(executor.getRateController().getEditRate() >= 1000 * EditRateController.MIN_RATE_FRACTION);
+	}
+
+	@Test
+	public void testGiveUpOnMaxlag() throws Exception {
+		con.maxlagErrors.set(Integer.MAX_VALUE);
+		wde.setMaxLagMaxRetries(3);
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 1);
+		executor.getRateController().setMaxEditRate(1000);
+
+		CompletableFuture<StatementDocument> future = executor.submit(
+				mockUpdate(makeItem("Q1", 100)), "Adding a claim", null);
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("The edit should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof MaxlagErrorException);
+		}
+		assertEquals(1000.0 / 8, executor.getRateController().getEditRate(), 1e-9);
+		assertEquals(0, executor.getActiveEdits());
+	}
+
+	@Test
+	public void testFailedEdit() throws Exception {
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 2);
+		ItemDocument document = makeItem("Q1", 100);
+		StatementUpdate update = mockUpdate(document);
+		con.webResources.clear();
+
+		try {
+			executor.submit(update, "Adding a claim", null).get(10, TimeUnit.SECONDS);
+			fail("The edit should have failed");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals(0, executor.getActiveEdits());
+	}
+
+	@Test
+	public void testSharedRateController() {
+		wde.setAverageTimePerEdit(500);
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 2);
+		assertSame(con.getEditRateController(), executor.getRateController());
+		assertEquals(2.0, executor.getRateController().getMaxEditRate(), 1e-9);
+		assertEquals(2.0, executor.getRateController().getEditRate(), 1e-9);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSubmitAfterShutdown() {
+		WikibaseEditExecutor executor = new WikibaseEditExecutor(wde, 2);
+		executor.shutdown();
+		executor.submit(mockUpdate(makeItem("Q1", 100)), "Adding a claim", null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConcurrency() {
+		new WikibaseEditExecutor(wde, 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRate() {
+		new WikibaseEditExecutor(wde, 1).getRateController().setMaxEditRate(0);
+	}
+}